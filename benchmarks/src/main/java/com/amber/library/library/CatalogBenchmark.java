@@ -0,0 +1,139 @@
+package com.amber.library.library;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the DBMgr read and write paths against the seeded catalog of {@link CatalogState}.
+ * Each benchmark reports throughput and, in SampleTime mode, the latency distribution including p99; run with
+ * {@code -prof gc} to add the allocation rate per operation.
+ *
+ * Reads that DBMgr caches are measured below the cache, so that every operation reaches the database:
+ * searches go through the search index and {@link DBMgr#getBooksByIds(int[])}, and the listing streams the whole
+ * catalog with {@link DBMgr#forEachBook(java.util.function.Consumer)}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CatalogBenchmark {
+
+    // Rows written by one bulk insert
+    static final int BULK_ROWS = 1_000;
+
+    @Benchmark
+    public Book insertSingle(CatalogState catalog) {
+        long n = catalog.reserveBookNumbers(1);
+        return catalog.dbMgr.insertBook(CatalogState.title(n), CatalogState.author(n), CatalogState.isbn(n),
+                CatalogState.dewey(n), 1, 100, "English", "Genre");
+    }
+
+    @Benchmark
+    public BulkImporter.Result insertBulk(CatalogState catalog, BulkFile file) throws IOException {
+        return new BulkImporter(catalog.dbMgr).importCsv(file.csv, file.rejects, file.checkpoint);
+    }
+
+    @Benchmark
+    public void listAll(CatalogState catalog, Blackhole blackhole) {
+        catalog.dbMgr.forEachBook(blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Book> searchPrefix(CatalogState catalog, Queries queries) {
+        int[] bookIds = catalog.dbMgr.getSearchIndex().search(queries.nextPrefix());
+        return catalog.dbMgr.getBooksByIds(bookIds);
+    }
+
+    @Benchmark
+    public List<Book> searchInfix(CatalogState catalog, Queries queries) {
+        int[] bookIds = catalog.dbMgr.getSearchIndex().search(queries.nextInfix());
+        return catalog.dbMgr.getBooksByIds(bookIds);
+    }
+
+    @Benchmark
+    public boolean delete(CatalogState catalog, BookToDelete book) {
+        return catalog.dbMgr.deleteBookAndReferences(book.bookId);
+    }
+
+/**
+ * Search terms cycled through by the search benchmarks: word prefixes, and fragments from inside words.
+ */
+    @State(Scope.Thread)
+    public static class Queries {
+        private static final String[] PREFIXES = {"gal", "shad", "riv", "king", "gard", "wint", "emp", "silv", "lant", "thun"};
+        private static final String[] INFIXES = {"alax", "hado", "ive", "ingdo", "arde", "inte", "mpir", "ilve", "ante", "hunde"};
+        private int next;
+
+        String nextPrefix() {
+            next = (next + 1) % PREFIXES.length;
+            return PREFIXES[next] + " " + CatalogState.WORDS[next * 2];
+        }
+
+        String nextInfix() {
+            next = (next + 1) % INFIXES.length;
+            return INFIXES[next] + " " + CatalogState.WORDS[next * 2].substring(1, 5);
+        }
+    }
+
+/**
+ * A fresh CSV of {@link #BULK_ROWS} books for every bulk insert, so ISBNs never repeat.
+ */
+    @State(Scope.Thread)
+    public static class BulkFile {
+        Path csv;
+        Path rejects;
+        Path checkpoint;
+
+        @Setup(Level.Invocation)
+        public void write(CatalogState catalog) throws IOException {
+            csv = Files.createTempFile("bulk", ".csv");
+            rejects = Files.createTempFile("bulk", ".rejects");
+            checkpoint = csv.resolveSibling(csv.getFileName() + ".checkpoint");
+            CatalogState.writeCsv(csv, catalog.reserveBookNumbers(BULK_ROWS), BULK_ROWS);
+        }
+
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rejects);
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+/**
+ * A book inserted before every delete, outside of the measurement, so the catalog keeps its size.
+ */
+    @State(Scope.Thread)
+    public static class BookToDelete {
+        int bookId;
+
+        @Setup(Level.Invocation)
+        public void insert(CatalogState catalog) {
+            long n = catalog.reserveBookNumbers(1);
+            Book book = catalog.dbMgr.insertBook(CatalogState.title(n), CatalogState.author(n), CatalogState.isbn(n),
+                    CatalogState.dewey(n), 1, 100, "English", "Genre");
+            if (book == null) {
+                throw new IllegalStateException("Inserting the book to delete failed.");
+            }
+            bookId = book.getId().intValue();
+        }
+    }
+}
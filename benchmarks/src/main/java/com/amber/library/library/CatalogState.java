@@ -0,0 +1,119 @@
+package com.amber.library.library;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded H2 database in MySQL mode, seeded with a catalog of the configured size, shared by all benchmarks
+ * of a trial. Titles are built from a small vocabulary so that prefix and infix searches match a realistic share
+ * of the catalog, and authors repeat the way they do in a real library.
+ * Select the catalog size with {@code -p books=100000}; the default runs all three sizes.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    static final String[] WORDS = {
+            "galaxy", "shadow", "river", "kingdom", "garden", "winter", "empire", "silver", "forest", "harbor",
+            "machine", "orchard", "lantern", "desert", "voyage", "castle", "ember", "meadow", "thunder", "library"
+    };
+    private static final int AUTHORS = 5_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    DBMgr dbMgr;
+    private Connection keepAlive;
+    // Numbers the books written during the benchmark, after the seeded ones, so ISBNs stay unique
+    private final AtomicLong nextBookNumber = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        String url = "jdbc:h2:mem:catalog" + System.nanoTime() + ";MODE=MySQL";
+        // Holds the in-memory database open for the whole trial
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        dbMgr = new DBMgr(url, "sa", "");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/catalog-seed.sql'");
+        }
+
+        Path csv = Files.createTempFile("catalog", ".csv");
+        Path rejects = Files.createTempFile("catalog", ".rejects");
+        Path checkpoint = csv.resolveSibling(csv.getFileName() + ".checkpoint");
+        try {
+            writeCsv(csv, 0, books);
+            BulkImporter.Result result = new BulkImporter(dbMgr).importCsv(csv, rejects, checkpoint);
+            System.out.println("Seeded " + result.getImported() + " books in " + result.getElapsedMillis() + " ms");
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(rejects);
+            Files.deleteIfExists(checkpoint);
+        }
+        nextBookNumber.set(books);
+        dbMgr.getSearchIndex(); // Build the index now rather than inside the first measured search
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        dbMgr.close();
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+        keepAlive.close();
+    }
+
+/**
+ * Reserves numbers for books written during the benchmark.
+ *
+ * @param count How many books will be written.
+ * @return The first reserved number.
+ */
+    long reserveBookNumbers(int count) {
+        return nextBookNumber.getAndAdd(count);
+    }
+
+    static String title(long n) {
+        return WORDS[(int) (n % WORDS.length)] + " " + WORDS[(int) (n / WORDS.length % WORDS.length)] + " " + n;
+    }
+
+    static String author(long n) {
+        long a = n % AUTHORS;
+        return "Author" + a + " " + WORDS[(int) (a % WORDS.length)];
+    }
+
+    static String isbn(long n) {
+        return String.format("978%010d", n);
+    }
+
+    static String dewey(long n) {
+        return (n % 1000) + "." + (n % 97);
+    }
+
+/**
+ * Writes books numbered from {@code first} in the CSV format read by {@link BulkImporter}.
+ */
+    static void writeCsv(Path csv, long first, int count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("title,authors,isbn,dewey,publisher,pages");
+            out.newLine();
+            for (long n = first; n < first + count; n++) {
+                out.write(title(n) + ",\"" + author(n) + "\"," + isbn(n) + "," + dewey(n) + "," + (1 + n % 2) + "," + (100 + n % 400));
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.amber.library.library;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares sorting, filtering and grouping the loaded catalog as an {@code ObservableList<Book>}, the way the
+ * TableView did before, with the same operations on a {@link CatalogSnapshot}. No database is involved.
+ * Each sort alternates between ascending and descending, so neither side is handed an already sorted list;
+ * grouping the snapshot is measured on books already grouped by the previous call, as when the user regroups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    private static final Comparator<Book> BY_TITLE = Comparator.comparing(Book::getTitle);
+
+    @Param({"100000", "1000000"})
+    public int books;
+
+    private ObservableList<Book> list;
+    private CatalogSnapshot snapshot;
+    private boolean ascending;
+
+    @Setup(Level.Trial)
+    public void load() {
+        list = FXCollections.observableArrayList();
+        snapshot = new CatalogSnapshot();
+        List<Book> page = new ArrayList<>();
+        for (int n = 1; n <= books; n++) {
+            Book book = new Book(n, CatalogState.title(n), CatalogState.author(n), CatalogState.isbn(n), CatalogState.dewey(n), 1);
+            list.add(book);
+            page.add(book);
+            if (page.size() == 200) {
+                snapshot.addBooks(page);
+                page.clear();
+            }
+        }
+        snapshot.addBooks(page);
+        snapshot.trimToSize();
+    }
+
+    @Benchmark
+    public ObservableList<Book> sortList() {
+        ascending = !ascending;
+        FXCollections.sort(list, ascending ? BY_TITLE : BY_TITLE.reversed());
+        return list;
+    }
+
+    @Benchmark
+    public CatalogSnapshot sortSnapshot() {
+        ascending = !ascending;
+        snapshot.sortBy(CatalogSnapshot.Column.TITLE, ascending);
+        return snapshot;
+    }
+
+    @Benchmark
+    public List<Book> filterList() {
+        return list.stream().filter(book -> book.getAuthors().toLowerCase().contains("author42")).toList();
+    }
+
+    @Benchmark
+    public int filterSnapshot() {
+        snapshot.filter(CatalogSnapshot.Column.AUTHORS, "author42");
+        return snapshot.size();
+    }
+
+    @Benchmark
+    public Map<String, List<Book>> groupList() {
+        return list.stream().collect(Collectors.groupingBy(Book::getDewey));
+    }
+
+    @Benchmark
+    public List<CatalogSnapshot.Group> groupSnapshot() {
+        return snapshot.groupBy(CatalogSnapshot.Column.DEWEY);
+    }
+}
@@ -0,0 +1,2 @@
+-- The publishers the generated books refer to; DBMgr creates the tables through SchemaMigrator
+INSERT INTO publisher (Name, Website) VALUES ('Penguin', 'penguin.com'), ('Tor', 'tor.com');
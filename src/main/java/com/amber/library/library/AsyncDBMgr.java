@@ -0,0 +1,279 @@
+package com.amber.library.library;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs catalog operations of a {@link CatalogRepository} off the JavaFX Application Thread.
+ * Every operation is executed on a dedicated executor (virtual threads when the runtime provides them,
+ * otherwise a pool of daemon threads) and returns a CompletableFuture. Results are handed back to the UI with
+ * {@link #onFxThread(CompletableFuture, Consumer, Consumer)}, which uses {@code Platform.runLater}.
+ * Operations submitted under a key replace the previous operation with the same key: a new search cancels the
+ * search still running, so only the result of the latest request ever reaches the UI.
+ */
+public class AsyncDBMgr {
+
+    // Books added to a snapshot at a time while it is loaded
+    private static final int SNAPSHOT_BATCH_SIZE = 10_000;
+
+    // Completed once the repository is open; operations submitted before that wait for it on the executor
+    private final CompletableFuture<? extends CatalogRepository> repository;
+    private final ExecutorService executor;
+    // The most recent operation for each key; older ones are superseded
+    private final Map<String, CompletableFuture<?>> latestByKey = new ConcurrentHashMap<>();
+
+/**
+ * Creates an asynchronous facade over the given catalog repository.
+ *
+ * @param repository The repository that performs the operations.
+ */
+    public AsyncDBMgr(CatalogRepository repository) {
+        this.executor = newExecutor();
+        this.repository = CompletableFuture.completedFuture(repository);
+    }
+
+/**
+ * Creates an asynchronous facade over a repository that is opened in the background, so that the caller,
+ * typically the UI starting up, does not wait for the connection. Operations submitted meanwhile run once it is open;
+ * if opening fails, they fail with the same cause.
+ *
+ * @param opener Opens the repository; called once, on the database executor.
+ */
+    public AsyncDBMgr(Supplier<? extends CatalogRepository> opener) {
+        this.executor = newExecutor();
+        this.repository = CompletableFuture.supplyAsync(opener, executor);
+    }
+
+/**
+ * Gets the repository, once it is open.
+ *
+ * @return A future completed with the repository when it is open, or exceptionally if opening it failed.
+ */
+    public CompletableFuture<? extends CatalogRepository> getRepository() {
+        return repository;
+    }
+
+    // Waits for the repository to be open; called on the executor only
+    private CatalogRepository repository() {
+        return repository.join();
+    }
+
+/**
+ * Runs an operation on the database executor.
+ *
+ * @param operation The work to perform, typically one repository call.
+ * @return A future completed with the operation's result, or exceptionally if it throws.
+ */
+    public <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(operation.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        // Cancelling the returned future keeps the task from starting; a running task is not interrupted, since an
+        // interrupt during a JDBC call can break the pooled connection, and its result is dropped instead
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+        return result;
+    }
+
+/**
+ * Runs an operation that supersedes any earlier operation submitted with the same key.
+ * The earlier operation is cancelled: it does not start if it is still queued, and if it is already running it is
+ * left to finish and its result is dropped.
+ *
+ * @param key Identifies the kind of request, such as "search".
+ * @param operation The work to perform.
+ * @return A future completed with the result, or cancelled if a newer operation with the same key is submitted first.
+ */
+    public <T> CompletableFuture<T> submitLatest(String key, Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> previous = latestByKey.put(key, result);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        CompletableFuture<T> task = submit(operation);
+        result.whenComplete((value, error) -> {
+            latestByKey.remove(key, result);
+            if (result.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+        task.whenComplete((value, error) -> {
+            if (latestByKey.get(key) != result) {
+                result.cancel(false);
+            } else if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+/**
+ * Refreshes the publisher registry in the background; see {@link CatalogRepository#refreshPublishers()}.
+ *
+ * @return A future completed with the registry.
+ */
+    public CompletableFuture<PublisherRegistry> refreshPublishers() {
+        return submit(() -> repository().refreshPublishers());
+    }
+
+/**
+ * Retrieves the ID of every book in the background; see {@link CatalogRepository#getBookIds()}.
+ *
+ * @return A future completed with the BookIDs in ascending order, or null in case of an error.
+ */
+    public CompletableFuture<int[]> getBookIds() {
+        return submit(() -> repository().getBookIds());
+    }
+
+/**
+ * Reads the whole catalog into a new snapshot in the background, streaming it in batches so that the catalog is
+ * never held as Book objects all at once. The snapshot is not shown anywhere yet, so it may be filled off the
+ * JavaFX Application Thread.
+ *
+ * @return A future completed with the snapshot, or with null if the catalog could not be read in full.
+ */
+    public CompletableFuture<CatalogSnapshot> loadSnapshot() {
+        return submit(() -> {
+            CatalogSnapshot snapshot = new CatalogSnapshot();
+            List<Book> batch = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+            boolean complete = repository().forEachBook(book -> {
+                batch.add(book);
+                if (batch.size() == SNAPSHOT_BATCH_SIZE) {
+                    snapshot.addBooks(batch);
+                    batch.clear();
+                }
+            });
+            snapshot.addBooks(batch);
+            snapshot.trimToSize();
+            return complete ? snapshot : null;
+        });
+    }
+
+/**
+ * Retrieves books by ID in the background; see {@link CatalogRepository#getBooksByIds(int[])}.
+ *
+ * @param bookIds The IDs of the books.
+ * @return A future completed with the books found, in the order of bookIds, or with null if they could not be read.
+ */
+    public CompletableFuture<ObservableList<Book>> getBooksByIds(int[] bookIds) {
+        return submit(() -> repository().getBooksByIds(bookIds));
+    }
+
+/**
+ * Searches for books; a new search cancels the one still running.
+ *
+ * @param query The search text.
+ * @return A future completed with the matching books, or cancelled when superseded.
+ */
+    public CompletableFuture<ObservableList<Book>> searchBooks(String query) {
+        return submitLatest("searchBooks", () -> repository().searchBooks(query));
+    }
+
+/**
+ * Inserts a book in the background; see {@link CatalogRepository#insertBook(String, String, String, String, int, int, String, String)}.
+ *
+ * @return A future completed with the inserted book, or null if it was not inserted.
+ */
+    public CompletableFuture<Book> insertBook(String title, String authorName, String isbn, String deweyDecimal, int publisherId, int numberOfPages, String language, String genre) {
+        return submit(() -> repository().insertBook(title, authorName, isbn, deweyDecimal, publisherId, numberOfPages, language, genre));
+    }
+
+/**
+ * Updates a book in the background; see {@link CatalogRepository#updateBook(Book, Book)}.
+ *
+ * @return A future completed with the updated book, or null if it was not updated;
+ * completed exceptionally with a {@link StaleBookException} if the book has moved on since it was read.
+ */
+    public CompletableFuture<Book> updateBook(Book original, Book edited) {
+        return submit(() -> repository().updateBook(original, edited));
+    }
+
+/**
+ * Deletes many books in the background; see {@link CatalogRepository#deleteBooks(Collection)}.
+ *
+ * @param bookIds The IDs of the books to delete.
+ * @return A future completed with the IDs of the books that were deleted.
+ */
+    public CompletableFuture<List<Integer>> deleteBooks(Collection<Integer> bookIds) {
+        return submit(() -> repository().deleteBooks(bookIds));
+    }
+
+/**
+ * Delivers the outcome of a future on the JavaFX Application Thread.
+ * Nothing is delivered for a cancelled (superseded) future.
+ *
+ * @param future The future whose outcome the UI needs.
+ * @param onSuccess Receives the result on the FX thread.
+ * @param onFailure Receives the cause of a failure on the FX thread.
+ */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        onThread(future, Platform::runLater, onSuccess, onFailure);
+    }
+
+/**
+ * Delivers the outcome of a future through the given executor, as {@link #onFxThread} does through the FX thread.
+ * Lets classes that deliver to the FX thread run without a JavaFX toolkit, as in tests.
+ */
+    static <T> void onThread(CompletableFuture<T> future, Executor thread, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                thread.execute(() -> onSuccess.accept(value));
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                thread.execute(() -> onFailure.accept(cause));
+            }
+        });
+    }
+
+/**
+ * Stops accepting new operations. Operations already running are allowed to finish.
+ */
+    public void close() {
+        executor.shutdown();
+    }
+
+/**
+ * Creates a virtual-thread-per-task executor when running on a JDK that has one, so a slow database never
+ * ties up platform threads; otherwise falls back to a cached pool of daemon threads.
+ */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "db-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
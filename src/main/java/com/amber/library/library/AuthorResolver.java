@@ -0,0 +1,377 @@
+package com.amber.library.library;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Turns author names into AuthorIDs, reusing existing Author rows instead of inserting a new one per book.
+ * Names are parsed into first, middle and last name and normalized, then looked up in a bounded in-memory cache,
+ * then in the Author table (through its name index), and only inserted when neither knows the author.
+ *
+ * New authors are inserted and committed on a connection of their own, before the caller starts its transaction,
+ * so a cached AuthorID always refers to a committed row and the caller never needs a second pooled connection
+ * while holding one. The row may still be deleted afterwards, when deleteBooks removes the author's last book;
+ * writers therefore lock the authors in their transaction with {@link DBMgr#lockAuthors}, which also forgets
+ * the ones that are gone, and resolve the names again.
+ * Lookups and inserts of the same name are serialized within the process. Across processes, the unique key
+ * UX_Author_Name on the name columns lets only one insert of a name succeed, and the duplicate-key error of
+ * the others is resolved by reading the row that writer created.
+ */
+public class AuthorResolver {
+
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+    // Number of locks that name lookups are spread over
+    private static final int LOCK_STRIPES = 64;
+    private static final Pattern AUTHOR_SEPARATORS = Pattern.compile("\\s*(?:;|&|\\band\\b)\\s*", Pattern.CASE_INSENSITIVE);
+
+    // Looks an author up by parsed name, falling back to a row holding the whole name in FirstName;
+    // the IN list repeats both first names so that every engine can range-scan the name index
+    static final String FIND_AUTHOR = """
+        SELECT AuthorID FROM Author
+        WHERE FirstName IN (?, ?)
+          AND ((FirstName = ? AND MiddleName = ? AND LastName = ?)
+               OR (FirstName = ? AND MiddleName = '' AND LastName = ''))
+        ORDER BY CASE WHEN LastName = ? THEN 0 ELSE 1 END, AuthorID
+        LIMIT 1
+        """;
+
+    private final DBMgr dbMgr;
+    private final Map<String, Integer> cache;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private long hits;
+    private long misses;
+
+/**
+ * Creates a resolver for the authors of the given database.
+ *
+ * @param dbMgr The database manager providing connections.
+ * @param cacheSize The maximum number of names kept in memory; the least recently used are dropped first.
+ */
+    public AuthorResolver(DBMgr dbMgr, int cacheSize) {
+        this.dbMgr = dbMgr;
+        this.cache = new LinkedHashMap<>(Math.min(cacheSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+/**
+ * Returns the AuthorID for an author name, inserting the author if it is not known yet.
+ *
+ * @param fullName The author's name, as "First Middle Last" or "Last, First Middle".
+ * @return The ID of the existing or newly created Author row.
+ * @throws SQLException If the author cannot be looked up or inserted.
+ */
+    public int resolve(String fullName) throws SQLException {
+        AuthorName name = AuthorName.parse(fullName);
+        Integer cached = cached(name.key);
+        if (cached != null) {
+            return cached;
+        }
+        synchronized (lockFor(name.key)) {
+            cached = cached(name.key);
+            if (cached != null) {
+                return cached;
+            }
+            try (Connection conn = dbMgr.getConnection()) {
+                Integer authorId = find(conn, name);
+                if (authorId == null) {
+                    authorId = insert(conn, name);
+                }
+                remember(name.key, authorId);
+                return authorId;
+            }
+        }
+    }
+
+/**
+ * Returns the AuthorIDs for many author names at once, as needed by bulk imports.
+ * Names missing from the cache are looked up together in one query per batch; only the remaining ones
+ * are inserted one by one.
+ *
+ * @param fullNames The author names.
+ * @return A map from each given name to its AuthorID.
+ * @throws SQLException If the authors cannot be looked up or inserted.
+ */
+    public Map<String, Integer> resolveAll(Collection<String> fullNames) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        Map<String, AuthorName> missing = new LinkedHashMap<>();
+        for (String fullName : fullNames) {
+            if (ids.containsKey(fullName)) {
+                continue;
+            }
+            AuthorName name = AuthorName.parse(fullName);
+            Integer cached = cached(name.key);
+            if (cached != null) {
+                ids.put(fullName, cached);
+            } else {
+                missing.put(fullName, name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        try (Connection conn = dbMgr.getConnection()) {
+            Map<String, Integer> found = findAll(conn, missing.values());
+            for (Map.Entry<String, AuthorName> entry : missing.entrySet()) {
+                Integer authorId = found.get(entry.getValue().key);
+                if (authorId != null) {
+                    remember(entry.getValue().key, authorId);
+                    ids.put(entry.getKey(), authorId);
+                }
+            }
+        }
+        for (Map.Entry<String, AuthorName> entry : missing.entrySet()) {
+            if (!ids.containsKey(entry.getKey())) {
+                ids.put(entry.getKey(), resolve(entry.getKey()));
+            }
+        }
+        return ids;
+    }
+
+/**
+ * Splits the text of an author(s) field into individual author names.
+ * Authors are separated by ";", "&" or the word "and"; a comma is not a separator because it is part of
+ * names written as "Last, First". Empty entries and repeated names are dropped, and the order is kept.
+ *
+ * @param authors The author(s) text, such as "Terry Pratchett; Neil Gaiman".
+ * @return The author names, trimmed, in the order given.
+ */
+    public static List<String> splitAuthors(String authors) {
+        List<String> names = new ArrayList<>();
+        if (authors == null) {
+            return names;
+        }
+        for (String name : AUTHOR_SEPARATORS.split(authors)) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty() && !names.contains(trimmed)) {
+                names.add(trimmed);
+            }
+        }
+        return names;
+    }
+
+/**
+ * Drops a cached AuthorID, for example after the author row has been deleted.
+ *
+ * @param authorId The ID of the author to forget.
+ */
+    public void forget(int authorId) {
+        synchronized (cache) {
+            cache.values().removeIf(id -> id == authorId);
+        }
+    }
+
+/**
+ * Gets the number of names answered from the cache.
+ *
+ * @return The number of cache hits.
+ */
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+/**
+ * Gets the number of names that had to be looked up in the database.
+ *
+ * @return The number of cache misses.
+ */
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    private Integer cached(String key) {
+        synchronized (cache) {
+            Integer authorId = cache.get(key);
+            if (authorId != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return authorId;
+        }
+    }
+
+    private void remember(String key, int authorId) {
+        synchronized (cache) {
+            cache.put(key, authorId);
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+/**
+ * Looks an author up by name. Rows written before names were parsed hold the whole name in FirstName,
+ * so those are matched as well, after an exact match on the parsed parts.
+ */
+    private Integer find(Connection conn, AuthorName name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(FIND_AUTHOR)) {
+            pstmt.setString(1, name.first);
+            pstmt.setString(2, name.full);
+            pstmt.setString(3, name.first);
+            pstmt.setString(4, name.middle);
+            pstmt.setString(5, name.last);
+            pstmt.setString(6, name.full);
+            pstmt.setString(7, name.last);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    // Looks up many parsed names with one query per batch, keyed by normalized name
+    private Map<String, Integer> findAll(Connection conn, Collection<AuthorName> names) throws SQLException {
+        Map<String, Integer> found = new HashMap<>();
+        List<AuthorName> batch = new ArrayList<>(names);
+        int batchSize = 500;
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            int to = Math.min(batch.size(), from + batchSize);
+            StringBuilder sql = new StringBuilder("SELECT AuthorID, FirstName, MiddleName, LastName FROM Author WHERE ");
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "" : " OR ").append("(FirstName = ? AND MiddleName = ? AND LastName = ?)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    AuthorName name = batch.get(i);
+                    pstmt.setString(index++, name.first);
+                    pstmt.setString(index++, name.middle);
+                    pstmt.setString(index++, name.last);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String key = AuthorName.keyOf(rs.getString(2), rs.getString(3), rs.getString(4));
+                        found.putIfAbsent(key, rs.getInt(1));
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int insert(Connection conn, AuthorName name) throws SQLException {
+        String sql = "INSERT INTO Author (FirstName, MiddleName, LastName) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name.first);
+            pstmt.setString(2, name.middle);
+            pstmt.setString(3, name.last);
+            pstmt.executeUpdate();
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getInt(1);
+                }
+                throw new SQLException("Creating author failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            // Another application instance inserted the same author first; use its row
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                Integer authorId = find(conn, name);
+                if (authorId != null) {
+                    return authorId;
+                }
+            }
+            throw e;
+        }
+    }
+
+/**
+ * An author name split into first, middle and last name.
+ */
+    public static final class AuthorName {
+        private final String first;
+        private final String middle;
+        private final String last;
+        private final String full;
+        private final String key;
+
+        private AuthorName(String first, String middle, String last, String full) {
+            this.first = first;
+            this.middle = middle;
+            this.last = last;
+            this.full = full;
+            this.key = keyOf(first, middle, last);
+        }
+
+/**
+ * Parses an author name. "Last, First Middle" is recognized by its comma; otherwise the first word is the
+ * first name, the last word the last name and anything in between the middle name. A single word is kept
+ * as the first name. Extra whitespace is removed.
+ *
+ * @param fullName The name as entered.
+ * @return The parsed name.
+ */
+        public static AuthorName parse(String fullName) {
+            String cleaned = fullName == null ? "" : fullName.trim().replaceAll("\\s+", " ");
+            String first;
+            String middle = "";
+            String last = "";
+            int comma = cleaned.indexOf(',');
+            if (comma >= 0) {
+                last = cleaned.substring(0, comma).trim();
+                String[] given = cleaned.substring(comma + 1).trim().split(" ", 2);
+                first = given[0];
+                middle = given.length > 1 ? given[1] : "";
+            } else {
+                int firstSpace = cleaned.indexOf(' ');
+                int lastSpace = cleaned.lastIndexOf(' ');
+                if (firstSpace < 0) {
+                    first = cleaned;
+                } else {
+                    first = cleaned.substring(0, firstSpace);
+                    middle = firstSpace < lastSpace ? cleaned.substring(firstSpace + 1, lastSpace) : "";
+                    last = cleaned.substring(lastSpace + 1);
+                }
+            }
+            String full = (first + " " + middle + " " + last).trim().replaceAll("\\s+", " ");
+            return new AuthorName(first, middle, last, full);
+        }
+
+        // The database compares names case-insensitively, so the cache does too
+        static String keyOf(String first, String middle, String last) {
+            return (nullToEmpty(first) + '\u0000' + nullToEmpty(middle) + '\u0000' + nullToEmpty(last)).toLowerCase();
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        public String getFirst() {
+            return first;
+        }
+
+        public String getMiddle() {
+            return middle;
+        }
+
+        public String getLast() {
+            return last;
+        }
+
+        @Override
+        public String toString() {
+            return full;
+        }
+    }
+}
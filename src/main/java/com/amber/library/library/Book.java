@@ -5,6 +5,8 @@ package com.amber.library.library;
  * This class encapsulates the properties of a book, including its identifier, title, authors,
  * ISBN, Dewey Decimal classification, and the identifier of its publisher. It provides a structured
  * way to handle book data throughout the application.
+ * The version is the book's row version in the database; an update must name the version it was based on,
+ * so that concurrent edits of the same book cannot overwrite each other unnoticed.
  * Written by Amber Hasan (amh130430) for CS 6360.MS1, starting on 3/1/2024.
  */
 public class Book {
@@ -15,6 +17,7 @@ public class Book {
     private final String isbn;
     private final String dewey;
     private final Number publisherId;
+    private final int version;
 
     /**
      * Constructs a new Book instance with specified details.
@@ -28,12 +31,28 @@ public class Book {
      * @param publisherId The identifier of the book's publisher.
      */
     public Book(Number id, String title, String authors, String isbn, String dewey, Number publisherId) {
+        this(id, title, authors, isbn, dewey, publisherId, 0);
+    }
+
+    /**
+     * Constructs a new Book instance as read from the database at a given row version.
+     *
+     * @param id The unique identifier of the book.
+     * @param title The title of the book.
+     * @param authors The authors of the book, represented as a single String.
+     * @param isbn The ISBN of the book.
+     * @param dewey The Dewey Decimal classification of the book.
+     * @param publisherId The identifier of the book's publisher.
+     * @param version The row version of the book; 0 for a book that has never been updated.
+     */
+    public Book(Number id, String title, String authors, String isbn, String dewey, Number publisherId, int version) {
         this.id = id;
         this.title = title;
         this.authors = authors;
         this.isbn = isbn;
         this.dewey = dewey;
         this.publisherId = publisherId;
+        this.version = version;
     }
 
     // Getter methods provide read-only access to the book's properties, supporting the immutability
@@ -60,4 +79,8 @@ public class Book {
     public Number getPublisherId() {
         return publisherId;
     }
+
+    public int getVersion() {
+        return version;
+    }
 }
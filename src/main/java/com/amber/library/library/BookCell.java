@@ -0,0 +1,56 @@
+package com.amber.library.library;
+
+import javafx.beans.value.ChangeListener;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.util.Callback;
+
+import java.util.function.Function;
+
+/**
+ * A table cell showing one text field of the book in its row, read through a typed getter such as Book::getTitle.
+ * The cell takes the book from its row rather than through a cell value factory, so showing a book creates no
+ * property wrapper and no reflection is involved; the TableView recycles the cells as it scrolls, and a recycled cell
+ * only swaps the text it shows. A row whose book has not been fetched yet is left blank until it arrives.
+ * Columns using these cells have no cell values, so a TableView showing them needs a sort policy of its own.
+ */
+public class BookCell extends TableCell<Book, String> {
+
+    private final Function<Book, String> text;
+    private final ChangeListener<Book> rowItemListener = (observable, oldBook, newBook) -> show(newBook);
+
+/**
+ * Creates a cell showing the given field of its row's book.
+ *
+ * @param text Gets the field from a book.
+ */
+    public BookCell(Function<Book, String> text) {
+        this.text = text;
+        tableRowProperty().addListener((observable, oldRow, newRow) -> rowChanged(oldRow, newRow));
+    }
+
+/**
+ * Makes a cell factory for a column showing one field of each book.
+ *
+ * @param text Gets the field from a book.
+ * @return The cell factory.
+ */
+    public static Callback<TableColumn<Book, String>, TableCell<Book, String>> forColumn(Function<Book, String> text) {
+        return column -> new BookCell(text);
+    }
+
+    private void rowChanged(TableRow<Book> oldRow, TableRow<Book> newRow) {
+        if (oldRow != null) {
+            oldRow.itemProperty().removeListener(rowItemListener);
+        }
+        if (newRow != null) {
+            newRow.itemProperty().addListener(rowItemListener);
+            show(newRow.getItem());
+        }
+    }
+
+    private void show(Book book) {
+        setText(book == null ? null : text.apply(book));
+    }
+}
@@ -0,0 +1,514 @@
+package com.amber.library.library;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Imports large batches of books from a CSV file.
+ * The file is streamed in chunks; each chunk is parsed and validated in parallel with {@link ValidationEngine} while
+ * the previous chunk is being written, and written in a single transaction using multi-row INSERT statements whose generated
+ * keys are fetched in bulk. After every committed chunk a checkpoint file records the last imported line, so an
+ * interrupted import can be restarted and continues where it stopped. Rows that fail validation or cannot be
+ * written are copied to a reject file together with the reason.
+ *
+ * The expected columns are: title, author(s), ISBN, Dewey number, publisher ID, number of pages, language, genre.
+ * Several authors are separated the same way as in the author(s) field of the form, for example "A. Author; B. Author".
+ * The last three are optional. A first line starting with "title" is treated as a header and skipped.
+ */
+public class BulkImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 5_000;
+    // Rows per multi-row INSERT statement; keeps the number of bound parameters well below driver limits
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final System.Logger LOG = System.getLogger(BulkImporter.class.getName());
+    // Latency and rows of each chunk written in one transaction
+    private static final OperationMetrics CHUNK_METRICS = Metrics.getInstance().operation("import.chunk");
+
+    private static final int DEFAULT_NUMBER_OF_PAGES = 100;
+    private static final String DEFAULT_LANGUAGE = "English";
+    private static final String DEFAULT_GENRE = "Genre";
+
+    private final DBMgr dbMgr;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+/**
+ * Creates an importer that writes through the given database manager.
+ *
+ * @param dbMgr The database manager providing connections.
+ */
+    public BulkImporter(DBMgr dbMgr) {
+        this.dbMgr = dbMgr;
+    }
+
+/**
+ * Sets how many rows are written and committed together.
+ * Larger chunks mean fewer round-trips and commits; smaller chunks mean less work lost on failure.
+ *
+ * @param chunkSize The number of rows per transaction.
+ */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+/**
+ * Imports all books from a CSV file, resuming after the line recorded in the checkpoint file if there is one.
+ *
+ * @param csvFile The file to import.
+ * @param rejectFile The file that receives rejected rows; appended to when resuming.
+ * @param checkpointFile The file recording the last committed line; deleted once the import completes.
+ * @return The counts of imported, rejected and skipped rows.
+ * @throws IOException If the input, reject or checkpoint file cannot be read or written.
+ */
+    public Result importCsv(Path csvFile, Path rejectFile, Path checkpointFile) throws IOException {
+        long startTime = System.nanoTime();
+        long resumeAfter = readCheckpoint(checkpointFile);
+        Result result = new Result();
+        result.skipped = resumeAfter;
+
+        StandardOpenOption rejectMode = resumeAfter > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, rejectMode)) {
+            long lineNumber = 0;
+            String line;
+            while (lineNumber < resumeAfter && reader.readLine() != null) {
+                lineNumber++;
+            }
+
+            // Validate the next chunk on other cores while the current one is being written
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            CompletableFuture<List<Row>> validated = null;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.toLowerCase(Locale.ROOT).startsWith("title")) {
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(new Row(lineNumber, line));
+                if (chunk.size() == chunkSize) {
+                    CompletableFuture<List<Row>> next = validateAsync(chunk);
+                    if (validated != null) {
+                        write(validated.join(), rejects, checkpointFile, result);
+                    }
+                    validated = next;
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            CompletableFuture<List<Row>> last = chunk.isEmpty() ? null : validateAsync(chunk);
+            if (validated != null) {
+                write(validated.join(), rejects, checkpointFile, result);
+            }
+            if (last != null) {
+                write(last.join(), rejects, checkpointFile, result);
+            }
+        }
+        Files.deleteIfExists(checkpointFile);
+        result.elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        return result;
+    }
+
+    private CompletableFuture<List<Row>> validateAsync(List<Row> chunk) {
+        return CompletableFuture.supplyAsync(() -> {
+            chunk.parallelStream().forEach(BulkImporter::parse);
+            int[] errors = new int[chunk.size()];
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = chunk.get(i).errors;
+            }
+            ValidationEngine.validateAll(new ChunkRows(chunk), errors);
+            for (int i = 0; i < errors.length; i++) {
+                // A row that is missing columns has no fields to complain about
+                Row row = chunk.get(i);
+                row.errors = ValidationError.MISSING_COLUMNS.in(errors[i]) ? ValidationError.MISSING_COLUMNS.bit() : errors[i];
+                if (row.errors == 0) {
+                    row.isbn = ValidationEngine.normalizeIsbn(row.isbn);
+                }
+            }
+            return chunk;
+        });
+    }
+
+/**
+ * Writes the valid rows of a validated chunk in one transaction, rejects the invalid ones,
+ * and records the checkpoint once the chunk is committed.
+ */
+    private void write(List<Row> chunk, BufferedWriter rejects, Path checkpointFile, Result result) throws IOException {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (row.errors == 0) {
+                valid.add(row);
+            } else {
+                row.error = ValidationError.describe(row.errors, " ");
+                reject(row, rejects, result);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                insertChunk(valid);
+                CHUNK_METRICS.success(start, valid.size());
+                result.imported += valid.size();
+            } catch (SQLException e) {
+                CHUNK_METRICS.failure(start);
+                // One bad row fails the whole multi-row statement; retry row by row to isolate it
+                LOG.log(Level.WARNING, "Chunk insert failed, retrying row by row: " + e.getMessage());
+                for (Row row : valid) {
+                    if (dbMgr.insertBook(row.title, row.authors, row.isbn, row.dewey, row.publisherId,
+                            row.numberOfPages, row.language, row.genre) != null) {
+                        result.imported++;
+                    } else {
+                        row.error = "Database rejected the row.";
+                        reject(row, rejects, result);
+                    }
+                }
+            }
+        }
+        rejects.flush();
+        writeCheckpoint(checkpointFile, chunk.get(chunk.size() - 1).lineNumber);
+    }
+
+/**
+ * Inserts a chunk of valid rows across Publication, Book, PhysicalBook and BookAuthor in one transaction,
+ * after resolving the chunk's authors to existing or new Author rows.
+ * Each table is written with multi-row INSERT statements, and the generated keys of each statement are read
+ * in one pass, in row order.
+ */
+    private void insertChunk(List<Row> rows) throws SQLException {
+        // Resolve every author of the chunk up front; authors already in the catalog are reused
+        List<String> authorNames = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            authorNames.addAll(row.authorNames);
+        }
+        Map<String, Integer> authorIds = dbMgr.getAuthorResolver().resolveAll(authorNames);
+
+        try (Connection conn = dbMgr.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                // An author deleted since it was resolved fails the chunk, and the row-by-row retry resolves it again
+                if (!dbMgr.lockAuthors(conn, authorIds.values())) {
+                    throw new SQLException("Authors of the chunk were deleted while it was imported.");
+                }
+                int[] publicationIds = insertRows(conn, "INSERT INTO Publication (Title, PublisherID, Type) VALUES ",
+                        "(?, ?, 'Book')", rows, true, (pstmt, index, row) -> {
+                            pstmt.setString(index, row.title);
+                            pstmt.setInt(index + 1, row.publisherId);
+                            return 2;
+                        });
+                for (int i = 0; i < rows.size(); i++) {
+                    rows.get(i).publicationId = publicationIds[i];
+                }
+                int[] bookIds = insertRows(conn, "INSERT INTO Book (PublicationID, ISBN, DeweyDecimalSystemNumber) VALUES ",
+                        "(?, ?, ?)", rows, true, (pstmt, index, row) -> {
+                            pstmt.setInt(index, row.publicationId);
+                            pstmt.setString(index + 1, row.isbn);
+                            pstmt.setString(index + 2, row.dewey);
+                            return 3;
+                        });
+                List<int[]> links = new ArrayList<>(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    Row row = rows.get(i);
+                    row.bookId = bookIds[i];
+                    List<Integer> linked = new ArrayList<>(row.authorNames.size());
+                    for (String authorName : row.authorNames) {
+                        int authorId = authorIds.get(authorName);
+                        if (!linked.contains(authorId)) {
+                            linked.add(authorId);
+                            links.add(new int[]{row.bookId, authorId});
+                        }
+                    }
+                }
+                insertRows(conn, "INSERT INTO PhysicalBook (BookID, NumberOfPages, Language, Genre) VALUES ",
+                        "(?, ?, ?, ?)", rows, false, (pstmt, index, row) -> {
+                            pstmt.setInt(index, row.bookId);
+                            pstmt.setInt(index + 1, row.numberOfPages);
+                            pstmt.setString(index + 2, row.language);
+                            pstmt.setString(index + 3, row.genre);
+                            return 4;
+                        });
+                insertRows(conn, "INSERT INTO BookAuthor (BookID, AuthorID) VALUES ",
+                        "(?, ?)", links, false, (pstmt, index, link) -> {
+                            pstmt.setInt(index, link[0]);
+                            pstmt.setInt(index + 1, link[1]);
+                            return 2;
+                        });
+                dbMgr.recordChanges(conn, OutboxPoller.INSERTED, bookIds, 0);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                CHUNK_METRICS.rollback();
+                throw e;
+            }
+        }
+        for (Row row : rows) {
+            dbMgr.bookInserted(new Book(row.bookId, row.title, String.join(DBMgr.AUTHOR_SEPARATOR, row.authorNames),
+                    row.isbn, row.dewey, row.publisherId));
+        }
+    }
+
+/**
+ * Inserts rows with as few multi-row INSERT statements as possible.
+ * The generated keys of a multi-row INSERT are returned by the driver in row order; this relies on the
+ * auto-increment values of a single statement being consecutive, which holds for MySQL's default lock modes
+ * when the import is the only bulk writer.
+ *
+ * @return The generated keys in row order when returnKeys is set, otherwise an empty array.
+ */
+    private static <T> int[] insertRows(Connection conn, String insertPrefix, String valuesGroup, List<T> rows,
+                                        boolean returnKeys, RowBinder<T> binder) throws SQLException {
+        int[] keys = new int[returnKeys ? rows.size() : 0];
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            int to = Math.min(rows.size(), from + ROWS_PER_STATEMENT);
+            String sql = insertPrefix + String.join(", ", Collections.nCopies(to - from, valuesGroup));
+            try (PreparedStatement pstmt = returnKeys
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql)) {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    index += binder.bind(pstmt, index, rows.get(i));
+                }
+                pstmt.executeUpdate();
+                if (returnKeys) {
+                    int k = from;
+                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                        while (generatedKeys.next() && k < to) {
+                            keys[k++] = generatedKeys.getInt(1);
+                        }
+                    }
+                    if (k != to) {
+                        throw new SQLException("Expected " + (to - from) + " generated keys, got " + (k - from) + ".");
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+/**
+ * Parses a CSV line into the row's fields, recording in row.errors the problems that parsing finds.
+ * The fields themselves are checked afterwards, for the whole chunk at once.
+ */
+    private static void parse(Row row) {
+        List<String> fields = parseCsvLine(row.line);
+        if (fields.size() < 5) {
+            row.errors = ValidationError.MISSING_COLUMNS.bit();
+            return;
+        }
+        row.title = fields.get(0).trim();
+        row.authors = fields.get(1).trim();
+        row.authorNames = AuthorResolver.splitAuthors(row.authors);
+        row.isbn = fields.get(2).trim();
+        row.dewey = fields.get(3).trim();
+        if (row.authorNames.isEmpty()) {
+            row.errors |= ValidationError.AUTHOR_EMPTY.bit();
+        }
+        try {
+            row.publisherId = Integer.parseInt(fields.get(4).trim());
+            row.numberOfPages = fields.size() > 5 && !fields.get(5).isBlank()
+                    ? Integer.parseInt(fields.get(5).trim()) : DEFAULT_NUMBER_OF_PAGES;
+        } catch (NumberFormatException e) {
+            row.errors |= ValidationError.NOT_A_NUMBER.bit();
+        }
+        row.language = fields.size() > 6 && !fields.get(6).isBlank() ? fields.get(6).trim() : DEFAULT_LANGUAGE;
+        row.genre = fields.size() > 7 && !fields.get(7).isBlank() ? fields.get(7).trim() : DEFAULT_GENRE;
+    }
+
+/**
+ * Splits a CSV line into fields. Fields may be quoted with double quotes, in which case they can contain
+ * commas, and a doubled quote stands for a literal quote.
+ *
+ * @param line One line of the CSV file.
+ * @return The fields of the line.
+ */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void reject(Row row, BufferedWriter rejects, Result result) throws IOException {
+        rejects.write(row.lineNumber + "\t" + row.error + "\t" + row.line);
+        rejects.newLine();
+        result.rejected++;
+    }
+
+    private static long readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String content = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim();
+        return content.isEmpty() ? 0 : Long.parseLong(content);
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves a half-written checkpoint
+    private static void writeCheckpoint(Path checkpointFile, long lineNumber) throws IOException {
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(temporary, Long.toString(lineNumber), StandardCharsets.UTF_8);
+        Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+/**
+ * Runs an import from the command line.
+ * Usage: BulkImporter books.csv [rejects.tsv] [checkpoint-file]
+ */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BulkImporter books.csv [rejects.tsv] [checkpoint-file]");
+            return;
+        }
+        Path csvFile = Path.of(args[0]);
+        Path rejectFile = Path.of(args.length > 1 ? args[1] : args[0] + ".rejects.tsv");
+        Path checkpointFile = Path.of(args.length > 2 ? args[2] : args[0] + ".checkpoint");
+        DBMgr dbMgr = DBMgr.getInstance();
+        try {
+            Result result = new BulkImporter(dbMgr).importCsv(csvFile, rejectFile, checkpointFile);
+            System.out.println(result);
+        } finally {
+            dbMgr.close();
+        }
+    }
+
+    // Binds the parameters of one row into a multi-row INSERT, starting at index, and returns how many it bound
+    private interface RowBinder<T> {
+        int bind(PreparedStatement pstmt, int index, T row) throws SQLException;
+    }
+
+    // One line of the input file, its parsed fields and the keys generated for it
+    private static final class Row {
+        final long lineNumber;
+        final String line;
+        String title;
+        String authors;
+        List<String> authorNames;
+        String isbn;
+        String dewey;
+        int publisherId;
+        int numberOfPages;
+        String language;
+        String genre;
+        // The ValidationError bits of the row, and why it was rejected once that is known
+        int errors;
+        String error;
+        int publicationId;
+        int bookId;
+
+        Row(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    // The parsed fields of a chunk, as seen by the validation engine; rows missing columns have null fields
+    private static final class ChunkRows implements ValidationEngine.Rows {
+        private final List<Row> chunk;
+
+        ChunkRows(List<Row> chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int size() {
+            return chunk.size();
+        }
+
+        @Override
+        public CharSequence title(int row) {
+            return chunk.get(row).title;
+        }
+
+        @Override
+        public CharSequence authors(int row) {
+            return chunk.get(row).authors;
+        }
+
+        @Override
+        public CharSequence isbn(int row) {
+            return chunk.get(row).isbn;
+        }
+
+        @Override
+        public CharSequence dewey(int row) {
+            return chunk.get(row).dewey;
+        }
+    }
+
+/**
+ * Summarizes the outcome of an import.
+ */
+    public static final class Result {
+        private long imported;
+        private long rejected;
+        private long skipped;
+        private long elapsedMillis;
+
+        Result() {
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d, rejected %d, skipped %d (already imported) in %d ms",
+                    imported, rejected, skipped, elapsedMillis);
+        }
+    }
+}
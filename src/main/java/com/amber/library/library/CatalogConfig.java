@@ -0,0 +1,176 @@
+package com.amber.library.library;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Chooses the catalog's storage backend and its connection settings from external configuration.
+ * Settings are read from the properties file named by -Dlibrary.config, or library.properties in the working
+ * directory if it exists; a system property with the same name as a setting overrides the file.
+ * <ul>
+ *     <li>catalog.backend: mysql (the default) for a MySQL server, or embedded for a database file next to the application</li>
+ *     <li>catalog.mysql.url, catalog.mysql.user, catalog.mysql.password: the MySQL server and its account; the account
+ *     has no default and must be configured for the mysql backend</li>
+ *     <li>catalog.embedded.path: the embedded database file, without its extension; library-data/library by default</li>
+ *     <li>catalog.replica.path: a local replica file to read books from instead of the database; none by default</li>
+ *     <li>catalog.replica.sync.seconds: how often the replica is compared with the database in full; 900 by default</li>
+ *     <li>catalog.outbox.poll.millis: how often the changes of other application instances are read from the outbox;
+ *     2000 by default, and 0 not to follow them</li>
+ * </ul>
+ */
+public final class CatalogConfig {
+
+    private static final System.Logger LOG = System.getLogger(CatalogConfig.class.getName());
+
+    public static final String CONFIG_FILE_PROPERTY = "library.config";
+    public static final String DEFAULT_CONFIG_FILE = "library.properties";
+
+    public static final String BACKEND = "catalog.backend";
+    public static final String MYSQL_URL = "catalog.mysql.url";
+    public static final String MYSQL_USER = "catalog.mysql.user";
+    public static final String MYSQL_PASSWORD = "catalog.mysql.password";
+    public static final String EMBEDDED_PATH = "catalog.embedded.path";
+    public static final String REPLICA_PATH = "catalog.replica.path";
+    public static final String REPLICA_SYNC_SECONDS = "catalog.replica.sync.seconds";
+    public static final String OUTBOX_POLL_MILLIS = "catalog.outbox.poll.millis";
+
+    public static final String MYSQL_BACKEND = "mysql";
+    public static final String EMBEDDED_BACKEND = "embedded";
+
+    // useCursorFetch lets the driver honour the fetch size instead of reading whole result sets into memory
+    private static final String DEFAULT_MYSQL_URL = "jdbc:mysql://localhost:3306/library_db?useCursorFetch=true";
+    private static final String DEFAULT_EMBEDDED_PATH = "library-data/library";
+
+    private final Properties properties;
+
+/**
+ * Creates a configuration from the given settings; missing settings take their defaults.
+ *
+ * @param properties The settings, keyed by the names above.
+ */
+    public CatalogConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+/**
+ * Reads the configuration file, if there is one, and applies the system properties over it.
+ * A configuration file that cannot be read is logged and ignored.
+ *
+ * @return The configuration.
+ */
+    public static CatalogConfig load() {
+        Properties properties = new Properties();
+        String configured = System.getProperty(CONFIG_FILE_PROPERTY);
+        Path file = Path.of(configured != null ? configured : DEFAULT_CONFIG_FILE);
+        if (configured != null || Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Reading configuration " + file + " failed; using defaults", e);
+            }
+        }
+        for (String name : new String[]{BACKEND, MYSQL_URL, MYSQL_USER, MYSQL_PASSWORD, EMBEDDED_PATH,
+                REPLICA_PATH, REPLICA_SYNC_SECONDS, OUTBOX_POLL_MILLIS}) {
+            String value = System.getProperty(name);
+            if (value != null) {
+                properties.setProperty(name, value);
+            }
+        }
+        return new CatalogConfig(properties);
+    }
+
+/**
+ * Gets the configured backend.
+ *
+ * @return {@link #MYSQL_BACKEND} or {@link #EMBEDDED_BACKEND}.
+ * @throws IllegalStateException If catalog.backend names another backend.
+ */
+    public String getBackend() {
+        String backend = properties.getProperty(BACKEND, MYSQL_BACKEND).trim().toLowerCase(Locale.ROOT);
+        if (!backend.equals(MYSQL_BACKEND) && !backend.equals(EMBEDDED_BACKEND)) {
+            throw new IllegalStateException("Unknown " + BACKEND + " '" + backend + "'; expected "
+                    + MYSQL_BACKEND + " or " + EMBEDDED_BACKEND);
+        }
+        return backend;
+    }
+
+/**
+ * Opens the configured backend and starts following the changes other application instances record in its outbox.
+ *
+ * @return A DBMgr connected to the MySQL server, or an EmbeddedDBMgr on the embedded database file.
+ * @throws IllegalStateException If catalog.backend names another backend, the mysql backend has no
+ * catalog.mysql.user or catalog.mysql.password, or catalog.outbox.poll.millis is negative.
+ */
+    public DBMgr open() {
+        long pollMillis = getLong(OUTBOX_POLL_MILLIS, OutboxPoller.DEFAULT_INTERVAL.toMillis());
+        DBMgr dbMgr;
+        if (getBackend().equals(EMBEDDED_BACKEND)) {
+            Path path = Path.of(properties.getProperty(EMBEDDED_PATH, DEFAULT_EMBEDDED_PATH));
+            LOG.log(Level.INFO, "Using the embedded catalog at " + path.toAbsolutePath());
+            dbMgr = new EmbeddedDBMgr(path);
+        } else {
+            String url = properties.getProperty(MYSQL_URL, DEFAULT_MYSQL_URL);
+            String user = getRequired(MYSQL_USER);
+            String password = getRequired(MYSQL_PASSWORD);
+            dbMgr = new DBMgr(DBMgr.loadDriver("com.mysql.cj.jdbc.Driver", url), user, password);
+        }
+        if (pollMillis > 0) {
+            dbMgr.followOutbox(Duration.ofMillis(pollMillis));
+        }
+        return dbMgr;
+    }
+
+/**
+ * Opens the repository the application works through: the single {@link DBMgr} instance for the configured backend,
+ * or, if a replica file is configured, a {@link ReplicatedCatalog} that reads books from it and writes through that instance.
+ *
+ * @return The catalog repository.
+ * @throws IllegalStateException If catalog.replica.sync.seconds is not a positive number of seconds.
+ */
+    public CatalogRepository openRepository() {
+        String replica = properties.getProperty(REPLICA_PATH, "").trim();
+        if (replica.isEmpty()) {
+            return DBMgr.getInstance();
+        }
+        long syncSeconds = getLong(REPLICA_SYNC_SECONDS, ReplicatedCatalog.DEFAULT_SYNC_INTERVAL.toSeconds());
+        if (syncSeconds == 0) {
+            throw new IllegalStateException(REPLICA_SYNC_SECONDS + " must be a positive number of seconds");
+        }
+        LOG.log(Level.INFO, "Reading books from the replica at " + Path.of(replica).toAbsolutePath());
+        return new ReplicatedCatalog(Path.of(replica), DBMgr::getInstance, Duration.ofSeconds(syncSeconds));
+    }
+
+    // Reads a setting that has no default; it may be empty, as for an account without a password, but must be set
+    private String getRequired(String name) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            throw new IllegalStateException(name + " is not set; add it to " + DEFAULT_CONFIG_FILE
+                    + " or pass -D" + name + "=..., or set " + BACKEND + "=" + EMBEDDED_BACKEND);
+        }
+        return value;
+    }
+
+    // Reads a setting that is a whole number, not negative
+    private long getLong(String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalStateException(name + " must be a whole number that is not negative, not '" + value + "'");
+    }
+}
@@ -0,0 +1,60 @@
+package com.amber.library.library;
+
+/**
+ * A committed change to the catalog, as published on the {@link CatalogEventBus}.
+ * Changes made by this application are published as soon as their transaction commits; changes made by other
+ * application instances are read from the catalog_outbox table by an {@link OutboxPoller} and marked remote.
+ */
+public sealed interface CatalogEvent permits CatalogEvent.BookInserted, CatalogEvent.BookUpdated, CatalogEvent.BookDeleted {
+
+/**
+ * Gets the ID of the book that changed.
+ *
+ * @return The BookID.
+ */
+    int bookId();
+
+/**
+ * Tells whether another application instance made the change.
+ *
+ * @return true for a change read from the outbox; false for a change made by this application.
+ */
+    boolean remote();
+
+/**
+ * A book was inserted.
+ *
+ * @param book The new book.
+ * @param remote Whether another application instance inserted it.
+ */
+    record BookInserted(Book book, boolean remote) implements CatalogEvent {
+
+        @Override
+        public int bookId() {
+            return book.getId().intValue();
+        }
+    }
+
+/**
+ * A book was updated.
+ *
+ * @param book The book as it is now, with its new version.
+ * @param remote Whether another application instance updated it.
+ */
+    record BookUpdated(Book book, boolean remote) implements CatalogEvent {
+
+        @Override
+        public int bookId() {
+            return book.getId().intValue();
+        }
+    }
+
+/**
+ * A book was deleted.
+ *
+ * @param bookId The ID of the deleted book.
+ * @param remote Whether another application instance deleted it.
+ */
+    record BookDeleted(int bookId, boolean remote) implements CatalogEvent {
+    }
+}
@@ -0,0 +1,219 @@
+package com.amber.library.library;
+
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Delivers {@link CatalogEvent}s to any number of subscribers in the order they were published, through a ring buffer
+ * in the style of the LMAX Disruptor, without locks on the publishing path.
+ * A publisher claims the next sequence number with one atomic increment, writes the event into the slot that
+ * sequence maps to, and marks the slot as published with that sequence. Every subscriber has its own thread and
+ * its own position in the ring: it takes all events published after its position, up to the batch size, hands them
+ * to its handler in one call, and then moves its position past them.
+ * <ul>
+ *     <li>Backpressure: a slot is only reused once every subscriber has consumed the event in it, so a publisher
+ *     that gets a whole ring ahead of the slowest subscriber waits instead of dropping or buffering events.</li>
+ *     <li>Batching: a subscriber that falls behind catches up with fewer, larger calls.</li>
+ *     <li>A handler that throws is logged; its subscription carries on with the next batch.</li>
+ * </ul>
+ * Handlers run on their subscription's thread and must not publish, since a full ring would then wait for itself.
+ */
+public final class CatalogEventBus implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(CatalogEventBus.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    // How long an idle subscriber sleeps before checking again in case a wake-up was missed, and how long
+    // a publisher waiting for room in the ring sleeps between checks
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+    private static final long FULL_PARK_NANOS = 50_000;
+
+    private final CatalogEvent[] ring;
+    private final int mask;
+    // The sequence each slot was last published with; a slot is readable once it holds the sequence being read
+    private final AtomicLongArray published;
+    // The last sequence claimed by a publisher
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+/**
+ * Creates a bus with the default capacity.
+ */
+    public CatalogEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+/**
+ * Creates a bus holding up to the given number of events that some subscriber has not consumed yet.
+ *
+ * @param capacity The number of slots; a power of two.
+ */
+    public CatalogEventBus(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.ring = new CatalogEvent[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+/**
+ * Publishes an event to every subscriber. Safe to call from any number of threads at once.
+ * Waits while the ring is full, until the slowest subscriber has made room.
+ *
+ * @param event The event.
+ */
+    public void publish(CatalogEvent event) {
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        while (wrapPoint > minimumPosition(sequence)) {
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        int slot = (int) sequence & mask;
+        ring[slot] = event;
+        // The volatile write publishes the event to subscribers that read the slot's sequence
+        published.set(slot, sequence);
+        for (Subscription subscription : subscriptions) {
+            if (subscription.idle) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+/**
+ * Subscribes to the events published from now on, handling them on a new daemon thread.
+ *
+ * @param name Names the thread and the subscription's metrics.
+ * @param batchSize The most events passed to one call of the handler.
+ * @param handler Receives the events in the order they were published, in batches of one or more.
+ * @return The subscription, to be closed when the events are no longer wanted.
+ */
+    public Subscription subscribe(String name, int batchSize, Consumer<List<CatalogEvent>> handler) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        Subscription subscription = new Subscription(name, batchSize, handler);
+        subscriptions.add(subscription);
+        Metrics.getInstance().gauge("events." + name + ".lag", subscription::getLag);
+        subscription.thread.start();
+        return subscription;
+    }
+
+/**
+ * Subscribes with the default batch size.
+ *
+ * @see #subscribe(String, int, Consumer)
+ */
+    public Subscription subscribe(String name, Consumer<List<CatalogEvent>> handler) {
+        return subscribe(name, DEFAULT_BATCH_SIZE, handler);
+    }
+
+/**
+ * Gets the number of events published so far.
+ *
+ * @return The number of events.
+ */
+    public long getPublished() {
+        return claimed.get() + 1;
+    }
+
+/**
+ * Closes every subscription. Events published afterwards are dropped.
+ */
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    // The position of the slowest subscriber, or the given sequence if there is none to wait for
+    private long minimumPosition(long sequence) {
+        long minimum = sequence;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.position);
+        }
+        return minimum;
+    }
+
+/**
+ * One subscriber's position in the ring and the thread that hands it events.
+ */
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final int batchSize;
+        private final Consumer<List<CatalogEvent>> handler;
+        private final Thread thread;
+        // The last sequence handed to the handler
+        private volatile long position;
+        // Set while the thread waits for events, so publishers only wake subscribers that sleep
+        private volatile boolean idle;
+        private volatile boolean closed;
+
+        private Subscription(String name, int batchSize, Consumer<List<CatalogEvent>> handler) {
+            this.name = name;
+            this.batchSize = batchSize;
+            this.handler = handler;
+            this.position = claimed.get();
+            this.thread = new Thread(this::run, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+/**
+ * Gets how many published events the subscriber has not handled yet.
+ *
+ * @return The number of events behind.
+ */
+        public long getLag() {
+            return Math.max(0, claimed.get() - position);
+        }
+
+/**
+ * Stops the subscription. Events not handled yet are dropped and no longer hold publishers back.
+ */
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        private void run() {
+            List<CatalogEvent> batch = new ArrayList<>(batchSize);
+            while (!closed) {
+                long next = position + 1;
+                while (batch.size() < batchSize && published.get((int) next & mask) == next) {
+                    batch.add(ring[(int) next & mask]);
+                    next++;
+                }
+                if (batch.isEmpty()) {
+                    idle = true;
+                    // Check again once idle is visible, so an event published meanwhile is not slept through
+                    if (published.get((int) next & mask) != next) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                    continue;
+                }
+                try {
+                    handler.accept(List.copyOf(batch));
+                } catch (RuntimeException e) {
+                    LOG.log(Level.WARNING, "Subscriber " + name + " failed on " + batch.size() + " events", e);
+                }
+                position = next - 1;
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package com.amber.library.library;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Exports the whole catalog to a file as CSV, JSON Lines or a compact binary snapshot, optionally gzip-compressed.
+ * Rows are streamed from a forward-only result set, fetched in batches of the DBMgr's fetch size, and their columns
+ * are encoded straight into a large direct buffer that is written to a FileChannel whenever it fills up, without
+ * building Book objects, lines or intermediate byte arrays. Memory use is therefore constant however large the
+ * catalog is. The export is written to a temporary file next to the target and moved over it once complete, so a
+ * failed export never leaves a truncated file behind.
+ *
+ * Every format has the columns of {@link DBMgr#CATALOG_QUERY}: BookID, ISBN, Dewey, Version, Title, PublisherID,
+ * Authors, PublicationDate, NumberOfPages, Language and Genre, with dates as yyyy-mm-dd.
+ * The binary snapshot starts with the magic bytes "LIBS", a format version byte (1), a column count byte and the
+ * column names; each row is then the byte 1, a two-byte little-endian bitmap of the null columns, and the non-null
+ * columns in order: numbers as unsigned varints, dates as zig-zag varints of the epoch day, and text as a varint
+ * byte length followed by UTF-8. The byte 0 ends the rows, followed by the row count as a varint.
+ */
+public class CatalogExporter {
+
+/**
+ * The formats the catalog can be exported in, each with its file extension.
+ */
+    public enum Format {
+        CSV(".csv"), JSON_LINES(".jsonl"), BINARY(".libs");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+/**
+ * Gets the file extension of the format, without compression.
+ *
+ * @return The extension, including its dot.
+ */
+        public String getExtension() {
+            return extension;
+        }
+
+/**
+ * Chooses the format from a file name ending in .csv, .jsonl or .libs, optionally followed by .gz.
+ *
+ * @param file The export file.
+ * @return The format.
+ * @throws IllegalArgumentException If the extension is not one of the formats.
+ */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            for (Format format : values()) {
+                if (name.endsWith(format.extension)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format of " + file + "; use .csv, .jsonl or .libs");
+        }
+    }
+
+    // Size of the direct buffer rows are encoded into, and of the one compressed output is written from
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final System.Logger LOG = System.getLogger(CatalogExporter.class.getName());
+    private static final OperationMetrics EXPORT_METRICS = Metrics.getInstance().operation("export.catalog");
+
+    private static final String[] COLUMNS = {"BookID", "ISBN", "Dewey", "Version", "Title", "PublisherID", "Authors",
+            "PublicationDate", "NumberOfPages", "Language", "Genre"};
+    private static final String[] JSON_NAMES = {"bookId", "isbn", "dewey", "version", "title", "publisherId", "authors",
+            "publicationDate", "numberOfPages", "language", "genre"};
+    // Columns holding numbers and the date column; the others hold text
+    private static final boolean[] NUMERIC = {true, false, false, true, false, true, false, false, true, false, false};
+    private static final int DATE_COLUMN = 7;
+    private static final byte[] BINARY_MAGIC = {'L', 'I', 'B', 'S'};
+    private static final int BINARY_VERSION = 1;
+
+    private final DBMgr dbMgr;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+/**
+ * Creates an exporter that reads through the given database manager.
+ *
+ * @param dbMgr The database manager providing connections.
+ */
+    public CatalogExporter(DBMgr dbMgr) {
+        this.dbMgr = dbMgr;
+    }
+
+/**
+ * Sets the size of the direct buffers the export is encoded into; larger buffers mean fewer, larger writes.
+ *
+ * @param bufferSize The buffer size in bytes; at least 64 KiB.
+ */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1 << 16) {
+            throw new IllegalArgumentException("bufferSize must be at least 64 KiB");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+/**
+ * Exports the catalog in the format given by the file's extension, compressed if it ends in .gz.
+ *
+ * @param file The file to write; replaced once the export is complete.
+ * @return The number of books exported.
+ * @throws IOException If the file cannot be written.
+ * @throws SQLException If the catalog cannot be read.
+ */
+    public long export(Path file) throws IOException, SQLException {
+        return export(file, Format.forFile(file), file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz"));
+    }
+
+/**
+ * Exports the catalog, ordered by BookID.
+ *
+ * @param file The file to write; replaced once the export is complete.
+ * @param format The format to write.
+ * @param gzip Whether to compress the file with gzip.
+ * @return The number of books exported.
+ * @throws IOException If the file cannot be written.
+ * @throws SQLException If the catalog cannot be read.
+ */
+    public long export(Path file, Format format, boolean gzip) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        boolean complete = false;
+        try (Connection conn = dbMgr.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelSink out = new ChannelSink(channel, bufferSize, gzip)) {
+            stmt.setFetchSize(dbMgr.getFetchSize());
+            long rows;
+            try (ResultSet rs = stmt.executeQuery(DBMgr.CATALOG_QUERY)) {
+                rows = switch (format) {
+                    case CSV -> writeCsv(rs, out);
+                    case JSON_LINES -> writeJsonLines(rs, out);
+                    case BINARY -> writeBinary(rs, out);
+                };
+            }
+            out.finish();
+            channel.force(false);
+            complete = true;
+            EXPORT_METRICS.success(start, rows);
+            LOG.log(Level.INFO, "Exported books=" + rows + " to " + target + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return rows;
+        } catch (IOException | SQLException e) {
+            EXPORT_METRICS.failure(start);
+            throw e;
+        } finally {
+            if (complete) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static long writeCsv(ResultSet rs, ChannelSink out) throws SQLException, IOException {
+        for (int column = 0; column < COLUMNS.length; column++) {
+            if (column > 0) {
+                out.writeByte(',');
+            }
+            out.writeUtf8(COLUMNS[column]);
+        }
+        out.writeByte('\n');
+        long rows = 0;
+        while (rs.next()) {
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (column > 0) {
+                    out.writeByte(',');
+                }
+                if (NUMERIC[column]) {
+                    long value = rs.getLong(column + 1);
+                    if (!rs.wasNull()) {
+                        out.writeDecimal(value);
+                    }
+                } else if (column == DATE_COLUMN) {
+                    Date date = rs.getDate(column + 1);
+                    if (date != null) {
+                        out.writeDate(date.toLocalDate().toEpochDay());
+                    }
+                } else {
+                    String value = rs.getString(column + 1);
+                    if (value != null) {
+                        writeCsvField(value, out);
+                    }
+                }
+            }
+            out.writeByte('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    // Writes a text field, quoted when it contains a separator, quote or line break, as RFC 4180 requires
+    private static void writeCsvField(String value, ChannelSink out) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.writeUtf8(value);
+            return;
+        }
+        out.writeByte('"');
+        int from = 0;
+        for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', from)) {
+            out.writeUtf8(value, from, i + 1);
+            out.writeByte('"');
+            from = i + 1;
+        }
+        out.writeUtf8(value, from, value.length());
+        out.writeByte('"');
+    }
+
+    private static long writeJsonLines(ResultSet rs, ChannelSink out) throws SQLException, IOException {
+        long rows = 0;
+        while (rs.next()) {
+            out.writeByte('{');
+            boolean first = true;
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (NUMERIC[column]) {
+                    long value = rs.getLong(column + 1);
+                    if (rs.wasNull()) {
+                        continue;
+                    }
+                    first = writeJsonName(column, first, out);
+                    out.writeDecimal(value);
+                } else if (column == DATE_COLUMN) {
+                    Date date = rs.getDate(column + 1);
+                    if (date == null) {
+                        continue;
+                    }
+                    first = writeJsonName(column, first, out);
+                    out.writeByte('"');
+                    out.writeDate(date.toLocalDate().toEpochDay());
+                    out.writeByte('"');
+                } else {
+                    String value = rs.getString(column + 1);
+                    if (value == null) {
+                        continue;
+                    }
+                    first = writeJsonName(column, first, out);
+                    writeJsonString(value, out);
+                }
+            }
+            out.writeByte('}');
+            out.writeByte('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    // Null columns are left out of the object rather than written as null
+    private static boolean writeJsonName(int column, boolean first, ChannelSink out) throws IOException {
+        if (!first) {
+            out.writeByte(',');
+        }
+        out.writeByte('"');
+        out.writeUtf8(JSON_NAMES[column]);
+        out.writeByte('"');
+        out.writeByte(':');
+        return false;
+    }
+
+    private static void writeJsonString(String value, ChannelSink out) throws IOException {
+        out.writeByte('"');
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.writeUtf8(value, from, i);
+            out.writeByte('\\');
+            switch (c) {
+                case '"', '\\' -> out.writeByte(c);
+                case '\n' -> out.writeByte('n');
+                case '\r' -> out.writeByte('r');
+                case '\t' -> out.writeByte('t');
+                default -> {
+                    out.writeByte('u');
+                    out.writeUtf8(String.format("%04x", (int) c));
+                }
+            }
+            from = i + 1;
+        }
+        out.writeUtf8(value, from, value.length());
+        out.writeByte('"');
+    }
+
+    private static long writeBinary(ResultSet rs, ChannelSink out) throws SQLException, IOException {
+        for (byte b : BINARY_MAGIC) {
+            out.writeByte(b);
+        }
+        out.writeByte(BINARY_VERSION);
+        out.writeByte(COLUMNS.length);
+        for (String column : COLUMNS) {
+            out.writeLengthPrefixedUtf8(column);
+        }
+        long[] numbers = new long[COLUMNS.length];
+        String[] texts = new String[COLUMNS.length];
+        long rows = 0;
+        while (rs.next()) {
+            // The null bitmap comes first, so every column is read before any is written
+            int nulls = 0;
+            for (int column = 0; column < COLUMNS.length; column++) {
+                boolean isNull;
+                if (NUMERIC[column]) {
+                    numbers[column] = rs.getLong(column + 1);
+                    isNull = rs.wasNull();
+                } else if (column == DATE_COLUMN) {
+                    Date date = rs.getDate(column + 1);
+                    isNull = date == null;
+                    numbers[column] = isNull ? 0 : date.toLocalDate().toEpochDay();
+                } else {
+                    texts[column] = rs.getString(column + 1);
+                    isNull = texts[column] == null;
+                }
+                if (isNull) {
+                    nulls |= 1 << column;
+                }
+            }
+            out.writeByte(1);
+            out.writeByte(nulls);
+            out.writeByte(nulls >>> 8);
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if ((nulls & (1 << column)) != 0) {
+                    continue;
+                }
+                if (NUMERIC[column]) {
+                    out.writeVarint(numbers[column]);
+                } else if (column == DATE_COLUMN) {
+                    out.writeVarint((numbers[column] << 1) ^ (numbers[column] >> 63));
+                } else {
+                    out.writeLengthPrefixedUtf8(texts[column]);
+                }
+            }
+            rows++;
+        }
+        out.writeByte(0);
+        out.writeVarint(rows);
+        return rows;
+    }
+
+/**
+ * Command-line export, for example from a nightly job.
+ * Usage: CatalogExporter catalog.csv|catalog.jsonl|catalog.libs[.gz]
+ */
+    public static void main(String[] args) throws IOException, SQLException {
+        if (args.length < 1) {
+            System.out.println("Usage: CatalogExporter catalog.csv|catalog.jsonl|catalog.libs[.gz]");
+            return;
+        }
+        DBMgr dbMgr = DBMgr.getInstance();
+        try {
+            long rows = new CatalogExporter(dbMgr).export(Path.of(args[0]));
+            System.out.println("Exported " + rows + " books to " + args[0]);
+        } finally {
+            dbMgr.close();
+        }
+    }
+
+    // Encodes bytes into a direct buffer and writes it to the channel when full, through a raw deflater for gzip
+    private static final class ChannelSink implements AutoCloseable {
+        private static final ByteBuffer NO_INPUT = ByteBuffer.allocate(0);
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final Deflater deflater;
+        private final ByteBuffer compressed;
+        private final CRC32 crc;
+        private long uncompressedSize;
+
+        ChannelSink(FileChannel channel, int bufferSize, boolean gzip) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            if (gzip) {
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                compressed = ByteBuffer.allocateDirect(bufferSize);
+                crc = new CRC32();
+                // Gzip header: magic, deflate, no flags, no modification time, no extra flags, unknown OS
+                writeFully(ByteBuffer.wrap(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff}));
+            } else {
+                deflater = null;
+                compressed = null;
+                crc = null;
+            }
+        }
+
+        void writeByte(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        void writeVarint(long value) throws IOException {
+            if (buffer.remaining() < 10) {
+                drain();
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void writeDecimal(long value) throws IOException {
+            if (buffer.remaining() < 20) {
+                drain();
+            }
+            if (value < 0) {
+                buffer.put((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            int end = buffer.position() + digits;
+            for (int i = end - 1; i >= buffer.position(); i--) {
+                buffer.put(i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            buffer.position(end);
+        }
+
+        // Writes the date of an epoch day as yyyy-mm-dd
+        void writeDate(long epochDay) throws IOException {
+            writeUtf8(LocalDate.ofEpochDay(epochDay).toString());
+        }
+
+        void writeUtf8(String value) throws IOException {
+            writeUtf8(value, 0, value.length());
+        }
+
+        void writeUtf8(String value, int from, int to) throws IOException {
+            for (int i = from; i < to; i++) {
+                if (buffer.remaining() < 4) {
+                    drain();
+                }
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xC0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                } else if (Character.isSurrogate(c)) {
+                    buffer.put((byte) '?'); // An unpaired surrogate has no UTF-8 encoding
+                } else {
+                    buffer.put((byte) (0xE0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (c & 0x3F)));
+                }
+            }
+        }
+
+        void writeLengthPrefixedUtf8(String value) throws IOException {
+            writeVarint(utf8Length(value));
+            writeUtf8(value);
+        }
+
+        // Number of bytes writeUtf8 writes for a string
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    length++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        // Writes out the encoded bytes, compressing them first for gzip, and empties the buffer
+        private void drain() throws IOException {
+            buffer.flip();
+            if (deflater == null) {
+                writeFully(buffer);
+            } else {
+                uncompressedSize += buffer.remaining();
+                crc.update(buffer.duplicate());
+                deflater.setInput(buffer);
+                while (!deflater.needsInput()) {
+                    deflate();
+                }
+                // The deflater keeps reading its input buffer; detach it before the buffer is reused
+                deflater.setInput(NO_INPUT);
+            }
+            buffer.clear();
+        }
+
+        private void deflate() throws IOException {
+            deflater.deflate(compressed);
+            compressed.flip();
+            writeFully(compressed);
+            compressed.clear();
+        }
+
+        // Writes the remaining bytes, followed for gzip by the end of the deflate stream and the gzip trailer
+        void finish() throws IOException {
+            drain();
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putInt((int) crc.getValue()).putInt((int) uncompressedSize).flip();
+                writeFully(trailer);
+            }
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+}
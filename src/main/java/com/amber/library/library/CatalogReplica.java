@@ -0,0 +1,762 @@
+package com.amber.library.library;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A local copy of the catalog's books in a memory-mapped, append-only file, read without any database round-trip.
+ * The file starts from a full snapshot of the catalog and grows by one record per change: a put record holds a
+ * book as it is after an insert or update, a delete record only its BookID. An offset index from BookID to the
+ * latest put record of each book is rebuilt by scanning the file when it is opened, so a cold start needs nothing
+ * but the file, and a book is read by decoding its record straight from the mapped pages.
+ *
+ * <p>Layout, all numbers big-endian:
+ * <pre>
+ * header:  "LIBR", format version (int), end of the last record (long), snapshot time in epoch millis (long), 8 spare bytes
+ * record:  payload length (int), CRC32 of the payload (int), payload
+ * payload: 1 (put), BookID, version, PublisherID (ints), then title, authors, ISBN and Dewey number,
+ *          each as a UTF-8 byte length (int, -1 for null) and the bytes
+ *          | 2 (delete), BookID (int)
+ * </pre>
+ * A record becomes part of the file only once the header's end is moved past it, and every record is checked
+ * against its CRC when the file is opened, so a record torn by a crash is dropped instead of read.
+ * Records are not forced to disk one by one; what a crash loses is restored by the next synchronization.
+ * When superseded records take up more than half of the file, the live records are copied into a new file,
+ * which becomes the next generation of the replica: replica.bin is followed by replica.bin.1, replica.bin.2 and so on,
+ * and the newest complete generation is the one opened. A mapped file cannot be replaced or deleted on every platform,
+ * and a mapping is only released once its buffer is garbage collected, so an old generation is deleted when it can be,
+ * at the latest the next time the replica is opened. The file is limited to 2 GB, the most a single mapping can hold.
+ * The replica is safe for concurrent use: reads run in parallel and writes are serialized.
+ */
+public final class CatalogReplica implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(CatalogReplica.class.getName());
+
+    private static final int MAGIC = 0x4C494252; // "LIBR"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int END_OFFSET = 8;
+    private static final int SNAPSHOT_TIME_OFFSET = 16;
+    // Length and CRC in front of each payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Offset of the version within a put record
+    private static final int VERSION_OFFSET = RECORD_HEADER_SIZE + 1 + 4;
+    private static final int INITIAL_MAPPING_SIZE = 1 << 20;
+    // Superseded records are only compacted away once the file is at least this large
+    private static final int MIN_COMPACTION_SIZE = 1 << 20;
+
+    private final Path file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // The generation of the file in use, and its path; generation 0 is the file itself
+    private long generation;
+    private Path current;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private long snapshotTime;
+    private OffsetIndex index;
+    // Bytes of the records the index points to; the rest of the file is superseded records
+    private long liveBytes;
+    // BookIDs in ascending order, rebuilt on the first read after a book was added or removed
+    private volatile int[] sortedIds;
+
+    private CatalogReplica(Path file) {
+        this.file = file;
+    }
+
+/**
+ * Opens the replica file, creating an empty replica if the file does not exist or is not a replica file.
+ * The records are checked and indexed; records after the first damaged one are dropped.
+ *
+ * @param file The replica file; missing directories are created.
+ * @return The open replica.
+ * @throws IOException If the file cannot be created, read or mapped.
+ */
+    public static CatalogReplica open(Path file) throws IOException {
+        CatalogReplica replica = new CatalogReplica(file.toAbsolutePath());
+        replica.openNewestGeneration();
+        return replica;
+    }
+
+/**
+ * Gets when the snapshot the replica was built from was taken.
+ *
+ * @return The time in epoch milliseconds, or 0 if the replica has never been built, in which case it is empty.
+ */
+    public long getSnapshotTime() {
+        lock.readLock().lock();
+        try {
+            return snapshotTime;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Gets the number of books in the replica.
+ *
+ * @return The number of books.
+ */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Gets the size of the replica file that is in use.
+ *
+ * @return The number of bytes up to the end of the last record.
+ */
+    public long getFileSize() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Reads a book.
+ *
+ * @param bookId The ID of the book.
+ * @return The book, or null if the replica does not have it.
+ */
+    public Book get(int bookId) {
+        lock.readLock().lock();
+        try {
+            int offset = index.get(bookId);
+            return offset < 0 ? null : readBook(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Reads books by ID, in the order of the given IDs; IDs the replica does not have are skipped.
+ *
+ * @param bookIds The IDs of the books.
+ * @return The books found.
+ */
+    public List<Book> get(int[] bookIds) {
+        List<Book> books = new ArrayList<>(bookIds.length);
+        lock.readLock().lock();
+        try {
+            for (int bookId : bookIds) {
+                int offset = index.get(bookId);
+                if (offset >= 0) {
+                    books.add(readBook(offset));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return books;
+    }
+
+/**
+ * Reads every book, ordered by BookID, handing each to the consumer as it is decoded.
+ * Changes wait until all books have been read, so the consumer must not change the replica.
+ *
+ * @param consumer Receives each book.
+ */
+    public void forEach(Consumer<Book> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int bookId : sortedIds()) {
+                consumer.accept(readBook(index.get(bookId)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Gets the ID of every book in the replica.
+ *
+ * @return The BookIDs, in ascending order.
+ */
+    public int[] getBookIds() {
+        lock.readLock().lock();
+        try {
+            return sortedIds().clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Gets the version of every book, ordered by BookID, to compare the replica against the database.
+ *
+ * @return Each book as its BookID in the high and its version in the low 32 bits,
+ * as {@link DBMgr#getBookVersions()} returns them.
+ */
+    public long[] getBookVersions() {
+        lock.readLock().lock();
+        try {
+            int[] ids = sortedIds();
+            long[] versions = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                versions[i] = (long) ids[i] << 32 | (buffer.getInt(index.get(ids[i]) + VERSION_OFFSET) & 0xFFFFFFFFL);
+            }
+            return versions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Records a book as it is after an insert or update.
+ *
+ * @param book The book, with its current version.
+ * @throws IOException If the file cannot be extended or compacted.
+ */
+    public void put(Book book) throws IOException {
+        byte[] record = encode(book);
+        lock.writeLock().lock();
+        try {
+            int bookId = book.getId().intValue();
+            int previous = index.get(bookId);
+            int offset = append(record);
+            if (previous >= 0) {
+                liveBytes -= recordSize(previous);
+            } else {
+                sortedIds = null;
+            }
+            index.put(bookId, offset);
+            liveBytes += record.length;
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+/**
+ * Records that a book was deleted.
+ *
+ * @param bookId The ID of the deleted book.
+ * @return true if the replica had the book; false if there was nothing to delete.
+ * @throws IOException If the file cannot be extended or compacted.
+ */
+    public boolean delete(int bookId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int previous = index.get(bookId);
+            if (previous < 0) {
+                return false;
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 5);
+            record.position(RECORD_HEADER_SIZE);
+            record.put(DELETE).putInt(bookId);
+            append(seal(record.array()));
+            liveBytes -= recordSize(previous);
+            index.remove(bookId);
+            sortedIds = null;
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+/**
+ * Replaces the whole replica with a new snapshot of the catalog.
+ * The snapshot is written to a temporary file first, so the replica keeps its previous contents,
+ * and stays readable, if reading the catalog fails.
+ *
+ * @param source The catalog to copy; every book it streams is written.
+ * @return true if the replica now holds the snapshot; false if the catalog could not be read.
+ * @throws IOException If the new file cannot be written or put in place.
+ */
+    public boolean rebuild(CatalogRepository source) throws IOException {
+        long taken = System.currentTimeMillis();
+        Path temp = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            boolean complete;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter writer = new SnapshotWriter(out);
+                try {
+                    complete = source.forEachBook(writer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writer.finish(taken);
+            }
+            if (!complete) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                replaceWith(temp);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+/**
+ * Writes the replica's changes to disk and closes the file.
+ */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                buffer.force();
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Closing replica " + file + " failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+/**
+ * Maps the newest generation of the file and deletes the older ones, which earlier runs could not delete.
+ */
+    private void openNewestGeneration() throws IOException {
+        Files.createDirectories(file.getParent());
+        generation = 0;
+        current = file;
+        List<Path> older = new ArrayList<>();
+        String prefix = file.getFileName() + ".";
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(file.getParent(),
+                path -> path.getFileName().toString().startsWith(prefix))) {
+            for (Path sibling : siblings) {
+                long siblingGeneration = generationOf(sibling);
+                if (siblingGeneration > generation) {
+                    older.add(current);
+                    generation = siblingGeneration;
+                    current = sibling;
+                } else if (siblingGeneration > 0) {
+                    older.add(sibling);
+                }
+            }
+        }
+        map();
+        for (Path path : older) {
+            deleteOldGeneration(path);
+        }
+    }
+
+/**
+ * Maps the current generation and indexes its records, starting a new replica if the file is missing, empty or of
+ * another kind. The replica is left as it was if the file cannot be opened or mapped.
+ */
+    private void map() throws IOException {
+        FileChannel opened = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size;
+        MappedByteBuffer mapped;
+        try {
+            size = opened.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Replica " + current + " is larger than 2 GB");
+            }
+            mapped = opened.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_MAPPING_SIZE));
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+        channel = opened;
+        buffer = mapped;
+        index = new OffsetIndex();
+        liveBytes = 0;
+        sortedIds = null;
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            if (size > 0) {
+                LOG.log(Level.WARNING, "Replica " + current + " is not a replica of this version; starting an empty one");
+            }
+            buffer.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putLong(END_OFFSET, HEADER_SIZE).putLong(SNAPSHOT_TIME_OFFSET, 0);
+            end = HEADER_SIZE;
+            snapshotTime = 0;
+            return;
+        }
+        snapshotTime = buffer.getLong(SNAPSHOT_TIME_OFFSET);
+        long recordedEnd = buffer.getLong(END_OFFSET);
+        end = (int) Math.min(Math.max(recordedEnd, HEADER_SIZE), size);
+        int scanned = scan();
+        if (scanned < end) {
+            LOG.log(Level.WARNING, "Replica " + current + " has a damaged record at offset " + scanned
+                    + "; dropping the " + (end - scanned) + " bytes after it");
+            end = scanned;
+            buffer.putLong(END_OFFSET, end);
+        }
+        LOG.log(Level.INFO, "Opened replica " + current + " books=" + index.size() + " bytes=" + end);
+    }
+
+/**
+ * Indexes the records up to the end, checking each against its CRC.
+ *
+ * @return The offset after the last sound record; the end unless a record is damaged.
+ */
+    private int scan() {
+        CRC32 crc = new CRC32();
+        int offset = HEADER_SIZE;
+        while (offset < end) {
+            if (end - offset < RECORD_HEADER_SIZE) {
+                return offset;
+            }
+            int length = buffer.getInt(offset);
+            if (length < 5 || length > end - offset - RECORD_HEADER_SIZE) {
+                return offset;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                return offset;
+            }
+            byte type = buffer.get(offset + RECORD_HEADER_SIZE);
+            int bookId = buffer.getInt(offset + RECORD_HEADER_SIZE + 1);
+            int previous = index.get(bookId);
+            if (previous >= 0) {
+                liveBytes -= recordSize(previous);
+            }
+            if (type == PUT) {
+                index.put(bookId, offset);
+                liveBytes += RECORD_HEADER_SIZE + length;
+            } else if (type == DELETE) {
+                index.remove(bookId);
+            } else {
+                return offset;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+/**
+ * Writes a record after the last one and then moves the end past it, growing the mapping if needed.
+ *
+ * @return The offset of the record.
+ */
+    private int append(byte[] record) throws IOException {
+        long needed = (long) end + record.length;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Replica " + file + " would grow beyond 2 GB");
+        }
+        if (needed > buffer.capacity()) {
+            long size = Math.min(Integer.MAX_VALUE, Math.max(needed, (long) buffer.capacity() * 2));
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        int offset = end;
+        buffer.put(offset, record);
+        end = offset + record.length;
+        buffer.putLong(END_OFFSET, end);
+        return offset;
+    }
+
+/**
+ * Copies the live records into a new file, in BookID order, once superseded records take up most of the file.
+ */
+    private void compactIfWasteful() throws IOException {
+        if (end < MIN_COMPACTION_SIZE || liveBytes * 2 > end - HEADER_SIZE) {
+            return;
+        }
+        long start = System.nanoTime();
+        int before = end;
+        Path temp = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter writer = new SnapshotWriter(out);
+                for (int bookId : sortedIds()) {
+                    int offset = index.get(bookId);
+                    writer.write(buffer.slice(offset, recordSize(offset)));
+                }
+                writer.finish(snapshotTime);
+            }
+            replaceWith(temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        LOG.log(Level.INFO, "Compacted replica " + file + " from " + before + " to " + end + " bytes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Makes a completely written replica file the next generation and maps it instead of the current one.
+    // If the new generation cannot be mapped, it is deleted and the current one stays in use.
+    private void replaceWith(Path temp) throws IOException {
+        Path next = file.resolveSibling(file.getFileName() + "." + (generation + 1));
+        Files.move(temp, next, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Path previous = current;
+        FileChannel previousChannel = channel;
+        current = next;
+        try {
+            map();
+        } catch (IOException e) {
+            current = previous;
+            Files.deleteIfExists(next);
+            throw e;
+        }
+        generation++;
+        previousChannel.close();
+        deleteOldGeneration(previous);
+    }
+
+    // The generation of a file named after the replica file, or -1 for another file such as a partly written one
+    private long generationOf(Path sibling) {
+        String suffix = sibling.getFileName().toString().substring(file.getFileName().toString().length() + 1);
+        if (suffix.isEmpty() || suffix.length() > 18 || !suffix.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return -1;
+        }
+        return Long.parseLong(suffix);
+    }
+
+    // Deletes a generation no longer in use, unless it is still mapped and cannot be deleted yet
+    private void deleteOldGeneration(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.log(Level.DEBUG, "Replica " + path + " is still mapped; it is deleted when the replica is next opened");
+        }
+    }
+
+    private int recordSize(int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    private Book readBook(int offset) {
+        int position = offset + RECORD_HEADER_SIZE + 1;
+        int bookId = buffer.getInt(position);
+        int version = buffer.getInt(position + 4);
+        int publisherId = buffer.getInt(position + 8);
+        position += 12;
+        String[] text = new String[4];
+        for (int i = 0; i < text.length; i++) {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(position, bytes);
+                text[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+        return new Book(bookId, text[0], text[1], text[2], text[3], publisherId, version);
+    }
+
+    // BookIDs in ascending order; called with the lock held
+    private int[] sortedIds() {
+        int[] ids = sortedIds;
+        if (ids == null) {
+            ids = index.keys();
+            Arrays.sort(ids);
+            sortedIds = ids;
+        }
+        return ids;
+    }
+
+/**
+ * Encodes the put record of a book, with its length and CRC.
+ */
+    private static byte[] encode(Book book) {
+        byte[][] text = {utf8(book.getTitle()), utf8(book.getAuthors()), utf8(book.getIsbn()), utf8(book.getDewey())};
+        int length = 1 + 12;
+        for (byte[] bytes : text) {
+            length += 4 + (bytes == null ? 0 : bytes.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.position(RECORD_HEADER_SIZE);
+        record.put(PUT).putInt(book.getId().intValue()).putInt(book.getVersion())
+                .putInt(book.getPublisherId() == null ? 0 : book.getPublisherId().intValue());
+        for (byte[] bytes : text) {
+            if (bytes == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(bytes.length).put(bytes);
+            }
+        }
+        return seal(record.array());
+    }
+
+    // Fills in the length and CRC of a record whose payload follows the record header
+    private static byte[] seal(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+        ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER_SIZE).putInt((int) crc.getValue());
+        return record;
+    }
+
+    private static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Writes a new replica file sequentially: the header, then one record after another
+    private static final class SnapshotWriter implements Consumer<Book> {
+        private final FileChannel out;
+        private final ByteBuffer pending = ByteBuffer.allocateDirect(1 << 20);
+        private long written;
+
+        SnapshotWriter(FileChannel out) {
+            this.out = out;
+            pending.position(HEADER_SIZE);
+        }
+
+        @Override
+        public void accept(Book book) {
+            try {
+                write(ByteBuffer.wrap(encode(book)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void write(ByteBuffer record) throws IOException {
+            if (record.remaining() > pending.remaining()) {
+                drain();
+            }
+            if (record.remaining() > pending.remaining()) {
+                written += out.write(record);
+            } else {
+                pending.put(record);
+            }
+        }
+
+        // Writes the rest of the records, then the header with the end of the last one, and forces the file to disk
+        void finish(long snapshotTime) throws IOException {
+            drain();
+            if (written > Integer.MAX_VALUE) {
+                throw new IOException("Replica snapshot is larger than 2 GB");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(written).putLong(snapshotTime).flip();
+            out.write(header, 0);
+            out.force(true);
+        }
+
+        private void drain() throws IOException {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                written += out.write(pending);
+            }
+            pending.clear();
+        }
+    }
+
+    // The offset of the latest put record of each BookID, in an open-addressing table of ints kept at most half full
+    private static final class OffsetIndex {
+        private static final int EMPTY = -1;
+
+        private int[] keys = new int[64];
+        private int[] offsets = filled(64);
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int bookId) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(bookId, mask); offsets[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == bookId) {
+                    return offsets[slot];
+                }
+            }
+            return EMPTY;
+        }
+
+        void put(int bookId, int offset) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = slotOf(bookId, mask);
+            while (offsets[slot] != EMPTY && keys[slot] != bookId) {
+                slot = (slot + 1) & mask;
+            }
+            if (offsets[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = bookId;
+            offsets[slot] = offset;
+        }
+
+        // Removes by shifting back the entries that follow in the same run, so lookups need no tombstones
+        void remove(int bookId) {
+            int mask = keys.length - 1;
+            int slot = slotOf(bookId, mask);
+            while (offsets[slot] != EMPTY && keys[slot] != bookId) {
+                slot = (slot + 1) & mask;
+            }
+            if (offsets[slot] == EMPTY) {
+                return;
+            }
+            size--;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; offsets[next] != EMPTY; next = (next + 1) & mask) {
+                int home = slotOf(keys[next], mask);
+                // Move the entry into the hole unless its home slot lies cyclically between the hole and it
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    offsets[hole] = offsets[next];
+                    hole = next;
+                }
+            }
+            offsets[hole] = EMPTY;
+        }
+
+        int[] keys() {
+            int[] found = new int[size];
+            int count = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (offsets[slot] != EMPTY) {
+                    found[count++] = keys[slot];
+                }
+            }
+            return found;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldOffsets = offsets;
+            keys = new int[oldKeys.length * 2];
+            offsets = filled(keys.length);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldOffsets[slot] != EMPTY) {
+                    put(oldKeys[slot], oldOffsets[slot]);
+                }
+            }
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+
+        private static int slotOf(int bookId, int mask) {
+            int hash = bookId * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.amber.library.library;
+
+import javafx.collections.ObservableList;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores the library catalog: books with their authors and publication, and the publishers they refer to.
+ * The user interface works against this interface only; {@link CatalogConfig} chooses the implementation,
+ * a MySQL server through {@link DBMgr} or an embedded database file through {@link EmbeddedDBMgr},
+ * optionally behind a {@link ReplicatedCatalog} that reads books from a local replica file.
+ * Implementations are thread-safe and report failures by returning null, false or an empty list rather than throwing,
+ * except for an update of a book that changed meanwhile, which throws {@link StaleBookException}.
+ */
+public interface CatalogRepository extends AutoCloseable {
+
+/**
+ * Retrieves all publishers, ordered by name.
+ *
+ * @return An ObservableList of Publisher objects; empty if the query fails.
+ */
+    ObservableList<Publisher> getPublishers();
+
+/**
+ * Brings the publisher registry up to date with the publishers added since the last refresh.
+ *
+ * @return The registry of all publishers, indexed by ID and name; kept as it was if the refresh fails.
+ */
+    PublisherRegistry refreshPublishers();
+
+/**
+ * Inserts a book with a single author.
+ *
+ * @return The inserted book, or null if the insert failed.
+ */
+    Book insertBook(String title, String authorName, String isbn, String deweyDecimal, int publisherId,
+                    int numberOfPages, String language, String genre);
+
+/**
+ * Inserts a book with its authors, reusing the authors that already exist.
+ *
+ * @return The inserted book, or null if the insert failed.
+ */
+    Book insertBook(String title, List<String> authorNames, String isbn, String deweyDecimal, int publisherId,
+                    int numberOfPages, String language, String genre);
+
+/**
+ * Changes the title of a book.
+ *
+ * @return The updated book, or null if the update failed.
+ */
+    Book updateBook(String title, Book bookToUpdate);
+
+/**
+ * Writes the fields of an edited book that differ from the version it was edited from.
+ *
+ * @param original The book as it was read, including its version.
+ * @param edited The book with the user's changes.
+ * @return The updated book with its new version, or null if the update failed.
+ * @throws StaleBookException If the book was changed or deleted since the original was read.
+ */
+    Book updateBook(Book original, Book edited);
+
+/**
+ * Deletes a book and the rows that refer to it.
+ *
+ * @return true if the book was deleted; false otherwise.
+ */
+    Boolean deleteBookAndReferences(int bookId);
+
+/**
+ * Deletes books, with their author links and the publications and authors no remaining book refers to.
+ *
+ * @return The IDs of the books that were deleted; empty if none was or in case of an error.
+ */
+    List<Integer> deleteBooks(Collection<Integer> bookIds);
+
+/**
+ * Finds the books whose title, author names, ISBN or Dewey number contain every word of a query.
+ *
+ * @return The best {@link SearchIndex#MAX_RESULTS} matching books, best matches first; empty if none match or in case
+ *         of an error.
+ */
+    ObservableList<Book> searchBooks(String title);
+
+/**
+ * Retrieves books by ID, in the order of the given IDs; IDs of books that were deleted, or are not part of the
+ * catalog, are skipped.
+ *
+ * @return The books found; null in case of an error.
+ */
+    ObservableList<Book> getBooksByIds(int[] bookIds);
+
+/**
+ * Retrieves the whole catalog, ordered by BookID.
+ *
+ * @return All books; empty in case of an error.
+ */
+    ObservableList<Book> getBooks();
+
+/**
+ * Gets the ID of every book, in ascending order, so that the catalog can be shown at its full length
+ * while its books are fetched only as they are scrolled into view.
+ *
+ * @return The BookIDs; null in case of an error.
+ */
+    int[] getBookIds();
+
+/**
+ * Streams every book of the catalog to a consumer, ordered by BookID, without holding the catalog in memory.
+ *
+ * @return true if the whole catalog was streamed; false if an error stopped it.
+ */
+    boolean forEachBook(Consumer<Book> consumer);
+
+/**
+ * Gets the bus on which committed inserts, updates and deletes of books are published,
+ * both those made through this repository and, if the outbox is followed, those of other application instances.
+ *
+ * @return The event bus.
+ */
+    CatalogEventBus getEvents();
+
+/**
+ * Releases the connections and files of the repository. Called when the application exits.
+ */
+    @Override
+    void close();
+}
@@ -0,0 +1,779 @@
+package com.amber.library.library;
+
+import javafx.collections.ObservableListBase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A compact in-memory copy of the books loaded from the catalog, stored column by column in primitive arrays.
+ * BookIDs, PublisherIDs and versions are ints; titles are UTF-8 bytes in one shared array; ISBNs are packed into longs;
+ * author names and Dewey numbers are dictionary-encoded, so a value repeated across many books is stored once.
+ * A book takes about a fifth of the heap of a Book object with its boxed numbers and separate strings.
+ *
+ * <p>The snapshot is itself the list shown by the TableView: {@link #get(int)} builds a short-lived Book for the
+ * rows on screen only. Sorting, filtering and grouping reorder an int array of row numbers in place and report
+ * precise list changes (a permutation for a sort), so the TableView keeps its selection and scroll position.
+ * Books added later are placed according to the current sort and filter.
+ * Like any list shown by JavaFX controls, it must only be used on the JavaFX Application Thread once shown.
+ */
+public class CatalogSnapshot extends ObservableListBase<Book> {
+
+/**
+ * The columns that books can be sorted, filtered and grouped by.
+ */
+    public enum Column { ID, TITLE, AUTHORS, ISBN, DEWEY, PUBLISHER }
+
+/**
+ * One column of a sort order.
+ *
+ * @param column The column to compare.
+ * @param ascending Whether smaller values come first.
+ */
+    public record SortKey(Column column, boolean ascending) {
+    }
+
+/**
+ * A run of consecutive books with the same value in the grouped column.
+ *
+ * @param key The shared value; null for books without one.
+ * @param from The list index of the first book of the group.
+ * @param to The list index after the last book of the group.
+ */
+    public record Group(String key, int from, int to) {
+
+        public int size() {
+            return to - from;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INITIAL_TITLE_BYTES = INITIAL_CAPACITY * 32;
+
+    // ISBNs of up to 17 characters, all digits except maybe a final X, are packed into a long: the digits in the
+    // low 57 bits, the length above them and a flag for the X. 0 stands for no ISBN and ~code for any other text.
+    private static final int ISBN_MAX_LENGTH = 17;
+    private static final int ISBN_LENGTH_SHIFT = 57;
+    private static final long ISBN_DIGITS_MASK = (1L << ISBN_LENGTH_SHIFT) - 1;
+    private static final long ISBN_CHECK_X = 1L << 62;
+
+    // Physical rows, ordered by BookID so that a book is found by binary search
+    private int rowCount;
+    private int[] bookIds = new int[INITIAL_CAPACITY];
+    private int[] publisherIds = new int[INITIAL_CAPACITY];
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private int[] titleStarts = new int[INITIAL_CAPACITY]; // -1 for no title
+    private int[] authorCodes = new int[INITIAL_CAPACITY];
+    private long[] isbns = new long[INITIAL_CAPACITY];
+    private int[] deweyCodes = new int[INITIAL_CAPACITY];
+
+    // Title bytes of all rows; replaced and removed titles leave garbage behind until the next compaction
+    private byte[] titleBytes = new byte[INITIAL_TITLE_BYTES];
+    private int titleBytesUsed;
+    private int titleGarbage;
+
+    private final StringDictionary authors = new StringDictionary();
+    private final StringDictionary deweys = new StringDictionary();
+    private final StringDictionary otherIsbns = new StringDictionary();
+
+    // The rows shown, in display order: the first visibleCount entries
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int visibleCount;
+    private List<SortKey> sortKeys = List.of();
+
+    // The current filter, if any; for a dictionary column, whether each code matches is remembered
+    private Column filterColumn;
+    private String filterText;
+    private byte[] filterMatches = new byte[0]; // 0 not checked yet, 1 matches, 2 does not match
+
+/**
+ * Creates an empty snapshot; books are added with {@link #addBooks(Collection)}.
+ */
+    public CatalogSnapshot() {
+    }
+
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, visibleCount);
+        return bookAt(order[index]);
+    }
+
+    @Override
+    public int size() {
+        return visibleCount;
+    }
+
+/**
+ * Gets the number of books held, including those hidden by the filter.
+ *
+ * @return The number of books in the snapshot.
+ */
+    public int getBookCount() {
+        return rowCount;
+    }
+
+/**
+ * Releases the spare capacity left by growing the columns, for example once the whole catalog has been loaded.
+ * Replaced and removed titles are compacted away as well.
+ */
+    public void trimToSize() {
+        if (titleGarbage > 0) {
+            compactTitles();
+        }
+        titleBytes = Arrays.copyOf(titleBytes, titleBytesUsed);
+        int capacity = Math.max(rowCount, 1);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        publisherIds = Arrays.copyOf(publisherIds, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        titleStarts = Arrays.copyOf(titleStarts, capacity);
+        authorCodes = Arrays.copyOf(authorCodes, capacity);
+        isbns = Arrays.copyOf(isbns, capacity);
+        deweyCodes = Arrays.copyOf(deweyCodes, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+
+/**
+ * Finds a book by its ID, whether or not the filter shows it.
+ *
+ * @param bookId The ID of the book.
+ * @return The book, or null if the snapshot does not hold it.
+ */
+    public Book getBook(int bookId) {
+        int row = rowOf(bookId);
+        return row < 0 ? null : bookAt(row);
+    }
+
+/**
+ * Adds books to the snapshot, in the position the current sort gives them, and shows those the filter matches.
+ * A book that is already held is replaced instead.
+ *
+ * @param newBooks The books to add.
+ */
+    public void addBooks(Collection<? extends Book> newBooks) {
+        int[] addedIds = new int[newBooks.size()];
+        int added = 0;
+        List<Book> replaced = new ArrayList<>();
+        for (Book book : newBooks) {
+            int bookId = book.getId().intValue();
+            int row = rowOf(bookId);
+            if (row >= 0) {
+                replaced.add(book);
+            } else {
+                insertRow(-(row + 1), book);
+                addedIds[added++] = bookId;
+            }
+        }
+        beginChange();
+        for (int i = 0; i < added; i++) {
+            int row = rowOf(addedIds[i]);
+            if (matchesFilter(row)) {
+                int index = insertionPoint(row);
+                insertVisible(index, row);
+                nextAdd(index, index + 1);
+            }
+        }
+        endChange();
+        for (Book book : replaced) {
+            replaceBook(book);
+        }
+    }
+
+/**
+ * Replaces a book with its new version, moving it if the current sort or filter places it elsewhere now.
+ *
+ * @param book The book as it is now.
+ * @return true if the snapshot held the book; false if it did not, in which case nothing changes.
+ */
+    public boolean replaceBook(Book book) {
+        int row = rowOf(book.getId().intValue());
+        if (row < 0) {
+            return false;
+        }
+        int oldIndex = indexOfRow(row);
+        Book old = oldIndex >= 0 ? bookAt(row) : null;
+        writeRow(row, book);
+        if (oldIndex >= 0) {
+            removeVisible(oldIndex);
+        }
+        int newIndex = -1;
+        if (matchesFilter(row)) {
+            newIndex = insertionPoint(row);
+            insertVisible(newIndex, row);
+        }
+        beginChange();
+        if (oldIndex >= 0 && oldIndex == newIndex) {
+            nextSet(oldIndex, old);
+        } else {
+            if (oldIndex >= 0) {
+                nextRemove(oldIndex, old);
+            }
+            if (newIndex >= 0) {
+                nextAdd(newIndex, newIndex + 1);
+            }
+        }
+        endChange();
+        return true;
+    }
+
+/**
+ * Removes books from the snapshot.
+ *
+ * @param removedIds The IDs of the books to remove; IDs the snapshot does not hold are ignored.
+ * @return The number of books removed.
+ */
+    public int removeBooks(Collection<Integer> removedIds) {
+        boolean[] removed = new boolean[rowCount];
+        int count = 0;
+        for (int bookId : removedIds) {
+            int row = rowOf(bookId);
+            if (row >= 0 && !removed[row]) {
+                removed[row] = true;
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        beginChange();
+        int kept = 0;
+        for (int i = 0; i < visibleCount; i++) {
+            int row = order[i];
+            if (removed[row]) {
+                nextRemove(kept, bookAt(row));
+            } else {
+                order[kept++] = row;
+            }
+        }
+        visibleCount = kept;
+
+        // Close the gaps left by the removed rows, renumbering the rows shown
+        int[] newRows = new int[rowCount];
+        int next = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (removed[row]) {
+                titleGarbage += storedTitleSize(row);
+            } else {
+                copyRow(row, next);
+                newRows[row] = next++;
+            }
+        }
+        rowCount = next;
+        for (int i = 0; i < visibleCount; i++) {
+            order[i] = newRows[order[i]];
+        }
+        endChange();
+        return count;
+    }
+
+/**
+ * Sorts the books shown by one column; books with equal values stay in BookID order.
+ *
+ * @param column The column to sort by.
+ * @param ascending Whether smaller values come first.
+ */
+    public void sortBy(Column column, boolean ascending) {
+        sortBy(List.of(new SortKey(column, ascending)));
+    }
+
+/**
+ * Sorts the books shown by several columns, the first one deciding first; ties are broken by BookID.
+ * Text is compared by Unicode code point, and books without a value come first.
+ * Books added later are inserted according to this order.
+ *
+ * @param keys The sort order; empty to sort by BookID.
+ */
+    public void sortBy(List<SortKey> keys) {
+        sortKeys = List.copyOf(keys);
+        if (visibleCount < 2) {
+            return;
+        }
+        int[] sorted = Arrays.copyOf(order, visibleCount);
+        sortRows(sorted);
+        int[] newIndexOfRow = new int[rowCount];
+        for (int i = 0; i < visibleCount; i++) {
+            newIndexOfRow[sorted[i]] = i;
+        }
+        int[] permutation = new int[visibleCount];
+        for (int i = 0; i < visibleCount; i++) {
+            permutation[i] = newIndexOfRow[order[i]];
+        }
+        System.arraycopy(sorted, 0, order, 0, visibleCount);
+        beginChange();
+        nextPermutation(0, visibleCount, permutation);
+        endChange();
+    }
+
+/**
+ * Shows only the books whose value in a column contains the given text, ignoring case.
+ * For author names and Dewey numbers each distinct value is checked once, however many books share it.
+ *
+ * @param column The column to look in; null to show every book.
+ * @param text The text to look for; null or blank to show every book.
+ */
+    public void filter(Column column, String text) {
+        boolean all = column == null || text == null || text.isBlank();
+        filterColumn = all ? null : column;
+        filterText = all ? null : text.strip().toLowerCase(Locale.ROOT);
+        filterMatches = new byte[0];
+
+        int[] oldOrder = Arrays.copyOf(order, visibleCount);
+        visibleCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (matchesFilter(row)) {
+                order[visibleCount++] = row;
+            }
+        }
+        if (!sortKeys.isEmpty()) {
+            int[] sorted = Arrays.copyOf(order, visibleCount);
+            sortRows(sorted);
+            System.arraycopy(sorted, 0, order, 0, visibleCount);
+        }
+        beginChange();
+        if (oldOrder.length > 0) {
+            nextRemove(0, new AbstractList<Book>() {
+                @Override
+                public Book get(int index) {
+                    return bookAt(oldOrder[index]);
+                }
+
+                @Override
+                public int size() {
+                    return oldOrder.length;
+                }
+            });
+        }
+        if (visibleCount > 0) {
+            nextAdd(0, visibleCount);
+        }
+        endChange();
+    }
+
+/**
+ * Groups the books shown by a column: sorts them by it, keeping the current order within each group,
+ * and returns the runs of books sharing a value.
+ *
+ * @param column The column to group by.
+ * @return The groups, in sorted order, covering the whole list.
+ */
+    public List<Group> groupBy(Column column) {
+        List<SortKey> keys = new ArrayList<>();
+        keys.add(new SortKey(column, true));
+        for (SortKey key : sortKeys) {
+            if (key.column() != column) {
+                keys.add(key);
+            }
+        }
+        sortBy(keys);
+        List<Group> groups = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= visibleCount; i++) {
+            if (i == visibleCount || compare(column, order[i - 1], order[i]) != 0) {
+                groups.add(new Group(valueOf(column, order[from]), from, i));
+                from = i;
+            }
+        }
+        return groups;
+    }
+
+    private Book bookAt(int row) {
+        return new Book(bookIds[row], titleOf(row), authors.decode(authorCodes[row]), isbnOf(row),
+                deweys.decode(deweyCodes[row]), publisherIds[row], versions[row]);
+    }
+
+    private int rowOf(int bookId) {
+        return Arrays.binarySearch(bookIds, 0, rowCount, bookId);
+    }
+
+    private int indexOfRow(int row) {
+        for (int i = 0; i < visibleCount; i++) {
+            if (order[i] == row) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insertRow(int row, Book book) {
+        ensureCapacity(rowCount + 1);
+        if (row < rowCount) {
+            int moved = rowCount - row;
+            System.arraycopy(bookIds, row, bookIds, row + 1, moved);
+            System.arraycopy(publisherIds, row, publisherIds, row + 1, moved);
+            System.arraycopy(versions, row, versions, row + 1, moved);
+            System.arraycopy(titleStarts, row, titleStarts, row + 1, moved);
+            System.arraycopy(authorCodes, row, authorCodes, row + 1, moved);
+            System.arraycopy(isbns, row, isbns, row + 1, moved);
+            System.arraycopy(deweyCodes, row, deweyCodes, row + 1, moved);
+            for (int i = 0; i < visibleCount; i++) {
+                if (order[i] >= row) {
+                    order[i]++;
+                }
+            }
+        }
+        rowCount++;
+        titleStarts[row] = -1;
+        writeRow(row, book);
+    }
+
+    private void writeRow(int row, Book book) {
+        bookIds[row] = book.getId().intValue();
+        publisherIds[row] = book.getPublisherId() != null ? book.getPublisherId().intValue() : 0;
+        versions[row] = book.getVersion();
+        setTitle(row, book.getTitle());
+        authorCodes[row] = authors.encode(book.getAuthors());
+        isbns[row] = encodeIsbn(book.getIsbn());
+        deweyCodes[row] = deweys.encode(book.getDewey());
+    }
+
+    private void copyRow(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        bookIds[to] = bookIds[from];
+        publisherIds[to] = publisherIds[from];
+        versions[to] = versions[from];
+        titleStarts[to] = titleStarts[from];
+        authorCodes[to] = authorCodes[from];
+        isbns[to] = isbns[from];
+        deweyCodes[to] = deweyCodes[from];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= bookIds.length) {
+            return;
+        }
+        int grown = Math.max(capacity, bookIds.length + (bookIds.length >> 1));
+        bookIds = Arrays.copyOf(bookIds, grown);
+        publisherIds = Arrays.copyOf(publisherIds, grown);
+        versions = Arrays.copyOf(versions, grown);
+        titleStarts = Arrays.copyOf(titleStarts, grown);
+        authorCodes = Arrays.copyOf(authorCodes, grown);
+        isbns = Arrays.copyOf(isbns, grown);
+        deweyCodes = Arrays.copyOf(deweyCodes, grown);
+        order = Arrays.copyOf(order, grown);
+    }
+
+    private void insertVisible(int index, int row) {
+        System.arraycopy(order, index, order, index + 1, visibleCount - index);
+        order[index] = row;
+        visibleCount++;
+    }
+
+    private void removeVisible(int index) {
+        System.arraycopy(order, index + 1, order, index, visibleCount - index - 1);
+        visibleCount--;
+    }
+
+    // The list index at which a row not currently shown belongs in the current order
+    private int insertionPoint(int row) {
+        int low = 0;
+        int high = visibleCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareRows(order[mid], row) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private String titleOf(int row) {
+        int start = titleStarts[row];
+        if (start < 0) {
+            return null;
+        }
+        int length = readLength(start);
+        return new String(titleBytes, start + lengthSize(length), length, StandardCharsets.UTF_8);
+    }
+
+/**
+ * Stores a row's title, overwriting its old bytes if the new title fits in them and appending it otherwise.
+ * Each title is stored as its UTF-8 length, in 7-bit groups with the high bit set on all but the last,
+ * followed by its UTF-8 bytes; a title under 128 bytes long costs a single byte more than its text.
+ */
+    private void setTitle(int row, String title) {
+        int oldSize = storedTitleSize(row);
+        if (title == null) {
+            titleGarbage += oldSize;
+            titleStarts[row] = -1;
+            return;
+        }
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        int size = lengthSize(bytes.length) + bytes.length;
+        if (oldSize >= size) {
+            writeTitle(titleStarts[row], bytes);
+            titleGarbage += oldSize - size;
+            return;
+        }
+        titleGarbage += oldSize;
+        titleStarts[row] = -1; // Not moved by a compaction while making room
+        ensureTitleCapacity(size);
+        titleStarts[row] = titleBytesUsed;
+        writeTitle(titleBytesUsed, bytes);
+        titleBytesUsed += size;
+    }
+
+    private void writeTitle(int start, byte[] bytes) {
+        int position = start;
+        int length = bytes.length;
+        while (length >= 0x80) {
+            titleBytes[position++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        titleBytes[position++] = (byte) length;
+        System.arraycopy(bytes, 0, titleBytes, position, bytes.length);
+    }
+
+    private int readLength(int start) {
+        int length = 0;
+        int shift = 0;
+        int position = start;
+        byte b;
+        do {
+            b = titleBytes[position++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private static int lengthSize(int length) {
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // The number of title bytes a row occupies, length included; 0 if it has no title
+    private int storedTitleSize(int row) {
+        int start = titleStarts[row];
+        if (start < 0) {
+            return 0;
+        }
+        int length = readLength(start);
+        return lengthSize(length) + length;
+    }
+
+    private void ensureTitleCapacity(int extra) {
+        if (titleBytesUsed + extra <= titleBytes.length) {
+            return;
+        }
+        if (titleGarbage > titleBytesUsed / 2) {
+            compactTitles();
+            if (titleBytesUsed + extra <= titleBytes.length) {
+                return;
+            }
+        }
+        titleBytes = Arrays.copyOf(titleBytes, Math.max(titleBytesUsed + extra, titleBytes.length + (titleBytes.length >> 1)));
+    }
+
+    // Moves the live titles to the front of the title bytes, dropping the garbage between them
+    private void compactTitles() {
+        byte[] compacted = new byte[titleBytes.length];
+        int used = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int size = storedTitleSize(row);
+            if (size > 0) {
+                System.arraycopy(titleBytes, titleStarts[row], compacted, used, size);
+                titleStarts[row] = used;
+                used += size;
+            }
+        }
+        titleBytes = compacted;
+        titleBytesUsed = used;
+        titleGarbage = 0;
+    }
+
+    private long encodeIsbn(String isbn) {
+        if (isbn == null) {
+            return 0;
+        }
+        int length = isbn.length();
+        if (length == 0 || length > ISBN_MAX_LENGTH) {
+            return ~otherIsbns.encode(isbn);
+        }
+        long digits = 0;
+        long checkX = 0;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+            } else if (c == 'X' && i == length - 1) {
+                checkX = ISBN_CHECK_X;
+            } else {
+                return ~otherIsbns.encode(isbn);
+            }
+        }
+        return ((long) length << ISBN_LENGTH_SHIFT) | checkX | digits;
+    }
+
+    private String isbnOf(int row) {
+        long packed = isbns[row];
+        if (packed == 0) {
+            return null;
+        }
+        if (packed < 0) {
+            return otherIsbns.decode((int) ~packed);
+        }
+        int length = (int) (packed >>> ISBN_LENGTH_SHIFT) & 0x1F;
+        char[] chars = new char[length];
+        int end = length;
+        if ((packed & ISBN_CHECK_X) != 0) {
+            chars[--end] = 'X';
+        }
+        long digits = packed & ISBN_DIGITS_MASK;
+        for (int i = end - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+        return new String(chars);
+    }
+
+    private String valueOf(Column column, int row) {
+        return switch (column) {
+            case ID -> Integer.toString(bookIds[row]);
+            case TITLE -> titleOf(row);
+            case AUTHORS -> authors.decode(authorCodes[row]);
+            case ISBN -> isbnOf(row);
+            case DEWEY -> deweys.decode(deweyCodes[row]);
+            case PUBLISHER -> Integer.toString(publisherIds[row]);
+        };
+    }
+
+    private boolean matchesFilter(int row) {
+        if (filterColumn == null) {
+            return true;
+        }
+        return switch (filterColumn) {
+            case AUTHORS -> codeMatches(authors, authorCodes[row]);
+            case DEWEY -> codeMatches(deweys, deweyCodes[row]);
+            default -> contains(valueOf(filterColumn, row));
+        };
+    }
+
+    private boolean codeMatches(StringDictionary dictionary, int code) {
+        if (code < 0) {
+            return false;
+        }
+        if (code >= filterMatches.length) {
+            filterMatches = Arrays.copyOf(filterMatches, Math.max(code + 1, dictionary.size()));
+        }
+        if (filterMatches[code] == 0) {
+            filterMatches[code] = contains(dictionary.decode(code)) ? (byte) 1 : (byte) 2;
+        }
+        return filterMatches[code] == 1;
+    }
+
+    private boolean contains(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(filterText);
+    }
+
+    private int compareRows(int a, int b) {
+        for (SortKey key : sortKeys) {
+            int result = compare(key.column(), a, b);
+            if (result != 0) {
+                return key.ascending() ? result : -result;
+            }
+        }
+        return Integer.compare(bookIds[a], bookIds[b]);
+    }
+
+    private int compare(Column column, int a, int b) {
+        return switch (column) {
+            case ID -> Integer.compare(bookIds[a], bookIds[b]);
+            case TITLE -> compareTitles(a, b);
+            case AUTHORS -> compareCodes(authors, authorCodes[a], authorCodes[b]);
+            case ISBN -> compareIsbns(a, b);
+            case DEWEY -> compareCodes(deweys, deweyCodes[a], deweyCodes[b]);
+            case PUBLISHER -> Integer.compare(publisherIds[a], publisherIds[b]);
+        };
+    }
+
+    private int compareTitles(int a, int b) {
+        int startA = titleStarts[a];
+        int startB = titleStarts[b];
+        if (startA < 0 || startB < 0) {
+            return Integer.compare(startA < 0 ? 0 : 1, startB < 0 ? 0 : 1);
+        }
+        int lengthA = readLength(startA);
+        int lengthB = readLength(startB);
+        startA += lengthSize(lengthA);
+        startB += lengthSize(lengthB);
+        // Unsigned UTF-8 byte order is Unicode code point order
+        return Arrays.compareUnsigned(titleBytes, startA, startA + lengthA, titleBytes, startB, startB + lengthB);
+    }
+
+    private static int compareCodes(StringDictionary dictionary, int codeA, int codeB) {
+        if (codeA == codeB) {
+            return 0;
+        }
+        if (codeA < 0 || codeB < 0) {
+            return Integer.compare(codeA, codeB);
+        }
+        return dictionary.decode(codeA).compareTo(dictionary.decode(codeB));
+    }
+
+    private int compareIsbns(int a, int b) {
+        long packedA = isbns[a];
+        long packedB = isbns[b];
+        if (packedA == packedB) {
+            return 0;
+        }
+        if (packedA == 0 || packedB == 0) {
+            return packedA == 0 ? -1 : 1;
+        }
+        // Digit strings of the same shape compare like the numbers they spell
+        if (packedA > 0 && packedB > 0 && (packedA & ~ISBN_DIGITS_MASK) == (packedB & ~ISBN_DIGITS_MASK)) {
+            return Long.compare(packedA & ISBN_DIGITS_MASK, packedB & ISBN_DIGITS_MASK);
+        }
+        return isbnOf(a).compareTo(isbnOf(b));
+    }
+
+/**
+ * Sorts rows by the current sort order with a merge sort on the int array itself, so no row is boxed.
+ */
+    private void sortRows(int[] rows) {
+        int[] scratch = rows.clone();
+        mergeSort(scratch, rows, 0, rows.length);
+    }
+
+    // Sorts src[from, to) into dst; both hold the same rows in that range beforehand, and src is used as scratch
+    private void mergeSort(int[] src, int[] dst, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = dst[i];
+                int j = i;
+                while (j > from && compareRows(dst[j - 1], row) > 0) {
+                    dst[j] = dst[j - 1];
+                    j--;
+                }
+                dst[j] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(dst, src, from, mid);
+        mergeSort(dst, src, mid, to);
+        if (compareRows(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from);
+            return;
+        }
+        for (int i = from, p = from, q = mid; i < to; i++) {
+            if (q >= to || p < mid && compareRows(src[p], src[q]) <= 0) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.amber.library.library;
+
+import java.lang.System.Logger.Level;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of JDBC connections shared by all DBMgr operations.
+ * Every operation borrows its own connection and returns it by calling {@code close()}, so concurrent
+ * operations never share transaction state. Connections are validated when borrowed, evicted when they
+ * have been idle or alive for too long, and a warning is printed when a borrowed connection is held
+ * longer than the leak detection threshold.
+ * Each connection keeps its prepared statements open in a {@link StatementCache}, so a statement prepared again
+ * on the same connection is reused instead of being parsed and planned anew.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    // Default pool settings, used unless the caller provides its own
+    public static final int DEFAULT_MAX_POOL_SIZE = 10;
+    public static final long DEFAULT_CONNECTION_TIMEOUT_MILLIS = 30_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 10 * 60_000;
+    public static final long DEFAULT_MAX_LIFETIME_MILLIS = 30 * 60_000;
+    public static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 60_000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private static final System.Logger LOG = System.getLogger(ConnectionPool.class.getName());
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxPoolSize;
+    private final long connectionTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long leakDetectionThresholdMillis;
+
+    // Idle connections, most recently returned first so the warmest connection is reused
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    // One permit per connection that may be handed out, bounding the pool size
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong statementCacheEvictions = new AtomicLong();
+
+/**
+ * Creates a pool with the default settings.
+ *
+ * @param url The JDBC URL of the database.
+ * @param user The database username.
+ * @param password The database password.
+ */
+    public ConnectionPool(String url, String user, String password) {
+        this(url, user, password, DEFAULT_MAX_POOL_SIZE, DEFAULT_CONNECTION_TIMEOUT_MILLIS,
+                DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_LIFETIME_MILLIS, DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS);
+    }
+
+/**
+ * Creates a pool with explicit settings. Connections are opened lazily, on the first borrow that
+ * finds no idle connection.
+ *
+ * @param url The JDBC URL of the database.
+ * @param user The database username.
+ * @param password The database password.
+ * @param maxPoolSize The maximum number of connections open at the same time.
+ * @param connectionTimeoutMillis How long a borrow waits for a free connection before failing.
+ * @param idleTimeoutMillis How long a connection may sit idle before it is closed.
+ * @param maxLifetimeMillis How long a connection may live before it is retired.
+ * @param leakDetectionThresholdMillis How long a connection may be borrowed before a leak is reported; 0 disables it.
+ */
+    public ConnectionPool(String url, String user, String password, int maxPoolSize, long connectionTimeoutMillis,
+                          long idleTimeoutMillis, long maxLifetimeMillis, long leakDetectionThresholdMillis) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("maxPoolSize must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxPoolSize = maxPoolSize;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.permits = new Semaphore(maxPoolSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::evictIdleConnections,
+                HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+/**
+ * Borrows a connection from the pool, opening a new one if no valid idle connection is available.
+ * The returned connection must be closed by the caller, which hands it back to the pool.
+ * Any transaction left open by the caller is rolled back when the connection is returned.
+ *
+ * @return A validated connection reserved for the caller.
+ * @throws SQLException If the pool is closed, no connection becomes free within the timeout,
+ * or a new connection cannot be opened.
+ */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out after " + connectionTimeoutMillis
+                        + " ms waiting for a database connection (pool size " + maxPoolSize + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isExpired(entry, System.currentTimeMillis()) || !isUsable(entry.physical)) {
+                    discard(entry);
+                    continue;
+                }
+                return lend(entry);
+            }
+            return lend(open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+/**
+ * Sets how many prepared statements each connection keeps open for reuse. Applies to connections opened afterwards.
+ *
+ * @param statementCacheSize The number of statements per connection; 0 disables statement caching.
+ */
+    public void setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("statementCacheSize must not be negative");
+        }
+        this.statementCacheSize = statementCacheSize;
+    }
+
+/**
+ * Gets the number of prepared statements that were reused from a connection's statement cache.
+ *
+ * @return The number of statement cache hits.
+ */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+/**
+ * Gets the number of prepared statements that had to be prepared by the driver.
+ *
+ * @return The number of statement cache misses.
+ */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+/**
+ * Gets the number of cached statements closed to make room for others.
+ *
+ * @return The number of statement cache evictions.
+ */
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions.get();
+    }
+
+/**
+ * Gets the number of physical connections currently open, whether idle or borrowed.
+ *
+ * @return The number of open connections.
+ */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+/**
+ * Gets the number of open connections waiting in the pool to be borrowed.
+ *
+ * @return The number of idle connections.
+ */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+/**
+ * Closes the pool and every idle connection. Connections still borrowed are closed when they are returned.
+ */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+    }
+
+    private PooledEntry open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        int cacheSize = statementCacheSize;
+        StatementCache statements = cacheSize == 0 ? null : new StatementCache(physical, cacheSize,
+                statementCacheHits, statementCacheMisses, statementCacheEvictions);
+        return new PooledEntry(physical, System.currentTimeMillis(), statements);
+    }
+
+    private Connection lend(PooledEntry entry) {
+        if (leakDetectionThresholdMillis > 0) {
+            Exception borrowedAt = new Exception("Connection borrowed here");
+            entry.leakTask = housekeeper.schedule(() -> LOG.log(Level.WARNING,
+                    "Possible connection leak: connection held for more than " + leakDetectionThresholdMillis + " ms",
+                    borrowedAt), leakDetectionThresholdMillis, TimeUnit.MILLISECONDS);
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new BorrowedConnection(entry));
+    }
+
+/**
+ * Takes a connection back from a borrower, resetting its transaction state so that the next borrower
+ * starts from a clean auto-commit connection.
+ */
+    private void giveBack(PooledEntry entry) {
+        if (entry.leakTask != null) {
+            entry.leakTask.cancel(false);
+            entry.leakTask = null;
+        }
+        try {
+            if (closed || entry.physical.isClosed()) {
+                discard(entry);
+                return;
+            }
+            if (entry.statements != null) {
+                entry.statements.releaseAll(); // Close ResultSets and reset statements the borrower left open
+            }
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            entry.lastReturned = System.currentTimeMillis();
+            idle.offerFirst(entry);
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Discarding connection that could not be reset: " + e.getMessage());
+            discard(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isExpired(PooledEntry entry, long now) {
+        return now - entry.created >= maxLifetimeMillis || now - entry.lastReturned >= idleTimeoutMillis;
+    }
+
+    private boolean isUsable(Connection physical) {
+        try {
+            return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        try {
+            if (entry.statements != null) {
+                entry.statements.closeAll();
+            }
+            entry.physical.close();
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    // Periodically closes idle connections that have outlived the idle timeout or the maximum lifetime
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (PooledEntry entry : idle) {
+            if (isExpired(entry, now) && idle.remove(entry)) {
+                discard(entry);
+            }
+        }
+    }
+
+    // A physical connection together with the bookkeeping the pool needs for it
+    private static final class PooledEntry {
+        final Connection physical;
+        final long created;
+        final StatementCache statements;
+        volatile long lastReturned;
+        ScheduledFuture<?> leakTask;
+
+        PooledEntry(Connection physical, long created, StatementCache statements) {
+            this.physical = physical;
+            this.created = created;
+            this.statements = statements;
+            this.lastReturned = created;
+        }
+    }
+
+    // The handle given to a borrower; closing it returns the physical connection to the pool exactly once,
+    // even if two threads close it at the same time
+    private final class BorrowedConnection implements InvocationHandler {
+        private final PooledEntry entry;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        BorrowedConnection(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        giveBack(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + entry.physical;
+                default:
+                    if (returned.get()) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                    if (isCacheablePrepare(method)) {
+                        return entry.statements.prepare((Connection) proxy, (String) args[0],
+                                args.length == 2 ? (Integer) args[1] : null);
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+
+        // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are served from the statement cache
+        private boolean isCacheablePrepare(Method method) {
+            if (entry.statements == null || !method.getName().equals("prepareStatement")) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1 || (parameterTypes.length == 2 && parameterTypes[1] == int.class);
+        }
+    }
+}
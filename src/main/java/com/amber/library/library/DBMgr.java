@@ -3,43 +3,268 @@ package com.amber.library.library;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.lang.System.Logger.Level;
 import java.sql.*;
+import java.time.Duration;
 import java.lang.ClassNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Manages database operations for the library application.
  * This class handles all interactions with the database, including connecting to the database,
  * and performing CRUD operations for books, authors, publishers, and related entities.
  * It follows the Singleton pattern to ensure only one instance of this class manages the database connections and operations.
+ * Every public operation records its latency, rows, errors and rollbacks in the application's {@link Metrics};
+ * progress is logged at DEBUG level and failures at WARNING level through System.Logger.
  * Written by Amber Hasan (amh130430) for CS 6360.MS1, starting on 3/1/2024.
  */
-public class DBMgr {
+public class DBMgr implements CatalogRepository {
 
-    private static DBMgr instance;
-    private Connection connection;
-    private final String url = "jdbc:mysql://localhost:3306/library_db"; // Adjust this to your database
-    private final String user = "root2"; // Your database username
-    private final String password = "admin"; // Your database password
+    private static volatile DBMgr instance;
+    private static CatalogRepository repository;
+    // Not DBMgr.class: a replica opens the single instance on another thread while the repository is being created
+    private static final Object REPOSITORY_LOCK = new Object();
+    private static final System.Logger LOG = System.getLogger(DBMgr.class.getName());
+
+    // Pool of connections; every operation borrows its own so transactions never interfere
+    private final ConnectionPool pool;
+
+    // Number of rows the driver fetches per round-trip when streaming the catalog
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+
+    // Separator between author names, both in the aggregated AuthorName column and in the author(s) form field
+    public static final String AUTHOR_SEPARATOR = "; ";
+
+    // All author names of book b, aggregated into one column so that every book is returned as exactly one row
+    private static final String AUTHOR_NAMES_COLUMN = """
+        (SELECT GROUP_CONCAT(CONCAT_WS(' ', NULLIF(a.FirstName, ''), NULLIF(a.MiddleName, ''), NULLIF(a.LastName, ''))
+                             ORDER BY ba.AuthorID SEPARATOR '%s')
+         FROM BookAuthor ba JOIN Author a ON ba.AuthorID = a.AuthorID
+         WHERE ba.BookID = b.BookID) AS AuthorName""".formatted(AUTHOR_SEPARATOR);
+
+    // Maximum number of IDs bound into a single IN (...) list
+    private static final int ID_CHUNK_SIZE = 1000;
+    // The most books getBooksByIds reads in one call
+    public static final int MAX_BOOKS_BY_IDS = 10 * ID_CHUNK_SIZE;
+
+    // The books of the catalog: those with a publication, physical details and at least one author. Every query
+    // that lists or reads books uses it, so the IDs of the catalog and the books read for them agree on which exist
+    private static final String CATALOG_BOOKS = """
+        FROM Book b
+        JOIN Publication p ON b.PublicationID = p.PublicationID
+        JOIN PhysicalBook pb ON b.BookID = pb.BookID
+        WHERE EXISTS (SELECT 1 FROM BookAuthor bka WHERE bka.BookID = b.BookID)""";
+
+    // Reads the books whose IDs are bound into the IN list
+    private static final String BOOKS_BY_IDS = """
+        SELECT b.BookID, b.ISBN, b.DeweyDecimalSystemNumber, b.Version, p.Title, p.PublisherID, %s
+        %s
+        AND b.BookID IN (%%s)
+        """.formatted(AUTHOR_NAMES_COLUMN, CATALOG_BOOKS);
+
+    // Reads every book with its physical details, in BookID order; the columns are, in order, BookID, ISBN,
+    // DeweyDecimalSystemNumber, Version, Title, PublisherID, AuthorName, PublicationDate, NumberOfPages, Language, Genre
+    static final String CATALOG_QUERY = """
+        SELECT b.BookID, b.ISBN, b.DeweyDecimalSystemNumber, b.Version, p.Title, p.PublisherID, %s,
+               p.PublicationDate, pb.NumberOfPages, pb.Language, pb.Genre
+        %s
+        ORDER BY b.BookID
+        """.formatted(AUTHOR_NAMES_COLUMN, CATALOG_BOOKS);
+
+    // Reads the ID, or the ID and version, of every book of the catalog, in BookID order
+    private static final String BOOK_IDS = "SELECT b.BookID " + CATALOG_BOOKS + " ORDER BY b.BookID";
+    private static final String BOOK_VERSIONS = "SELECT b.BookID, b.Version " + CATALOG_BOOKS + " ORDER BY b.BookID";
+
+    // Committed changes, published to in-process subscribers and recorded in the outbox for other instances
+    private final CatalogEventBus events = new CatalogEventBus();
+    private final String origin = UUID.randomUUID().toString();
+    private volatile OutboxPoller outboxPoller;
+    // The query plan check started by the constructor; close() waits for it, so it never reopens a closed database
+    private CompletableFuture<Void> planCheck = CompletableFuture.completedFuture(null);
+
+    // In-memory search index, built on the first search; changes committed during the build are queued
+    private volatile SearchIndex searchIndex;
+    private List<Consumer<SearchIndex>> pendingIndexChanges;
+    private final Object searchIndexBuildLock = new Object();
+    private final Object searchIndexChangeLock = new Object();
+
+    // Read-through caches for catalog queries; precisely invalidated by insertBook, updateBook and deleteBooks,
+    // with a time-to-live bounding staleness from changes made by other application instances
+    private static final long BOOK_CACHE_TTL_MILLIS = 5 * 60_000;
+    private final QueryCache<String, List<Book>> catalogCache = new QueryCache<>("catalog", 1, BOOK_CACHE_TTL_MILLIS);
+    // Search results are weighed by their number of books, so short queries matching many books cannot hold
+    // several copies of the catalog
+    private static final int SEARCH_CACHE_MAX_BOOKS = 20 * SearchIndex.MAX_RESULTS;
+    private final QueryCache<String, List<Book>> searchCache = new QueryCache<>("searches", SEARCH_CACHE_MAX_BOOKS,
+            BOOK_CACHE_TTL_MILLIS, books -> books.size() + 1);
+
+    // Publishers by ID and name; each refresh reads only the publishers added since the last one, and all of them
+    // again once the reload interval has passed, so that publishers renamed or removed elsewhere are picked up too
+    private static final long PUBLISHER_RELOAD_NANOS = 10 * 60_000_000_000L;
+    private final PublisherRegistry publisherRegistry = new PublisherRegistry();
+    private final Object publisherRefreshLock = new Object();
+    private long publishersReloadedAtNanos;
+    private boolean publishersLoaded;
+
+    // Removes the rows of the tables that refer to a chunk of books, then the books themselves
+    private static final String[] DELETE_BOOKS = {
+            "DELETE FROM PhysicalBook WHERE BookID IN (%s)",
+            "DELETE FROM AudioBook WHERE BookID IN (%s)",
+            "DELETE FROM EBook WHERE BookID IN (%s)",
+            "DELETE FROM BookAuthor WHERE BookID IN (%s)",
+            "DELETE FROM Book WHERE BookID IN (%s)"
+    };
+    // Removes the book publications and the authors of deleted books that no remaining book refers to
+    private static final String DELETE_ORPHAN_PUBLICATIONS = """
+        DELETE FROM Publication WHERE PublicationID IN (%s) AND Type = 'Book'
+        AND NOT EXISTS (SELECT 1 FROM Book b WHERE b.PublicationID = Publication.PublicationID)""";
+    private static final String DELETE_ORPHAN_AUTHORS = """
+        DELETE FROM Author WHERE AuthorID IN (%s)
+        AND NOT EXISTS (SELECT 1 FROM BookAuthor ba WHERE ba.AuthorID = Author.AuthorID)""";
+    // Locks the authors a transaction links books to, so they cannot be deleted as orphans before it commits
+    private static final String LOCK_AUTHORS = "SELECT AuthorID FROM Author WHERE AuthorID IN (%s) FOR UPDATE";
+    // How often a write resolves its authors again when one of them was deleted meanwhile
+    private static final int AUTHOR_LOCK_ATTEMPTS = 3;
+
+    // Maps author names to existing AuthorIDs so each author is stored once
+    private final AuthorResolver authorResolver = new AuthorResolver(this, AuthorResolver.DEFAULT_CACHE_SIZE);
+
+    // Latency, row, error and rollback counts of each public operation
+    private final Metrics metrics = Metrics.getInstance();
+    private final OperationMetrics refreshPublishersMetrics = metrics.operation("db.refreshPublishers");
+    private final OperationMetrics insertBookMetrics = metrics.operation("db.insertBook");
+    private final OperationMetrics updateBookMetrics = metrics.operation("db.updateBook");
+    private final OperationMetrics deleteBooksMetrics = metrics.operation("db.deleteBooks");
+    private final OperationMetrics searchBooksMetrics = metrics.operation("db.searchBooks");
+    private final OperationMetrics getBooksByIdsMetrics = metrics.operation("db.getBooksByIds");
+    private final OperationMetrics getBooksMetrics = metrics.operation("db.getBooks");
+    private final OperationMetrics forEachBookMetrics = metrics.operation("db.forEachBook");
+    private final OperationMetrics getBookVersionsMetrics = metrics.operation("db.getBookVersions");
+    private final OperationMetrics getBookIdsMetrics = metrics.operation("db.getBookIds");
 
 /**
- * Private constructor to prevent direct instantiation.
- * Initializes the connection to the database.
+ * Loads a JDBC driver class before the pool opens its first connection.
+ *
+ * @param driverClass The driver's class name.
+ * @param url The JDBC URL the driver will be used for.
+ * @return The same URL, so this can be called while delegating to another constructor.
  */
-    private DBMgr() {
+    static String loadDriver(String driverClass, String url) {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            this.connection = DriverManager.getConnection(url, user, password);
+            Class.forName(driverClass);
         } catch (ClassNotFoundException e) {
-            System.out.println("Database Driver not found");
-            e.printStackTrace();
+            LOG.log(Level.ERROR, "Database driver " + driverClass + " not found", e);
+        }
+        return url;
+    }
+
+/**
+ * Creates a DBMgr backed by its own connection pool for the given database.
+ * Used by the singleton and to run DBMgr against another database, such as an embedded one.
+ * One connection is opened and validated up front so that an unreachable database is reported immediately.
+ *
+ * @param url The JDBC URL of the database.
+ * @param user The database username.
+ * @param password The database password.
+ * @throws IllegalStateException If the schema cannot be migrated, as when the database cannot be reached or an
+ * applied migration script was edited, or not until the catalog is corrected by hand, as when books share an ISBN
+ * that is about to become unique.
+ */
+    DBMgr(String url, String user, String password) {
+        this.pool = new ConnectionPool(url, user, password);
+        try (Connection conn = pool.borrow()) {
+            LOG.log(Level.INFO, "Connected to " + conn.getMetaData().getURL());
+        } catch (SQLException e) {
+            LOG.log(Level.ERROR, "Connection to " + url + " failed", e);
+        }
+        boolean migrated;
+        try {
+            migrated = new SchemaMigrator(this).migrate();
+        } catch (IllegalStateException e) {
+            // The catalog needs correcting by hand before it can be used
+            pool.close();
+            throw e;
+        }
+        if (!migrated) {
+            // Queries against a schema of another version would fail or, worse, write the wrong columns
+            pool.close();
+            throw new IllegalStateException("The schema of " + url + " could not be migrated; see the log for the cause");
+        }
+        // Checked in the background, so that the first queries do not wait for it
+        planCheck = CompletableFuture.runAsync(() -> verifyQueryPlans().forEach((query, tables) ->
+                LOG.log(Level.INFO, "Query plan of " + query + " scans " + tables + "; expected only while they are small")));
+        registerGauges();
+        events.subscribe("db.caches", this::remoteChanges);
+    }
+
+/**
+ * Checks with EXPLAIN that the hot queries read every table through an index.
+ * Covers reading books by ID and by page, the orphan checks after deleting books and the author lookup by name.
+ * Run at startup once the schema is migrated; the optimizer may still choose a full scan of a table with few rows.
+ *
+ * @return The queries that read some table by full scan, each with those tables, in query order.
+ * Empty if every query uses indexes or in case of a database access error.
+ */
+    public Map<String, List<String>> verifyQueryPlans() {
+        Object[] ids = {1, 2, 3, 4, 5, 6, 7, 8};
+        String placeholders = String.join(", ", Collections.nCopies(ids.length, "?"));
+        Map<String, List<String>> scans = new LinkedHashMap<>();
+        try (Connection conn = getConnection()) {
+            Map<String, List<String>> explained = new LinkedHashMap<>();
+            explained.put("getBooksByIds", SchemaMigrator.explainFullScans(conn, BOOKS_BY_IDS.formatted(placeholders), ids));
+            explained.put("deleteOrphanPublications",
+                    SchemaMigrator.explainFullScans(conn, DELETE_ORPHAN_PUBLICATIONS.formatted(placeholders), ids));
+            explained.put("deleteOrphanAuthors",
+                    SchemaMigrator.explainFullScans(conn, DELETE_ORPHAN_AUTHORS.formatted(placeholders), ids));
+            explained.put("findAuthor",
+                    SchemaMigrator.explainFullScans(conn, AuthorResolver.FIND_AUTHOR,
+                            "Jane", "Jane Doe", "Jane", "", "Doe", "Jane Doe", "Doe"));
+            explained.forEach((query, tables) -> {
+                if (!tables.isEmpty()) {
+                    scans.put(query, tables);
+                }
+            });
         } catch (SQLException e) {
-            System.out.println("Connection failed");
-            e.printStackTrace();
+            LOG.log(Level.WARNING, "verifyQueryPlans failed", e);
         }
+        return scans;
     }
 
 /**
- * Returns the single instance of DBMgr, creating it if it does not already exist.
+ * Reports the state of the connection pool and of the caches with the application's metrics.
+ */
+    private void registerGauges() {
+        metrics.gauge("pool.connections.total", pool::getTotalConnections);
+        metrics.gauge("pool.connections.idle", pool::getIdleConnections);
+        metrics.gauge("statements.cache.hits", pool::getStatementCacheHits);
+        metrics.gauge("statements.cache.misses", pool::getStatementCacheMisses);
+        metrics.gauge("authors.cache.hits", authorResolver::getHits);
+        metrics.gauge("authors.cache.misses", authorResolver::getMisses);
+        metrics.gauge("publishers.size", publisherRegistry::size);
+        for (QueryCache<?, ?> cache : List.of(catalogCache, searchCache)) {
+            metrics.gauge("cache." + cache.getName() + ".hits", cache::getHits);
+            metrics.gauge("cache." + cache.getName() + ".misses", cache::getMisses);
+            metrics.gauge("cache." + cache.getName() + ".size", cache::size);
+        }
+    }
+
+/**
+ * Returns the single instance of DBMgr, creating it from the {@link CatalogConfig} if it does not already exist.
+ * Depending on the configured backend this is a DBMgr for the MySQL server or an {@link EmbeddedDBMgr}.
  * This method is thread-safe.
  *
  * @return The single instance of DBMgr.
@@ -48,7 +273,7 @@ public class DBMgr {
         if (instance == null) {
             synchronized (DBMgr.class) {
                 if (instance == null) {
-                    instance = new DBMgr();
+                    instance = CatalogConfig.load().open();
                 }
             }
         }
@@ -56,54 +281,207 @@ public class DBMgr {
     }
 
 /**
- * Gets the current database connection.
+ * Returns the repository the application reads and writes the catalog through, opening it on the first call:
+ * the single DBMgr instance, or a {@link ReplicatedCatalog} in front of it if the configuration names a local replica.
+ * This method is thread-safe.
+ *
+ * @return The catalog repository.
+ */
+    public static CatalogRepository getRepository() {
+        synchronized (REPOSITORY_LOCK) {
+            if (repository == null) {
+                repository = CatalogConfig.load().openRepository();
+            }
+            return repository;
+        }
+    }
+
+/**
+ * Closes the repository and the single instance if they have been created, without creating them otherwise.
+ * Called when the application exits.
+ */
+    public static void closeInstance() {
+        synchronized (REPOSITORY_LOCK) {
+            if (repository != null && repository != instance) {
+                repository.close();
+            }
+        }
+        synchronized (DBMgr.class) {
+            if (instance != null) {
+                instance.close();
+            }
+        }
+    }
+
+/**
+ * Borrows a connection from the pool.
+ * The caller owns the connection until it closes it, which returns it to the pool.
+ *
+ * @return A Connection reserved for the caller.
+ * @throws SQLException If no connection could be obtained.
+ */
+    public Connection getConnection() throws SQLException {
+        return pool.borrow();
+    }
+
+/**
+ * Stops following the outbox and the event subscriptions, then closes the connection pool and all idle connections.
+ * Called when the application exits.
+ */
+    @Override
+    public void close() {
+        awaitPlanCheck();
+        OutboxPoller poller = outboxPoller;
+        if (poller != null) {
+            poller.close();
+        }
+        events.close();
+        pool.close();
+    }
+
+/**
+ * Waits for the query plan check started with this DBMgr to finish, whether or not it succeeded.
+ */
+    void awaitPlanCheck() {
+        planCheck.exceptionally(e -> null).join();
+    }
+
+/**
+ * Gets the bus on which every committed insert, update and delete is published, including, once
+ * {@link #followOutbox(Duration)} is called, those of other application instances.
+ *
+ * @return The event bus.
+ */
+    @Override
+    public CatalogEventBus getEvents() {
+        return events;
+    }
+
+/**
+ * Starts publishing the changes other application instances record in the outbox, polling it at the given interval.
+ * Only the first call starts a poller.
+ *
+ * @param interval How long to wait between polls.
+ * @return The poller.
+ */
+    public synchronized OutboxPoller followOutbox(Duration interval) {
+        if (outboxPoller == null) {
+            OutboxPoller poller = new OutboxPoller(this);
+            poller.start(interval);
+            outboxPoller = poller;
+        }
+        return outboxPoller;
+    }
+
+/**
+ * Gets the identifier this DBMgr records as the origin of its changes in the outbox.
+ *
+ * @return A random UUID, different for every DBMgr.
+ */
+    String getOrigin() {
+        return origin;
+    }
+
+/**
+ * Records changes to books in the outbox, within the caller's transaction, so that they are committed with it.
  *
- * @return The current Connection object.
+ * @param conn The database connection, with a transaction in progress.
+ * @param type The kind of change: {@link OutboxPoller#INSERTED}, {@link OutboxPoller#UPDATED} or {@link OutboxPoller#DELETED}.
+ * @param bookIds The IDs of the changed books.
+ * @param version The version of the books after the change.
+ * @throws SQLException If the rows cannot be written.
  */
-    public Connection getConnection() {
-        return connection;
+    void recordChanges(Connection conn, String type, int[] bookIds, int version) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(OutboxPoller.INSERT_EVENT)) {
+            for (int bookId : bookIds) {
+                pstmt.setString(1, type);
+                pstmt.setInt(2, bookId);
+                pstmt.setInt(3, version);
+                pstmt.setString(4, origin);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
     }
 
 /**
- * Gets the current database connection.
+ * Retrieves all publishers, ordered by name, from the publisher registry after refreshing it.
  *
- * @return The current Connection object.
+ * @return An ObservableList of Publisher objects; empty if the publishers could never be read.
  */
+    @Override
     public ObservableList<Publisher> getPublishers() {
-        ObservableList<Publisher> publisherList = FXCollections.observableArrayList();
-        try (Statement stmt = connection.createStatement()) {
-
-            ResultSet result = stmt.executeQuery("Select * from publisher");
-            while (result.next()) {
-                int id = result.getInt("PublisherID"); // You can also use column indices, e.g., getInt(1)
-                String name = result.getString("Name");
-                String web = result.getString("Website");
-                publisherList.add(new Publisher(
-                        id, name, web
-                ));
-                System.out.printf("ID: %d, Name: %s, web: %s%n", id, name, web);
+        return FXCollections.observableArrayList(refreshPublishers().getAll());
+    }
+
+/**
+ * Brings the publisher registry up to date. Only the publishers with an ID above the highest one already
+ * registered are read, through the primary key, except on the first refresh and once the reload interval has
+ * passed, when all publishers are read again.
+ *
+ * @return The publisher registry; if the database cannot be read, it keeps the publishers it had.
+ */
+    @Override
+    public PublisherRegistry refreshPublishers() {
+        long start = System.nanoTime();
+        try {
+            int rows;
+            synchronized (publisherRefreshLock) {
+                boolean reload = !publishersLoaded || start - publishersReloadedAtNanos > PUBLISHER_RELOAD_NANOS;
+                List<Publisher> read = queryPublishers(reload ? 0 : publisherRegistry.getMaxId());
+                if (reload) {
+                    publisherRegistry.replaceAll(read);
+                    publishersReloadedAtNanos = start;
+                    publishersLoaded = true;
+                } else {
+                    publisherRegistry.addAll(read);
+                }
+                rows = read.size();
             }
-            return publisherList;
+            refreshPublishersMetrics.success(start, rows);
         } catch (SQLException e) {
-            e.printStackTrace();
+            refreshPublishersMetrics.failure(start);
+            LOG.log(Level.WARNING, "refreshPublishers failed", e);
+        }
+        return publisherRegistry;
+    }
+
+    private List<Publisher> queryPublishers(int afterPublisherId) throws SQLException {
+        List<Publisher> publisherList = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT PublisherID, Name, Website FROM publisher WHERE PublisherID > ? ORDER BY PublisherID")) {
+            pstmt.setInt(1, afterPublisherId);
+            try (ResultSet result = pstmt.executeQuery()) {
+                while (result.next()) {
+                    publisherList.add(new Publisher(result.getInt(1), result.getString(2), result.getString(3)));
+                }
+            }
+            if (LOG.isLoggable(Level.DEBUG)) {
+                LOG.log(Level.DEBUG, "refreshPublishers read publishers=" + publisherList.size() + " after=" + afterPublisherId);
+            }
             return publisherList;
         }
     }
 
 /**
- * Links a book to an author in the BookAuthor table.
+ * Links a book to all of its authors in the BookAuthor table with a single multi-row INSERT.
  * This is a utility method used internally during book insertion to associate books with their authors.
  *
  * @param conn The database connection.
  * @param bookId The ID of the book.
- * @param authorId The ID of the author.
+ * @param authorIds The IDs of the authors, without duplicates.
  * @throws SQLException If any SQL errors occur during the operation.
  */
-    private void linkBookToAuthor(Connection conn, int bookId, int authorId) throws SQLException {
-        String sql = "INSERT INTO BookAuthor (BookID, AuthorID) VALUES (?, ?)";
+    private void linkBookToAuthors(Connection conn, int bookId, List<Integer> authorIds) throws SQLException {
+        String sql = "INSERT INTO BookAuthor (BookID, AuthorID) VALUES "
+                + String.join(", ", Collections.nCopies(authorIds.size(), "(?, ?)"));
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, bookId);
-            pstmt.setInt(2, authorId);
+            int index = 1;
+            for (int authorId : authorIds) {
+                pstmt.setInt(index++, bookId);
+                pstmt.setInt(index++, authorId);
+            }
             pstmt.executeUpdate();
         }
     }
@@ -111,118 +489,285 @@ public class DBMgr {
 /**
  * Inserts a new book into the database.
  * This method orchestrates the insertion of a book by managing transactions across multiple tables,
- * including Publication, Author, Book, PhysicalBook, and the BookAuthor link table. This ensures that
+ * including Publication, Book, PhysicalBook, and the BookAuthor link table. This ensures that
  * all related entities are consistently updated in a single transaction.
+ * The authors are looked up through the {@link AuthorResolver} first and only created if they do not exist yet.
  *
  * @param title The title of the book.
- * @param authorName The name of the author.
- * @param isbn The ISBN of the book.
+ * @param authorName The names of the authors, separated by ";", "&" or "and".
+ * @param isbn The ISBN of the book; a valid ISBN is stored in its 13-digit form, see {@link ValidationEngine#normalizeIsbn}.
  * @param deweyDecimal The Dewey Decimal classification for the book.
  * @param publisherId The ID of the publisher.
  * @param numberOfPages The number of pages in the book.
  * @param language The language of the book.
  * @param genre The genre of the book.
- * @return true if the book and its related data were successfully inserted; false otherwise.
+ * @return The inserted book, so that callers can show it without reloading the catalog; null if the insertion failed.
  * This includes rolling back the transaction in case of any failures to ensure data integrity.
  */
-    public boolean insertBook(String title, String authorName, String isbn, String deweyDecimal, int publisherId, int numberOfPages, String language, String genre) {
+    @Override
+    public Book insertBook(String title, String authorName, String isbn, String deweyDecimal, int publisherId, int numberOfPages, String language, String genre) {
+        return insertBook(title, AuthorResolver.splitAuthors(authorName), isbn, deweyDecimal, publisherId, numberOfPages, language, genre);
+    }
+
+/**
+ * Inserts a new book with one or more authors into the database.
+ * Works like {@link #insertBook(String, String, String, String, int, int, String, String)},
+ * with the author names already split into a list.
+ *
+ * @param title The title of the book.
+ * @param authorNames The names of the authors, in order.
+ * @param isbn The ISBN of the book; a valid ISBN is stored in its 13-digit form.
+ * @param deweyDecimal The Dewey Decimal classification for the book.
+ * @param publisherId The ID of the publisher.
+ * @param numberOfPages The number of pages in the book.
+ * @param language The language of the book.
+ * @param genre The genre of the book.
+ * @return The inserted book; null if the insertion failed.
+ */
+    @Override
+    public Book insertBook(String title, List<String> authorNames, String isbn, String deweyDecimal, int publisherId, int numberOfPages, String language, String genre) {
+        long start = System.nanoTime();
+        if (authorNames.isEmpty()) {
+            insertBookMetrics.failure(start);
+            LOG.log(Level.WARNING, "insertBook failed: at least one author is required");
+            return null;
+        }
+        isbn = ValidationEngine.normalizeIsbn(isbn);
         Connection conn = null;
         try {
-            conn = getConnection();
-            conn.setAutoCommit(false); // Start transaction
+            List<Integer> authorIds;
+            for (int attempt = 1; ; attempt++) {
+                // Find the existing authors, or create them, before the transaction starts
+                authorIds = resolveAuthorIds(authorNames);
+
+                conn = getConnection(); // Borrow a connection of our own for this transaction
+                conn.setAutoCommit(false); // Start transaction
+
+                // Keep the authors from being deleted by a concurrent deleteBooks until the book is linked to them
+                if (lockAuthors(conn, authorIds)) {
+                    break;
+                }
+                conn.rollback(); // Rollback and resolve again, as an author was deleted since it was resolved
+                insertBookMetrics.rollback();
+                giveBack(conn);
+                conn = null;
+                if (attempt == AUTHOR_LOCK_ATTEMPTS) {
+                    throw new SQLException("The authors of the book kept being deleted while it was inserted.");
+                }
+            }
 
             // Insert into Publication table
             int publicationId = insertPublication(conn, title, publisherId);
-            System.out.println("Publication inserted successfully with ID: " + publicationId);
-
-            // Insert into Author table
-            int authorId = insertAuthor(conn, authorName);
-            System.out.println("Author inserted successfully with ID: " + authorId);
 
             // Insert into Book table
             int bookId = insertBookEntry(conn, publicationId, isbn, deweyDecimal);
-            System.out.println("Book inserted successfully with ID: " + bookId);
 
             // Insert into PhysicalBook table
             insertPhysicalBook(conn, bookId, numberOfPages, language, genre);
-            System.out.println("PhysicalBook details inserted successfully for BookID: " + bookId);
 
-            // Link the book to an author (e.g., AuthorID = 1 for simplicity)
-            linkBookToAuthor(conn, bookId, authorId); // Assuming AuthorID = 1 exists
-            System.out.println("Book linked to Author successfully.");
+            // Link the book to all of its authors
+            linkBookToAuthors(conn, bookId, authorIds);
+
+            recordChanges(conn, OutboxPoller.INSERTED, new int[] {bookId}, 0);
 
             conn.commit(); // Commit transaction
-            System.out.println("Transaction committed successfully.");
-            return true;
-        } catch (SQLException e) {
-            System.out.println("Inserting book failed: " + e.getMessage());
-            if (conn != null) {
-                try {
-                    conn.rollback(); // Rollback on error
-                    System.out.println("Transaction rolled back.");
-                } catch (SQLException ex) {
-                    System.out.println("Rollback failed: " + ex.getMessage());
-                }
+            if (LOG.isLoggable(Level.DEBUG)) {
+                LOG.log(Level.DEBUG, "insertBook committed bookId=" + bookId + " publicationId=" + publicationId
+                        + " authorIds=" + authorIds);
             }
-            return false;
+            Book book = new Book(bookId, title, String.join(AUTHOR_SEPARATOR, authorNames), isbn, deweyDecimal, publisherId);
+            bookInserted(book);
+            insertBookMetrics.success(start, 1);
+            return book;
+        } catch (SQLException e) {
+            insertBookMetrics.failure(start);
+            LOG.log(Level.WARNING, "insertBook failed title=" + title, e);
+            rollback(conn, insertBookMetrics);
+            return null;
         } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true); // Reset default commit behavior
-                } catch (SQLException e) {
-                    System.out.println("Error resetting auto-commit: " + e.getMessage());
-                }
-            }
+            giveBack(conn);
         }
     }
 
 /**
  * Updates the title of an existing book in the database.
- * This method is part of managing the book inventory where book details might change over time.
- * It demonstrates handling a simple transaction to ensure the title is updated atomically.
+ * This is {@link #updateBook(Book, Book)} with only the title changed, so it is keyed by BookID and checked
+ * against the book's version like any other update.
  *
  * @param title The new title for the book.
- * @param bookToUpdate The book object containing the existing details of the book, including its current title.
- * @return true if the book's title was successfully updated; false otherwise.
- * Similar to insertBook, this method manages transactions to ensure consistency and rolls back changes if the update fails.
+ * @param bookToUpdate The book as it was read, including its version.
+ * @return The book with its new title, to replace the old one in lists shown to the user; null if the update failed.
+ * @throws StaleBookException If the book has been changed or deleted since it was read.
+ */
+    @Override
+    public Book updateBook(String title, Book bookToUpdate) {
+        return updateBook(bookToUpdate, new Book(bookToUpdate.getId(), title, bookToUpdate.getAuthors(), bookToUpdate.getIsbn(),
+                bookToUpdate.getDewey(), bookToUpdate.getPublisherId(), bookToUpdate.getVersion()));
+    }
+
+/**
+ * Updates a book, keyed by its BookID and guarded by its version (optimistic locking).
+ * Only the values that differ between the original and the edited book are written, across the Book, Publication
+ * and BookAuthor tables, in a single transaction; every statement finds its rows by key, so no table is scanned.
+ * The Book row's version is checked and incremented first, which also locks the row until the transaction ends:
+ * of two editors of the same book, the second is told the book has moved on instead of silently overwriting
+ * the first, while editors of different books never wait for each other.
+ * Authors removed from the book are deleted if no other book refers to them.
+ * The edited ISBN is stored in its 13-digit form, as on insert.
+ *
+ * @param original The book as it was read, including the version the edit is based on.
+ * @param edited The book with its new values; its ID is the original's.
+ * @return The updated book at its new version, or the original if nothing changed; null if the update failed,
+ * in which case the transaction is rolled back.
+ * @throws StaleBookException If the book has been changed or deleted since the original version was read.
  */
-    public boolean updateBook(String title, Book bookToUpdate ) {
+    @Override
+    public Book updateBook(Book original, Book edited) {
+        long start = System.nanoTime();
+        int bookId = original.getId().intValue();
+        boolean titleChanged = !Objects.equals(original.getTitle(), edited.getTitle());
+        String isbn = ValidationEngine.normalizeIsbn(edited.getIsbn());
+        boolean isbnChanged = !Objects.equals(original.getIsbn(), isbn);
+        boolean deweyChanged = !Objects.equals(original.getDewey(), edited.getDewey());
+        boolean publisherChanged = original.getPublisherId().intValue() != edited.getPublisherId().intValue();
+        List<String> authorNames = AuthorResolver.splitAuthors(edited.getAuthors());
+        boolean authorsChanged = !new HashSet<>(AuthorResolver.splitAuthors(original.getAuthors())).equals(new HashSet<>(authorNames));
+        if (!(titleChanged || isbnChanged || deweyChanged || publisherChanged || authorsChanged)) {
+            updateBookMetrics.success(start, 0);
+            return original;
+        }
+        if (authorNames.isEmpty()) {
+            updateBookMetrics.failure(start);
+            LOG.log(Level.WARNING, "updateBook failed: at least one author is required");
+            return null;
+        }
         Connection conn = null;
+        List<Integer> removedAuthorIds = List.of();
         try {
-            conn = getConnection();
-            conn.setAutoCommit(false); // Start transaction
+            List<Integer> authorIds = List.of();
+            for (int attempt = 1; ; attempt++) {
+                // Find the existing authors, or create them, before the transaction starts
+                if (authorsChanged) {
+                    authorIds = resolveAuthorIds(authorNames);
+                }
 
-            String sql = "UPDATE Publication SET Title = ?, Type = 'Book' WHERE title = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, title);
-                pstmt.setString(2, bookToUpdate.getTitle());
-                int affectedRows = pstmt.executeUpdate();
-                if (affectedRows == 0) {
-                    throw new SQLException("Updating publication failed, no rows affected.");
+                conn = getConnection(); // Borrow a connection of our own for this transaction
+                conn.setAutoCommit(false); // Start transaction
+
+                // 1. Check and increment the version, locking the book, and write the changed Book columns
+                StringBuilder sql = new StringBuilder("UPDATE Book SET Version = Version + 1");
+                if (isbnChanged) {
+                    sql.append(", ISBN = ?");
+                }
+                if (deweyChanged) {
+                    sql.append(", DeweyDecimalSystemNumber = ?");
+                }
+                sql.append(" WHERE BookID = ? AND Version = ?");
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    int index = 1;
+                    if (isbnChanged) {
+                        pstmt.setString(index++, isbn);
+                    }
+                    if (deweyChanged) {
+                        pstmt.setString(index++, edited.getDewey());
+                    }
+                    pstmt.setInt(index++, bookId);
+                    pstmt.setInt(index, original.getVersion());
+                    if (pstmt.executeUpdate() == 0) {
+                        conn.rollback(); // Rollback as the book has moved on
+                        updateBookMetrics.rollback();
+                        Book current = queryBook(conn, bookId);
+                        updateBookMetrics.failure(start);
+                        LOG.log(Level.INFO, "updateBook found bookId=" + bookId + " changed since version " + original.getVersion());
+                        throw new StaleBookException(bookId, original.getVersion(), current);
+                    }
+                }
+
+                // Then keep the new authors from being deleted by a concurrent deleteBooks until they are linked,
+                // locking them after the book as deleteBooks does, so the two cannot deadlock
+                if (!authorsChanged || lockAuthors(conn, authorIds)) {
+                    break;
+                }
+                conn.rollback(); // Rollback and resolve again, as an author was deleted since it was resolved
+                updateBookMetrics.rollback();
+                giveBack(conn);
+                conn = null;
+                if (attempt == AUTHOR_LOCK_ATTEMPTS) {
+                    throw new SQLException("The authors of the book kept being deleted while it was updated.");
                 }
             }
-            conn.commit(); // Commit transaction
-            System.out.println("Transaction committed successfully.");
-            return true;
-        } catch (SQLException e) {
-            System.out.println("Updating book failed: " + e.getMessage());
-            if (conn != null) {
-                try {
-                    conn.rollback(); // Rollback on error
-                    System.out.println("Transaction rolled back.");
-                } catch (SQLException ex) {
-                    System.out.println("Rollback failed: " + ex.getMessage());
+
+            // 2. Write the changed Publication columns
+            if (titleChanged || publisherChanged) {
+                String columns = titleChanged && publisherChanged ? "Title = ?, PublisherID = ?"
+                        : titleChanged ? "Title = ?" : "PublisherID = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE Publication SET " + columns
+                        + " WHERE PublicationID = (SELECT PublicationID FROM Book WHERE BookID = ?)")) {
+                    int index = 1;
+                    if (titleChanged) {
+                        pstmt.setString(index++, edited.getTitle());
+                    }
+                    if (publisherChanged) {
+                        pstmt.setInt(index++, edited.getPublisherId().intValue());
+                    }
+                    pstmt.setInt(index, bookId);
+                    pstmt.executeUpdate();
                 }
             }
-            return false;
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true); // Reset default commit behavior
-                } catch (SQLException e) {
-                    System.out.println("Error resetting auto-commit: " + e.getMessage());
+
+            // 3. Unlink the authors no longer named and link the new ones
+            if (authorsChanged) {
+                List<Integer> linked = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT AuthorID FROM BookAuthor WHERE BookID = ?")) {
+                    pstmt.setInt(1, bookId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            linked.add(rs.getInt(1));
+                        }
+                    }
+                }
+                removedAuthorIds = new ArrayList<>(linked);
+                removedAuthorIds.removeAll(authorIds);
+                List<Integer> addedAuthorIds = new ArrayList<>(authorIds);
+                addedAuthorIds.removeAll(linked);
+                if (!removedAuthorIds.isEmpty()) {
+                    try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM BookAuthor WHERE BookID = ? AND AuthorID = ?")) {
+                        for (int authorId : removedAuthorIds) {
+                            pstmt.setInt(1, bookId);
+                            pstmt.setInt(2, authorId);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                    }
+                    deleteOrphans(conn, Set.of(), new HashSet<>(removedAuthorIds), updateBookMetrics);
+                }
+                if (!addedAuthorIds.isEmpty()) {
+                    linkBookToAuthors(conn, bookId, addedAuthorIds);
                 }
             }
+
+            // 4. Record the change for other application instances
+            recordChanges(conn, OutboxPoller.UPDATED, new int[] {bookId}, original.getVersion() + 1);
+
+            conn.commit(); // Commit transaction
+            if (LOG.isLoggable(Level.DEBUG)) {
+                LOG.log(Level.DEBUG, "updateBook committed bookId=" + bookId + " version=" + (original.getVersion() + 1));
+            }
+            for (int authorId : removedAuthorIds) {
+                authorResolver.forget(authorId);
+            }
+            Book updated = new Book(bookId, edited.getTitle(), authorsChanged ? String.join(AUTHOR_SEPARATOR, authorNames) : original.getAuthors(),
+                    isbn, edited.getDewey(), edited.getPublisherId(), original.getVersion() + 1);
+            bookUpdated(updated);
+            updateBookMetrics.success(start, 1);
+            return updated;
+        } catch (SQLException e) {
+            updateBookMetrics.failure(start);
+            LOG.log(Level.WARNING, "updateBook failed bookId=" + bookId, e);
+            rollback(conn, updateBookMetrics);
+            return null;
+        } finally {
+            giveBack(conn);
         }
     }
 
@@ -257,37 +802,6 @@ public class DBMgr {
         }
     }
 
-/**
- * Inserts a new author into the database.
- * This method supports the insertion of books by ensuring that authors are uniquely stored.
- * It creates a new author record and returns the generated ID for linking with the book.
- *
- * @param conn The database connection.
- * @param authorName The full name of the author.
- * @return The generated ID for the new author record.
- * @throws SQLException If the insertion fails, such as when no rows are affected or the generated ID cannot be obtained.
- */
-    private int insertAuthor(Connection conn, String authorName) throws SQLException {
-        String sql = "INSERT INTO Author (FirstName, MiddleName, LastName) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, authorName);
-            pstmt.setString(2, "");
-            pstmt.setString(3, "");
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Creating author failed, no rows affected.");
-            }
-
-            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
-                } else {
-                    throw new SQLException("Creating author failed, no ID obtained.");
-                }
-            }
-        }
-    }
-
 /**
  * Inserts a book entry linking it to its publication record.
  * After creating a publication record, this method inserts the book-specific details into the Book table.
@@ -345,139 +859,773 @@ public class DBMgr {
 /**
  * Deletes a book and its references from the database.
  * This method ensures that all records related to a book, such as author links and physical book details,
- * are removed in a single transaction to maintain database integrity.
+ * are removed in a single transaction to maintain database integrity; see {@link #deleteBooks(Collection)}.
  *
  * @param bookId The ID of the book to be deleted.
  * @return true if the book and all its references were successfully deleted; false if the book does not exist
  * or the deletion failed, in which case the transaction is rolled back.
  */
+    @Override
     public Boolean deleteBookAndReferences(int bookId) {
+        return deleteBooks(List.of(bookId)).contains(bookId);
+    }
+
+/**
+ * Deletes many books and their references from the database in a single transaction.
+ * Rather than one round-trip per table and book, every table is cleared with one DELETE ... WHERE BookID IN (...)
+ * per chunk of IDs. The Publication rows of the deleted books are deleted with them, and so are the authors
+ * left without any book; should that clean-up fail, for example because another table still refers to an author,
+ * only the clean-up is rolled back and the books are deleted all the same.
+ *
+ * @param bookIds The IDs of the books to delete; IDs of books that do not exist are ignored.
+ * @return The IDs of the books that were deleted, in ascending order; empty if none of them exist
+ * or the deletion failed, in which case the transaction is rolled back.
+ */
+    @Override
+    public List<Integer> deleteBooks(Collection<Integer> bookIds) {
+        long start = System.nanoTime();
+        int[] ids = bookIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        if (ids.length == 0) {
+            deleteBooksMetrics.success(start, 0);
+            return List.of();
+        }
+        Connection conn = null;
         try {
-            connection.setAutoCommit(false); // Start transaction
+            conn = getConnection(); // Borrow a connection of our own for this transaction
+            conn.setAutoCommit(false); // Start transaction
 
-            // 1. Delete references in dependent tables
-            String[] dependentTables = new String[]{"PhysicalBook", "AudioBook", "EBook", "BookAuthor"};
-            for (String table : dependentTables) {
-                String sqlDeleteReferences = String.format("DELETE FROM %s WHERE BookID = ?", table);
-                try (PreparedStatement pstmtDeleteReferences = connection.prepareStatement(sqlDeleteReferences)) {
-                    pstmtDeleteReferences.setInt(1, bookId);
-                    pstmtDeleteReferences.executeUpdate();
+            // 1. Lock the books and note the publications and authors they refer to, before those links are deleted
+            List<Integer> found = new ArrayList<>(ids.length);
+            Set<Integer> publicationIds = new HashSet<>();
+            Set<Integer> authorIds = new HashSet<>();
+            for (int from = 0; from < ids.length; from += ID_CHUNK_SIZE) {
+                int to = Math.min(ids.length, from + ID_CHUNK_SIZE);
+                try (PreparedStatement pstmt = prepareWithIds(conn,
+                        "SELECT BookID, PublicationID FROM Book WHERE BookID IN (%s) FOR UPDATE", ids, from, to);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        found.add(rs.getInt(1));
+                        publicationIds.add(rs.getInt(2));
+                    }
                 }
+                try (PreparedStatement pstmt = prepareWithIds(conn,
+                        "SELECT DISTINCT AuthorID FROM BookAuthor WHERE BookID IN (%s)", ids, from, to);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        authorIds.add(rs.getInt(1));
+                    }
+                }
+            }
+            if (found.isEmpty()) {
+                conn.rollback(); // Rollback as no book was found
+                deleteBooksMetrics.rollback();
+                deleteBooksMetrics.success(start, 0);
+                LOG.log(Level.INFO, "deleteBooks found none of ids=" + ids.length + ", rolled back");
+                return List.of();
+            }
+            Collections.sort(found);
+            int[] deleted = found.stream().mapToInt(Integer::intValue).toArray();
+
+            // 2. Delete references in dependent tables, then the books
+            for (String sqlDelete : DELETE_BOOKS) {
+                executeWithIds(conn, sqlDelete, deleted);
             }
 
-            // 2. Delete the book
-            String sqlDeleteBook = "DELETE FROM Book WHERE BookID = ?";
-            try (PreparedStatement pstmtDeleteBook = connection.prepareStatement(sqlDeleteBook)) {
-                pstmtDeleteBook.setInt(1, bookId);
-                int affectedRows = pstmtDeleteBook.executeUpdate();
-                if (affectedRows == 0) {
-                    connection.rollback(); // Rollback if no book was deleted
-                    System.out.println("No book found with the specified ID, rolling back.");
-                    return false;
+            // 3. Delete the publications and authors no book refers to any more
+            int orphans = deleteOrphans(conn, publicationIds, authorIds, deleteBooksMetrics);
+
+            // 4. Record the deletions for other application instances
+            recordChanges(conn, OutboxPoller.DELETED, deleted, 0);
+
+            conn.commit(); // Commit transaction
+            if (LOG.isLoggable(Level.DEBUG)) {
+                LOG.log(Level.DEBUG, "deleteBooks committed books=" + deleted.length + " orphans=" + orphans);
+            }
+            booksDeleted(deleted);
+            for (int authorId : authorIds) {
+                authorResolver.forget(authorId);
+            }
+            deleteBooksMetrics.success(start, deleted.length);
+            return Collections.unmodifiableList(found);
+        } catch (SQLException e) {
+            deleteBooksMetrics.failure(start);
+            LOG.log(Level.WARNING, "deleteBooks failed ids=" + ids.length, e);
+            rollback(conn, deleteBooksMetrics);
+            return List.of();
+        } finally {
+            giveBack(conn);
+        }
+    }
+
+/**
+ * Resolves author names to AuthorIDs, creating the authors that do not exist yet.
+ *
+ * @param authorNames The names of the authors, in order.
+ * @return The AuthorIDs in the order of the names, without duplicates.
+ * @throws SQLException If the authors cannot be looked up or inserted.
+ */
+    private List<Integer> resolveAuthorIds(List<String> authorNames) throws SQLException {
+        Map<String, Integer> resolved = authorResolver.resolveAll(authorNames);
+        List<Integer> authorIds = new ArrayList<>(resolved.size());
+        for (String name : authorNames) {
+            Integer authorId = resolved.get(name);
+            if (!authorIds.contains(authorId)) {
+                authorIds.add(authorId);
+            }
+        }
+        return authorIds;
+    }
+
+/**
+ * Locks the Author rows a transaction is about to link books to, so that a concurrent deleteBooks cannot delete
+ * them as orphans before the links are committed. The AuthorIDs were resolved before the transaction started,
+ * possibly from the resolver's cache; an author deleted since then is missing here, and is dropped from the cache
+ * so that resolving its name again creates it anew.
+ *
+ * @param conn The database connection, with a transaction in progress.
+ * @param authorIds The AuthorIDs to lock.
+ * @return true if every author still exists; false if the transaction must be rolled back and its authors resolved again.
+ * @throws SQLException If the authors cannot be locked.
+ */
+    boolean lockAuthors(Connection conn, Collection<Integer> authorIds) throws SQLException {
+        int[] ids = authorIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        Set<Integer> missing = new HashSet<>(authorIds);
+        for (int from = 0; from < ids.length; from += ID_CHUNK_SIZE) {
+            try (PreparedStatement pstmt = prepareWithIds(conn, LOCK_AUTHORS, ids, from, Math.min(ids.length, from + ID_CHUNK_SIZE));
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    missing.remove(rs.getInt(1));
                 }
             }
+        }
+        for (int authorId : missing) {
+            authorResolver.forget(authorId);
+        }
+        if (!missing.isEmpty()) {
+            LOG.log(Level.INFO, "Authors deleted since they were resolved: " + missing);
+        }
+        return missing.isEmpty();
+    }
 
-            connection.commit(); // Commit transaction
-            System.out.println("Book and its references deleted successfully.");
-            return true;
+/**
+ * Deletes the given publications and authors if no book refers to them any more.
+ * Runs within the caller's transaction, behind a savepoint, so a failure only undoes the clean-up.
+ *
+ * @param conn The database connection, with a transaction in progress.
+ * @param publicationIds The publications that books no longer use.
+ * @param authorIds The authors that books no longer name.
+ * @param operation The metrics of the calling operation, which count a rollback of the clean-up.
+ * @return The number of rows deleted; 0 if the clean-up was rolled back.
+ */
+    private int deleteOrphans(Connection conn, Set<Integer> publicationIds, Set<Integer> authorIds, OperationMetrics operation) {
+        Savepoint savepoint = null;
+        try {
+            savepoint = conn.setSavepoint();
+            int rows = executeWithIds(conn, DELETE_ORPHAN_PUBLICATIONS, toSortedArray(publicationIds));
+            rows += executeWithIds(conn, DELETE_ORPHAN_AUTHORS, toSortedArray(authorIds));
+            return rows;
         } catch (SQLException e) {
-            System.out.println("Deleting book failed: " + e.getMessage());
-            try {
-                if (connection != null) {
-                    connection.rollback(); // Attempt to roll back on error
-                    System.out.println("Transaction is rolled back.");
+            LOG.log(Level.WARNING, operation.getName() + " kept orphaned publications and authors", e);
+            if (savepoint != null) {
+                try {
+                    conn.rollback(savepoint);
+                    operation.rollback();
+                } catch (SQLException ex) {
+                    LOG.log(Level.WARNING, operation.getName() + " rollback to savepoint failed", ex);
                 }
-            } catch (SQLException ex) {
-                System.out.println("Error rolling back transaction: " + ex.getMessage());
             }
-            return false;
-        } finally {
-            try {
-                connection.setAutoCommit(true); // Reset auto-commit behavior
-            } catch (SQLException e) {
-                System.out.println("Error resetting auto-commit: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int[] toSortedArray(Set<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+/**
+ * Runs an INSERT, UPDATE or DELETE once per chunk of IDs.
+ *
+ * @param conn The database connection.
+ * @param sql The statement, with "%s" where the IN list of IDs goes.
+ * @param ids The IDs to bind.
+ * @return The total number of rows affected.
+ * @throws SQLException If a statement fails.
+ */
+    private static int executeWithIds(Connection conn, String sql, int[] ids) throws SQLException {
+        int rows = 0;
+        for (int from = 0; from < ids.length; from += ID_CHUNK_SIZE) {
+            try (PreparedStatement pstmt = prepareWithIds(conn, sql, ids, from, Math.min(ids.length, from + ID_CHUNK_SIZE))) {
+                rows += pstmt.executeUpdate();
+            }
+        }
+        return rows;
+    }
+
+/**
+ * Prepares a statement with an IN list for a chunk of IDs and binds them.
+ * The number of placeholders is rounded up to a power of two, so a few statements are prepared and reused
+ * for any list length; unused placeholders repeat the last ID, which matches no additional rows.
+ *
+ * @param conn The database connection.
+ * @param sql The statement, with "%s" where the IN list goes.
+ * @param ids The IDs.
+ * @param from The index of the first ID of the chunk.
+ * @param to The index after the last ID of the chunk; at most ID_CHUNK_SIZE after from.
+ * @return The statement, ready to run.
+ * @throws SQLException If the statement cannot be prepared.
+ */
+    private static PreparedStatement prepareWithIds(Connection conn, String sql, int[] ids, int from, int to) throws SQLException {
+        int slots = Math.min(ID_CHUNK_SIZE, Math.max(8, Integer.highestOneBit(to - from - 1) << 1));
+        PreparedStatement pstmt = conn.prepareStatement(sql.formatted(placeholders(slots)));
+        try {
+            for (int slot = 0; slot < slots; slot++) {
+                pstmt.setInt(slot + 1, ids[Math.min(from + slot, to - 1)]);
             }
+            return pstmt;
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
         }
     }
 
 /**
- * Searches for books by title.
- * This method allows for partial matches and returns a list of books that match the search criteria.
- * It demonstrates using prepared statements to prevent SQL injection and
- * ensure secure query execution.
+ * Searches for books by title, author name, ISBN or Dewey number.
+ * The search is answered by the in-memory {@link SearchIndex}, which is built from the database on the
+ * first search and kept in sync by insertBook, updateBook and deleteBooks afterwards.
+ * Only the best {@link SearchIndex#MAX_RESULTS} matching books are then read from the database, by BookID.
  *
- * @param title The title (or partial title) to search for.
- * @return An ObservableList of Book objects that match the search criteria.
+ * @param title The text (or partial text) to search for; every word must occur in the book.
+ * @return An ObservableList of Book objects that match the search criteria, best matches first.
  * Each book object contains details such as ID, title, ISBN, and author names,
  * making it possible to display comprehensive search results in the UI.
  *  */
+    @Override
     public ObservableList<Book> searchBooks(String title) {
-        ObservableList<Book> books = FXCollections.observableArrayList();
-        Connection conn = getConnection();
-        String sql = """
-        SELECT b.BookID, b.ISBN,b.DeweyDecimalSystemNumber, p.Title, CONCAT(a.FirstName, ' ', COALESCE(a.MiddleName, ''), ' ', a.LastName) AS AuthorName, 
-        p.PublicationDate, pb.NumberOfPages, pb.Language, pb.Genre
-        FROM Book b
-        JOIN Publication p ON b.PublicationID = p.PublicationID
-        LEFT JOIN BookAuthor ba ON b.BookID = ba.BookID
-        LEFT JOIN Author a ON ba.AuthorID = a.AuthorID
-        LEFT JOIN PhysicalBook pb ON b.BookID = pb.BookID
-        WHERE p.Title LIKE ?
-        """;
-        try (
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, "%" + title + "%"); // Use the title in the query
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                int id = rs.getInt("BookID");
-                String bookTitle = rs.getString("Title");
-                String isbn = rs.getString("ISBN");
-                String dewey = rs.getString("DeweyDecimalSystemNumber");
-                String authorName = rs.getString("AuthorName");
-                books.add(new Book(id, bookTitle, authorName, isbn, dewey, 123));
+        long start = System.nanoTime();
+        String query = String.join(" ", SearchIndex.tokenize(title));
+        try {
+            List<Book> books = readThrough(searchCache, query,
+                    () -> queryBooksByIds(getSearchIndex().search(query), SearchIndex.MAX_RESULTS));
+            searchBooksMetrics.success(start, books.size());
+            return FXCollections.observableArrayList(books);
+        } catch (SQLException e) {
+            searchBooksMetrics.failure(start);
+            LOG.log(Level.WARNING, "searchBooks failed query=" + query, e);
+            return FXCollections.observableArrayList();
+        }
+    }
+
+/**
+ * Retrieves the books with the given IDs, in the order the IDs are given.
+ * The IDs are looked up in chunks through the BookID primary key, so even long lists avoid a table scan.
+ *
+ * @param bookIds The IDs of the books to retrieve.
+ * @return An ObservableList of the books found, one row per book, in the order of bookIds; at most
+ *         {@link #MAX_BOOKS_BY_IDS} of them. Books that were deleted, or are not part of the catalog, are left out.
+ *         null if the books could not be read, so that this is not mistaken for books that no longer exist.
+ */
+    @Override
+    public ObservableList<Book> getBooksByIds(int[] bookIds) {
+        long start = System.nanoTime();
+        try {
+            List<Book> books = queryBooksByIds(bookIds, MAX_BOOKS_BY_IDS);
+            getBooksByIdsMetrics.success(start, books.size());
+            return FXCollections.observableArrayList(books);
+        } catch (SQLException e) {
+            getBooksByIdsMetrics.failure(start);
+            LOG.log(Level.WARNING, "getBooksByIds failed ids=" + bookIds.length, e);
+            return null;
+        }
+    }
+
+/**
+ * Reads books by ID, in the order of the given IDs, without going through the metrics.
+ * Unlike {@link #getBooksByIds(int[])}, a failure is thrown rather than reported as an empty list,
+ * so callers can tell books that no longer exist from books that could not be read.
+ * The IDs are read a chunk at a time on one connection, and reading stops once limit books have been found.
+ *
+ * @param bookIds The IDs of the books to read.
+ * @param limit The most books to read; the books of the first IDs are read.
+ * @return The books found, in the order of bookIds; at most limit of them.
+ * @throws SQLException If a query fails.
+ */
+    List<Book> queryBooksByIds(int[] bookIds, int limit) throws SQLException {
+        Map<Integer, Book> booksById = new HashMap<>();
+        int to = 0;
+        try (Connection conn = getConnection()) {
+            for (int from = 0; from < bookIds.length && booksById.size() < limit; from = to) {
+                to = Math.min(bookIds.length, from + Math.min(ID_CHUNK_SIZE, limit - booksById.size()));
+                try (PreparedStatement pstmt = prepareWithIds(conn, BOOKS_BY_IDS, bookIds, from, to);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Book book = readBook(rs);
+                        booksById.put(book.getId().intValue(), book);
+                    }
+                }
+            }
+        }
+        List<Book> books = new ArrayList<>(booksById.size());
+        for (int i = 0; i < to && books.size() < limit; i++) {
+            Book book = booksById.get(bookIds[i]);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return Collections.unmodifiableList(books);
+    }
+
+/**
+ * Returns the search index, building it from the database the first time it is needed.
+ * Changes committed while the index is being built are queued and replayed onto it before it is published,
+ * so no insert, update or delete is lost. The index is only published once the whole catalog has been read;
+ * if reading fails, nothing is published and the next call builds it again.
+ *
+ * @return The up-to-date search index.
+ * @throws SQLException If the catalog cannot be read.
+ */
+    SearchIndex getSearchIndex() throws SQLException {
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (searchIndexBuildLock) {
+            if (searchIndex != null) {
+                return searchIndex;
+            }
+            synchronized (searchIndexChangeLock) {
+                pendingIndexChanges = new ArrayList<>();
+            }
+            SearchIndex fresh = new SearchIndex();
+            String query = """
+    SELECT b.BookID, b.ISBN, b.DeweyDecimalSystemNumber, b.Version, p.Title, p.PublisherID, %s
+    FROM Book b
+    JOIN Publication p ON b.PublicationID = p.PublicationID
+    ORDER BY b.BookID
+    """.formatted(AUTHOR_NAMES_COLUMN);
+            try (Connection conn = getConnection();
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery(query)) {
+                    while (rs.next()) {
+                        fresh.put(readBook(rs));
+                    }
+                }
+            } catch (SQLException e) {
+                synchronized (searchIndexChangeLock) {
+                    pendingIndexChanges = null; // The next build reads these changes from the database
+                }
+                throw e;
+            }
+            synchronized (searchIndexChangeLock) {
+                for (Consumer<SearchIndex> change : pendingIndexChanges) {
+                    change.accept(fresh);
+                }
+                pendingIndexChanges = null;
+                searchIndex = fresh;
+            }
+            LOG.log(Level.INFO, "Search index built books=" + fresh.size());
+            return fresh;
+        }
+    }
+
+/**
+ * Applies a committed change to the search index, or queues it if the index is being built.
+ * Changes made before the index is first needed are ignored, as the build reads them from the database.
+ *
+ * @param change The change to apply to the index.
+ */
+    private void updateSearchIndex(Consumer<SearchIndex> change) {
+        synchronized (searchIndexChangeLock) {
+            if (searchIndex != null) {
+                change.accept(searchIndex);
+            } else if (pendingIndexChanges != null) {
+                pendingIndexChanges.add(change);
+            }
+        }
+    }
+
+/**
+ * Gets the resolver that maps author names to AuthorIDs.
+ *
+ * @return The shared author resolver.
+ */
+    AuthorResolver getAuthorResolver() {
+        return authorResolver;
+    }
+
+/**
+ * Brings the search index and caches up to date after a book has been inserted and its transaction committed,
+ * whether by insertBook or by the bulk importer, and publishes the insert.
+ *
+ * @param book The new book.
+ */
+    void bookInserted(Book book) {
+        forgetInserted(book);
+        events.publish(new CatalogEvent.BookInserted(book, false));
+    }
+
+    private void forgetInserted(Book book) {
+        updateSearchIndex(index -> index.put(book));
+        catalogCache.invalidateAll();
+        searchCache.invalidateIf((query, results) -> SearchIndex.matches(book, query));
+    }
+
+/**
+ * Brings the search index and caches up to date after a book has been changed and the change committed,
+ * and publishes the update.
+ *
+ * @param book The book as it is now.
+ */
+    private void bookUpdated(Book book) {
+        forgetUpdated(book);
+        events.publish(new CatalogEvent.BookUpdated(book, false));
+    }
+
+    private void forgetUpdated(Book book) {
+        int bookId = book.getId().intValue();
+        updateSearchIndex(index -> index.put(book));
+        catalogCache.invalidateAll();
+        searchCache.invalidateIf((query, results) -> containsBook(results, bookId) || SearchIndex.matches(book, query));
+    }
+
+/**
+ * Brings the search index and caches up to date after books have been deleted and the deletion committed,
+ * and publishes each deletion.
+ *
+ * @param bookIds The IDs of the deleted books, in ascending order.
+ */
+    private void booksDeleted(int[] bookIds) {
+        forgetDeleted(bookIds);
+        for (int bookId : bookIds) {
+            events.publish(new CatalogEvent.BookDeleted(bookId, false));
+        }
+    }
+
+/**
+ * Brings the search index and caches up to date with changes other application instances made,
+ * as published by the outbox poller. Runs on the subscription's thread.
+ *
+ * @param batch The events published since the previous batch.
+ */
+    private void remoteChanges(List<CatalogEvent> batch) {
+        List<Integer> deleted = new ArrayList<>();
+        for (CatalogEvent event : batch) {
+            if (!event.remote()) {
+                continue;
+            }
+            if (event instanceof CatalogEvent.BookInserted inserted) {
+                forgetInserted(inserted.book());
+            } else if (event instanceof CatalogEvent.BookUpdated updated) {
+                forgetUpdated(updated.book());
+            } else {
+                deleted.add(event.bookId());
             }
+        }
+        if (!deleted.isEmpty()) {
+            forgetDeleted(deleted.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+    }
+
+    // Each cache is scanned once for all the books
+    private void forgetDeleted(int[] bookIds) {
+        updateSearchIndex(index -> {
+            for (int bookId : bookIds) {
+                index.remove(bookId);
+            }
+        });
+        catalogCache.invalidateAll();
+        searchCache.invalidateIf((query, results) -> {
+            for (Book book : results) {
+                if (Arrays.binarySearch(bookIds, book.getId().intValue()) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private static boolean containsBook(List<Book> books, int bookId) {
+        for (Book book : books) {
+            if (book.getId().intValue() == bookId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+/**
+ * Describes the hit and miss statistics of every query cache and of the prepared statement cache, one cache per line.
+ *
+ * @return The cache statistics as text.
+ */
+    public String getCacheStatistics() {
+        return String.join(System.lineSeparator(), "publishers: " + publisherRegistry.size(), catalogCache.toString(),
+                searchCache.toString(),
+                "authors: " + authorResolver.getHits() + " hits, " + authorResolver.getMisses() + " misses",
+                "statements: " + pool.getStatementCacheHits() + " hits, " + pool.getStatementCacheMisses() + " misses, "
+                        + pool.getStatementCacheEvictions() + " evicted");
+    }
+
+/**
+ * Reads a value through a cache, turning a failed query back into its SQLException.
+ * Failed queries are never cached, so the next call tries the database again.
+ */
+    private static <K, V> V readThrough(QueryCache<K, V> cache, K key, SqlQuery<V> query) throws SQLException {
+        try {
+            return cache.get(key, () -> {
+                try {
+                    return query.run();
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            });
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+/**
+ * Rolls back the transaction of a failed operation, if it got as far as borrowing a connection.
+ *
+ * @param conn The operation's connection, or null.
+ * @param operation The metrics of the operation, which count the rollback.
+ */
+    private static void rollback(Connection conn, OperationMetrics operation) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.rollback(); // Rollback on error
+            operation.rollback();
+            if (LOG.isLoggable(Level.DEBUG)) {
+                LOG.log(Level.DEBUG, operation.getName() + " rolled back");
+            }
+        } catch (SQLException ex) {
+            LOG.log(Level.WARNING, operation.getName() + " rollback failed", ex);
+        }
+    }
+
+/**
+ * Returns the connection of an operation to the pool, if it got as far as borrowing one.
+ * The pool rolls back a transaction left open and restores auto-commit, so nothing needs resetting first.
+ *
+ * @param conn The operation's connection, or null.
+ */
+    private static void giveBack(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
         } catch (SQLException e) {
-            System.out.println("Search failed: " + e.getMessage());
+            LOG.log(Level.WARNING, "Error returning connection", e);
         }
-        return books;
+    }
+
+/**
+ * Builds a comma-separated list of JDBC parameter placeholders.
+ *
+ * @param count The number of placeholders.
+ * @return A string such as "?, ?, ?".
+ */
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
 /**
  * Retrieves all books from the database.
  * This method fetches detailed information about each book, including its publication details,
- * author(s), and physical book attributes like number of pages and genre. It is used to populate
- * the initial list of books in the UI or refresh the list after updates to the database.
+ * author(s), and physical book attributes like number of pages and genre. Because it loads the whole
+ * catalog into memory, the UI lists books through {@link #getBookIds()} and {@link #getBooksByIds(int[])}
+ * instead, and this method is kept for callers that really need every book at once.
  *
  * @return An ObservableList containing Book objects for all books in the database.
  * The list may be empty if no books are found or in case of a database access error.
  */
+    @Override
     public ObservableList<Book> getBooks() {
-        ObservableList<Book> books = FXCollections.observableArrayList();
-        Connection conn = getConnection();
-        String query = """
-    SELECT b.BookID, b.ISBN, b.DeweyDecimalSystemNumber, p.Title, CONCAT(a.FirstName, ' ', COALESCE(a.MiddleName, ''), ' ', a.LastName) AS AuthorName, p.PublicationDate, pb.NumberOfPages, pb.Language, pb.Genre
-    FROM Book b
-    JOIN Publication p ON b.PublicationID = p.PublicationID
-    JOIN BookAuthor ba ON b.BookID = ba.BookID
-    JOIN Author a ON ba.AuthorID = a.AuthorID
-    JOIN PhysicalBook pb ON b.BookID = pb.BookID
-    """;
-
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            while (rs.next()) {
-                int id = rs.getInt("BookID");
-                String title = rs.getString("Title");
-                String authorName = rs.getString("AuthorName");
-                String isbn = rs.getString("ISBN");
-                String dewey = rs.getString("DeweyDecimalSystemNumber");
-                authorName = authorName != null ? authorName : "null";
-                books.add(new Book(id, title, authorName, isbn, dewey, 1)); // Adjust constructor call as necessary
+        long start = System.nanoTime();
+        try {
+            List<Book> catalog = readThrough(catalogCache, "catalog", () -> {
+                List<Book> books = new ArrayList<>();
+                if (!forEachBook(books::add)) {
+                    throw new SQLException("Reading the catalog failed.");
+                }
+                return Collections.unmodifiableList(books);
+            });
+            getBooksMetrics.success(start, catalog.size());
+            return FXCollections.observableArrayList(catalog);
+        } catch (SQLException e) {
+            getBooksMetrics.failure(start);
+            LOG.log(Level.WARNING, "getBooks failed", e);
+            return FXCollections.observableArrayList();
+        }
+    }
+
+/**
+ * Streams every book in the catalog to the given consumer, ordered by BookID.
+ * Rows are read from the driver in batches of the configured fetch size and handed over one at a time,
+ * so the catalog is never held in memory as a whole unless the consumer keeps it.
+ *
+ * @param consumer Receives each book as it is read.
+ * @return true if the whole catalog was streamed; false if a database access error stopped it.
+ */
+    @Override
+    public boolean forEachBook(Consumer<Book> consumer) {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery(CATALOG_QUERY)) {
+                while (rs.next()) {
+                    consumer.accept(readBook(rs));
+                    rows++;
+                }
+            }
+            forEachBookMetrics.success(start, rows);
+            return true;
+        } catch (SQLException e) {
+            forEachBookMetrics.failure(start);
+            LOG.log(Level.WARNING, "forEachBook failed after rows=" + rows, e);
+            return false;
+        }
+    }
+
+/**
+ * Reads the ID of every book of the catalog, for a list that shows the whole catalog but fetches its books
+ * page by page. The same books are listed as by {@link #forEachBook} and found by {@link #getBooksByIds}.
+ *
+ * @return The BookIDs, in ascending order; null in case of a database access error.
+ */
+    @Override
+    public int[] getBookIds() {
+        long start = System.nanoTime();
+        int[] bookIds = new int[1024];
+        int count = 0;
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery(BOOK_IDS)) {
+                while (rs.next()) {
+                    if (count == bookIds.length) {
+                        bookIds = Arrays.copyOf(bookIds, count * 2);
+                    }
+                    bookIds[count++] = rs.getInt(1);
+                }
             }
+            getBookIdsMetrics.success(start, count);
+            return Arrays.copyOf(bookIds, count);
         } catch (SQLException e) {
-            e.printStackTrace();
+            getBookIdsMetrics.failure(start);
+            LOG.log(Level.WARNING, "getBookIds failed after rows=" + count, e);
+            return null;
+        }
+    }
+
+/**
+ * Reads the version of every book, ordered by BookID, for a local replica to find the books that changed.
+ * Only the key and the version are read, a fraction of what reading the books themselves costs; the books are those
+ * {@link #getBookIds()} lists, so a book the catalog does not show is never reported as changed again and again.
+ *
+ * @return Each book as its BookID in the high and its version in the low 32 bits; null in case of a database access error.
+ */
+    public long[] getBookVersions() {
+        long start = System.nanoTime();
+        long[] versions = new long[1024];
+        int count = 0;
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery(BOOK_VERSIONS)) {
+                while (rs.next()) {
+                    if (count == versions.length) {
+                        versions = Arrays.copyOf(versions, count * 2);
+                    }
+                    versions[count++] = (long) rs.getInt(1) << 32 | (rs.getInt(2) & 0xFFFFFFFFL);
+                }
+            }
+            getBookVersionsMetrics.success(start, count);
+            return Arrays.copyOf(versions, count);
+        } catch (SQLException e) {
+            getBookVersionsMetrics.failure(start);
+            LOG.log(Level.WARNING, "getBookVersions failed after rows=" + count, e);
+            return null;
+        }
+    }
+
+/**
+ * Gets how many rows the driver fetches from the server per round-trip when streaming books.
+ *
+ * @return The number of rows per fetch.
+ */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+/**
+ * Sets how many rows the driver fetches from the server per round-trip when streaming books.
+ *
+ * @param fetchSize The number of rows per fetch; must be positive.
+ */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be positive");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+/**
+ * Reads one book, on the caller's connection.
+ *
+ * @param conn The database connection.
+ * @param bookId The ID of the book.
+ * @return The book, or null if it does not exist.
+ * @throws SQLException If the query fails.
+ */
+    private Book queryBook(Connection conn, int bookId) throws SQLException {
+        try (PreparedStatement pstmt = prepareWithIds(conn, BOOKS_BY_IDS, new int[] {bookId}, 0, 1);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? readBook(rs) : null;
+        }
+    }
+
+/**
+ * Builds a Book from the current row of a book listing query.
+ *
+ * @param rs A result set positioned on a row with BookID, Title, AuthorName, ISBN, DeweyDecimalSystemNumber,
+ *           PublisherID and Version columns.
+ * @return The Book for that row.
+ * @throws SQLException If a column cannot be read.
+ */
+    private Book readBook(ResultSet rs) throws SQLException {
+        int id = rs.getInt("BookID");
+        String title = rs.getString("Title");
+        String authorName = rs.getString("AuthorName");
+        String isbn = rs.getString("ISBN");
+        String dewey = rs.getString("DeweyDecimalSystemNumber");
+        int publisherId = rs.getInt("PublisherID");
+        int version = rs.getInt("Version");
+        authorName = authorName != null ? authorName : "null";
+        return new Book(id, title, authorName, isbn, dewey, publisherId, version);
+    }
+
+    // A query that may fail with an SQLException, used to load cache entries
+    private interface SqlQuery<V> {
+        V run() throws SQLException;
+    }
+
+    // Carries an SQLException out of a cache loader
+    private static final class UncheckedSQLException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedSQLException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
         }
-        return books;
     }
 }
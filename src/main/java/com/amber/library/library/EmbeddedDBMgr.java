@@ -0,0 +1,79 @@
+package com.amber.library.library;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps the catalog in an embedded H2 database file instead of on a MySQL server, so that a single-branch
+ * installation needs no database server and starts without a network round-trip.
+ * H2 runs in MySQL compatibility mode, so every query, transaction and migration of {@link DBMgr} is reused unchanged;
+ * reads are answered in-process, and from DBMgr's caches without touching the file at all.
+ * The database is created with its schema on first use, seeded with a list of publishers to choose from, and stays
+ * open until {@link #close()}. Only one application instance can open the file at a time.
+ */
+public class EmbeddedDBMgr extends DBMgr {
+
+    private static final System.Logger LOG = System.getLogger(EmbeddedDBMgr.class.getName());
+    // Inserts the publishers a new catalog starts with
+    private static final String SEED_PUBLISHERS = "/db-seed/publishers.sql";
+
+/**
+ * Opens, or creates, the embedded database at the given path.
+ *
+ * @param path The database file without its .mv.db extension; missing directories are created.
+ */
+    public EmbeddedDBMgr(Path path) {
+        this(path, Files.notExists(path.resolveSibling(path.getFileName() + ".mv.db")));
+    }
+
+    private EmbeddedDBMgr(Path path, boolean created) {
+        // DB_CLOSE_DELAY=-1 keeps the database open while the pool has no connection, until close() shuts it down
+        super(loadDriver("org.h2.Driver", "jdbc:h2:file:" + path.toAbsolutePath() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"),
+                "sa", "");
+        if (created) {
+            seedPublishers();
+        }
+    }
+
+/**
+ * Inserts the publishers a new catalog starts with, since a book cannot be saved without one.
+ * A failure is logged and leaves the catalog without publishers, to be added with SQL.
+ */
+    private void seedPublishers() {
+        try (InputStream in = EmbeddedDBMgr.class.getResourceAsStream(SEED_PUBLISHERS);
+             Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            if (in == null) {
+                throw new IOException("Seed script " + SEED_PUBLISHERS + " not found");
+            }
+            conn.setAutoCommit(true);
+            for (String sql : SchemaMigrator.statements(new String(in.readAllBytes(), StandardCharsets.UTF_8))) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException | IOException e) {
+            LOG.log(Level.WARNING, "Seeding the publishers of the new catalog failed", e);
+        }
+    }
+
+/**
+ * Shuts the embedded database down, writing it to disk, then closes the connection pool.
+ */
+    @Override
+    public void close() {
+        awaitPlanCheck();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Shutting down the embedded database failed", e);
+        }
+        super.close();
+    }
+}
@@ -6,6 +6,10 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 
 /**
  * The main class for the Library Application.
@@ -14,6 +18,15 @@ import java.io.IOException;
  * Written by Amber Hasan (amh130430) for CS 6360.MS1, starting on 3/1/2024.
  */
 public class LibraryApplication extends Application {
+
+    private static final System.Logger LOG = System.getLogger(LibraryApplication.class.getName());
+    // Set -Dlibrary.metrics.port=9400 to serve metrics over HTTP, -Dlibrary.metrics.file=metrics.json to write them on exit
+    private static final String METRICS_PORT_PROPERTY = "library.metrics.port";
+    private static final String METRICS_FILE_PROPERTY = "library.metrics.file";
+
+    // When the process was launched, as a System.nanoTime() value, so that startup is timed from the launch
+    private static final long LAUNCH_NANOS = launchNanos();
+
     /**
      * Starts the JavaFX application by setting up the primary stage.
      * This method loads the FXML layout for the initial view of the application, sets the scene on the primary stage,
@@ -33,8 +46,61 @@ public class LibraryApplication extends Application {
         // Set the scene on the primary stage to display the loaded FXML layout
         stage.setScene(scene);
 
-        // Display the primary stage
+        // Display the primary stage; the catalog is still being opened in the background
         stage.show();
+        RenderTimer.recordAfterNextPulse(scene.getRoot(), Metrics.getInstance().operation("startup.firstFrame"), LAUNCH_NANOS, 0);
+
+        startMetricsServer();
+    }
+
+    /**
+     * Gets when the process was launched, falling back to when this class was loaded if the platform does not tell.
+     *
+     * @return The launch time as a System.nanoTime() value.
+     */
+    static long getLaunchNanos() {
+        return LAUNCH_NANOS;
+    }
+
+    private static long launchNanos() {
+        long now = System.nanoTime();
+        return ProcessHandle.current().info().startInstant()
+                .map(started -> now - Duration.between(started, Instant.now()).toNanos())
+                .orElse(now);
+    }
+
+    /**
+     * Serves the application's metrics on localhost when a port is configured.
+     */
+    private void startMetricsServer() {
+        String port = System.getProperty(METRICS_PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        try {
+            Metrics.getInstance().startServer(Integer.parseInt(port));
+        } catch (IOException | NumberFormatException e) {
+            LOG.log(Level.WARNING, "Metrics server not started on port " + port, e);
+        }
+    }
+
+    /**
+     * Releases the database connection pool when the application window is closed,
+     * and writes the metrics to a file if one is configured.
+     */
+    @Override
+    public void stop() {
+        DBMgr.closeInstance();
+        Metrics metrics = Metrics.getInstance();
+        metrics.stopServer();
+        String file = System.getProperty(METRICS_FILE_PROPERTY);
+        if (file != null) {
+            try {
+                metrics.writeTo(Path.of(file));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Writing metrics to " + file + " failed", e);
+            }
+        }
     }
 
     public static void main(String[] args) {
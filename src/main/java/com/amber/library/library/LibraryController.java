@@ -2,7 +2,7 @@
  * LibraryController for Library Application.
  *
  * This class controls the GUI for a library management system, allowing the user to manage books and publishers.
- * It provides functionalities to add, delete, and search for books, as well as to clear input fields and refresh the books list.
+ * It provides functionalities to add, delete (one or many at once), and search for books, as well as to clear input fields and refresh the books list.
  * The GUI elements are defined in FXML and this controller binds the data to these elements and handles user interactions.
  *
  * Written by Amber Hasan (amh130430) for CS 6360.MS1, starting on 3/1/2024.
@@ -14,16 +14,30 @@
 
 package com.amber.library.library;
 
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.StringConverter;
+
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class LibraryController {
 
     // GUI component bindings
     @FXML
-    private TableColumn<String, Number> authorsColumn;
+    private TableColumn<Book, String> authorsColumn;
 
     @FXML
     private TextField authorsTextField;
@@ -35,7 +49,7 @@ public class LibraryController {
     private TextField deweyTextField;
 
     @FXML
-    private TableColumn<Book, Number> isbnColumn;
+    private TableColumn<Book, String> isbnColumn;
 
     @FXML
     private TextField isbnTextField;
@@ -49,19 +63,91 @@ public class LibraryController {
     @FXML
     private TextField titleTextField;
 
-    // Database manager instance for DB operations
-    private final DBMgr dbMgr;
-    private ObservableList<Book> books;
+    private static final System.Logger LOG = System.getLogger(LibraryController.class.getName());
+
+    // Time from a user action to the frame showing its result
+    private final OperationMetrics saveMetrics = Metrics.getInstance().operation("ui.save");
+    private final OperationMetrics deleteMetrics = Metrics.getInstance().operation("ui.delete");
+    private final OperationMetrics loadPageMetrics = Metrics.getInstance().operation("ui.loadPage");
+    // Time from the launch until the catalog is open, and until the first page of books is shown
+    private final OperationMetrics openCatalogMetrics = Metrics.getInstance().operation("startup.openCatalog");
+    private final OperationMetrics firstPageMetrics = Metrics.getInstance().operation("startup.firstPage");
+
+    // Maximum number of publishers offered in the publisher box for the text typed so far
+    private static final int PUBLISHER_SUGGESTIONS = 200;
+
+    // Asynchronous facade over the configured catalog backend, used by every UI handler
+    private final AsyncDBMgr asyncDb;
+    // The whole catalog in BookID order, its books fetched as they are scrolled into view; null until its IDs are read
+    private VirtualBookList catalog;
+    // The whole catalog stored column by column, read in full the first time it is sorted and kept up to date
+    // afterwards; null until then. sortedBy is the order it was last sorted in.
+    private CatalogSnapshot sortedCatalog;
+    private List<CatalogSnapshot.SortKey> sortedBy = List.of();
+    private boolean sortedCatalogPending;
+    // The changes made while the sorted catalog is being read, applied to it once it has been read
+    private final List<Consumer<CatalogSnapshot>> sortedCatalogBacklog = new ArrayList<>();
+    // Counts the reads of the catalog's IDs, so that only the latest one is shown
+    private int catalogRequests;
+    // Set once the first page of books has been shown since the launch
+    private boolean firstPageShown;
     private  String mode = "Insert";
-    ObservableList<Publisher> publisherList;
+    // Every publisher, by ID and name; null until the publishers have been loaded
+    private PublisherRegistry publishers;
     private Book bookToUpdate;
+    private LiveSearch liveSearch;
+    // Set while the form is filled in by code, so that filling in the title does not start a search
+    private boolean fillingForm;
 
 
     /**
-     * Constructor initializes the database manager.
+     * Constructor starts opening the catalog backend chosen by the configuration in the background,
+     * so that the window is shown at once; the publishers and the first page are fetched as soon as it is open.
+     * Once it is open, changes made by other application instances are shown as they arrive; if it cannot be opened,
+     * for example because the catalog must be corrected before its schema can be upgraded, the reason is shown
+     * and the application quits.
      */
     public LibraryController() {
-        dbMgr = DBMgr.getInstance();
+        asyncDb = new AsyncDBMgr(DBMgr::getRepository);
+        asyncDb.getRepository().whenComplete((repository, ex) -> {
+            if (ex == null) {
+                openCatalogMetrics.success(LibraryApplication.getLaunchNanos(), 0);
+                asyncDb.submit(() -> repository.getEvents().subscribe("ui", this::remoteChanges));
+            } else {
+                openCatalogMetrics.failure(LibraryApplication.getLaunchNanos());
+                // Without its catalog the application has nothing to show, so it tells why and quits
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                LOG.log(Level.ERROR, "Opening the catalog failed", cause);
+                Platform.runLater(() -> {
+                    showAlert("Cannot open the catalog", cause.getMessage(), true);
+                    Platform.exit();
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows the books other application instances inserted, updated or deleted. Changes made here are left out,
+     * as they are shown when their operation completes.
+     *
+     * @param batch The events published since the previous batch, on the event bus's thread.
+     */
+    private void remoteChanges(List<CatalogEvent> batch) {
+        List<CatalogEvent> remote = batch.stream().filter(CatalogEvent::remote).toList();
+        if (remote.isEmpty()) {
+            return;
+        }
+        Platform.runLater(() -> {
+            for (CatalogEvent event : remote) {
+                if (event instanceof CatalogEvent.BookInserted inserted) {
+                    bookAdded(inserted.book());
+                } else if (event instanceof CatalogEvent.BookUpdated updated) {
+                    bookReplaced(updated.book());
+                } else {
+                    booksRemoved(List.of(event.bookId()));
+                }
+            }
+        });
     }
 
     /**
@@ -71,20 +157,74 @@ public class LibraryController {
     private void initialize() {
         initializePublishers();
         initializeTableView();
+        initializeLiveSearch();
+    }
+
+    /**
+     * Searches as the user types in the titleTextField, showing the whole catalog again when it is emptied.
+     */
+    private void initializeLiveSearch() {
+        liveSearch = new LiveSearch(asyncDb, booksTableView, booksTableView::setItems, this::showCatalog);
+        titleTextField.textProperty().addListener((observable, oldText, newText) -> {
+            if (!fillingForm) {
+                liveSearch.queryChanged(newText);
+            }
+        });
     }
 
     /**
-     * Fetches and displays the list of publishers in the publisherComboBox.
+     * Fetches the publishers and lets the user pick one in the publisherComboBox by typing part of its name.
      */
     public void initializePublishers() {
-        try {
+        publisherComboBox.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Publisher publisher) {
+                return publisher == null ? "" : publisher.getName();
+            }
 
-            publisherList = dbMgr.getPublishers();
-            publisherComboBox.setItems(publisherList);
-        } catch (Exception ex) {
-            System.out.println("initializePublishers failed " + ex.getMessage());
-        }
+            @Override
+            public Publisher fromString(String name) {
+                return publishers == null ? null : publishers.findByExactName(name);
+            }
+        });
+        publisherComboBox.getEditor().textProperty().addListener((observable, oldText, newText) -> {
+            Publisher selected = publisherComboBox.getValue();
+            if (publishers == null || (selected != null && newText.equals(publisherComboBox.getConverter().toString(selected)))) {
+                return; // Still loading, or the text was set by choosing a publisher
+            }
+            suggestPublishers(newText);
+            if (publisherComboBox.getEditor().isFocused() && !publisherComboBox.isShowing()) {
+                publisherComboBox.show();
+            }
+        });
+        // Publishers added elsewhere since the last refresh are read each time the list is opened
+        publisherComboBox.setOnShowing(event -> {
+            if (publishers != null) {
+                int known = publishers.size();
+                AsyncDBMgr.onFxThread(asyncDb.refreshPublishers(), registry -> {
+                    if (registry.size() != known) {
+                        suggestPublishers(publisherComboBox.getEditor().getText());
+                    }
+                }, ex -> LOG.log(Level.WARNING, "Refreshing publishers failed", ex));
+            }
+        });
+        AsyncDBMgr.onFxThread(asyncDb.refreshPublishers(), registry -> {
+            publishers = registry;
+            suggestPublishers("");
+            publisherComboBox.setPromptText("Type or select a publisher");
+        }, ex -> {
+            publisherComboBox.setPromptText("Publishers could not be loaded");
+            LOG.log(Level.WARNING, "initializePublishers failed", ex);
+        });
+    }
 
+    /**
+     * Offers the publishers matching the text typed in the publisherComboBox, those starting with it first.
+     *
+     * @param text The text typed so far.
+     */
+    private void suggestPublishers(String text) {
+        publisherComboBox.setItems(FXCollections.observableArrayList(publishers.findByName(text, PUBLISHER_SUGGESTIONS)));
     }
 
     /**
@@ -94,12 +234,10 @@ public class LibraryController {
      * @return The Publisher object if found, null otherwise.
      */
     public Publisher getPublisher(int id){
-        for (Publisher publisher : publisherList) {
-            if (publisher.getId() == id) {
-                return publisher;
-            }
+        if (publishers == null) {
+            return null; // Publishers are still loading
         }
-        return null;
+        return publishers.get(id);
     }
 
     /**
@@ -107,9 +245,11 @@ public class LibraryController {
      */
     @FXML
     void onClear() {
-        System.out.println("onClear");
+        LOG.log(Level.DEBUG, "onClear");
         // Clear text fields
+        fillingForm = true;
         titleTextField.setText("");
+        fillingForm = false;
         authorsTextField.setText("");
         isbnTextField.setText("");
         deweyTextField.setText("");
@@ -120,35 +260,53 @@ public class LibraryController {
     }
 
     /**
-     * Deletes the selected book from the database and updates the books list.
+     * Deletes the selected books from the database in one transaction and removes them from the books list.
      */
     @FXML
     void onDelete() {
-        Book selectedBook = booksTableView.getSelectionModel().getSelectedItem();
-        if (selectedBook != null) {
-            boolean isDeleted = DBMgr.getInstance().deleteBookAndReferences((Integer) selectedBook.getId());
-            if (isDeleted) {
-                // Make sure books is not null before attempting to remove from it
-                if (books != null) {
-                    books.remove(selectedBook);
-                }
-                showAlert("Success", "Book deleted successfully.", false);
+        List<Integer> bookIds = new ArrayList<>();
+        ObservableList<Book> items = booksTableView.getItems();
+        for (int index : booksTableView.getSelectionModel().getSelectedIndices()) {
+            // Selected rows of the catalog that have not been fetched yet are deleted by ID all the same
+            if (items == catalog) {
+                bookIds.add(catalog.getBookId(index));
             } else {
-                showAlert("Error", "Failed to delete the book from the database.", true);
+                bookIds.add(items.get(index).getId().intValue());
             }
-        } else {
+        }
+        if (bookIds.isEmpty()) {
             showAlert("Error", "Please select a book to delete.", true);
+            return;
         }
-        refreshBooks();
-        onClear();
+        long start = System.nanoTime();
+        AsyncDBMgr.onFxThread(asyncDb.deleteBooks(bookIds), deletedIds -> {
+            if (!deletedIds.isEmpty()) {
+                booksRemoved(deletedIds);
+                RenderTimer.recordAfterNextPulse(booksTableView, deleteMetrics, start, deletedIds.size());
+                showAlert("Success", deletedIds.size() == 1 ? "Book deleted successfully."
+                        : deletedIds.size() + " books deleted successfully.", false);
+            } else {
+                deleteMetrics.failure(start);
+                showAlert("Error", bookIds.size() == 1 ? "Failed to delete the book from the database."
+                        : "Failed to delete the books from the database.", true);
+            }
+            onClear();
+        }, ex -> {
+            deleteMetrics.failure(start);
+            showAlert("Error", "Failed to delete the books from the database.", true);
+        });
     }
 
     /**
-     * Deletes the selected book from the database and updates the books list.
+     * Saves the form: as a new book in Insert mode, or as the new values of the book being edited in Update mode.
+     * The fields are validated first, and every problem found is shown at once. An update is based on the version
+     * of the book that was read into the form; if another user changed or deleted the book since, nothing is saved
+     * and the book is shown as it is now. The books list shows the saved book once the database has it.
      */
     @FXML
     void onSave() {
-        System.out.println("onSave");
+        LOG.log(Level.DEBUG, "onSave");
+        long start = System.nanoTime();
         try {
             // Collect input values
             String title = titleTextField.getText().trim();
@@ -157,53 +315,48 @@ public class LibraryController {
             String dewey = deweyTextField.getText().trim();
             Publisher publisher = publisherComboBox.getValue();
 
-            StringBuilder errors = new StringBuilder();
-            String validationResult = null;
-
-            validationResult = Validator.validateNotEmpty(title, "Title");
-            if (validationResult != null) errors.append(validationResult).append("\n");
-
-            validationResult = Validator.validateTitleAlphanumeric(title);
-            if (validationResult != null) errors.append(validationResult).append("\n");
-
-            validationResult = Validator.validateNotEmpty(authorName, "Author Name");
-            if (validationResult != null) errors.append(validationResult).append("\n");
-
-            validationResult = Validator.validateISBN(isbn);
-            if (validationResult != null) errors.append(validationResult).append("\n");
-
-            validationResult = Validator.validateDewey(dewey);
-            if (validationResult != null) errors.append(validationResult).append("\n");
-
-            if (publisher == null) errors.append("Publisher must be selected.\n");
-
-            // Check if there were any errors
-            if (!errors.isEmpty()) {
-                showAlert("Validation Error", errors.toString(), true);
+            int errors = ValidationEngine.checkBook(title, authorName, isbn, dewey);
+            if (publisher == null) {
+                errors |= ValidationError.PUBLISHER_MISSING.bit();
+            }
+            if (errors != 0) {
+                showAlert("Validation Error", ValidationError.describe(errors, "\n"), true);
                 return; // Exit the method if validation fails
             }
-
-            if(mode.equals("Update")){
-                if (dbMgr.updateBook(title, bookToUpdate)) {
-                    showAlert("Success", "Data updated successfully.", false);
-                    booksTableView.setItems(getBooks()); // Refresh the TableView
+            // Saved as an ISBN-13 whichever form was typed, so the list shows what the database holds
+            isbn = ValidationEngine.normalizeIsbn(isbn);
+
+            boolean updating = mode.equals("Update");
+            CompletableFuture<Book> saved = updating
+                    ? asyncDb.updateBook(bookToUpdate, new Book(bookToUpdate.getId(), title, authorName, isbn, dewey,
+                            publisher.getId(), bookToUpdate.getVersion()))
+                    : asyncDb.insertBook(title, authorName, isbn, dewey, publisher.getId(), 100, "English", "Genre");
+            AsyncDBMgr.onFxThread(saved, savedBook -> {
+                if (savedBook != null) {
+                    if (updating) {
+                        bookReplaced(savedBook);
+                    } else {
+                        bookAdded(savedBook);
+                    }
+                    RenderTimer.recordAfterNextPulse(booksTableView, saveMetrics, start, 1);
+                    showAlert("Success", updating ? "Data updated successfully." : "Data saved successfully.", false);
+                    onClear();
                 } else {
+                    saveMetrics.failure(start);
                     showAlert("Failed", "Data not saved successfully.", true);
                 }
-
-            }else{
-                if (dbMgr.insertBook(title, authorName, isbn, dewey, publisher.getId(), 100, "English", "Genre")) {
-                    showAlert("Success", "Data saved successfully.", false);
-                    booksTableView.setItems(getBooks()); // Refresh the TableView
+            }, ex -> {
+                saveMetrics.failure(start);
+                if (ex instanceof StaleBookException stale) {
+                    bookChangedElsewhere(stale);
                 } else {
                     showAlert("Failed", "Data not saved successfully.", true);
                 }
-            }
-            onClear();
+            });
         } catch (Exception ex) {
-            System.out.println("onSave failed " + ex.getMessage());
+            saveMetrics.failure(start);
+            LOG.log(Level.WARNING, "onSave failed", ex);
         }
-        refreshBooks();
     }
 
     /**
@@ -215,8 +368,7 @@ public class LibraryController {
         if(searchQuery.isEmpty()){
             initializeTableView();
         }else{
-            ObservableList<Book> searchResults = dbMgr.searchBooks(searchQuery);
-            booksTableView.setItems(searchResults);
+            liveSearch.searchNow(searchQuery);
         }
 
     }
@@ -238,48 +390,328 @@ public class LibraryController {
 
     /**
      * Initializes and populates the TableView with books.
+     * Each column shows its field through a typed getter in cells that the TableView recycles as it scrolls.
      */
     public void initializeTableView() {
-        titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
-        isbnColumn.setCellValueFactory(new PropertyValueFactory<>("isbn"));
-        authorsColumn.setCellValueFactory(new PropertyValueFactory<>("authors"));
+        titleColumn.setCellFactory(BookCell.forColumn(Book::getTitle));
+        isbnColumn.setCellFactory(BookCell.forColumn(Book::getIsbn));
+        authorsColumn.setCellFactory(BookCell.forColumn(Book::getAuthors));
+        // The catalog is sorted by reordering the rows of the sorted catalog; search results are sorted in place
+        booksTableView.setSortPolicy(table -> {
+            if (table.getItems() == catalog || table.getItems() == sortedCatalog) {
+                sortCatalog();
+            } else if (!table.getSortOrder().isEmpty()) {
+                FXCollections.sort(table.getItems(), bookComparator(table.getSortOrder()));
+            }
+            return true;
+        });
+        // Several books can be selected with Shift or Ctrl and deleted together
+        booksTableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
-        // Add books to the table view
-        booksTableView.setItems(getBooks());
+        // Show the whole catalog; its books are fetched as they are scrolled into view
+        refreshBooks();
 
         booksTableView.setRowFactory(tv -> {
             TableRow<Book> row = new TableRow<>();
             row.setOnMouseClicked(event -> {
-                if (event.getClickCount() == 1 && (!row.isEmpty())) {
+                // A row whose book is still being fetched has no item yet
+                if (event.getClickCount() == 1 && !row.isEmpty() && row.getItem() != null) {
                     Book bookData = row.getItem();
-                    bookToUpdate = bookData;
-                    System.out.println("Single click on: " + bookData);
-                    mode = "Update";
-                    titleTextField.setText(bookData.getTitle());
-                    authorsTextField.setText(bookData.getAuthors());
-                    isbnTextField.setText(bookData.getIsbn());
-                    deweyTextField.setText(""+bookData.getDewey());
-                    publisherComboBox.setValue(getPublisher(bookData.getPublisherId().intValue()));
+                    if (LOG.isLoggable(Level.DEBUG)) {
+                        LOG.log(Level.DEBUG, "Selected bookId=" + bookData.getId());
+                    }
+                    editBook(bookData);
                 }
             });
             return row;
         });
     }
 
+    /**
+     * Fills the form with a book, so that saving updates it.
+     *
+     * @param bookData The book to edit, as read from the database.
+     */
+    private void editBook(Book bookData) {
+        bookToUpdate = bookData;
+        mode = "Update";
+        fillingForm = true;
+        titleTextField.setText(bookData.getTitle());
+        fillingForm = false;
+        authorsTextField.setText(bookData.getAuthors());
+        isbnTextField.setText(bookData.getIsbn());
+        deweyTextField.setText(""+bookData.getDewey());
+        publisherComboBox.setValue(getPublisher(bookData.getPublisherId().intValue()));
+    }
+
+    /**
+     * Tells the user that the book they edited was changed or deleted by someone else in the meantime,
+     * and shows the book as it is now so they can apply their changes to it again.
+     *
+     * @param stale The conflict reported by the update.
+     */
+    private void bookChangedElsewhere(StaleBookException stale) {
+        Book current = stale.getCurrent();
+        if (current == null) {
+            booksRemoved(List.of(bookToUpdate.getId().intValue()));
+            onClear();
+            showAlert("Failed", "This book has been deleted by another user.", true);
+            return;
+        }
+        bookReplaced(current);
+        editBook(current);
+        showAlert("Failed", "This book was changed by another user. The form now shows their changes; "
+                + "please apply yours again.", true);
+    }
+
+    /**
+     * Maps a TableView column to the snapshot column it shows.
+     *
+     * @param column A column of the books TableView.
+     * @return The snapshot column holding its values.
+     */
+    private CatalogSnapshot.Column snapshotColumn(TableColumn<Book, ?> column) {
+        if (column == isbnColumn) {
+            return CatalogSnapshot.Column.ISBN;
+        }
+        if (column == authorsColumn) {
+            return CatalogSnapshot.Column.AUTHORS;
+        }
+        return CatalogSnapshot.Column.TITLE;
+    }
+
+    /**
+     * Orders books the way the given columns are sorted, comparing the text each column shows.
+     *
+     * @param sortOrder The sort order of the TableView; not empty.
+     * @return The comparator.
+     */
+    private Comparator<Book> bookComparator(List<TableColumn<Book, ?>> sortOrder) {
+        Comparator<Book> comparator = null;
+        for (TableColumn<Book, ?> column : sortOrder) {
+            Function<Book, String> text = switch (snapshotColumn(column)) {
+                case ISBN -> Book::getIsbn;
+                case AUTHORS -> Book::getAuthors;
+                default -> Book::getTitle;
+            };
+            Comparator<Book> byColumn = Comparator.comparing(text, Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                byColumn = byColumn.reversed();
+            }
+            comparator = comparator == null ? byColumn : comparator.thenComparing(byColumn);
+        }
+        return comparator;
+    }
+
     /**
      * Refreshes the books displayed in the TableView by fetching them again from the database.
+     * Only the IDs of the books are read up front, so the table has its full length at once;
+     * the books themselves are fetched a page at a time as they are scrolled into view.
      */
     public void refreshBooks() {
-        ObservableList<Book> allBooks = getBooks(); // Fetch all books
-        booksTableView.setItems(allBooks); // Update the TableView
+        if (liveSearch != null) {
+            liveSearch.reset(); // Remembered search results may be out of date now
+        }
+        int request = ++catalogRequests;
+        AsyncDBMgr.onFxThread(asyncDb.getBookIds(), bookIds -> {
+            if (request != catalogRequests) {
+                return; // Refreshed again since; the later read is shown instead
+            }
+            if (bookIds == null) {
+                booksTableView.setPlaceholder(new Label("The catalog could not be loaded"));
+                return;
+            }
+            catalog = new VirtualBookList(bookIds, asyncDb::getBooksByIds);
+            catalog.setPageListener(new VirtualBookList.PageListener() {
+                @Override
+                public void pageLoaded(long startNanos, int rows) {
+                    RenderTimer.recordAfterNextPulse(booksTableView, loadPageMetrics, startNanos, rows);
+                    firstPageShown(rows);
+                }
+
+                @Override
+                public void pageFailed(long startNanos, Throwable ex) {
+                    loadPageMetrics.failure(startNanos);
+                }
+            });
+            sortedCatalog = null;
+            sortedBy = List.of();
+            sortedCatalogPending = false;
+            sortedCatalogBacklog.clear();
+            showCatalog();
+            booksTableView.sort(); // Keep the sort order the user chose
+            if (bookIds.length == 0) {
+                firstPageShown(0);
+            }
+        }, ex -> {
+            booksTableView.setPlaceholder(new Label("The catalog could not be loaded"));
+            LOG.log(Level.WARNING, "Loading books failed", ex);
+        });
+    }
+
+    /**
+     * Records the time from the launch until the first page of books is shown, the first time a page is shown.
+     *
+     * @param rows The number of books in the page.
+     */
+    private void firstPageShown(int rows) {
+        if (!firstPageShown) {
+            firstPageShown = true;
+            booksTableView.setPlaceholder(new Label("No books in the catalog"));
+            RenderTimer.recordAfterNextPulse(booksTableView, firstPageMetrics, LibraryApplication.getLaunchNanos(), rows);
+        }
+    }
+
+    /**
+     * Shows the whole catalog again, for example when a search is cleared: sorted if the user chose a sort order
+     * and the sorted catalog is at hand, and in BookID order otherwise.
+     */
+    private void showCatalog() {
+        if (catalog == null) {
+            return; // Still loading; shown once its IDs are read
+        }
+        boolean sorted = sortedCatalog != null && !booksTableView.getSortOrder().isEmpty();
+        booksTableView.setItems(sorted ? sortedCatalog : catalog);
+    }
+
+    /**
+     * Applies the TableView's sort order to the catalog. Sorting needs every book, so the first sort reads the whole
+     * catalog into the sorted catalog and shows it once it is read; until then the catalog stays in BookID order.
+     * Called by the sort policy, so the items are switched afterwards rather than while the TableView sorts.
+     */
+    private void sortCatalog() {
+        List<CatalogSnapshot.SortKey> keys = new ArrayList<>();
+        for (TableColumn<Book, ?> column : booksTableView.getSortOrder()) {
+            keys.add(new CatalogSnapshot.SortKey(snapshotColumn(column), column.getSortType() == TableColumn.SortType.ASCENDING));
+        }
+        if (sortedCatalog == null) {
+            if (!keys.isEmpty()) {
+                loadSortedCatalog();
+            }
+            return;
+        }
+        if (!keys.isEmpty() && !keys.equals(sortedBy)) {
+            sortedCatalog.sortBy(keys);
+            sortedBy = keys;
+        }
+        ObservableList<Book> wanted = keys.isEmpty() ? catalog : sortedCatalog;
+        if (booksTableView.getItems() != wanted) {
+            Platform.runLater(this::showCatalog);
+        }
     }
 
     /**
-     * Fetches all books from the database.
+     * Reads the whole catalog into the sorted catalog in the background, then sorts and shows it.
+     * Changes made while it is read are applied to it afterwards.
+     */
+    private void loadSortedCatalog() {
+        if (sortedCatalogPending) {
+            return;
+        }
+        sortedCatalogPending = true;
+        VirtualBookList target = catalog;
+        AsyncDBMgr.onFxThread(asyncDb.loadSnapshot(), snapshot -> {
+            if (target != catalog) {
+                return; // Refreshed since
+            }
+            sortedCatalogPending = false;
+            if (snapshot == null) {
+                sortedCatalogBacklog.clear();
+                LOG.log(Level.WARNING, "Reading the catalog to sort it failed");
+                return;
+            }
+            for (Consumer<CatalogSnapshot> change : sortedCatalogBacklog) {
+                change.accept(snapshot);
+            }
+            sortedCatalogBacklog.clear();
+            sortedCatalog = snapshot;
+            sortedBy = List.of();
+            if (booksTableView.getItems() == catalog) {
+                booksTableView.sort(); // Sorts the new catalog and shows it
+            }
+        }, ex -> {
+            if (target == catalog) {
+                sortedCatalogPending = false;
+                sortedCatalogBacklog.clear();
+            }
+            LOG.log(Level.WARNING, "Reading the catalog to sort it failed", ex);
+        });
+    }
+
+    /**
+     * Shows a newly inserted book without reloading the catalog. BookIDs only grow, so the book belongs at the end
+     * of the catalog, and in the sorted catalog where the sort order puts it.
+     *
+     * @param book The inserted book.
+     */
+    private void bookAdded(Book book) {
+        if (liveSearch != null) {
+            liveSearch.reset(); // Remembered search results do not contain the new book
+        }
+        if (catalog != null) {
+            catalog.addBook(book);
+        }
+        applyToSortedCatalog(snapshot -> snapshot.addBooks(List.of(book)));
+    }
+
+    /**
+     * Replaces an updated book wherever it is shown, keeping its position and the rest of the list.
+     *
+     * @param book The book as it is now.
+     */
+    private void bookReplaced(Book book) {
+        if (liveSearch != null) {
+            liveSearch.reset(); // The new title may no longer match a remembered search
+        }
+        if (catalog != null) {
+            catalog.replaceBook(book);
+        }
+        applyToSortedCatalog(snapshot -> snapshot.replaceBook(book));
+        if (!isCatalogShown()) {
+            replaceById(booksTableView.getItems(), book);
+        }
+    }
+
+    /**
+     * Removes deleted books wherever they are shown.
      *
-     * @return An ObservableList of Book objects.
+     * @param bookIds The IDs of the deleted books.
      */
-    private ObservableList<Book> getBooks() {
-        return dbMgr.getBooks();
+    private void booksRemoved(Collection<Integer> bookIds) {
+        if (liveSearch != null) {
+            liveSearch.reset();
+        }
+        if (catalog != null) {
+            catalog.removeBooks(bookIds);
+        }
+        applyToSortedCatalog(snapshot -> snapshot.removeBooks(bookIds));
+        if (!isCatalogShown()) {
+            Set<Integer> deleted = new HashSet<>(bookIds);
+            booksTableView.getItems().removeIf(book -> deleted.contains(book.getId().intValue()));
+        }
+    }
+
+    // Applies a change to the sorted catalog, or keeps it for later while the sorted catalog is being read
+    private void applyToSortedCatalog(Consumer<CatalogSnapshot> change) {
+        if (sortedCatalog != null) {
+            change.accept(sortedCatalog);
+        } else if (sortedCatalogPending) {
+            sortedCatalogBacklog.add(change);
+        }
+    }
+
+    private boolean isCatalogShown() {
+        ObservableList<Book> items = booksTableView.getItems();
+        return items == catalog || items == sortedCatalog;
+    }
+
+    private static void replaceById(ObservableList<Book> list, Book book) {
+        int bookId = book.getId().intValue();
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getId().intValue() == bookId) {
+                list.set(i, book);
+                return;
+            }
+        }
     }
 }
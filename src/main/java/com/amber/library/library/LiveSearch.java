@@ -0,0 +1,227 @@
+package com.amber.library.library;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+
+import java.lang.System.Logger.Level;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Search-as-you-type in front of {@link CatalogRepository#searchBooks(String)}.
+ * Keystrokes are debounced, so a query only reaches the database once the user pauses typing. While a query is
+ * running, newer queries are coalesced: only the latest one is sent when the running query returns. When the new
+ * query only narrows the previous one (for example "hob" after "ho", or "hobbit tolk" after "hobbit"), the previous
+ * results are filtered in memory immediately and the database is not queried at all.
+ * The time from sending a query to showing its results is recorded as "ui.search", and answers filtered in memory
+ * as "ui.search.refine".
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class LiveSearch {
+
+    // How long typing must pause before a query is sent to the database
+    public static final long DEBOUNCE_MILLIS = 200;
+    private static final System.Logger LOG = System.getLogger(LiveSearch.class.getName());
+
+    private final OperationMetrics searchMetrics = Metrics.getInstance().operation("ui.search");
+    private final OperationMetrics refineMetrics = Metrics.getInstance().operation("ui.search.refine");
+    private final Searcher searcher;
+    private final Executor fxThread;
+    private final Executor debounceDelay;
+    private final Recorder recorder;
+    private final Consumer<ObservableList<Book>> onResults;
+    private final Runnable onCleared;
+    // Counts debounce delays started; a delay that ends after a newer one was started, or after it was stopped, is ignored
+    private long debounceGeneration;
+
+    // The last query answered, and its results, which narrower queries are filtered from
+    private String[] lastTokens;
+    private ObservableList<Book> lastResults;
+    private boolean queryRunning;
+    private String pendingQuery;
+    private String typedQuery = "";
+
+/**
+ * Creates a live search.
+ *
+ * @param asyncDb The asynchronous database facade used for queries that cannot be answered in memory.
+ * @param resultsView The node that shows the results, used to time when they are displayed.
+ * @param onResults Receives the results of each query, on the FX thread.
+ * @param onCleared Called when the query becomes empty.
+ */
+    public LiveSearch(AsyncDBMgr asyncDb, Node resultsView, Consumer<ObservableList<Book>> onResults, Runnable onCleared) {
+        this(asyncDb::searchBooks, Platform::runLater,
+                CompletableFuture.delayedExecutor(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS, Platform::runLater),
+                (operation, start, rows) -> RenderTimer.recordAfterNextPulse(resultsView, operation, start, rows),
+                onResults, onCleared);
+    }
+
+/**
+ * Creates a live search that runs on the given executors instead of the JavaFX ones, as in tests.
+ *
+ * @param searcher Runs a query in the background.
+ * @param fxThread Runs the handling of each query's results, on the thread that calls the other methods.
+ * @param debounceDelay Runs a task on that same thread once typing has paused.
+ * @param recorder Records how long results took to show.
+ * @param onResults Receives the results of each query.
+ * @param onCleared Called when the query becomes empty.
+ */
+    LiveSearch(Searcher searcher, Executor fxThread, Executor debounceDelay, Recorder recorder,
+               Consumer<ObservableList<Book>> onResults, Runnable onCleared) {
+        this.searcher = searcher;
+        this.fxThread = fxThread;
+        this.debounceDelay = debounceDelay;
+        this.recorder = recorder;
+        this.onResults = onResults;
+        this.onCleared = onCleared;
+    }
+
+/**
+ * Handles a change of the search text. A narrowing query is answered at once from the previous results;
+ * any other query is sent to the database after the debounce delay.
+ *
+ * @param query The current search text.
+ */
+    public void queryChanged(String query) {
+        typedQuery = query == null ? "" : query.trim();
+        if (typedQuery.isEmpty()) {
+            stopDebounce();
+            pendingQuery = null;
+            onCleared.run();
+            return;
+        }
+        if (refine(typedQuery)) {
+            stopDebounce();
+            return;
+        }
+        long generation = ++debounceGeneration;
+        debounceDelay.execute(() -> {
+            if (generation == debounceGeneration) {
+                run(typedQuery);
+            }
+        });
+    }
+
+/**
+ * Runs the current query right away, skipping the debounce delay, as when the Search button is pressed.
+ *
+ * @param query The search text.
+ */
+    public void searchNow(String query) {
+        stopDebounce();
+        typedQuery = query == null ? "" : query.trim();
+        run(typedQuery);
+    }
+
+/**
+ * Forgets the previous results, so the next query goes to the database.
+ * Called after the catalog changes, since the remembered results may no longer be accurate.
+ */
+    public void reset() {
+        lastTokens = null;
+        lastResults = null;
+    }
+
+    private void stopDebounce() {
+        debounceGeneration++;
+    }
+
+    private void run(String query) {
+        if (query.isEmpty()) {
+            onCleared.run();
+            return;
+        }
+        if (refine(query)) {
+            return;
+        }
+        if (queryRunning) {
+            // Coalesce: only the newest query waiting behind the running one is sent
+            pendingQuery = query;
+            return;
+        }
+        queryRunning = true;
+        long start = System.nanoTime();
+        AsyncDBMgr.onThread(searcher.search(query), fxThread, results -> {
+            queryRunning = false;
+            lastTokens = SearchIndex.tokenize(query);
+            lastResults = results;
+            if (query.equals(typedQuery)) {
+                onResults.accept(FXCollections.observableArrayList(results));
+                recorder.record(searchMetrics, start, results.size());
+                pendingQuery = null;
+            } else if (pendingQuery == null && !typedQuery.isEmpty()) {
+                // The user kept typing; answer what is typed now, possibly from these results
+                pendingQuery = typedQuery;
+            }
+            runPending();
+        }, ex -> {
+            queryRunning = false;
+            searchMetrics.failure(start);
+            LOG.log(Level.WARNING, "Search failed query=" + query, ex);
+            runPending();
+        });
+    }
+
+    private void runPending() {
+        String next = pendingQuery;
+        pendingQuery = null;
+        if (next != null) {
+            run(next);
+        }
+    }
+
+/**
+ * Answers a query from the previous results if it can only match a subset of them, which is the case when
+ * every previous token is contained in some token of the new query.
+ *
+ * @return true if the query was answered in memory.
+ */
+    private boolean refine(String query) {
+        if (lastTokens == null || lastResults == null) {
+            return false;
+        }
+        String[] tokens = SearchIndex.tokenize(query);
+        if (tokens.length == 0) {
+            return false;
+        }
+        long start = System.nanoTime();
+        for (String previous : lastTokens) {
+            boolean covered = false;
+            for (String token : tokens) {
+                if (token.contains(previous)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        ObservableList<Book> refined = FXCollections.observableArrayList();
+        for (Book book : lastResults) {
+            if (SearchIndex.matches(book, query)) {
+                refined.add(book);
+            }
+        }
+        pendingQuery = null;
+        lastTokens = tokens;
+        lastResults = refined;
+        onResults.accept(FXCollections.observableArrayList(refined));
+        recorder.record(refineMetrics, start, refined.size());
+        return true;
+    }
+
+    // Runs a query in the background, such as AsyncDBMgr.searchBooks
+    interface Searcher {
+        CompletableFuture<ObservableList<Book>> search(String query);
+    }
+
+    // Records the latency of results once they are shown, such as RenderTimer.recordAfterNextPulse
+    interface Recorder {
+        void record(OperationMetrics operation, long startNanos, long rows);
+    }
+}
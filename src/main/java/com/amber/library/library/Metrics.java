@@ -0,0 +1,225 @@
+package com.amber.library.library;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The application's metrics: one {@link OperationMetrics} per database operation and UI action, plus gauges
+ * that report values kept elsewhere, such as the connection pool size or cache hit counts.
+ * The metrics can be exported as JSON or in the Prometheus text format, written to a file or served over HTTP
+ * on the loopback interface, at /metrics (Prometheus) and /metrics.json.
+ * Operation names use dots, such as "db.insertBook" or "ui.save"; Prometheus names replace the dots with underscores.
+ */
+public class Metrics {
+
+    private static final Metrics instance = new Metrics();
+    private static final System.Logger LOG = System.getLogger(Metrics.class.getName());
+
+    // Percentiles reported for every operation latency
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private HttpServer server;
+
+    private Metrics() {
+    }
+
+/**
+ * Returns the metrics shared by the whole application.
+ *
+ * @return The application's metrics.
+ */
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+/**
+ * Returns the metrics of an operation, creating them on first use.
+ * Callers keep the result in a field, so that recording does not look the name up on every call.
+ *
+ * @param name The operation name, such as "db.insertBook".
+ * @return The operation's metrics.
+ */
+    public OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+/**
+ * Registers a gauge, replacing any gauge with the same name.
+ *
+ * @param name The gauge name, such as "pool.connections.idle".
+ * @param value Reads the current value when the metrics are exported.
+ */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+/**
+ * Exports the metrics as a JSON object with an "operations" and a "gauges" member. Latencies are in milliseconds.
+ *
+ * @return The metrics as JSON.
+ */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"operations\": {");
+        String separator = "\n";
+        for (OperationMetrics op : new TreeMap<>(operations).values()) {
+            LatencyHistogram latency = op.getLatency();
+            json.append(separator).append("    ").append(quote(op.getName())).append(": {")
+                    .append("\"calls\": ").append(op.getCalls())
+                    .append(", \"errors\": ").append(op.getErrors())
+                    .append(", \"rows\": ").append(op.getRows())
+                    .append(", \"rollbacks\": ").append(op.getRollbacks())
+                    .append(", \"latencyMillis\": {\"mean\": ").append(millis((long) latency.getMeanNanos()));
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append(format(percentile).replace(".", "")).append("\": ")
+                        .append(millis(latency.getValueAtPercentile(percentile)));
+            }
+            json.append(", \"max\": ").append(millis(latency.getMaxNanos())).append("}}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"gauges\": {");
+        separator = "\n";
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+            json.append(separator).append("    ").append(quote(gauge.getKey())).append(": ")
+                    .append(gauge.getValue().getAsLong());
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+/**
+ * Exports the metrics in the Prometheus text exposition format. Latencies are summaries in seconds.
+ *
+ * @return The metrics as Prometheus text.
+ */
+    public String toPrometheus() {
+        Map<String, OperationMetrics> sorted = new TreeMap<>(operations);
+        StringBuilder text = new StringBuilder();
+        counter(text, "library_operation_calls_total", "Operations run.", sorted, OperationMetrics::getCalls);
+        counter(text, "library_operation_errors_total", "Operations that failed.", sorted, OperationMetrics::getErrors);
+        counter(text, "library_operation_rows_total", "Rows returned or written by operations.", sorted, OperationMetrics::getRows);
+        counter(text, "library_operation_rollbacks_total", "Transactions rolled back by operations.", sorted, OperationMetrics::getRollbacks);
+
+        text.append("# HELP library_operation_latency_seconds Operation latency.\n");
+        text.append("# TYPE library_operation_latency_seconds summary\n");
+        for (OperationMetrics op : sorted.values()) {
+            LatencyHistogram latency = op.getLatency();
+            String label = "operation=" + quote(op.getName());
+            for (double percentile : PERCENTILES) {
+                text.append("library_operation_latency_seconds{").append(label)
+                        .append(",quantile=\"").append(format(percentile / 100)).append("\"} ")
+                        .append(seconds(latency.getValueAtPercentile(percentile))).append('\n');
+            }
+            text.append("library_operation_latency_seconds_sum{").append(label).append("} ")
+                    .append(seconds(latency.getTotalNanos())).append('\n');
+            text.append("library_operation_latency_seconds_count{").append(label).append("} ")
+                    .append(latency.getCount()).append('\n');
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+            String name = "library_" + gauge.getKey().replace('.', '_');
+            text.append("# TYPE ").append(name).append(" gauge\n");
+            text.append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+/**
+ * Writes the metrics to a file, as JSON if its name ends in ".json" and as Prometheus text otherwise.
+ * The file is replaced atomically, so a reader never sees it half written.
+ *
+ * @param file The file to write.
+ * @throws IOException If the file cannot be written.
+ */
+    public void writeTo(Path file) throws IOException {
+        String content = file.getFileName().toString().endsWith(".json") ? toJson() : toPrometheus();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+/**
+ * Starts serving the metrics over HTTP on the loopback interface, at /metrics and /metrics.json.
+ *
+ * @param port The port to listen on; 0 picks a free one.
+ * @return The port the server listens on.
+ * @throws IOException If the server cannot be started.
+ */
+    public synchronized int startServer(int port) throws IOException {
+        if (server != null) {
+            return server.getAddress().getPort();
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4", this::toPrometheus));
+        httpServer.createContext("/metrics.json", exchange -> respond(exchange, "application/json", this::toJson));
+        httpServer.start();
+        server = httpServer;
+        LOG.log(System.Logger.Level.INFO, "Serving metrics at http://{0}:{1,number,#}/metrics",
+                InetAddress.getLoopbackAddress().getHostAddress(), server.getAddress().getPort());
+        return server.getAddress().getPort();
+    }
+
+/**
+ * Stops the HTTP server started by {@link #startServer(int)}, if any.
+ */
+    public synchronized void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, Supplier<String> body) throws IOException {
+        byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void counter(StringBuilder text, String name, String help, Map<String, OperationMetrics> operations,
+                                ToLongFunction<OperationMetrics> value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (OperationMetrics op : operations.values()) {
+            text.append(name).append("{operation=").append(quote(op.getName())).append("} ")
+                    .append(value.applyAsLong(op)).append('\n');
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static String millis(long nanos) {
+        return format(nanos / 1e6);
+    }
+
+    private static String seconds(long nanos) {
+        return format(nanos / 1e9);
+    }
+
+    private static String format(double value) {
+        String text = String.format(Locale.ROOT, "%.6f", value);
+        text = text.replaceAll("0+$", "");
+        return text.endsWith(".") ? text.substring(0, text.length() - 1) : text;
+    }
+}
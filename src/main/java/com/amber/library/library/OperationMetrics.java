@@ -0,0 +1,87 @@
+package com.amber.library.library;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one kind of operation, such as DBMgr.insertBook or saving a book from the form:
+ * how often it ran, how often it failed, how many rows it returned or wrote, how many transactions it rolled back,
+ * and how long it took. Recording never allocates or blocks, so operations are timed on every call.
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * ... on success: metrics.success(start, rows);
+ * ... on failure: metrics.failure(start);
+ * </pre>
+ */
+public class OperationMetrics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+
+/**
+ * Creates the metrics of an operation; use {@link Metrics#operation(String)} to get the shared instance.
+ *
+ * @param name The name the operation is reported under.
+ */
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+/**
+ * Records a successful call.
+ *
+ * @param startNanos The System.nanoTime() when the call started.
+ * @param rowCount The number of rows the call returned or wrote.
+ */
+    public void success(long startNanos, long rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        calls.increment();
+        rows.add(rowCount);
+    }
+
+/**
+ * Records a failed call.
+ *
+ * @param startNanos The System.nanoTime() when the call started.
+ */
+    public void failure(long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+        calls.increment();
+        errors.increment();
+    }
+
+/**
+ * Records that the operation rolled back its transaction.
+ */
+    public void rollback() {
+        rollbacks.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getRollbacks() {
+        return rollbacks.sum();
+    }
+}
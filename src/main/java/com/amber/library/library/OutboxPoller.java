@@ -0,0 +1,227 @@
+package com.amber.library.library;
+
+import java.lang.System.Logger.Level;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the changes other application instances make to the catalog, by polling the catalog_outbox table,
+ * and publishes them on this application's {@link CatalogEventBus} as remote events.
+ * DBMgr writes one outbox row per inserted, updated or deleted book in the same transaction as the change,
+ * so a change is in the outbox exactly when it is committed. Rows are read in EventID order after the last one seen,
+ * through the primary key; the poller skips the rows its own DBMgr wrote, whose events were published on commit.
+ * An inserted or updated book is read as it is when polled, so several changes to one book arrive as one event.
+ *
+ * <p>EventIDs are handed out when a row is inserted, not when it commits, so a row with a lower EventID can
+ * appear after a higher one. The poller stops at such a gap and waits for it to fill, until
+ * {@link #GAP_TIMEOUT} has passed, after which the gap is taken to be a rolled back transaction.
+ * Rows older than the retention are purged now and then.
+ */
+public class OutboxPoller implements AutoCloseable {
+
+    private static final System.Logger LOG = System.getLogger(OutboxPoller.class.getName());
+
+    // The EventType of each kind of change
+    static final String INSERTED = "I";
+    static final String UPDATED = "U";
+    static final String DELETED = "D";
+
+    static final String INSERT_EVENT = "INSERT INTO catalog_outbox (EventType, BookID, BookVersion, Origin) VALUES (?, ?, ?, ?)";
+    private static final String EVENTS_AFTER = """
+        SELECT EventID, EventType, BookID, Origin FROM catalog_outbox
+        WHERE EventID > ? ORDER BY EventID LIMIT ?""";
+
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(7);
+    // How long a gap in the EventIDs is waited for before it is skipped
+    public static final Duration GAP_TIMEOUT = Duration.ofSeconds(30);
+    private static final int BATCH_SIZE = 500;
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private final DBMgr dbMgr;
+    private final CatalogEventBus events;
+    private final ScheduledExecutorService scheduler;
+    private final OperationMetrics pollMetrics = Metrics.getInstance().operation("outbox.poll");
+    private Duration retention = DEFAULT_RETENTION;
+    // The last EventID handled; only touched on the scheduler thread
+    private long position = -1;
+    // The EventID after which a gap was last seen, and when
+    private long gapAfter = -1;
+    private long gapSeenNanos;
+    private long lastPurgeNanos = System.nanoTime();
+
+/**
+ * Creates a poller publishing the outbox of the given database on its event bus. Call {@link #start(Duration)} to begin.
+ *
+ * @param dbMgr The database whose outbox is followed.
+ */
+    public OutboxPoller(DBMgr dbMgr) {
+        this.dbMgr = dbMgr;
+        this.events = dbMgr.getEvents();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+/**
+ * Sets how long outbox rows are kept before they are purged.
+ * Another instance that stops for longer must reload its catalog, as the changes it missed are gone.
+ *
+ * @param retention How long rows are kept.
+ */
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+/**
+ * Starts polling in the background, beginning with the changes committed from now on.
+ *
+ * @param interval How long to wait between polls.
+ */
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+/**
+ * Stops polling.
+ */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Polling the outbox failed", e);
+        }
+    }
+
+/**
+ * Reads the outbox rows after the last one handled and publishes the changes of other instances.
+ * The first poll only notes where the outbox ends. Runs on the poller's thread.
+ *
+ * @return The number of events published; 0 if there were none or in case of an error.
+ */
+    int poll() {
+        long start = System.nanoTime();
+        try (Connection conn = dbMgr.getConnection()) {
+            if (position < 0) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(EventID), 0) FROM catalog_outbox")) {
+                    position = rs.next() ? rs.getLong(1) : 0;
+                }
+                return 0;
+            }
+            purgeIfDue(conn);
+            // BookID -> kind of its latest change, for the changes of other instances in EventID order
+            Map<Integer, String> changes = new HashMap<>();
+            Set<Integer> order = new LinkedHashSet<>();
+            long last = position;
+            try (PreparedStatement pstmt = conn.prepareStatement(EVENTS_AFTER)) {
+                pstmt.setLong(1, position);
+                pstmt.setInt(2, BATCH_SIZE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long eventId = rs.getLong(1);
+                        if (eventId != last + 1 && !gapTimedOut(last)) {
+                            break;
+                        }
+                        last = eventId;
+                        if (!dbMgr.getOrigin().equals(rs.getString(4))) {
+                            int bookId = rs.getInt(3);
+                            String type = rs.getString(2);
+                            // An insert followed by updates is still an insert for those that never saw it
+                            changes.merge(bookId, type, (before, after) -> INSERTED.equals(before) && UPDATED.equals(after) ? before : after);
+                            order.remove(bookId);
+                            order.add(bookId);
+                        }
+                    }
+                }
+            }
+            if (last == position) {
+                pollMetrics.success(start, 0);
+                return 0;
+            }
+            int published = publish(changes, order);
+            position = last;
+            pollMetrics.success(start, published);
+            return published;
+        } catch (SQLException e) {
+            pollMetrics.failure(start);
+            LOG.log(Level.WARNING, "Polling the outbox failed after EventID " + position, e);
+            return 0;
+        }
+    }
+
+    // Reads the inserted and updated books and publishes every change, in the order of their latest outbox rows
+    private int publish(Map<Integer, String> changes, Set<Integer> order) throws SQLException {
+        int[] changedIds = order.stream().filter(bookId -> !DELETED.equals(changes.get(bookId)))
+                .mapToInt(Integer::intValue).toArray();
+        Map<Integer, Book> books = new HashMap<>();
+        for (Book book : dbMgr.queryBooksByIds(changedIds, changedIds.length)) {
+            books.put(book.getId().intValue(), book);
+        }
+        List<CatalogEvent> batch = new ArrayList<>(order.size());
+        for (int bookId : order) {
+            String type = changes.get(bookId);
+            Book book = books.get(bookId);
+            if (DELETED.equals(type)) {
+                batch.add(new CatalogEvent.BookDeleted(bookId, true));
+            } else if (book == null) {
+                continue; // Deleted since; its delete row follows
+            } else if (INSERTED.equals(type)) {
+                batch.add(new CatalogEvent.BookInserted(book, true));
+            } else {
+                batch.add(new CatalogEvent.BookUpdated(book, true));
+            }
+        }
+        for (CatalogEvent event : batch) {
+            events.publish(event);
+        }
+        return batch.size();
+    }
+
+    // Whether the gap after the given EventID has been waited for long enough; starts the wait when first seen
+    private boolean gapTimedOut(long after) {
+        long now = System.nanoTime();
+        if (gapAfter != after) {
+            gapAfter = after;
+            gapSeenNanos = now;
+            return false;
+        }
+        return now - gapSeenNanos >= GAP_TIMEOUT.toNanos();
+    }
+
+    private void purgeIfDue(Connection conn) throws SQLException {
+        if (System.nanoTime() - lastPurgeNanos < PURGE_INTERVAL.toNanos()) {
+            return;
+        }
+        lastPurgeNanos = System.nanoTime();
+        try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM catalog_outbox WHERE CreatedAt < ?")) {
+            pstmt.setTimestamp(1, Timestamp.from(Instant.now().minus(retention)));
+            int purged = pstmt.executeUpdate();
+            if (purged > 0) {
+                LOG.log(Level.INFO, "Purged outbox rows=" + purged);
+            }
+        }
+    }
+}
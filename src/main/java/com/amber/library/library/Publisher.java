@@ -42,6 +42,24 @@ public class Publisher {
         return id;
     }
 
+/**
+ * Gets the name of this publisher.
+ *
+ * @return The name of the publisher.
+ */
+    public String getName() {
+        return name;
+    }
+
+/**
+ * Gets the website URL of this publisher.
+ *
+ * @return The website URL of the publisher; may be null.
+ */
+    public String getWebsite() {
+        return website;
+    }
+
 /**
  * Returns a string representation of this publisher.
  * This override of the {@code toString()} method provides a simple way to print or log
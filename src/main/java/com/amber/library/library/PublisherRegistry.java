@@ -0,0 +1,242 @@
+package com.amber.library.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Holds every publisher, indexed by ID and by name, for lookups on each table row click and for type-ahead
+ * filtering of the publisher box over tens of thousands of publishers.
+ * IDs are kept in an open-addressing table of primitive ints, and names in an array sorted by lower-cased name,
+ * so a lookup by ID costs a few probes and a name prefix a binary search, without boxing or map entries.
+ * The indexes are rebuilt into new arrays on each change and published as a whole, so readers never lock and always
+ * see a consistent registry; changes are serialized and cost time proportional to the registry's size.
+ */
+public final class PublisherRegistry {
+
+    private static final Comparator<Publisher> BY_NAME = Comparator.comparing(PublisherRegistry::nameKey)
+            .thenComparingInt(Publisher::getId);
+
+    private volatile Index index = new Index(new Publisher[0], new String[0]);
+
+/**
+ * Creates an empty registry.
+ */
+    public PublisherRegistry() {
+    }
+
+/**
+ * Gets a publisher by ID.
+ *
+ * @param id The publisher's ID.
+ * @return The publisher, or null if there is no publisher with that ID.
+ */
+    public Publisher get(int id) {
+        return index.get(id);
+    }
+
+/**
+ * Gets the number of publishers.
+ *
+ * @return The number of publishers.
+ */
+    public int size() {
+        return index.byName.length;
+    }
+
+/**
+ * Gets the highest publisher ID, after which newly added publishers are read.
+ *
+ * @return The highest ID, or 0 if the registry is empty.
+ */
+    public int getMaxId() {
+        return index.maxId;
+    }
+
+/**
+ * Gets every publisher, ordered by name.
+ *
+ * @return An unmodifiable list of all publishers.
+ */
+    public List<Publisher> getAll() {
+        return Collections.unmodifiableList(Arrays.asList(index.byName));
+    }
+
+/**
+ * Finds the publishers for type-ahead: first those whose name starts with the text, ordered by name,
+ * then, if there is room left, those whose name contains it elsewhere. Case is ignored.
+ *
+ * @param text The text typed so far; empty matches every publisher.
+ * @param limit The maximum number of publishers to return.
+ * @return The matching publishers, at most limit of them.
+ */
+    public List<Publisher> findByName(String text, int limit) {
+        Index current = index;
+        String key = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        List<Publisher> found = new ArrayList<>(Math.min(limit, current.byName.length));
+        int first = current.firstAtOrAfter(key);
+        int end = first;
+        while (end < current.nameKeys.length && found.size() < limit && current.nameKeys[end].startsWith(key)) {
+            found.add(current.byName[end++]);
+        }
+        for (int i = 0; i < current.nameKeys.length && found.size() < limit; i++) {
+            if ((i < first || i >= end) && current.nameKeys[i].contains(key)) {
+                found.add(current.byName[i]);
+            }
+        }
+        return found;
+    }
+
+/**
+ * Finds the publisher with exactly the given name, ignoring case.
+ *
+ * @param name The name to look up.
+ * @return The publisher with that name and the lowest ID, or null if there is none.
+ */
+    public Publisher findByExactName(String name) {
+        Index current = index;
+        String key = name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+        int i = current.firstAtOrAfter(key);
+        return i < current.nameKeys.length && current.nameKeys[i].equals(key) ? current.byName[i] : null;
+    }
+
+/**
+ * Adds publishers, replacing those already registered with the same ID.
+ *
+ * @param publishers The new or changed publishers.
+ */
+    public synchronized void addAll(Collection<Publisher> publishers) {
+        if (publishers.isEmpty()) {
+            return;
+        }
+        Map<Integer, Publisher> changed = new HashMap<>();
+        for (Publisher publisher : publishers) {
+            changed.put(publisher.getId(), publisher);
+        }
+        Publisher[] added = changed.values().toArray(new Publisher[0]);
+        Arrays.sort(added, BY_NAME);
+        String[] addedKeys = new String[added.length];
+        for (int i = 0; i < added.length; i++) {
+            addedKeys[i] = nameKey(added[i]);
+        }
+        // Merge the sorted additions into the existing names, leaving out the publishers they replace
+        Index current = index;
+        Publisher[] merged = new Publisher[current.byName.length + added.length];
+        String[] mergedKeys = new String[merged.length];
+        int size = 0;
+        int a = 0;
+        for (int i = 0; i < current.byName.length; i++) {
+            Publisher publisher = current.byName[i];
+            if (changed.containsKey(publisher.getId())) {
+                continue;
+            }
+            String key = current.nameKeys[i];
+            while (a < added.length && compare(addedKeys[a], added[a], key, publisher) < 0) {
+                mergedKeys[size] = addedKeys[a];
+                merged[size++] = added[a++];
+            }
+            mergedKeys[size] = key;
+            merged[size++] = publisher;
+        }
+        while (a < added.length) {
+            mergedKeys[size] = addedKeys[a];
+            merged[size++] = added[a++];
+        }
+        index = new Index(Arrays.copyOf(merged, size), Arrays.copyOf(mergedKeys, size));
+    }
+
+/**
+ * Replaces every publisher, as after reading them all again.
+ *
+ * @param publishers All publishers.
+ */
+    public synchronized void replaceAll(Collection<Publisher> publishers) {
+        Map<Integer, Publisher> byId = new HashMap<>();
+        for (Publisher publisher : publishers) {
+            byId.put(publisher.getId(), publisher);
+        }
+        Publisher[] sorted = byId.values().toArray(new Publisher[0]);
+        Arrays.sort(sorted, BY_NAME);
+        String[] keys = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = nameKey(sorted[i]);
+        }
+        index = new Index(sorted, keys);
+    }
+
+    private static String nameKey(Publisher publisher) {
+        return publisher.getName() == null ? "" : publisher.getName().toLowerCase(Locale.ROOT);
+    }
+
+    // Orders publishers as BY_NAME does, given their name keys
+    private static int compare(String key, Publisher publisher, String otherKey, Publisher other) {
+        int byKey = key.compareTo(otherKey);
+        return byKey != 0 ? byKey : Integer.compare(publisher.getId(), other.getId());
+    }
+
+    // One immutable version of the registry
+    private static final class Index {
+        final Publisher[] byName;
+        final String[] nameKeys;
+        // Open addressing by ID, kept at most half full; a null publisher marks an empty slot
+        final int[] slotIds;
+        final Publisher[] slotPublishers;
+        final int maxId;
+
+        Index(Publisher[] byName, String[] nameKeys) {
+            this.byName = byName;
+            this.nameKeys = nameKeys;
+            int capacity = Integer.highestOneBit(Math.max(16, byName.length * 2 - 1)) << 1;
+            this.slotIds = new int[capacity];
+            this.slotPublishers = new Publisher[capacity];
+            int max = 0;
+            for (int i = 0; i < byName.length; i++) {
+                Publisher publisher = byName[i];
+                int slot = slotOf(publisher.getId());
+                while (slotPublishers[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                slotIds[slot] = publisher.getId();
+                slotPublishers[slot] = publisher;
+                max = Math.max(max, publisher.getId());
+            }
+            this.maxId = max;
+        }
+
+        Publisher get(int id) {
+            int mask = slotIds.length - 1;
+            for (int slot = slotOf(id); slotPublishers[slot] != null; slot = (slot + 1) & mask) {
+                if (slotIds[slot] == id) {
+                    return slotPublishers[slot];
+                }
+            }
+            return null;
+        }
+
+        // Index of the first name key that is not less than key
+        int firstAtOrAfter(String key) {
+            int low = 0;
+            int high = nameKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (nameKeys[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int slotOf(int id) {
+            int hash = id * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (slotIds.length - 1);
+        }
+    }
+}
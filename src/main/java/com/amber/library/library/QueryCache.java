@@ -0,0 +1,229 @@
+package com.amber.library.library;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * A size-bounded, time-limited read-through cache for query results.
+ * Values are loaded on a miss and kept until they expire, are invalidated precisely with a predicate over keys and
+ * values when the underlying data changes, or are evicted as the least recently used entry once the entries together
+ * weigh more than the cache's limit. By default every entry weighs 1; a cache of lists can weigh each entry by its
+ * length instead, so that a few large results cannot fill the memory.
+ * Concurrent misses for the same key share one load. A load that was running while an invalidation happened
+ * is returned to its caller but not cached, so an invalidated result can never be stored afterwards.
+ */
+public class QueryCache<K, V> {
+
+    private final String name;
+    private final long maxWeight;
+    private final ToIntFunction<? super V> weigher;
+    private final long timeToLiveMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> loading = new LinkedHashMap<>();
+    // Bumped on every invalidation; loads started under an older generation are not cached
+    private long generation;
+    // The sum of the weights of the entries
+    private long weight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+/**
+ * Creates a cache.
+ *
+ * @param name The name used when reporting statistics.
+ * @param maxEntries The maximum number of entries; the least recently used entry is evicted beyond that.
+ * @param timeToLiveMillis How long an entry stays valid after it is loaded.
+ */
+    public QueryCache(String name, int maxEntries, long timeToLiveMillis) {
+        this(name, maxEntries, timeToLiveMillis, value -> 1);
+    }
+
+/**
+ * Creates a cache bounded by the total weight of its entries.
+ *
+ * @param name The name used when reporting statistics.
+ * @param maxWeight The maximum total weight; least recently used entries are evicted beyond that, and a value
+ *        weighing more than this on its own is returned but not cached.
+ * @param timeToLiveMillis How long an entry stays valid after it is loaded.
+ * @param weigher Gives the weight of a value, such as the number of rows in it; not negative.
+ */
+    public QueryCache(String name, long maxWeight, long timeToLiveMillis, ToIntFunction<? super V> weigher) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+/**
+ * Returns the cached value for a key, loading and caching it on a miss.
+ *
+ * @param key The cache key.
+ * @param loader Loads the value from the database; called at most once per miss, outside the cache lock.
+ * @return The cached or freshly loaded value.
+ */
+    public V get(K key, Supplier<V> loader) {
+        CompletableFuture<V> load;
+        boolean owner = false;
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    hits++;
+                    return entry.value;
+                }
+                remove(key);
+                expirations++;
+            }
+            misses++;
+            load = loading.get(key);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                loading.put(key, load);
+                owner = true;
+            }
+            loadGeneration = generation;
+        }
+        if (!owner) {
+            return load.join();
+        }
+
+        try {
+            V value = loader.get();
+            synchronized (this) {
+                loading.remove(key);
+                if (loadGeneration == generation) {
+                    put(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(key);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+/**
+ * Removes every entry for which the predicate holds.
+ *
+ * @param predicate Receives each key and value; returns true for entries that are no longer accurate.
+ * @return The keys removed.
+ */
+    public synchronized List<K> invalidateIf(BiPredicate<K, V> predicate) {
+        generation++;
+        List<K> removed = new ArrayList<>();
+        for (Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                it.remove();
+                weight -= entry.getValue().weight;
+                removed.add(entry.getKey());
+            }
+        }
+        invalidations += removed.size();
+        return removed;
+    }
+
+/**
+ * Removes every entry.
+ */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+/**
+ * Gets the total weight of the entries.
+ *
+ * @return The sum of their weights; the number of entries unless the cache has a weigher.
+ */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+/**
+ * Describes the cache's statistics on one line, such as "books: 120 hits, 4 misses (96.8% hit rate), ...".
+ *
+ * @return The statistics as text.
+ */
+    @Override
+    public synchronized String toString() {
+        long requests = hits + misses;
+        double hitRate = requests == 0 ? 0 : 100.0 * hits / requests;
+        return String.format("%s: %d hits, %d misses (%.1f%% hit rate), %d entries, %d evicted, %d expired, %d invalidated",
+                name, hits, misses, hitRate, entries.size(), evictions, expirations, invalidations);
+    }
+
+    // Caches a value and evicts the least recently used entries until the cache is within its weight again
+    private void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, weigher.applyAsInt(value), System.currentTimeMillis() + timeToLiveMillis);
+        remove(key);
+        if (entry.weight > maxWeight) {
+            return;
+        }
+        entries.put(key, entry);
+        weight += entry.weight;
+        for (Iterator<Entry<V>> eldest = entries.values().iterator(); weight > maxWeight && eldest.hasNext(); ) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final int weight;
+        final long expiresAt;
+
+        Entry(V value, int weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
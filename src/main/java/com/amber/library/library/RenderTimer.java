@@ -0,0 +1,40 @@
+package com.amber.library.library;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+
+/**
+ * Measures UI latency from a user action to the frame that shows its result.
+ * The latency is recorded once the next pulse has laid out the scene with the change applied, which is when the
+ * result becomes visible, rather than when the handler or the database call returns.
+ * Must be called on the JavaFX Application Thread.
+ */
+public final class RenderTimer {
+
+    private RenderTimer() {
+    }
+
+/**
+ * Records the latency of an action once the change just made to the scene has been laid out.
+ *
+ * @param node Any node of the scene that shows the result.
+ * @param operation The metrics of the action, such as "ui.save".
+ * @param startNanos The System.nanoTime() when the user started the action.
+ * @param rows The number of rows the action displayed or changed.
+ */
+    public static void recordAfterNextPulse(Node node, OperationMetrics operation, long startNanos, long rows) {
+        Scene scene = node.getScene();
+        if (scene == null) {
+            operation.success(startNanos, rows);
+            return;
+        }
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            operation.success(startNanos, rows);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+}
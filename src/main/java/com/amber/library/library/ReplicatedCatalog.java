@@ -0,0 +1,429 @@
+package com.amber.library.library;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Serves the catalog's books from a {@link CatalogReplica} on the local disk, for branch terminals that mostly read.
+ * Listing, paging, looking up and searching books never reach the database; searches use a {@link SearchIndex} built
+ * from the replica. Inserts, updates and deletes are written to the database first and then recorded in the replica.
+ * Publishers are read from the database, which is opened in the background, so the catalog can be shown before the
+ * database answers, and even while it is down.
+ *
+ * <p>The first time, the replica is built from a full snapshot of the database. Afterwards it is opened from its file
+ * alone and then synchronized with the database in the background: the version of every book is compared, and only
+ * the books added, changed or deleted by other terminals are read and recorded. From then on it follows the remote
+ * changes published on the database's {@link CatalogEventBus}, reading each changed book again, and repeats the full
+ * comparison at a long interval in case a change was missed, such as while the outbox was not followed.
+ */
+public class ReplicatedCatalog implements CatalogRepository {
+
+    private static final System.Logger LOG = System.getLogger(ReplicatedCatalog.class.getName());
+
+    public static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofMinutes(15);
+
+    // Number of changed books read from the database per query while synchronizing
+    private static final int SYNC_CHUNK_SIZE = 500;
+
+    private final CatalogReplica replica;
+    private final CompletableFuture<? extends DBMgr> database;
+    private final ScheduledExecutorService scheduler;
+    // Serializes writes with synchronization, so a book read from the database is never recorded over a newer change
+    private final Object writeLock = new Object();
+    private volatile SearchIndex searchIndex;
+
+    private final Metrics metrics = Metrics.getInstance();
+    private final OperationMetrics synchronizeMetrics = metrics.operation("replica.synchronize");
+    private final OperationMetrics searchBooksMetrics = metrics.operation("replica.searchBooks");
+    private final OperationMetrics getBooksByIdsMetrics = metrics.operation("replica.getBooksByIds");
+    private final OperationMetrics getBooksMetrics = metrics.operation("replica.getBooks");
+    private final OperationMetrics getBookIdsMetrics = metrics.operation("replica.getBookIds");
+
+/**
+ * Opens the replica file and the database behind it.
+ * If the replica has never been built, this waits for the database and copies the whole catalog;
+ * otherwise it returns as soon as the file is open and synchronizes in the background.
+ *
+ * @param file The replica file.
+ * @param opener Opens the database; called once, in the background.
+ * @param syncInterval How long to wait between full comparisons with the database.
+ * @throws UncheckedIOException If the replica file cannot be opened, or cannot be built the first time.
+ */
+    public ReplicatedCatalog(Path file, Supplier<? extends DBMgr> opener, Duration syncInterval) {
+        try {
+            this.replica = CatalogReplica.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Opening replica " + file + " failed", e);
+        }
+        this.database = CompletableFuture.supplyAsync(opener);
+        if (replica.getSnapshotTime() == 0) {
+            build();
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        database.whenComplete((db, e) -> {
+            if (e != null) {
+                LOG.log(Level.WARNING, "Database unavailable; books are read from replica " + file + " only", e);
+                return;
+            }
+            // Only queued by the subscriber: a local write holding the write lock may be waiting for it to make room
+            db.getEvents().subscribe("replica", batch -> {
+                int[] changed = batch.stream().filter(CatalogEvent::remote).mapToInt(CatalogEvent::bookId)
+                        .distinct().sorted().toArray();
+                if (changed.length > 0) {
+                    scheduler.execute(() -> refreshQuietly(db, changed));
+                }
+            });
+            scheduler.scheduleWithFixedDelay(this::synchronize, 0, syncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        });
+        metrics.gauge("replica.books", replica::size);
+        metrics.gauge("replica.bytes", replica::getFileSize);
+    }
+
+    // Copies the whole catalog into the empty replica
+    private void build() {
+        long start = System.nanoTime();
+        try {
+            if (!replica.rebuild(database())) {
+                throw new IOException("Reading the catalog failed");
+            }
+        } catch (IOException e) {
+            replica.close();
+            throw new UncheckedIOException("Building the replica failed", e);
+        }
+        LOG.log(Level.INFO, "Built replica books=" + replica.size() + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+/**
+ * Brings the replica up to date with the database: books whose version differs from the replica's, or that only one
+ * of them has, are read from the database again, and recorded, or deleted if the database no longer has them.
+ * Runs in the background at the sync interval; local writes wait while a changed book is being recorded.
+ *
+ * @return true if the replica is up to date; false if the database could not be read.
+ */
+    public boolean synchronize() {
+        long start = System.nanoTime();
+        DBMgr db = database();
+        long[] versions = db.getBookVersions();
+        if (versions == null) {
+            synchronizeMetrics.failure(start);
+            return false;
+        }
+        int[] changed = changedBooks(replica.getBookVersions(), versions);
+        try {
+            refresh(db, changed);
+        } catch (SQLException | IOException e) {
+            synchronizeMetrics.failure(start);
+            LOG.log(Level.WARNING, "Synchronizing the replica failed", e);
+            return false;
+        }
+        synchronizeMetrics.success(start, changed.length);
+        if (changed.length > 0) {
+            LOG.log(Level.INFO, "Synchronized replica changed=" + changed.length);
+        }
+        return true;
+    }
+
+/**
+ * Reads books from the database again and records them, or their deletion if the database no longer has them.
+ *
+ * @param db The database.
+ * @param changed The IDs of the books, in ascending order.
+ */
+    private void refresh(DBMgr db, int[] changed) throws SQLException, IOException {
+        for (int from = 0; from < changed.length; from += SYNC_CHUNK_SIZE) {
+            int[] chunk = Arrays.copyOfRange(changed, from, Math.min(changed.length, from + SYNC_CHUNK_SIZE));
+            synchronized (writeLock) {
+                // Read under the lock, so a local write cannot happen between reading a book and recording it
+                List<Book> books = db.queryBooksByIds(chunk, chunk.length);
+                for (Book book : books) {
+                    record(book);
+                }
+                if (books.size() < chunk.length) {
+                    int[] found = books.stream().mapToInt(book -> book.getId().intValue()).sorted().toArray();
+                    for (int bookId : chunk) {
+                        if (Arrays.binarySearch(found, bookId) < 0) {
+                            recordDeleted(bookId);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void refreshQuietly(DBMgr db, int[] changed) {
+        try {
+            refresh(db, changed);
+        } catch (SQLException | IOException e) {
+            LOG.log(Level.WARNING, "Recording remote changes in the replica failed; the next synchronization repairs it", e);
+        }
+    }
+
+/**
+ * Compares two lists of book versions, both ordered by BookID.
+ *
+ * @return The BookIDs, in ascending order, that only one list has or that have different versions.
+ */
+    static int[] changedBooks(long[] local, long[] remote) {
+        int[] changed = new int[16];
+        int count = 0;
+        int l = 0;
+        int r = 0;
+        while (l < local.length || r < remote.length) {
+            int localId = l < local.length ? (int) (local[l] >>> 32) : Integer.MAX_VALUE;
+            int remoteId = r < remote.length ? (int) (remote[r] >>> 32) : Integer.MAX_VALUE;
+            int bookId = Math.min(localId, remoteId);
+            boolean differs = localId != remoteId || local[l] != remote[r];
+            if (localId == bookId) {
+                l++;
+            }
+            if (remoteId == bookId) {
+                r++;
+            }
+            if (differs) {
+                if (count == changed.length) {
+                    changed = Arrays.copyOf(changed, count * 2);
+                }
+                changed[count++] = bookId;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    @Override
+    public ObservableList<Publisher> getPublishers() {
+        return database().getPublishers();
+    }
+
+    @Override
+    public PublisherRegistry refreshPublishers() {
+        return database().refreshPublishers();
+    }
+
+    @Override
+    public Book insertBook(String title, String authorName, String isbn, String deweyDecimal, int publisherId,
+                           int numberOfPages, String language, String genre) {
+        synchronized (writeLock) {
+            return recorded(database().insertBook(title, authorName, isbn, deweyDecimal, publisherId,
+                    numberOfPages, language, genre));
+        }
+    }
+
+    @Override
+    public Book insertBook(String title, List<String> authorNames, String isbn, String deweyDecimal, int publisherId,
+                           int numberOfPages, String language, String genre) {
+        synchronized (writeLock) {
+            return recorded(database().insertBook(title, authorNames, isbn, deweyDecimal, publisherId,
+                    numberOfPages, language, genre));
+        }
+    }
+
+    @Override
+    public Book updateBook(String title, Book bookToUpdate) {
+        synchronized (writeLock) {
+            try {
+                return recorded(database().updateBook(title, bookToUpdate));
+            } catch (StaleBookException e) {
+                recordStale(bookToUpdate, e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public Book updateBook(Book original, Book edited) {
+        synchronized (writeLock) {
+            try {
+                return recorded(database().updateBook(original, edited));
+            } catch (StaleBookException e) {
+                recordStale(original, e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public Boolean deleteBookAndReferences(int bookId) {
+        synchronized (writeLock) {
+            Boolean deleted = database().deleteBookAndReferences(bookId);
+            if (Boolean.TRUE.equals(deleted)) {
+                recordDeletedQuietly(bookId);
+            }
+            return deleted;
+        }
+    }
+
+    @Override
+    public List<Integer> deleteBooks(Collection<Integer> bookIds) {
+        synchronized (writeLock) {
+            List<Integer> deleted = database().deleteBooks(bookIds);
+            for (int bookId : deleted) {
+                recordDeletedQuietly(bookId);
+            }
+            return deleted;
+        }
+    }
+
+/**
+ * Searches the replica for books by title, author name, ISBN or Dewey number, best matches first.
+ * The search index is built from the replica on the first search and kept in sync afterwards.
+ */
+    @Override
+    public ObservableList<Book> searchBooks(String title) {
+        long start = System.nanoTime();
+        List<Book> books = replica.get(searchIndex().search(title));
+        searchBooksMetrics.success(start, books.size());
+        return FXCollections.observableArrayList(books);
+    }
+
+    @Override
+    public ObservableList<Book> getBooksByIds(int[] bookIds) {
+        long start = System.nanoTime();
+        List<Book> books = replica.get(bookIds);
+        getBooksByIdsMetrics.success(start, books.size());
+        return FXCollections.observableArrayList(books);
+    }
+
+    @Override
+    public ObservableList<Book> getBooks() {
+        long start = System.nanoTime();
+        List<Book> books = new ArrayList<>(replica.size());
+        replica.forEach(books::add);
+        getBooksMetrics.success(start, books.size());
+        return FXCollections.observableArrayList(books);
+    }
+
+    @Override
+    public int[] getBookIds() {
+        long start = System.nanoTime();
+        int[] bookIds = replica.getBookIds();
+        getBookIdsMetrics.success(start, bookIds.length);
+        return bookIds;
+    }
+
+/**
+ * Streams every book of the replica. Changes to the replica wait until the consumer has seen every book.
+ */
+    @Override
+    public boolean forEachBook(Consumer<Book> consumer) {
+        replica.forEach(consumer);
+        return true;
+    }
+
+/**
+ * Gets the database's event bus, once the database is open.
+ */
+    @Override
+    public CatalogEventBus getEvents() {
+        return database().getEvents();
+    }
+
+/**
+ * Stops synchronizing and closes the replica file. The database is left open for whoever opened it,
+ * normally the single DBMgr instance.
+ */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        replica.close();
+    }
+
+/**
+ * Gets the replica the books are read from.
+ *
+ * @return The replica.
+ */
+    public CatalogReplica getReplica() {
+        return replica;
+    }
+
+    // Waits for the database to be open
+    private DBMgr database() {
+        return database.join();
+    }
+
+/**
+ * Returns the search index, building it from the replica the first time it is needed.
+ * Built while holding the write lock, so no change is missed between reading the replica and publishing the index.
+ */
+    private SearchIndex searchIndex() {
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (writeLock) {
+            if (searchIndex == null) {
+                SearchIndex fresh = new SearchIndex();
+                replica.forEach(fresh::put);
+                searchIndex = fresh;
+                LOG.log(Level.INFO, "Search index built from the replica books=" + fresh.size());
+            }
+            return searchIndex;
+        }
+    }
+
+    // Records a book written to the database; a replica that cannot be written is repaired by the next synchronization
+    private Book recorded(Book book) {
+        if (book != null) {
+            try {
+                record(book);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Recording bookId=" + book.getId() + " in the replica failed", e);
+            }
+        }
+        return book;
+    }
+
+    // Records the book as the database has it now, after an update found it changed or deleted
+    private void recordStale(Book original, StaleBookException e) {
+        if (e.getCurrent() != null) {
+            recorded(e.getCurrent());
+        } else {
+            recordDeletedQuietly(original.getId().intValue());
+        }
+    }
+
+    private void recordDeletedQuietly(int bookId) {
+        try {
+            recordDeleted(bookId);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Recording the deletion of bookId=" + bookId + " in the replica failed", e);
+        }
+    }
+
+    private void record(Book book) throws IOException {
+        replica.put(book);
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            index.put(book);
+        }
+    }
+
+    private void recordDeleted(int bookId) throws IOException {
+        replica.delete(bookId);
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            index.remove(bookId);
+        }
+    }
+}
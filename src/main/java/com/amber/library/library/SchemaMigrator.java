@@ -0,0 +1,446 @@
+package com.amber.library.library;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger.Level;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Creates and upgrades the library schema with versioned SQL migrations.
+ * Each migration is a script under /db-migrations/ named V&lt;version&gt;__&lt;description&gt;.sql and listed in
+ * {@link #MIGRATIONS}; the ones not yet recorded in the schema_version table are run in order, and each is recorded
+ * with the checksum of its script once all its statements have succeeded. A recorded script that has since been
+ * edited stops the migration, since the database may no longer match it, unless a later migration brings such
+ * databases in line and the old checksum is listed in {@link #SUPERSEDED_CHECKSUMS}.
+ * Statements are written so that running them again is harmless: tables are created IF NOT EXISTS, an ADD COLUMN is
+ * skipped when the column exists, a CREATE INDEX is skipped when an index on the same leading columns exists,
+ * whatever its name, and a DROP INDEX is skipped when the index does not exist. This lets a database created by hand
+ * adopt the baseline, and lets a migration that failed half-way, whose DDL MySQL cannot roll back, be run again once
+ * the cause is fixed. Before a unique index is created, the rows are checked for duplicates, which must be corrected
+ * by hand before the application can start.
+ * Also reports which tables a query would read by full scan, from the database's EXPLAIN output.
+ */
+public class SchemaMigrator {
+
+    private static final System.Logger LOG = System.getLogger(SchemaMigrator.class.getName());
+
+    // The migration scripts, in the order they are applied; never edit or reorder an applied one, add a new one instead.
+    // Version 6 seeded publishers and may be recorded in existing databases, so it is not reused.
+    public static final List<String> MIGRATIONS = List.of(
+            "V1__create_catalog_tables.sql",
+            "V2__add_book_version.sql",
+            "V3__add_catalog_indexes.sql",
+            "V4__add_catalog_outbox.sql",
+            "V5__make_author_names_unique.sql",
+            "V7__drop_duplicate_book_author_index.sql");
+
+    // Checksums an applied script had before it was edited, by version; the migrations after it undo the difference.
+    // V3 created UX_BookAuthor_Book_Author, a copy of BookAuthor's primary key, which V7 drops.
+    private static final Map<Integer, Set<Long>> SUPERSEDED_CHECKSUMS = Map.of(3, Set.of(1568845736L));
+
+    private static final String SCRIPT_DIRECTORY = "/db-migrations/";
+    // Most duplicate values named when a unique index cannot be created
+    private static final int MAX_REPORTED_DUPLICATES = 20;
+
+    private static final String CREATE_VERSION_TABLE = """
+        CREATE TABLE IF NOT EXISTS schema_version (
+            Version INT PRIMARY KEY,
+            Description VARCHAR(200) NOT NULL,
+            Checksum BIGINT NOT NULL,
+            InstalledOn TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+            ExecutionMillis BIGINT NOT NULL
+        )""";
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\s*\\(([^)]+)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DROP_INDEX = Pattern.compile(
+            "DROP\\s+INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ADD_COLUMN = Pattern.compile(
+            "ALTER\\s+TABLE\\s+(\\w+)\\s+ADD\\s+COLUMN\\s+(\\w+)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    // A table read without an index in H2's EXPLAIN plan, such as /* PUBLIC.BOOK.tableScan */
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("/\\*\\s*(?:\\w+\\.)?(\\w+)\\.tableScan");
+
+    private final DBMgr dbMgr;
+
+/**
+ * Creates a migrator for the database of the given DBMgr.
+ *
+ * @param dbMgr The DBMgr whose connections the migrations run on.
+ */
+    public SchemaMigrator(DBMgr dbMgr) {
+        this.dbMgr = dbMgr;
+    }
+
+/**
+ * Applies the migrations the database has not recorded yet, in order.
+ * Each statement runs in auto-commit mode, since MySQL commits DDL implicitly anyway.
+ *
+ * @return true if the schema is up to date; false if a migration failed or an applied script was edited.
+ * @throws IllegalStateException If a unique index cannot be created because rows share their values; the message
+ * names the rows, and the application must not run until they are corrected.
+ */
+    public boolean migrate() {
+        try (Connection conn = dbMgr.getConnection()) {
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_VERSION_TABLE);
+            }
+            Map<Integer, Long> applied = appliedChecksums(conn);
+            for (String scriptName : MIGRATIONS) {
+                Matcher name = SCRIPT_NAME.matcher(scriptName);
+                if (!name.matches()) {
+                    throw new IllegalStateException("Migration script " + scriptName + " is not named V<version>__<description>.sql");
+                }
+                int version = Integer.parseInt(name.group(1));
+                String description = name.group(2).replace('_', ' ');
+                String script = readScript(scriptName);
+                long checksum = checksum(script);
+                Long appliedChecksum = applied.get(version);
+                if (appliedChecksum != null) {
+                    if (appliedChecksum != checksum
+                            && !SUPERSEDED_CHECKSUMS.getOrDefault(version, Set.of()).contains(appliedChecksum)) {
+                        LOG.log(Level.ERROR, "Migration " + scriptName + " was edited after it was applied; schema left at version " + version);
+                        return false;
+                    }
+                    continue;
+                }
+                long start = System.nanoTime();
+                for (String sql : statements(script)) {
+                    execute(conn, sql);
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                record(conn, version, description, checksum, millis);
+                LOG.log(Level.INFO, "Applied migration " + scriptName + " in " + millis + " ms");
+            }
+            return true;
+        } catch (SQLException | IOException e) {
+            LOG.log(Level.ERROR, "Schema migration failed", e);
+            return false;
+        }
+    }
+
+/**
+ * Gets the version of the last migration applied to the database.
+ *
+ * @return The highest recorded version, 0 if none has been applied, or -1 in case of a database access error.
+ */
+    public int getSchemaVersion() {
+        try (Connection conn = dbMgr.getConnection()) {
+            return appliedChecksums(conn).keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        } catch (SQLException e) {
+            LOG.log(Level.WARNING, "Reading the schema version failed", e);
+            return -1;
+        }
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Version, Checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void record(Connection conn, int version, String description, long checksum, long millis) throws SQLException {
+        String sql = "INSERT INTO schema_version (Version, Description, Checksum, ExecutionMillis) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, version);
+            pstmt.setString(2, description);
+            pstmt.setLong(3, checksum);
+            pstmt.setLong(4, millis);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Runs one statement of a migration, unless what it adds already exists
+    private static void execute(Connection conn, String sql) throws SQLException {
+        Matcher index = CREATE_INDEX.matcher(sql);
+        if (index.matches()) {
+            List<String> columns = new ArrayList<>();
+            for (String column : index.group(4).split(",")) {
+                columns.add(column.trim());
+            }
+            String existing = findIndex(conn, index.group(3), columns, index.group(1) != null);
+            if (existing != null) {
+                LOG.log(Level.DEBUG, "Skipped index " + index.group(2) + ", covered by " + existing);
+                return;
+            }
+            if (index.group(1) != null) {
+                checkUnique(conn, index.group(2), index.group(3), columns);
+            }
+        }
+        Matcher drop = DROP_INDEX.matcher(sql);
+        if (drop.matches() && !hasIndex(conn, drop.group(2), drop.group(1))) {
+            LOG.log(Level.DEBUG, "Skipped dropping index " + drop.group(1) + ", does not exist");
+            return;
+        }
+        Matcher column = ADD_COLUMN.matcher(sql);
+        if (column.matches() && hasColumn(conn, column.group(1), column.group(2))) {
+            LOG.log(Level.DEBUG, "Skipped column " + column.group(1) + "." + column.group(2) + ", already exists");
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+/**
+ * Finds an index of a table whose leading columns are the given ones.
+ * A unique index is only covered by a unique index on exactly those columns.
+ *
+ * @return The name of the covering index, or null if there is none.
+ */
+    private static String findIndex(Connection conn, String table, List<String> columns, boolean unique) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        Map<String, List<String>> indexColumns = new LinkedHashMap<>();
+        Map<String, Boolean> indexUnique = new HashMap<>();
+        try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), conn.getSchema(), identifier(meta, table), false, false)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (name == null || column == null) {
+                    continue; // table statistics rather than an index
+                }
+                List<String> list = indexColumns.computeIfAbsent(name, k -> new ArrayList<>());
+                int position = rs.getShort("ORDINAL_POSITION");
+                while (list.size() < position) {
+                    list.add(null);
+                }
+                list.set(position - 1, column);
+                indexUnique.put(name, !rs.getBoolean("NON_UNIQUE"));
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : indexColumns.entrySet()) {
+            List<String> existing = entry.getValue();
+            if (existing.size() < columns.size() || (unique && (!indexUnique.get(entry.getKey()) || existing.size() != columns.size()))) {
+                continue;
+            }
+            boolean covers = true;
+            for (int i = 0; i < columns.size() && covers; i++) {
+                covers = columns.get(i).equalsIgnoreCase(existing.get(i));
+            }
+            if (covers) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+/**
+ * Checks that no two rows of a table have the same values in the columns a unique index is about to be created on,
+ * since creating it would fail half-way through its migration. Rows with a null in any of the columns never clash.
+ *
+ * @throws IllegalStateException If rows clash, naming them by their primary key.
+ */
+    private static void checkUnique(Connection conn, String indexName, String table, List<String> columns) throws SQLException {
+        String key = primaryKey(conn, table);
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (String column : columns) {
+            sql.append("t.").append(column).append(", ");
+        }
+        sql.append(key == null ? "NULL" : "t." + key).append(" FROM ").append(table).append(" t JOIN (SELECT ")
+                .append(String.join(", ", columns)).append(" FROM ").append(table).append(" WHERE ");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : " AND ").append(columns.get(i)).append(" IS NOT NULL");
+        }
+        sql.append(" GROUP BY ").append(String.join(", ", columns)).append(" HAVING COUNT(*) > 1) d ON ");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : " AND ").append("t.").append(columns.get(i)).append(" = d.").append(columns.get(i));
+        }
+        sql.append(" ORDER BY ");
+        for (String column : columns) {
+            sql.append("t.").append(column).append(", ");
+        }
+        sql.append(key == null ? "1" : "t." + key);
+
+        // Each duplicate value, with the keys of the rows sharing it
+        Map<String, List<String>> duplicates = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql.toString())) {
+            while (rs.next()) {
+                StringBuilder value = new StringBuilder();
+                for (int i = 0; i < columns.size(); i++) {
+                    value.append(i == 0 ? "" : ", ").append(columns.get(i)).append(" '").append(rs.getString(i + 1)).append('\'');
+                }
+                List<String> rows = duplicates.get(value.toString());
+                if (rows == null) {
+                    if (duplicates.size() == MAX_REPORTED_DUPLICATES) {
+                        break;
+                    }
+                    rows = new ArrayList<>();
+                    duplicates.put(value.toString(), rows);
+                }
+                rows.add(rs.getString(columns.size() + 1));
+            }
+        }
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("Cannot create the unique index " + indexName + " because rows of "
+                + table + " share the same " + String.join(", ", columns) + ". Correct or delete the duplicates,"
+                + " then start the application again.");
+        for (Map.Entry<String, List<String>> duplicate : duplicates.entrySet()) {
+            message.append('\n').append(duplicate.getKey()).append(": ");
+            if (key != null) {
+                message.append(key).append(' ').append(String.join(", ", duplicate.getValue()));
+            } else {
+                message.append(duplicate.getValue().size()).append(" rows");
+            }
+        }
+        if (duplicates.size() == MAX_REPORTED_DUPLICATES) {
+            message.append("\nOnly the first ").append(MAX_REPORTED_DUPLICATES).append(" duplicate values are listed.");
+        }
+        throw new IllegalStateException(message.toString());
+    }
+
+    // The column of a table's primary key, or null if it has none or more than one column
+    private static String primaryKey(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        String key = null;
+        try (ResultSet rs = meta.getPrimaryKeys(conn.getCatalog(), conn.getSchema(), identifier(meta, table))) {
+            while (rs.next()) {
+                if (key != null) {
+                    return null;
+                }
+                key = rs.getString("COLUMN_NAME");
+            }
+        }
+        return key;
+    }
+
+    private static boolean hasIndex(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), conn.getSchema(), identifier(meta, table), false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getColumns(conn.getCatalog(), conn.getSchema(), identifier(meta, table), identifier(meta, column))) {
+            return rs.next();
+        }
+    }
+
+    // Converts an unquoted identifier to the case the database stores it in, for metadata lookups
+    private static String identifier(DatabaseMetaData meta, String name) throws SQLException {
+        if (meta.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        return meta.storesLowerCaseIdentifiers() ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    private static String readScript(String scriptName) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(SCRIPT_DIRECTORY + scriptName)) {
+            if (in == null) {
+                throw new IOException("Migration script " + scriptName + " not found");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Checksum of a script, ignoring line endings so a checkout with CRLF line endings still matches
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+/**
+ * Splits a script into statements at each semicolon that ends a line, dropping comment lines.
+ * Statements must not contain such a semicolon inside a string literal.
+ */
+    static List<String> statements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            if (trimmed.endsWith(";")) {
+                current.append(trimmed, 0, trimmed.length() - 1);
+                statements.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(trimmed).append('\n');
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+/**
+ * Asks the database how it would run a query and returns the tables it would read by full scan.
+ * Understands MySQL's tabular EXPLAIN, where a full scan has access type ALL, and H2's plan text.
+ * The answer reflects the current table statistics, so a small table may be scanned even when an index exists.
+ *
+ * @param conn The connection to explain the query on.
+ * @param sql The query, with ? placeholders.
+ * @param parameters Representative values for the placeholders.
+ * @return The tables read by full scan, in plan order; empty if every table is read through an index.
+ * @throws SQLException If the query cannot be explained.
+ */
+    public static List<String> explainFullScans(Connection conn, String sql, Object... parameters) throws SQLException {
+        List<String> scans = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                pstmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int typeColumn = findColumn(rs.getMetaData(), "type");
+                while (rs.next()) {
+                    if (typeColumn > 0) {
+                        if ("ALL".equalsIgnoreCase(rs.getString(typeColumn))) {
+                            scans.add(rs.getString("table"));
+                        }
+                    } else {
+                        Matcher scan = H2_TABLE_SCAN.matcher(rs.getString(1));
+                        while (scan.find()) {
+                            scans.add(scan.group(1));
+                        }
+                    }
+                }
+            }
+        }
+        return scans;
+    }
+
+    private static int findColumn(ResultSetMetaData meta, String label) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (label.equalsIgnoreCase(meta.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
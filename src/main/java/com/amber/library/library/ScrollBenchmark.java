@@ -0,0 +1,229 @@
+package com.amber.library.library;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.stage.Stage;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how smoothly the books TableView scrolls through a very large catalog.
+ * A window shows the same columns and cells as the application over a {@link VirtualBookList}, and an AnimationTimer
+ * scrolls it on every frame: first a few rows per frame, like scrolling with the mouse wheel, then through the whole
+ * list, like dragging the scroll bar, so that nearly every frame shows rows whose page is still being fetched.
+ * The time between frames is recorded after a warm-up, and the percentiles, the number of frames slower than
+ * {@link #SLOW_FRAME_MILLIS}, the garbage collections and the bytes allocated on the JavaFX Application Thread
+ * are printed at the end.
+ *
+ * <p>By default the books are made up, and each page takes --fetch-millis to arrive, as if read from a database.
+ * With --catalog the configured catalog backend is used instead, see {@link CatalogConfig}.
+ * Usage: mvn javafx:run@scroll-benchmark -Djavafx.args="--rows=1000000 --frames=1200 --rows-per-frame=3 --fetch-millis=5"
+ */
+public class ScrollBenchmark extends Application {
+
+    private static final int DEFAULT_ROWS = 1_000_000;
+    private static final int DEFAULT_FRAMES = 1200;
+    private static final int DEFAULT_ROWS_PER_FRAME = 3;
+    private static final int DEFAULT_FETCH_MILLIS = 5;
+    private static final int WARMUP_FRAMES = 120;
+    // A frame slower than this misses at least one refresh of a 60 Hz display
+    private static final double SLOW_FRAME_MILLIS = 1000.0 / 60 * 1.5;
+
+    private int[] bookIds;
+    private VirtualBookList.PageFetcher fetcher;
+    private AsyncDBMgr asyncDb;
+    private int frames;
+    private int rowsPerFrame;
+
+/**
+ * Creates the benchmark; JavaFX calls this when it is launched.
+ */
+    public ScrollBenchmark() {
+    }
+
+/**
+ * Reads the options and the IDs of the books to show, before the window opens.
+ */
+    @Override
+    public void init() {
+        Map<String, String> options = getParameters().getNamed();
+        frames = Integer.parseInt(options.getOrDefault("frames", Integer.toString(DEFAULT_FRAMES)));
+        rowsPerFrame = Integer.parseInt(options.getOrDefault("rows-per-frame", Integer.toString(DEFAULT_ROWS_PER_FRAME)));
+        if (getParameters().getUnnamed().contains("--catalog")) {
+            asyncDb = new AsyncDBMgr(DBMgr::getRepository);
+            bookIds = asyncDb.getBookIds().join();
+            fetcher = asyncDb::getBooksByIds;
+            return;
+        }
+        int rows = Integer.parseInt(options.getOrDefault("rows", Integer.toString(DEFAULT_ROWS)));
+        long fetchMillis = Long.parseLong(options.getOrDefault("fetch-millis", Integer.toString(DEFAULT_FETCH_MILLIS)));
+        bookIds = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            bookIds[i] = i + 1;
+        }
+        fetcher = pageIds -> CompletableFuture.supplyAsync(() -> madeUpBooks(pageIds),
+                CompletableFuture.delayedExecutor(fetchMillis, TimeUnit.MILLISECONDS));
+    }
+
+/**
+ * Shows the table and starts scrolling it.
+ */
+    @Override
+    public void start(Stage stage) {
+        TableView<Book> table = new TableView<>();
+        TableColumn<Book, String> isbnColumn = new TableColumn<>("ISBN");
+        isbnColumn.setCellFactory(BookCell.forColumn(Book::getIsbn));
+        TableColumn<Book, String> titleColumn = new TableColumn<>("Title");
+        titleColumn.setCellFactory(BookCell.forColumn(Book::getTitle));
+        titleColumn.setPrefWidth(300);
+        TableColumn<Book, String> authorsColumn = new TableColumn<>("Author(s)");
+        authorsColumn.setCellFactory(BookCell.forColumn(Book::getAuthors));
+        authorsColumn.setPrefWidth(300);
+        table.getColumns().add(isbnColumn);
+        table.getColumns().add(titleColumn);
+        table.getColumns().add(authorsColumn);
+        VirtualBookList books = new VirtualBookList(bookIds, fetcher);
+        table.setItems(books);
+
+        stage.setTitle("Scroll benchmark: " + bookIds.length + " books");
+        stage.setScene(new Scene(table, 900, 600));
+        stage.show();
+        new Scroller(table, books).start();
+    }
+
+/**
+ * Closes the catalog backend if the benchmark opened one.
+ */
+    @Override
+    public void stop() {
+        if (asyncDb != null) {
+            asyncDb.close();
+            DBMgr.closeInstance();
+        }
+    }
+
+    private static List<Book> madeUpBooks(int[] pageIds) {
+        List<Book> books = new ArrayList<>(pageIds.length);
+        for (int bookId : pageIds) {
+            books.add(new Book(bookId, "Title of book " + bookId, "Author " + (bookId % 5000) + "; Co Author",
+                    String.format("978%010d", bookId), (bookId % 1000) + ".1", 1));
+        }
+        return books;
+    }
+
+    // Scrolls the table on every frame and records the time between frames
+    private final class Scroller extends AnimationTimer {
+        private final TableView<Book> table;
+        private final VirtualBookList books;
+        private final long[] frameNanos = new long[frames];
+        private final long fxThreadId = Thread.currentThread().getId();
+        private int frame = -WARMUP_FRAMES;
+        private long lastFrame;
+        private int index;
+        private long allocatedBefore;
+        private long collectionsBefore;
+        private long collectionMillisBefore;
+
+        Scroller(TableView<Book> table, VirtualBookList books) {
+            this.table = table;
+            this.books = books;
+        }
+
+        @Override
+        public void handle(long now) {
+            long time = System.nanoTime();
+            if (frame == 0) {
+                allocatedBefore = allocatedBytes();
+                collectionsBefore = collections();
+                collectionMillisBefore = collectionMillis();
+            } else if (frame > 0) {
+                frameNanos[frame - 1] = time - lastFrame;
+            }
+            lastFrame = time;
+            if (frame == frames) {
+                stop();
+                report();
+                Platform.exit();
+                return;
+            }
+            // Wheel-like scrolling during the warm-up and the first half, then sweeping the whole list
+            if (frame < frames / 2) {
+                index += rowsPerFrame;
+            } else {
+                index += Math.max(1, books.size() / Math.max(1, frames / 2));
+            }
+            if (index >= books.size()) {
+                index = 0;
+            }
+            table.scrollTo(index);
+            frame++;
+        }
+
+        private void report() {
+            long allocated = allocatedBytes() - allocatedBefore;
+            long[] sorted = frameNanos.clone();
+            Arrays.sort(sorted);
+            long slow = Arrays.stream(sorted).filter(nanos -> nanos > SLOW_FRAME_MILLIS * 1_000_000).count();
+            System.out.printf("Books %d, frames %d (half wheel-like at %d rows per frame, half sweeping the list)%n",
+                    books.size(), frames, rowsPerFrame);
+            System.out.printf("Frame time ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+            System.out.printf("Frames slower than %.1f ms: %d (%.2f%%)%n", SLOW_FRAME_MILLIS, slow, 100.0 * slow / frames);
+            System.out.printf("Garbage collections %d taking %d ms; allocated on the JavaFX thread %.1f KB per frame%n",
+                    collections() - collectionsBefore, collectionMillis() - collectionMillisBefore,
+                    allocated < 0 ? Double.NaN : allocated / 1024.0 / frames);
+            System.out.printf("Pages held at the end: %d of %d rows each%n", books.getCachedPages(), VirtualBookList.PAGE_SIZE);
+        }
+
+        private double percentile(long[] sorted, double fraction) {
+            return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+        }
+
+        // Bytes allocated by the JavaFX Application Thread so far, or -1 if the JVM does not tell
+        private long allocatedBytes() {
+            if (ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threads) {
+                return threads.getThreadAllocatedBytes(fxThreadId);
+            }
+            return -1;
+        }
+
+        private long collections() {
+            long count = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+            return count;
+        }
+
+        private long collectionMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            return millis;
+        }
+    }
+
+/**
+ * Runs the benchmark.
+ *
+ * @param args --rows=N, --frames=N, --rows-per-frame=N and --fetch-millis=N, or --catalog to scroll the configured catalog.
+ */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
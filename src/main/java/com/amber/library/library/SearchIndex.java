@@ -0,0 +1,378 @@
+package com.amber.library.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over the searchable fields of every book: title, author names, ISBN and Dewey number.
+ * Each field is normalized into lower-case alphanumeric tokens, and every trigram (three consecutive characters)
+ * of every token has a posting list of the BookIDs containing it. A query is answered by intersecting the posting
+ * lists of its trigrams, verifying the remaining candidates, and ranking them, without touching the database.
+ * A book matches when every query token occurs somewhere in its fields, so "tolk hobb" finds "The Hobbit" by Tolkien.
+ * The index is safe for concurrent use; DBMgr keeps it in sync with its insert, update and delete operations.
+ */
+public class SearchIndex {
+
+    // Relative weight of a match in each field, used to rank results
+    private static final int TITLE_WORD_START_SCORE = 8;
+    private static final int TITLE_SCORE = 5;
+    private static final int AUTHOR_WORD_START_SCORE = 4;
+    private static final int AUTHOR_SCORE = 3;
+    private static final int CODE_SCORE = 6;
+
+    // The most results a search returns; a query of one or two characters matches most of the catalog
+    public static final int MAX_RESULTS = 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // BookID -> normalized fields of that book
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // Packed trigram -> sorted BookIDs of the books containing it
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+/**
+ * Creates an empty index.
+ */
+    public SearchIndex() {
+    }
+
+/**
+ * Adds a book to the index, replacing whatever was indexed for the same BookID before.
+ *
+ * @param bookId The ID of the book.
+ * @param title The title of the book.
+ * @param authors The author names of the book.
+ * @param isbn The ISBN of the book.
+ * @param dewey The Dewey Decimal classification of the book.
+ */
+    public void put(int bookId, String title, String authors, String isbn, String dewey) {
+        Entry entry = new Entry(normalize(title), normalize(authors), normalizeCode(isbn), normalizeCode(dewey));
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(bookId, entry);
+            if (previous != null) {
+                unindex(bookId, previous);
+            }
+            for (long trigram : trigramsOf(entry)) {
+                postings.computeIfAbsent(trigram, key -> new Postings()).add(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+/**
+ * Adds a book to the index, taking its fields from a Book object.
+ *
+ * @param book The book to index.
+ */
+    public void put(Book book) {
+        put(book.getId().intValue(), book.getTitle(), book.getAuthors(), book.getIsbn(), book.getDewey());
+    }
+
+/**
+ * Removes a book from the index.
+ *
+ * @param bookId The ID of the book.
+ */
+    public void remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(bookId);
+            if (previous != null) {
+                unindex(bookId, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+/**
+ * Gets the number of books in the index.
+ *
+ * @return The number of indexed books.
+ */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Finds the best {@link #MAX_RESULTS} books matching a query, best matches first.
+ *
+ * @param query The text typed by the user.
+ * @return The BookIDs of the best matching books, ranked; empty if the query has no searchable characters.
+ */
+    public int[] search(String query) {
+        return search(query, MAX_RESULTS);
+    }
+
+/**
+ * Finds the books matching a query, best matches first.
+ * Matches in the title rank above matches in the author names, and matches at the start of a word
+ * rank above matches inside one. Books with the same score are ordered by BookID.
+ *
+ * @param query The text typed by the user.
+ * @param limit The most BookIDs to return.
+ * @return The BookIDs of the best matching books, at most limit of them, ranked; empty if the query has no
+ *         searchable characters.
+ */
+    public int[] search(String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0) {
+            return new int[0];
+        }
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidatesFor(tokens);
+            long[] ranked = new long[candidates == null ? entries.size() : candidates.length];
+            int count = 0;
+            if (candidates == null) {
+                // Every token is shorter than a trigram, so every book is a candidate
+                for (Map.Entry<Integer, Entry> candidate : entries.entrySet()) {
+                    int score = score(candidate.getValue(), tokens);
+                    if (score > 0) {
+                        ranked[count++] = rankKey(score, candidate.getKey());
+                    }
+                }
+            } else {
+                for (int bookId : candidates) {
+                    int score = score(entries.get(bookId), tokens);
+                    if (score > 0) {
+                        ranked[count++] = rankKey(score, bookId);
+                    }
+                }
+            }
+            Arrays.sort(ranked, 0, count);
+            count = Math.min(count, limit);
+            int[] bookIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                bookIds[i] = (int) ranked[i];
+            }
+            return bookIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+/**
+ * Checks whether a book matches a query under the same rules as {@link #search(String)},
+ * without the book having to be in the index.
+ *
+ * @param book The book to check.
+ * @param query The query text.
+ * @return true if every token of the query occurs in one of the book's fields.
+ */
+    public static boolean matches(Book book, String query) {
+        String[] tokens = tokenize(query);
+        Entry entry = new Entry(normalize(book.getTitle()), normalize(book.getAuthors()),
+                normalizeCode(book.getIsbn()), normalizeCode(book.getDewey()));
+        return tokens.length > 0 && score(entry, tokens) > 0;
+    }
+
+/**
+ * Splits a query into normalized tokens.
+ *
+ * @param query The query text.
+ * @return The distinct lower-case alphanumeric tokens of the query.
+ */
+    public static String[] tokenize(String query) {
+        String normalized = normalize(query).trim();
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(normalized.split(" +")).distinct().toArray(String[]::new);
+    }
+
+    // Intersects the posting lists of all trigrams of the tokens, smallest first; null means "no trigram to filter on"
+    private int[] candidatesFor(String[] tokens) {
+        List<Postings> lists = new ArrayList<>();
+        for (String token : tokens) {
+            for (int i = 0; i + 3 <= token.length(); i++) {
+                Postings list = postings.get(pack(token, i));
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+        }
+        if (lists.isEmpty()) {
+            return null;
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int length = result.length;
+        for (int l = 1; l < lists.size() && length > 0; l++) {
+            Postings list = lists.get(l);
+            int kept = 0;
+            for (int i = 0; i < length; i++) {
+                if (Arrays.binarySearch(list.ids, 0, list.size, result[i]) >= 0) {
+                    result[kept++] = result[i];
+                }
+            }
+            length = kept;
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    // Scores a book against the tokens; 0 means at least one token does not occur in the book
+    private static int score(Entry entry, String[] tokens) {
+        int total = 0;
+        for (String token : tokens) {
+            int best = 0;
+            if (entry.isbn.contains(token) || entry.dewey.contains(token)) {
+                best = CODE_SCORE;
+            }
+            best = Math.max(best, fieldScore(entry.title, token, TITLE_WORD_START_SCORE, TITLE_SCORE));
+            best = Math.max(best, fieldScore(entry.authors, token, AUTHOR_WORD_START_SCORE, AUTHOR_SCORE));
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static int fieldScore(String field, String token, int wordStartScore, int containsScore) {
+        int at = field.indexOf(token);
+        if (at < 0) {
+            return 0;
+        }
+        while (at >= 0) {
+            if (at == 0 || field.charAt(at - 1) == ' ') {
+                return wordStartScore;
+            }
+            at = field.indexOf(token, at + 1);
+        }
+        return containsScore;
+    }
+
+    // Higher scores sort first, then lower BookIDs
+    private static long rankKey(int score, int bookId) {
+        return ((long) -score << 32) | (bookId & 0xFFFFFFFFL);
+    }
+
+    private void unindex(int bookId, Entry entry) {
+        for (long trigram : trigramsOf(entry)) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(bookId) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    private static long[] trigramsOf(Entry entry) {
+        long[] trigrams = new long[16];
+        int count = 0;
+        for (String field : new String[]{entry.title, entry.authors, entry.isbn, entry.dewey}) {
+            for (int i = 0; i + 3 <= field.length(); i++) {
+                if (field.charAt(i) == ' ' || field.charAt(i + 1) == ' ' || field.charAt(i + 2) == ' ') {
+                    continue;
+                }
+                if (count == trigrams.length) {
+                    trigrams = Arrays.copyOf(trigrams, count * 2);
+                }
+                trigrams[count++] = pack(field, i);
+            }
+        }
+        long[] distinct = Arrays.copyOf(trigrams, count);
+        Arrays.sort(distinct);
+        int unique = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[unique++] = distinct[i];
+            }
+        }
+        return Arrays.copyOf(distinct, unique);
+    }
+
+    private static long pack(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    // Lower-cases letters and digits and turns everything else into single spaces
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    // Codes such as ISBNs are indexed without separators, so "978-0-13" and "978013" find the same book
+    private static String normalizeCode(String code) {
+        return normalize(code).replace(" ", "");
+    }
+
+    // The normalized searchable fields of one book
+    private static final class Entry {
+        final String title;
+        final String authors;
+        final String isbn;
+        final String dewey;
+
+        Entry(String title, String authors, String isbn, String dewey) {
+            this.title = title;
+            this.authors = authors;
+            this.isbn = isbn;
+            this.dewey = dewey;
+        }
+    }
+
+    // A sorted, growable array of BookIDs
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int bookId) {
+            // Books are usually added in increasing BookID order, so appending is the common case
+            if (size > 0 && ids[size - 1] >= bookId) {
+                int at = Arrays.binarySearch(ids, 0, size, bookId);
+                if (at >= 0) {
+                    return;
+                }
+                insertAt(-at - 1, bookId);
+                return;
+            }
+            insertAt(size, bookId);
+        }
+
+        boolean remove(int bookId) {
+            int at = Arrays.binarySearch(ids, 0, size, bookId);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        private void insertAt(int at, int bookId) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = bookId;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.amber.library.library;
+
+/**
+ * Thrown when a book cannot be updated because it was changed or deleted since the version the update was based on.
+ * Carries the book as it is now, so the user can review the other change and apply theirs again.
+ */
+public class StaleBookException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Book current;
+
+/**
+ * Creates the exception for a book that has moved on.
+ *
+ * @param bookId The ID of the book that was to be updated.
+ * @param expectedVersion The version the update was based on.
+ * @param current The book as it is now in the database; null if it has been deleted.
+ */
+    public StaleBookException(int bookId, int expectedVersion, Book current) {
+        super(current == null
+                ? "Book " + bookId + " has been deleted"
+                : "Book " + bookId + " is at version " + current.getVersion() + ", not " + expectedVersion);
+        this.current = current;
+    }
+
+/**
+ * Gets the book as it is now.
+ *
+ * @return The current book, or null if it has been deleted.
+ */
+    public Book getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,258 @@
+package com.amber.library.library;
+
+import java.lang.System.Logger.Level;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The prepared statements of one pooled connection, kept open between uses so that repeated SQL is parsed and
+ * planned only once by the driver and the server.
+ * Closing a statement handed out by the cache does not close the statement itself: its ResultSets are closed, its
+ * parameters and batch cleared, its fetch size, max rows and query timeout set back to those it was prepared with,
+ * and it waits in the cache for the next prepare of the same SQL. The least recently used statements are closed
+ * once the cache is full. Only one borrower uses a connection at a time, so the cache
+ * needs no locking; the hit, miss and eviction counters are shared by all connections of a pool.
+ */
+class StatementCache {
+
+    private static final System.Logger LOG = System.getLogger(StatementCache.class.getName());
+    // Marks statements prepared without a generated keys flag
+    private static final int NO_GENERATED_KEYS_FLAG = -1;
+
+    private final Connection physical;
+    private final int maxStatements;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+/**
+ * Creates an empty cache for a physical connection.
+ *
+ * @param physical The connection the statements are prepared on.
+ * @param maxStatements The maximum number of statements kept open.
+ * @param hits Counts prepares answered from the cache.
+ * @param misses Counts prepares that reached the driver.
+ * @param evictions Counts statements closed to make room.
+ */
+    StatementCache(Connection physical, int maxStatements, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.physical = physical;
+        this.maxStatements = maxStatements;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxStatements) {
+                    return false;
+                }
+                StatementCache.this.evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+/**
+ * Prepares a statement, reusing the cached one for the same SQL if it is not in use.
+ *
+ * @param connection The borrowed connection handle, returned by the statement's getConnection().
+ * @param sql The SQL of the statement.
+ * @param autoGeneratedKeys The generated keys flag, or null for the plain prepareStatement(sql).
+ * @return A statement whose close() hands it back to the cache.
+ * @throws SQLException If the statement cannot be prepared.
+ */
+    PreparedStatement prepare(Connection connection, String sql, Integer autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys == null ? NO_GENERATED_KEYS_FLAG : autoGeneratedKeys);
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            PreparedStatement statement = autoGeneratedKeys == null
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+            if (cached != null) {
+                // The same SQL is already open on this connection, as in nested queries; this one is not kept
+                return statement;
+            }
+            try {
+                cached = new CachedStatement(statement);
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+            statements.put(key, cached);
+        }
+        cached.inUse = true;
+        cached.lease++;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Handle(cached, cached.lease, connection));
+    }
+
+/**
+ * Hands back every statement the borrower left open, closing their ResultSets, as when the connection is returned.
+ */
+    void releaseAll() {
+        for (Iterator<CachedStatement> it = statements.values().iterator(); it.hasNext(); ) {
+            CachedStatement cached = it.next();
+            if (cached.inUse && !cached.release()) {
+                it.remove();
+            }
+        }
+    }
+
+/**
+ * Closes every cached statement, as when the physical connection is closed.
+ */
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.close();
+        }
+        statements.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    // A statement kept open by the cache, with the ResultSets opened on it since it was handed out
+    private static final class CachedStatement {
+        final PreparedStatement statement;
+        final List<ResultSet> resultSets = new ArrayList<>(1);
+        // The settings the statement was created with, which a borrower may have changed
+        final int fetchSize;
+        final int maxRows;
+        final int queryTimeout;
+        boolean inUse;
+        boolean evicted;
+        // Counts how often the statement was handed out, so a stale handle cannot touch a later use
+        long lease;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+/**
+ * Resets the statement for its next use.
+ *
+ * @return false if the statement could not be reset and has been closed instead.
+ */
+        boolean release() {
+            inUse = false;
+            try {
+                for (ResultSet resultSet : resultSets) {
+                    resultSet.close();
+                }
+                resultSets.clear();
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                // Max rows first, since drivers may reject a fetch size above it
+                statement.setMaxRows(maxRows);
+                statement.setFetchSize(fetchSize);
+                statement.setQueryTimeout(queryTimeout);
+            } catch (SQLException e) {
+                close();
+                return false;
+            }
+            if (evicted) {
+                close();
+            }
+            return !evicted;
+        }
+
+        // Closes the statement now, or when its borrower is done with it
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                close();
+            }
+        }
+
+        void close() {
+            resultSets.clear();
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+
+    // The statement given to a borrower; closing it hands the cached statement back exactly once
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final long lease;
+        private final Connection connection;
+        private boolean closed;
+
+        Handle(CachedStatement cached, long lease, Connection connection) {
+            this.cached = cached;
+            this.lease = lease;
+            this.connection = connection;
+        }
+
+        // A handle is closed once its borrower closed it, or the connection was returned with it still open
+        private boolean isStale() {
+            return closed || cached.lease != lease || !cached.inUse;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!isStale()) {
+                        closed = true;
+                        if (!cached.release()) {
+                            statements.values().remove(cached);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return isStale() || cached.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    if (isStale()) {
+                        throw new SQLException("Statement has already been closed.");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(cached.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof ResultSet resultSet) {
+                        cached.resultSets.add(resultSet);
+                    }
+                    return result;
+            }
+        }
+    }
+}
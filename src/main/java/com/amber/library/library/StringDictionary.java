@@ -0,0 +1,87 @@
+package com.amber.library.library;
+
+import java.util.Arrays;
+
+/**
+ * Encodes strings as dense int codes, so that a column with many repeated values, such as author names or
+ * Dewey numbers, stores each distinct value once and an int per row.
+ * Codes are assigned in order of first use and never reused; null is encoded as -1.
+ * Lookups use open addressing over an int table, so an entry costs its string and a few ints rather than a map entry.
+ * Not thread-safe.
+ */
+final class StringDictionary {
+
+    private String[] values = new String[16];
+    private int size;
+    // code + 1 of the value hashed to each slot, 0 for an empty slot; kept at most half full
+    private int[] slots = new int[32];
+
+/**
+ * Returns the code of a value, assigning the next code if the value is new.
+ *
+ * @param value The value to encode; may be null.
+ * @return The value's code, or -1 for null.
+ */
+    int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        int slot = spread(value.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            int code = slots[slot] - 1;
+            if (values[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int code = size++;
+        if (code == values.length) {
+            values = Arrays.copyOf(values, code * 2);
+        }
+        values[code] = value;
+        slots[slot] = code + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+
+/**
+ * Returns the value of a code.
+ *
+ * @param code A code returned by {@link #encode(String)}, or -1.
+ * @return The value, or null for -1.
+ */
+    String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+/**
+ * Gets the number of distinct values encoded so far.
+ *
+ * @return The number of codes assigned.
+ */
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        int[] fresh = new int[slots.length * 2];
+        int mask = fresh.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = spread(values[code].hashCode()) & mask;
+            while (fresh[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            fresh[slot] = code + 1;
+        }
+        slots = fresh;
+    }
+
+    // Mixes the high bits of a hash code into the low bits used to pick a slot
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,368 @@
+package com.amber.library.library;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates the fields of books, one at a time from the form or in batches of millions from an import.
+ * The checks scan the characters of each field once, without regular expressions, and report what they find as
+ * a set of {@link ValidationError} bits, so validating a row allocates nothing. ISBNs must have a matching check digit,
+ * and can be converted between their 10- and 13-digit forms.
+ *
+ * <p>A batch is described by a {@link Rows} view over the caller's own data and validated in parallel on the common
+ * fork/join pool, one range of rows per task; the errors of each row are written into an int array.
+ */
+public final class ValidationEngine {
+
+    // Batches up to this many rows are validated on the calling thread, and larger ones are split into ranges of about this size
+    private static final int SEQUENTIAL_ROWS = 4096;
+    // The prefix of the ISBN-13 of a book that also has an ISBN-10
+    private static final String BOOKLAND_PREFIX = "978";
+
+    private static final OperationMetrics BATCH_METRICS = Metrics.getInstance().operation("validate.batch");
+
+    private ValidationEngine() {
+    }
+
+/**
+ * Checks the fields the book form and the importer require.
+ *
+ * @param title The title; not blank, and only letters, digits and spaces.
+ * @param authors The author(s); not blank.
+ * @param isbn The ISBN; 10 or 13 digits with a matching check digit.
+ * @param dewey The Dewey number; digits, optionally followed by a dot and more digits.
+ * @return The errors found; 0 if the fields are valid.
+ */
+    public static int checkBook(CharSequence title, CharSequence authors, CharSequence isbn, CharSequence dewey) {
+        int errors = checkTitle(title);
+        if (isBlank(authors)) {
+            errors |= ValidationError.AUTHOR_EMPTY.bit();
+        }
+        errors |= checkIsbn(isbn);
+        if (!isDewey(dewey)) {
+            errors |= ValidationError.DEWEY_FORMAT.bit();
+        }
+        return errors;
+    }
+
+/**
+ * Checks a title.
+ *
+ * @param title The title.
+ * @return {@link ValidationError#TITLE_EMPTY} for a blank title, {@link ValidationError#TITLE_NOT_ALPHANUMERIC} for
+ *         one with other characters than letters, digits and spaces, and 0 otherwise.
+ */
+    public static int checkTitle(CharSequence title) {
+        if (isBlank(title)) {
+            return ValidationError.TITLE_EMPTY.bit();
+        }
+        return isAlphanumeric(title) ? 0 : ValidationError.TITLE_NOT_ALPHANUMERIC.bit();
+    }
+
+/**
+ * Checks an ISBN. Hyphens and spaces between the digits are ignored, so an ISBN can be checked as it is printed.
+ *
+ * @param isbn The ISBN.
+ * @return {@link ValidationError#ISBN_FORMAT} unless it is 10 digits (the last of which may be an X) or 13 digits,
+ *         {@link ValidationError#ISBN_CHECKSUM} if its check digit does not match, and 0 otherwise.
+ */
+    public static int checkIsbn(CharSequence isbn) {
+        int length = isbn == null ? 0 : isbn.length();
+        // Both weighted sums are kept while scanning, since the number of digits is only known at the end
+        int digits = 0;
+        int sum10 = 0;
+        int sum13 = 0;
+        boolean endsWithX = false;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (digits == 13 || endsWithX || !(isDigit(c) || digits == 9 && isIsbn10CheckDigit(c))) {
+                return ValidationError.ISBN_FORMAT.bit();
+            }
+            int value = digit(c);
+            endsWithX = value == 10;
+            if (digits < 10) {
+                sum10 += value * (10 - digits);
+            }
+            sum13 += value * ((digits & 1) == 0 ? 1 : 3);
+            digits++;
+        }
+        if (digits == 10) {
+            return sum10 % 11 == 0 ? 0 : ValidationError.ISBN_CHECKSUM.bit();
+        }
+        if (digits == 13) {
+            return sum13 % 10 == 0 ? 0 : ValidationError.ISBN_CHECKSUM.bit();
+        }
+        return ValidationError.ISBN_FORMAT.bit();
+    }
+
+/**
+ * Tells whether a value is null, empty or only whitespace.
+ *
+ * @param value The value.
+ * @return true if it has no character above a space.
+ */
+    public static boolean isBlank(CharSequence value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+/**
+ * Tells whether a value is one or more ASCII letters, digits and spaces.
+ *
+ * @param value The value.
+ * @return true if it is not empty and has no other characters.
+ */
+    public static boolean isAlphanumeric(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == ' ')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+/**
+ * Tells whether a value is a Dewey number: one or more digits, optionally followed by a dot and one or more digits.
+ *
+ * @param dewey The value.
+ * @return true if it is a Dewey number.
+ */
+    public static boolean isDewey(CharSequence dewey) {
+        if (dewey == null) {
+            return false;
+        }
+        int length = dewey.length();
+        int i = 0;
+        while (i < length && isDigit(dewey.charAt(i))) {
+            i++;
+        }
+        if (i == 0) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+        if (dewey.charAt(i) != '.' || i + 1 == length) {
+            return false;
+        }
+        return isDigits(dewey, i + 1, length);
+    }
+
+/**
+ * Converts an ISBN to its 13-digit form. Hyphens and spaces between the digits are dropped.
+ *
+ * @param isbn An ISBN-10 or ISBN-13.
+ * @return The ISBN-13, or null if the value is not a valid ISBN.
+ */
+    public static String toIsbn13(CharSequence isbn) {
+        String digits = stripSeparators(isbn);
+        if (digits == null || checkIsbn(digits) != 0) {
+            return null;
+        }
+        if (digits.length() == 13) {
+            return digits;
+        }
+        char[] isbn13 = new char[13];
+        BOOKLAND_PREFIX.getChars(0, 3, isbn13, 0);
+        digits.getChars(0, 9, isbn13, 3);
+        isbn13[12] = (char) ('0' + isbn13Checksum(new String(isbn13, 0, 12)));
+        return new String(isbn13);
+    }
+
+/**
+ * Converts an ISBN to its 10-digit form. Hyphens and spaces between the digits are dropped.
+ * Only ISBN-13s starting with 978 have one.
+ *
+ * @param isbn An ISBN-10 or ISBN-13.
+ * @return The ISBN-10, or null if the value is not a valid ISBN or has no 10-digit form.
+ */
+    public static String toIsbn10(CharSequence isbn) {
+        String digits = stripSeparators(isbn);
+        if (digits == null || checkIsbn(digits) != 0) {
+            return null;
+        }
+        if (digits.length() == 10) {
+            return digits.toUpperCase(Locale.ROOT);
+        }
+        if (!digits.startsWith(BOOKLAND_PREFIX)) {
+            return null;
+        }
+        char[] isbn10 = new char[10];
+        digits.getChars(3, 12, isbn10, 0);
+        int check = isbn10Checksum(new String(isbn10, 0, 9));
+        isbn10[9] = check == 10 ? 'X' : (char) ('0' + check);
+        return new String(isbn10);
+    }
+
+/**
+ * Converts an ISBN to the form the catalog stores: its 13-digit form without separators, so that the same book
+ * entered as an ISBN-10 or with hyphens is stored, indexed and checked for duplicates under one value.
+ *
+ * @param isbn The ISBN as entered.
+ * @return The ISBN-13, or the value with surrounding whitespace removed if it is not a valid ISBN; null for null.
+ */
+    public static String normalizeIsbn(CharSequence isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        String isbn13 = toIsbn13(isbn);
+        return isbn13 != null ? isbn13 : isbn.toString().trim();
+    }
+
+/**
+ * Validates a batch of rows with {@link #checkBook}, in parallel once the batch is large enough.
+ * The errors of each row are added to the ones already in its element of the array, so a caller can record
+ * problems it found itself, such as a missing column, before the batch is validated.
+ *
+ * @param rows The rows.
+ * @param errors Receives the errors of row i in element i; at least as long as the batch.
+ * @return The number of rows with errors.
+ */
+    public static int validateAll(Rows rows, int[] errors) {
+        int size = rows.size();
+        if (errors.length < size) {
+            throw new IllegalArgumentException("errors has room for " + errors.length + " of " + size + " rows");
+        }
+        long start = System.nanoTime();
+        int invalid = size <= SEQUENTIAL_ROWS ? validateRange(rows, errors, 0, size)
+                : ForkJoinPool.commonPool().invoke(new RangeTask(rows, errors, 0, size));
+        BATCH_METRICS.success(start, size);
+        return invalid;
+    }
+
+    // Validates rows [from, to) on the current thread and returns how many have errors
+    private static int validateRange(Rows rows, int[] errors, int from, int to) {
+        int invalid = 0;
+        for (int row = from; row < to; row++) {
+            int rowErrors = errors[row] | checkBook(rows.title(row), rows.authors(row), rows.isbn(row), rows.dewey(row));
+            errors[row] = rowErrors;
+            if (rowErrors != 0) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    // The check digit of an ISBN-13 whose first 12 characters are digits
+    private static int isbn13Checksum(CharSequence isbn) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += digit(isbn.charAt(i)) * ((i & 1) == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    // The check digit of an ISBN-10 whose first 9 characters are digits; 10 stands for X
+    private static int isbn10Checksum(CharSequence isbn) {
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            sum += digit(isbn.charAt(i)) * (10 - i);
+        }
+        return (11 - sum % 11) % 11;
+    }
+
+    private static boolean isIsbn10CheckDigit(char c) {
+        return isDigit(c) || c == 'X' || c == 'x';
+    }
+
+    private static int digit(char c) {
+        return c == 'X' || c == 'x' ? 10 : c - '0';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigits(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The value without hyphens and spaces, or null if it is null or too long to be an ISBN
+    private static String stripSeparators(CharSequence isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c != '-' && c != ' ') {
+                if (digits.length() == 13) {
+                    return null;
+                }
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+/**
+ * A batch of rows to validate, as a view over data the caller already holds, so the batch is not copied.
+ * The methods are called from several threads at once, each for different rows.
+ */
+    public interface Rows {
+
+/**
+ * Gets the number of rows.
+ *
+ * @return The number of rows, numbered from 0.
+ */
+        int size();
+
+        CharSequence title(int row);
+
+        CharSequence authors(int row);
+
+        CharSequence isbn(int row);
+
+        CharSequence dewey(int row);
+    }
+
+    // Validates a range of rows, splitting it in half until it is small enough to run on one thread
+    private static final class RangeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int[] errors;
+        private final int from;
+        private final int to;
+
+        RangeTask(Rows rows, int[] errors, int from, int to) {
+            this.rows = rows;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= SEQUENTIAL_ROWS) {
+                return validateRange(rows, errors, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(rows, errors, from, middle);
+            left.fork();
+            int right = new RangeTask(rows, errors, middle, to).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.amber.library.library;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The problems found in a book's fields.
+ * A set of errors is passed around as an int with one bit per error, so validating a row allocates nothing;
+ * 0 means the row is valid. The messages are only put together when a set of errors is shown or written out.
+ * {@link ValidationEngine} reports the errors of the fields both the form and the import have; the others are added
+ * by the one caller they concern, so the form never shows an import error and an import never rejects a row for a
+ * form error.
+ */
+public enum ValidationError {
+    TITLE_EMPTY("Title cannot be empty."),
+    TITLE_NOT_ALPHANUMERIC("Title must contain only letters, numbers, and spaces."),
+    AUTHOR_EMPTY("Author Name cannot be empty."),
+    ISBN_FORMAT("Invalid ISBN format. ISBN must be 10 or 13 digits."),
+    ISBN_CHECKSUM("Invalid ISBN. The check digit does not match."),
+    DEWEY_FORMAT("Invalid Dewey Decimal format."),
+    // Import only: added by BulkImporter while it parses a CSV line
+    MISSING_COLUMNS("Expected at least 5 columns."),
+    NOT_A_NUMBER("Publisher ID and number of pages must be whole numbers."),
+    // Form only: added by the book form when no publisher is chosen; an imported row names its publisher by ID
+    PUBLISHER_MISSING("Publisher must be selected.");
+
+    private static final ValidationError[] VALUES = values();
+
+    private final String message;
+
+    ValidationError(String message) {
+        this.message = message;
+    }
+
+/**
+ * Gets the bit standing for this error in a set of errors.
+ *
+ * @return The bit.
+ */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+/**
+ * Tells whether a set of errors contains this error.
+ *
+ * @param errors The set of errors.
+ * @return true if this error's bit is set.
+ */
+    public boolean in(int errors) {
+        return (errors & bit()) != 0;
+    }
+
+/**
+ * Gets the message shown to the user for this error.
+ *
+ * @return The message.
+ */
+    public String getMessage() {
+        return message;
+    }
+
+/**
+ * Turns a set of errors into the errors it contains.
+ *
+ * @param errors The set of errors.
+ * @return The errors, in declaration order.
+ */
+    public static Set<ValidationError> decode(int errors) {
+        Set<ValidationError> decoded = EnumSet.noneOf(ValidationError.class);
+        for (ValidationError error : VALUES) {
+            if (error.in(errors)) {
+                decoded.add(error);
+            }
+        }
+        return decoded;
+    }
+
+/**
+ * Joins the messages of a set of errors with the given separator.
+ *
+ * @param errors The set of errors.
+ * @param separator Put between two messages.
+ * @return The messages; empty if there are no errors.
+ */
+    public static String describe(int errors, String separator) {
+        StringBuilder messages = new StringBuilder();
+        for (ValidationError error : VALUES) {
+            if (error.in(errors)) {
+                if (!messages.isEmpty()) {
+                    messages.append(separator);
+                }
+                messages.append(error.message);
+            }
+        }
+        return messages.toString();
+    }
+}
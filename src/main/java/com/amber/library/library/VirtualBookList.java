@@ -0,0 +1,409 @@
+package com.amber.library.library;
+
+import javafx.collections.ObservableListBase;
+
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole catalog as a list of its full length, of which only the pages scrolled into view are held in memory.
+ * The list is built from the ID of every book, in BookID order; a book is fetched, together with the rest of its
+ * page, the first time a control asks for it. Until its page arrives the list returns null for it, and once the page
+ * arrives an update of its rows is fired so that the rows showing them are filled in. The page after the one asked
+ * for is fetched ahead, so scrolling down rarely shows empty rows. A book the fetch no longer finds was deleted after
+ * the IDs were read, and is removed from the list.
+ *
+ * <p>At most {@link #MAX_CACHED_PAGES} pages are held; the page used least recently is dropped to make room and
+ * fetched again if it is needed later. Getting a book whose page is held allocates nothing, so the rows and cells
+ * of a TableView can be refreshed on every frame of a scroll without creating garbage.
+ * A page that could not be fetched is not asked for again at once, but after a delay that doubles with every failure
+ * in a row, from {@link #RETRY_MIN_MILLIS} up to {@link #RETRY_MAX_MILLIS}; its rows are then updated so that the
+ * rows still shown ask for it again.
+ * Like any list shown by JavaFX controls, it must only be used on the JavaFX Application Thread once shown.
+ */
+public class VirtualBookList extends ObservableListBase<Book> {
+
+    private static final System.Logger LOG = System.getLogger(VirtualBookList.class.getName());
+
+    public static final int PAGE_SIZE = 200;
+    public static final int MAX_CACHED_PAGES = 256;
+    public static final long RETRY_MIN_MILLIS = 250;
+    public static final long RETRY_MAX_MILLIS = 30_000;
+
+    private final PageFetcher fetcher;
+    private int[] bookIds;
+    private int size;
+    // The held pages by page number, and when each was last used; null for a page that is not held
+    private Book[][] pages;
+    private long[] lastUsed;
+    private boolean[] pending;
+    // For a page whose last fetch failed, the System.nanoTime() before which it is not fetched again, and the
+    // number of failures in a row; 0 for other pages
+    private long[] retryAt;
+    private int[] failures;
+    private int cachedPages;
+    private long useCounter;
+    // Changed whenever rows move, so that a page fetched for the old positions is dropped on arrival
+    private int generation;
+    private PageListener pageListener;
+
+/**
+ * Creates a list of the given books, none of which is fetched yet.
+ *
+ * @param bookIds The IDs of the books, in ascending order; the list takes ownership of the array.
+ * @param fetcher Fetches the books of a page in the background, such as {@link AsyncDBMgr#getBooksByIds(int[])}.
+ */
+    public VirtualBookList(int[] bookIds, PageFetcher fetcher) {
+        this.fetcher = fetcher;
+        this.bookIds = bookIds;
+        this.size = bookIds.length;
+        int pageCount = pageOf(size) + 1;
+        this.pages = new Book[pageCount][];
+        this.lastUsed = new long[pageCount];
+        this.pending = new boolean[pageCount];
+        this.retryAt = new long[pageCount];
+        this.failures = new int[pageCount];
+    }
+
+/**
+ * Sets the listener told when a page has been fetched, or could not be.
+ *
+ * @param pageListener The listener, or null for none.
+ */
+    public void setPageListener(PageListener pageListener) {
+        this.pageListener = pageListener;
+    }
+
+/**
+ * Gets the book at an index, fetching its page in the background if it is not held.
+ *
+ * @param index The index of the book.
+ * @return The book, or null until its page has been fetched.
+ */
+    @Override
+    public Book get(int index) {
+        Objects.checkIndex(index, size);
+        int page = pageOf(index);
+        Book[] books = pages[page];
+        if (books == null) {
+            fetch(page);
+            return null;
+        }
+        lastUsed[page] = ++useCounter;
+        if (index % PAGE_SIZE >= PAGE_SIZE / 2 && (page + 1) * PAGE_SIZE < size && pages[page + 1] == null) {
+            fetch(page + 1);
+        }
+        return books[index % PAGE_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+/**
+ * Gets the ID of the book at an index, whether or not the book has been fetched.
+ *
+ * @param index The index of the book.
+ * @return The BookID.
+ */
+    public int getBookId(int index) {
+        Objects.checkIndex(index, size);
+        return bookIds[index];
+    }
+
+/**
+ * Tells whether the book at an index has been fetched.
+ *
+ * @param index The index of the book.
+ * @return true if {@link #get(int)} returns the book without fetching it.
+ */
+    public boolean isLoaded(int index) {
+        return pages[pageOf(index)] != null;
+    }
+
+/**
+ * Gets the number of pages held in memory.
+ *
+ * @return The number of pages.
+ */
+    public int getCachedPages() {
+        return cachedPages;
+    }
+
+/**
+ * Adds a newly inserted book at its place in BookID order. BookIDs only grow, so that is usually the end of the list;
+ * a book with a lower ID, such as one whose insert is reported late, is inserted before the books with higher IDs,
+ * which move down a row, so the pages from the inserted book on are dropped and fetched again when they are next shown.
+ * A book the list already contains is replaced instead.
+ *
+ * @param book The inserted book.
+ */
+    public void addBook(Book book) {
+        int bookId = book.getId().intValue();
+        int index = Arrays.binarySearch(bookIds, 0, size, bookId);
+        if (index >= 0) {
+            replaceBook(book);
+            return;
+        }
+        index = -index - 1;
+        if (size == bookIds.length) {
+            bookIds = Arrays.copyOf(bookIds, Math.max(16, size + (size >> 1)));
+        }
+        System.arraycopy(bookIds, index, bookIds, index + 1, size - index);
+        bookIds[index] = bookId;
+        size++;
+        int page = pageOf(index);
+        int pageCount = pageOf(size - 1) + 1;
+        if (pageCount > pages.length) {
+            pages = Arrays.copyOf(pages, pageCount);
+            lastUsed = Arrays.copyOf(lastUsed, pageCount);
+            pending = Arrays.copyOf(pending, pageCount);
+            retryAt = Arrays.copyOf(retryAt, pageCount);
+            failures = Arrays.copyOf(failures, pageCount);
+        }
+        beginChange();
+        if (index < size - 1) {
+            rowsMoved(page);
+        } else if (pages[page] != null || pending[page] || index % PAGE_SIZE == 0) {
+            // The last page is held or on its way, or the book starts a new page of its own
+            if (pages[page] == null) {
+                store(page, new Book[PAGE_SIZE]);
+            }
+            pages[page][index % PAGE_SIZE] = book;
+        }
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+/**
+ * Replaces a book with its new version, if its page is held.
+ *
+ * @param book The book as it is now.
+ * @return true if the list contains the book.
+ */
+    public boolean replaceBook(Book book) {
+        int index = Arrays.binarySearch(bookIds, 0, size, book.getId().intValue());
+        if (index < 0) {
+            return false;
+        }
+        Book[] books = pages[pageOf(index)];
+        if (books != null) {
+            books[index % PAGE_SIZE] = book;
+            beginChange();
+            nextUpdate(index);
+            endChange();
+        }
+        return true;
+    }
+
+/**
+ * Removes books from the list. The books after them move up, so the pages from the first removed book on are dropped
+ * and fetched again when they are next shown.
+ *
+ * @param removedIds The IDs of the books to remove; IDs not in the list are ignored.
+ * @return The number of books removed.
+ */
+    public int removeBooks(Collection<Integer> removedIds) {
+        int[] indexes = removedIds.stream().mapToInt(bookId -> Arrays.binarySearch(bookIds, 0, size, bookId))
+                .filter(index -> index >= 0).sorted().distinct().toArray();
+        if (indexes.length == 0) {
+            return 0;
+        }
+        beginChange();
+        int kept = indexes[0];
+        int r = 0;
+        for (int i = indexes[0]; i < size; i++) {
+            if (r < indexes.length && indexes[r] == i) {
+                // Reported at the index the book has once the books removed before it are gone
+                nextRemove(i - r, (Book) null);
+                r++;
+            } else {
+                bookIds[kept++] = bookIds[i];
+            }
+        }
+        size = kept;
+        rowsMoved(pageOf(indexes[0]));
+        endChange();
+        return indexes.length;
+    }
+
+    private static int pageOf(int index) {
+        return index / PAGE_SIZE;
+    }
+
+    // Drops the pages from the first one whose rows moved; pages on their way, or waiting to be fetched again,
+    // were asked for by their old positions
+    private void rowsMoved(int firstPage) {
+        for (int page = firstPage; page < pages.length; page++) {
+            if (pages[page] != null) {
+                pages[page] = null;
+                cachedPages--;
+            }
+        }
+        Arrays.fill(pending, false);
+        Arrays.fill(retryAt, 0);
+        Arrays.fill(failures, 0);
+        generation++;
+    }
+
+    // Starts fetching a page unless it is already on its way or waiting to be fetched again after a failure
+    private void fetch(int page) {
+        if (pending[page] || retryAt[page] != 0 && System.nanoTime() - retryAt[page] < 0) {
+            return;
+        }
+        pending[page] = true;
+        int from = page * PAGE_SIZE;
+        int[] pageIds = Arrays.copyOfRange(bookIds, from, Math.min(from + PAGE_SIZE, size));
+        int fetchGeneration = generation;
+        long start = System.nanoTime();
+        AsyncDBMgr.onFxThread(fetcher.fetch(pageIds), books -> {
+            if (fetchGeneration != generation) {
+                return; // Rows have moved since; the page is fetched again if it is still needed
+            }
+            pending[page] = false;
+            if (books == null) {
+                backOff(page);
+                if (pageListener != null) {
+                    pageListener.pageFailed(start, null);
+                }
+                return;
+            }
+            retryAt[page] = 0;
+            failures[page] = 0;
+            pageArrived(page, pageIds, books);
+            if (pageListener != null) {
+                pageListener.pageLoaded(start, books.size());
+            }
+        }, ex -> {
+            LOG.log(Level.WARNING, "Fetching books failed for page " + page, ex);
+            if (fetchGeneration != generation) {
+                return;
+            }
+            pending[page] = false;
+            backOff(page);
+            if (pageListener != null) {
+                pageListener.pageFailed(start, ex);
+            }
+        });
+    }
+
+    // Holds off fetching a page that could not be fetched, twice as long after every failure in a row, and then
+    // updates its rows so that the rows still shown ask for it again
+    private void backOff(int page) {
+        long delayMillis = Math.min(RETRY_MAX_MILLIS, RETRY_MIN_MILLIS << Math.min(failures[page], 16));
+        failures[page]++;
+        retryAt[page] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        int retryGeneration = generation;
+        CompletableFuture<Void> delay = CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+        AsyncDBMgr.onFxThread(delay, ignored -> {
+            if (retryGeneration != generation || pages[page] != null) {
+                return;
+            }
+            retryAt[page] = 0;
+            int from = page * PAGE_SIZE;
+            beginChange();
+            for (int i = from; i < Math.min(from + PAGE_SIZE, size); i++) {
+                nextUpdate(i);
+            }
+            endChange();
+        }, ex -> { });
+    }
+
+    // Stores a fetched page by position. Books added to the page while it was on its way are kept, and the books
+    // the fetch did not return no longer exist, so they are removed from the list.
+    private void pageArrived(int page, int[] pageIds, List<Book> books) {
+        Book[] stored = new Book[PAGE_SIZE];
+        if (pages[page] != null) {
+            System.arraycopy(pages[page], pageIds.length, stored, pageIds.length, PAGE_SIZE - pageIds.length);
+        }
+        List<Integer> missing = new ArrayList<>();
+        int b = 0;
+        for (int i = 0; i < pageIds.length; i++) {
+            if (b < books.size() && books.get(b).getId().intValue() == pageIds[i]) {
+                stored[i] = books.get(b++);
+            } else {
+                missing.add(pageIds[i]);
+            }
+        }
+        store(page, stored);
+        int from = page * PAGE_SIZE;
+        beginChange();
+        for (int i = 0; i < pageIds.length; i++) {
+            nextUpdate(from + i);
+        }
+        endChange();
+        if (!missing.isEmpty()) {
+            removeBooks(missing);
+        }
+    }
+
+    // Holds a page, dropping the least recently used one if the cache is full
+    private void store(int page, Book[] books) {
+        if (pages[page] == null) {
+            if (cachedPages == MAX_CACHED_PAGES) {
+                evictLeastRecentlyUsed();
+            }
+            cachedPages++;
+        }
+        pages[page] = books;
+        lastUsed[page] = ++useCounter;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int oldest = -1;
+        for (int page = 0; page < pages.length; page++) {
+            if (pages[page] != null && (oldest < 0 || lastUsed[page] < lastUsed[oldest])) {
+                oldest = page;
+            }
+        }
+        pages[oldest] = null;
+        cachedPages--;
+    }
+
+/**
+ * Fetches books by ID in the background.
+ */
+    @FunctionalInterface
+    public interface PageFetcher {
+
+/**
+ * Fetches the books of one page.
+ *
+ * @param bookIds The IDs of the books, in ascending order.
+ * @return A future completed with the books found, in the order of bookIds, with the books that no longer exist
+ *         left out; completed with null, or exceptionally, if the books could not be read.
+ */
+        CompletableFuture<? extends List<Book>> fetch(int[] bookIds);
+    }
+
+/**
+ * Told on the JavaFX Application Thread when a page has been fetched, for example to time the first page.
+ */
+    public interface PageListener {
+
+/**
+ * Called once a page has been stored and its rows updated.
+ *
+ * @param startNanos The System.nanoTime() when the page was requested.
+ * @param rows The number of books in the page.
+ */
+        void pageLoaded(long startNanos, int rows);
+
+/**
+ * Called when a page could not be fetched; it is fetched again, once its rows are asked for, after a delay that
+ * grows with every failure in a row.
+ *
+ * @param startNanos The System.nanoTime() when the page was requested.
+ * @param ex The cause, or null if the fetcher returned null.
+ */
+        void pageFailed(long startNanos, Throwable ex);
+    }
+}
@@ -1,5 +1,5 @@
 module com.amber.library.library {
-    requires javafx.controls;
+    requires transitive javafx.controls;
     requires javafx.fxml;
     requires javafx.web;
 
@@ -10,7 +10,9 @@ module com.amber.library.library {
     requires org.kordamp.bootstrapfx.core;
     requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
-    requires java.sql;
+    requires transitive java.sql;
+    requires jdk.httpserver;
+    requires jdk.management;
 
     opens com.amber.library.library to javafx.fxml;
     exports com.amber.library.library;
@@ -0,0 +1,58 @@
+-- The catalog tables as DBMgr, AuthorResolver and BulkImporter use them.
+-- IF NOT EXISTS lets a database created by hand before migrations existed adopt this baseline unchanged.
+CREATE TABLE IF NOT EXISTS publisher (
+    PublisherID INT AUTO_INCREMENT PRIMARY KEY,
+    Name VARCHAR(255) NOT NULL,
+    Website VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS Publication (
+    PublicationID INT AUTO_INCREMENT PRIMARY KEY,
+    Title VARCHAR(255) NOT NULL,
+    PublisherID INT,
+    Type VARCHAR(20) NOT NULL,
+    PublicationDate DATE,
+    CONSTRAINT FK_Publication_Publisher FOREIGN KEY (PublisherID) REFERENCES publisher (PublisherID)
+);
+
+-- Missing name parts are stored as '' rather than NULL, so that names compare with =
+CREATE TABLE IF NOT EXISTS Author (
+    AuthorID INT AUTO_INCREMENT PRIMARY KEY,
+    FirstName VARCHAR(100) NOT NULL,
+    MiddleName VARCHAR(100) NOT NULL DEFAULT '',
+    LastName VARCHAR(100) NOT NULL DEFAULT ''
+);
+
+CREATE TABLE IF NOT EXISTS Book (
+    BookID INT AUTO_INCREMENT PRIMARY KEY,
+    PublicationID INT NOT NULL,
+    ISBN VARCHAR(13),
+    DeweyDecimalSystemNumber VARCHAR(20),
+    CONSTRAINT FK_Book_Publication FOREIGN KEY (PublicationID) REFERENCES Publication (PublicationID)
+);
+
+CREATE TABLE IF NOT EXISTS PhysicalBook (
+    BookID INT PRIMARY KEY,
+    NumberOfPages INT,
+    Language VARCHAR(50),
+    Genre VARCHAR(50),
+    CONSTRAINT FK_PhysicalBook_Book FOREIGN KEY (BookID) REFERENCES Book (BookID)
+);
+
+CREATE TABLE IF NOT EXISTS AudioBook (
+    BookID INT PRIMARY KEY,
+    CONSTRAINT FK_AudioBook_Book FOREIGN KEY (BookID) REFERENCES Book (BookID)
+);
+
+CREATE TABLE IF NOT EXISTS EBook (
+    BookID INT PRIMARY KEY,
+    CONSTRAINT FK_EBook_Book FOREIGN KEY (BookID) REFERENCES Book (BookID)
+);
+
+CREATE TABLE IF NOT EXISTS BookAuthor (
+    BookID INT NOT NULL,
+    AuthorID INT NOT NULL,
+    PRIMARY KEY (BookID, AuthorID),
+    CONSTRAINT FK_BookAuthor_Book FOREIGN KEY (BookID) REFERENCES Book (BookID),
+    CONSTRAINT FK_BookAuthor_Author FOREIGN KEY (AuthorID) REFERENCES Author (AuthorID)
+);
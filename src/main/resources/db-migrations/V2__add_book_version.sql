@@ -0,0 +1,2 @@
+-- Row version for the optimistic checks of DBMgr.updateBook; every update increments it
+ALTER TABLE Book ADD COLUMN Version INT NOT NULL DEFAULT 0;
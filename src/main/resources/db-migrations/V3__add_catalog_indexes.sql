@@ -0,0 +1,12 @@
+-- Indexes for the join and lookup columns of the hot queries; DBMgr.verifyQueryPlans() checks they are used.
+-- An index is skipped when the table already has one, such as its primary key, that starts with the same columns.
+
+-- Books of an author, when deleting authors that no book refers to any more
+CREATE INDEX IX_BookAuthor_AuthorID ON BookAuthor (AuthorID);
+-- Books of a publication, when deleting publications that no book refers to any more
+CREATE INDEX IX_Book_PublicationID ON Book (PublicationID);
+CREATE INDEX IX_Publication_Title ON Publication (Title);
+-- A book is catalogued once; books without an ISBN are allowed any number of times
+CREATE UNIQUE INDEX UX_Book_ISBN ON Book (ISBN);
+-- Author lookups by name in AuthorResolver
+CREATE INDEX IX_Author_Name ON Author (FirstName, MiddleName, LastName);
@@ -0,0 +1,15 @@
+-- Change records of the catalog, one row per inserted, updated or deleted book, written in the same transaction as
+-- the change. Other application instances follow them with OutboxPoller; rows are purged after a retention period.
+CREATE TABLE IF NOT EXISTS catalog_outbox (
+    EventID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    -- I(nserted), U(pdated) or D(eleted)
+    EventType CHAR(1) NOT NULL,
+    BookID INT NOT NULL,
+    BookVersion INT NOT NULL,
+    -- The DBMgr instance that made the change, so it can skip its own changes
+    Origin CHAR(36) NOT NULL,
+    CreatedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Purging rows past the retention
+CREATE INDEX IX_catalog_outbox_CreatedAt ON catalog_outbox (CreatedAt);
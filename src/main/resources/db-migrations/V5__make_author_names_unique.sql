@@ -0,0 +1,25 @@
+-- Each author is stored once, so that AuthorResolver can rely on a duplicate-key error when another application
+-- instance inserts the same author at the same time. Authors stored more than once are merged into the row with
+-- the lowest AuthorID first: their books are linked to that row, and the duplicate rows are deleted.
+DROP TABLE IF EXISTS author_merge;
+CREATE TABLE author_merge AS
+    SELECT a.AuthorID, k.KeepID
+    FROM Author a
+    JOIN (SELECT FirstName, MiddleName, LastName, MIN(AuthorID) AS KeepID
+          FROM Author
+          GROUP BY FirstName, MiddleName, LastName
+          HAVING COUNT(*) > 1) k
+      ON a.FirstName = k.FirstName AND a.MiddleName = k.MiddleName AND a.LastName = k.LastName
+    WHERE a.AuthorID <> k.KeepID;
+INSERT INTO BookAuthor (BookID, AuthorID)
+    SELECT DISTINCT ba.BookID, m.KeepID
+    FROM BookAuthor ba
+    JOIN author_merge m ON m.AuthorID = ba.AuthorID
+    WHERE NOT EXISTS (SELECT 1 FROM BookAuthor kept WHERE kept.BookID = ba.BookID AND kept.AuthorID = m.KeepID);
+DELETE FROM BookAuthor WHERE AuthorID IN (SELECT AuthorID FROM author_merge);
+DELETE FROM Author WHERE AuthorID IN (SELECT AuthorID FROM author_merge);
+DROP TABLE author_merge;
+
+-- Author lookups by name in AuthorResolver, replacing the non-unique index of V3
+CREATE UNIQUE INDEX UX_Author_Name ON Author (FirstName, MiddleName, LastName);
+DROP INDEX IX_Author_Name ON Author;
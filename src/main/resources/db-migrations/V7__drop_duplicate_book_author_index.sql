@@ -0,0 +1,4 @@
+-- The primary key of BookAuthor already covers (BookID, AuthorID), for the author names of a book and the duplicate
+-- check when linking authors. Databases that were given a separate unique index on the same columns by an earlier
+-- V3 drop it, so every insert and delete no longer maintains two copies of the same index.
+DROP INDEX UX_BookAuthor_Book_Author ON BookAuthor;
@@ -0,0 +1,15 @@
+-- A new embedded catalog starts with some publishers to choose from, since a book cannot be saved without one and
+-- the application has no form for adding them. A catalog that already has publishers is left as it is.
+INSERT INTO publisher (Name, Website)
+    SELECT seed.Name, seed.Website
+    FROM (SELECT 'Penguin Random House' AS Name, 'https://www.penguinrandomhouse.com' AS Website
+          UNION ALL SELECT 'HarperCollins', 'https://www.harpercollins.com'
+          UNION ALL SELECT 'Simon & Schuster', 'https://www.simonandschuster.com'
+          UNION ALL SELECT 'Macmillan', 'https://us.macmillan.com'
+          UNION ALL SELECT 'Hachette Book Group', 'https://www.hachettebookgroup.com'
+          UNION ALL SELECT 'Pearson', 'https://www.pearson.com'
+          UNION ALL SELECT 'Oxford University Press', 'https://global.oup.com'
+          UNION ALL SELECT 'Cambridge University Press', 'https://www.cambridge.org'
+          UNION ALL SELECT 'MIT Press', 'https://mitpress.mit.edu'
+          UNION ALL SELECT 'O''Reilly Media', 'https://www.oreilly.com') seed
+    WHERE NOT EXISTS (SELECT 1 FROM publisher);
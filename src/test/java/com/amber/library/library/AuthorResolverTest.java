@@ -0,0 +1,111 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class AuthorResolverTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedDBMgr db;
+    private AuthorResolver resolver;
+
+    @BeforeEach
+    void open() {
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+        resolver = new AuthorResolver(db, 100);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void namesAreParsedInEitherOrder() {
+        AuthorResolver.AuthorName name = AuthorResolver.AuthorName.parse("  J   R R  Tolkien ");
+        assertEquals(List.of("J", "R R", "Tolkien"), List.of(name.getFirst(), name.getMiddle(), name.getLast()));
+        name = AuthorResolver.AuthorName.parse("Le Guin, Ursula K");
+        assertEquals(List.of("Ursula", "K", "Le Guin"), List.of(name.getFirst(), name.getMiddle(), name.getLast()));
+        name = AuthorResolver.AuthorName.parse("Plato");
+        assertEquals(List.of("Plato", "", ""), List.of(name.getFirst(), name.getMiddle(), name.getLast()));
+    }
+
+    @Test
+    void authorsAreSplitOnTheirSeparatorsButNotOnCommas() {
+        assertEquals(List.of("Terry Pratchett", "Neil Gaiman", "Benedict Anderson", "Tolkien, J R R"),
+                AuthorResolver.splitAuthors("Terry Pratchett; Neil Gaiman AND Benedict Anderson & Tolkien, J R R;; Neil Gaiman"));
+        assertEquals(List.of(), AuthorResolver.splitAuthors(" ; "));
+        assertEquals(List.of(), AuthorResolver.splitAuthors(null));
+    }
+
+    @Test
+    void anAuthorIsStoredOnceWhicheverWayTheNameIsWritten() throws SQLException {
+        int authorId = resolver.resolve("J R R Tolkien");
+        assertEquals(authorId, resolver.resolve("Tolkien, J R R"));
+        assertEquals(authorId, resolver.resolve(" J  R R Tolkien"));
+        assertEquals(1, count("SELECT COUNT(*) FROM Author"));
+        assertEquals(2, resolver.getHits());
+        assertNotEquals(authorId, resolver.resolve("Christopher Tolkien"));
+    }
+
+    @Test
+    void aRowHoldingTheWholeNameInItsFirstNameIsReused() throws SQLException {
+        update("INSERT INTO Author (AuthorID, FirstName, MiddleName, LastName) VALUES (42, 'Ursula K Le Guin', '', '')");
+        assertEquals(42, resolver.resolve("Ursula K Le Guin"));
+        assertEquals(1, count("SELECT COUNT(*) FROM Author"));
+    }
+
+    @Test
+    void resolvingManyNamesReusesKnownAuthorsAndInsertsTheRest() throws SQLException {
+        int tolkien = resolver.resolve("J R R Tolkien");
+        AuthorResolver fresh = new AuthorResolver(db, 100);
+
+        Map<String, Integer> ids = fresh.resolveAll(List.of("Tolkien, J R R", "Neil Gaiman", "Terry Pratchett", "Neil Gaiman"));
+
+        assertEquals(3, ids.size());
+        assertEquals(tolkien, ids.get("Tolkien, J R R"));
+        assertNotEquals(ids.get("Neil Gaiman"), ids.get("Terry Pratchett"));
+        assertEquals(3, count("SELECT COUNT(*) FROM Author"));
+        assertEquals(ids.get("Neil Gaiman"), fresh.resolve("Neil Gaiman"));
+    }
+
+    @Test
+    void aForgottenAuthorIsLookedUpAgain() throws SQLException {
+        int authorId = resolver.resolve("Neil Gaiman");
+        resolver.forget(authorId);
+        assertEquals(authorId, resolver.resolve("Neil Gaiman"));
+        assertEquals(0, resolver.getHits());
+        assertEquals(1, count("SELECT COUNT(*) FROM Author"));
+    }
+
+    private void update(String sql) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedDBMgr db;
+    private BulkImporter importer;
+    private int publisherId;
+    private Path csv;
+    private Path rejects;
+    private Path checkpoint;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+        importer = new BulkImporter(db);
+        // Small chunks, so an import of a few lines commits several of them
+        importer.setChunkSize(2);
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(PublisherID) FROM publisher")) {
+            rs.next();
+            publisherId = rs.getInt(1);
+        }
+        csv = dir.resolve("books.csv");
+        rejects = dir.resolve("rejects.tsv");
+        checkpoint = dir.resolve("books.checkpoint");
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void validRowsAreImportedAndTheOthersRejectedWithTheirReason() throws IOException {
+        write("title,authors,isbn,dewey,publisher",
+                row("The Hobbit", "J R R Tolkien", "9780261102217"),
+                "Missing,Columns",
+                row("The Silmarillion", "J R R Tolkien; Christopher Tolkien", "9780261102736"),
+                row("Bad Check Digit", "Nobody", "9780261102218"),
+                "",
+                "Not A Number,Someone,9780306406157,823,many",
+                row("Algorithms", "Thomas Cormen", "0-262-03384-4"));
+
+        BulkImporter.Result result = importer.importCsv(csv, rejects, checkpoint);
+
+        assertEquals(3, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals(0, result.getSkipped());
+        assertEquals(3, db.getBookIds().length);
+        // The ISBN-10 is stored in its 13-digit form
+        assertTrue(db.getBooksByIds(db.getBookIds()).stream().anyMatch(book -> "9780262033848".equals(book.getIsbn())));
+        List<String> rejected = Files.readAllLines(rejects, StandardCharsets.UTF_8);
+        assertEquals(List.of(
+                "3\t" + ValidationError.MISSING_COLUMNS.getMessage() + "\tMissing,Columns",
+                "5\t" + ValidationError.ISBN_CHECKSUM.getMessage() + "\t" + row("Bad Check Digit", "Nobody", "9780261102218"),
+                "7\t" + ValidationError.NOT_A_NUMBER.getMessage() + "\tNot A Number,Someone,9780306406157,823,many"),
+                rejected);
+        assertFalse(Files.exists(checkpoint), "a completed import leaves no checkpoint");
+    }
+
+    @Test
+    void anInterruptedImportResumesAfterItsCheckpoint() throws IOException {
+        write(row("The Hobbit", "J R R Tolkien", "9780261102217"),
+                row("The Silmarillion", "J R R Tolkien", "9780261102736"),
+                row("Bad Check Digit", "Nobody", "9780261102218"),
+                row("Algorithms", "Thomas Cormen", "9780262033848"));
+        // The first two lines were committed, and the reject file kept, before the import stopped
+        Files.writeString(checkpoint, "2", StandardCharsets.UTF_8);
+        Files.writeString(rejects, "1\tEarlier\tline" + System.lineSeparator(), StandardCharsets.UTF_8);
+
+        BulkImporter.Result result = importer.importCsv(csv, rejects, checkpoint);
+
+        assertEquals(2, result.getSkipped());
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(List.of("Algorithms"), titles());
+        List<String> rejected = Files.readAllLines(rejects, StandardCharsets.UTF_8);
+        assertEquals(2, rejected.size());
+        assertEquals("1\tEarlier\tline", rejected.get(0));
+        assertTrue(rejected.get(1).startsWith("3\t"), rejected.get(1));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    void aRowTheDatabaseRefusesIsRejectedWithoutItsChunk() throws IOException {
+        // Both books have the same ISBN, which the catalog holds once, so the chunk's multi-row insert fails
+        write(row("The Hobbit", "J R R Tolkien", "9780261102217"),
+                row("The Hobbit Again", "J R R Tolkien", "9780261102217"),
+                row("Algorithms", "Thomas Cormen", "9780262033848"));
+
+        BulkImporter.Result result = importer.importCsv(csv, rejects, checkpoint);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(List.of("The Hobbit", "Algorithms"), titles());
+        List<String> rejected = Files.readAllLines(rejects, StandardCharsets.UTF_8);
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).startsWith("2\tDatabase rejected the row."), rejected.get(0));
+    }
+
+    private String row(String title, String authors, String isbn) {
+        return title + ",\"" + authors + "\"," + isbn + ",823," + publisherId;
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(csv, List.of(lines), StandardCharsets.UTF_8);
+    }
+
+    private List<String> titles() {
+        return db.getBooksByIds(db.getBookIds()).stream().map(Book::getTitle).toList();
+    }
+}
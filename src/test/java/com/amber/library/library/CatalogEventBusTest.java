@@ -0,0 +1,101 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogEventBusTest {
+
+    private static final int EVENTS = 10_000;
+
+    @Test
+    void slowAndFastSubscribersGetEveryEventInOrderAcrossWraparounds() throws InterruptedException {
+        try (CatalogEventBus bus = new CatalogEventBus(8)) {
+            List<Integer> fast = new ArrayList<>();
+            List<Integer> slow = new ArrayList<>();
+            AtomicInteger largestBatch = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(2);
+            bus.subscribe("test-fast", 3, batch -> {
+                largestBatch.accumulateAndGet(batch.size(), Math::max);
+                record(batch, fast, done);
+            });
+            bus.subscribe("test-slow", 5, batch -> {
+                if (slow.size() % 1000 == 0) {
+                    sleep();
+                }
+                record(batch, slow, done);
+            });
+            for (int bookId = 0; bookId < EVENTS; bookId++) {
+                bus.publish(new CatalogEvent.BookDeleted(bookId, false));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS), "subscribers did not catch up");
+            assertEquals(EVENTS, bus.getPublished());
+            assertInOrder(fast);
+            assertInOrder(slow);
+            assertTrue(largestBatch.get() <= 3);
+        }
+    }
+
+    @Test
+    void concurrentPublishersLoseNoEvent() throws InterruptedException {
+        try (CatalogEventBus bus = new CatalogEventBus(16)) {
+            List<Integer> received = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            bus.subscribe("test-concurrent", batch -> record(batch, received, done));
+            Thread[] publishers = new Thread[4];
+            for (int p = 0; p < publishers.length; p++) {
+                int first = p * (EVENTS / publishers.length);
+                publishers[p] = new Thread(() -> {
+                    for (int i = 0; i < EVENTS / 4; i++) {
+                        bus.publish(new CatalogEvent.BookDeleted(first + i, false));
+                    }
+                });
+                publishers[p].start();
+            }
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS), "subscriber did not catch up");
+            assertEquals(EVENTS, received.stream().distinct().count());
+        }
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new CatalogEventBus(12));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogEventBus(0));
+    }
+
+    // Runs on the subscriber's own thread, so each list is only touched by one thread until the latch opens
+    private static void record(List<CatalogEvent> batch, List<Integer> received, CountDownLatch done) {
+        for (CatalogEvent event : batch) {
+            received.add(event.bookId());
+        }
+        if (received.size() == EVENTS) {
+            done.countDown();
+        }
+    }
+
+    private static void assertInOrder(List<Integer> received) {
+        assertEquals(EVENTS, received.size());
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(i, received.get(i));
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedDBMgr db;
+    private CatalogExporter exporter;
+    private int publisherId;
+    private int hobbitId;
+    private int quotedId;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+        exporter = new CatalogExporter(db);
+        publisherId = db.getPublishers().get(0).getId();
+        hobbitId = db.insertBook("The Hobbit", List.of("J R R Tolkien", "Christopher Tolkien"), "9780261102217", "823",
+                publisherId, 310, "English", "Fantasy").getId().intValue();
+        quotedId = db.insertBook("Dr \"Who\", Again\nÜber 😀", List.of("Terrance Dicks"), "9780261102736", null,
+                publisherId, 128, "Français", null).getId().intValue();
+        update("UPDATE Publication SET PublicationDate = DATE '1937-09-21' WHERE PublicationID = "
+                + "(SELECT PublicationID FROM Book WHERE BookID = " + hobbitId + ")");
+        update("UPDATE PhysicalBook SET NumberOfPages = NULL WHERE BookID = " + quotedId);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void theFormatFollowsTheFileName() {
+        assertEquals(CatalogExporter.Format.CSV, CatalogExporter.Format.forFile(Path.of("catalog.CSV")));
+        assertEquals(CatalogExporter.Format.JSON_LINES, CatalogExporter.Format.forFile(Path.of("catalog.jsonl.gz")));
+        assertEquals(CatalogExporter.Format.BINARY, CatalogExporter.Format.forFile(Path.of("nightly/catalog.libs")));
+        assertThrows(IllegalArgumentException.class, () -> CatalogExporter.Format.forFile(Path.of("catalog.xlsx")));
+        assertThrows(IllegalArgumentException.class, () -> exporter.setBufferSize(1024));
+    }
+
+    @Test
+    void csvQuotesTheFieldsThatNeedItAndLeavesNullsEmpty() throws IOException, SQLException {
+        Path file = dir.resolve("catalog.csv");
+        Files.writeString(file, "an older export");
+
+        assertEquals(2, exporter.export(file));
+
+        assertEquals("BookID,ISBN,Dewey,Version,Title,PublisherID,Authors,PublicationDate,NumberOfPages,Language,Genre\n"
+                + hobbitId + ",9780261102217,823,0,The Hobbit," + publisherId
+                + ",J R R Tolkien; Christopher Tolkien,1937-09-21,310,English,Fantasy\n"
+                + quotedId + ",9780261102736,,0,\"Dr \"\"Who\"\", Again\nÜber 😀\"," + publisherId
+                + ",Terrance Dicks,,,Français,\n",
+                Files.readString(file, StandardCharsets.UTF_8));
+        assertNoPartialFiles();
+    }
+
+    @Test
+    void jsonLinesEscapesTextAndLeavesOutNulls() throws IOException, SQLException {
+        Path file = dir.resolve("catalog.jsonl.gz");
+
+        assertEquals(2, exporter.export(file));
+
+        assertEquals(List.of(
+                "{\"bookId\":" + hobbitId + ",\"isbn\":\"9780261102217\",\"dewey\":\"823\",\"version\":0,"
+                        + "\"title\":\"The Hobbit\",\"publisherId\":" + publisherId + ","
+                        + "\"authors\":\"J R R Tolkien; Christopher Tolkien\",\"publicationDate\":\"1937-09-21\","
+                        + "\"numberOfPages\":310,\"language\":\"English\",\"genre\":\"Fantasy\"}",
+                "{\"bookId\":" + quotedId + ",\"isbn\":\"9780261102736\",\"version\":0,"
+                        + "\"title\":\"Dr \\\"Who\\\", Again\\nÜber 😀\",\"publisherId\":" + publisherId + ","
+                        + "\"authors\":\"Terrance Dicks\",\"language\":\"Français\"}"),
+                new String(gunzip(file), StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void theBinarySnapshotReadsBackAsItWasWritten() throws IOException, SQLException {
+        Path file = dir.resolve("catalog.libs");
+
+        assertEquals(2, exporter.export(file));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertArrayEquals("LIBS".getBytes(StandardCharsets.US_ASCII), magic);
+        assertEquals(1, in.readUnsignedByte());
+        int columns = in.readUnsignedByte();
+        List<String> names = new ArrayList<>();
+        for (int column = 0; column < columns; column++) {
+            names.add(readText(in));
+        }
+        assertEquals(List.of("BookID", "ISBN", "Dewey", "Version", "Title", "PublisherID", "Authors",
+                "PublicationDate", "NumberOfPages", "Language", "Genre"), names);
+
+        assertEquals(1, in.readUnsignedByte());
+        assertEquals(0, readNullBitmap(in));
+        assertEquals(hobbitId, readVarint(in));
+        assertEquals("9780261102217", readText(in));
+        assertEquals("823", readText(in));
+        assertEquals(0, readVarint(in));
+        assertEquals("The Hobbit", readText(in));
+        assertEquals(publisherId, readVarint(in));
+        assertEquals("J R R Tolkien; Christopher Tolkien", readText(in));
+        long zigZag = readVarint(in);
+        assertEquals(LocalDate.of(1937, 9, 21), LocalDate.ofEpochDay((zigZag >>> 1) ^ -(zigZag & 1)));
+        assertEquals(310, readVarint(in));
+        assertEquals("English", readText(in));
+        assertEquals("Fantasy", readText(in));
+
+        assertEquals(1, in.readUnsignedByte());
+        // Dewey, PublicationDate, NumberOfPages and Genre are null
+        assertEquals(1 << 2 | 1 << 7 | 1 << 8 | 1 << 10, readNullBitmap(in));
+        assertEquals(quotedId, readVarint(in));
+        assertEquals("9780261102736", readText(in));
+        assertEquals(0, readVarint(in));
+        assertEquals("Dr \"Who\", Again\nÜber 😀", readText(in));
+        assertEquals(publisherId, readVarint(in));
+        assertEquals("Terrance Dicks", readText(in));
+        assertEquals("Français", readText(in));
+
+        assertEquals(0, in.readUnsignedByte());
+        assertEquals(2, readVarint(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void anExportLargerThanItsBufferIsWrittenWhole() throws IOException, SQLException {
+        for (int i = 0; i < 1500; i++) {
+            db.insertBook("Volume " + i + " " + "x".repeat(100), List.of("J R R Tolkien"), null, "823",
+                    publisherId, i, "English", "Fantasy");
+        }
+        exporter.setBufferSize(1 << 16);
+        Path plain = dir.resolve("catalog.csv");
+        Path compressed = dir.resolve("catalog.csv.gz");
+
+        assertEquals(1502, exporter.export(plain));
+        assertEquals(1502, exporter.export(compressed));
+
+        assertTrue(Files.size(plain) > 2 * (1 << 16), "the export spans several buffers");
+        assertArrayEquals(Files.readAllBytes(plain), gunzip(compressed));
+        // The header, every row, and the line break quoted inside one title
+        assertEquals(1504, Files.readString(plain, StandardCharsets.UTF_8).lines().count());
+    }
+
+    private void assertNoPartialFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(), files.filter(file -> file.toString().endsWith(".part")).toList());
+        }
+    }
+
+    private void update(String sql) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private static byte[] gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static int readNullBitmap(DataInputStream in) throws IOException {
+        return in.readUnsignedByte() | in.readUnsignedByte() << 8;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogReplicaTest {
+
+    @TempDir
+    Path dir;
+
+    private static Book book(int bookId, int version) {
+        return new Book(bookId, "Title " + bookId + " v" + version, "Author " + bookId % 13, "9780306406157",
+                bookId % 1000 + ".5", bookId % 7 + 1, version);
+    }
+
+    @Test
+    void putsAndDeletesMatchAMap() throws IOException {
+        Path file = dir.resolve("replica.bin");
+        Map<Integer, Book> expected = new TreeMap<>();
+        Random random = new Random(42);
+        try (CatalogReplica replica = CatalogReplica.open(file)) {
+            // Few distinct IDs, so the offset index removes and reinserts entries in the same clusters many times
+            for (int i = 0; i < 20_000; i++) {
+                int bookId = random.nextInt(300) + 1;
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(bookId) != null, replica.delete(bookId));
+                } else {
+                    Book book = book(bookId, i);
+                    replica.put(book);
+                    expected.put(bookId, book);
+                }
+            }
+            assertSameBooks(expected, replica);
+        }
+        try (CatalogReplica reopened = CatalogReplica.open(file)) {
+            assertSameBooks(expected, reopened);
+        }
+    }
+
+    @Test
+    void idsCollidingInTheIndexSurviveTheRemovalOfTheirNeighbours() throws IOException {
+        try (CatalogReplica replica = CatalogReplica.open(dir.resolve("collide.bin"))) {
+            // Multiples of a large power of two share their low bits
+            int[] ids = {1 << 16, 2 << 16, 3 << 16, 4 << 16, 5 << 16};
+            for (int bookId : ids) {
+                replica.put(book(bookId, 0));
+            }
+            assertTrue(replica.delete(ids[1]));
+            assertTrue(replica.delete(ids[3]));
+            assertFalse(replica.delete(ids[3]));
+            assertNull(replica.get(ids[1]));
+            assertArrayEquals(new int[] {ids[0], ids[2], ids[4]}, replica.getBookIds());
+            for (int bookId : new int[] {ids[0], ids[2], ids[4]}) {
+                assertEquals(bookId, replica.get(bookId).getId().intValue());
+            }
+        }
+    }
+
+    @Test
+    void aMissingFileOpensEmpty() throws IOException {
+        try (CatalogReplica replica = CatalogReplica.open(dir.resolve("sub").resolve("new.bin"))) {
+            assertEquals(0, replica.size());
+            assertEquals(0, replica.getSnapshotTime());
+            assertArrayEquals(new int[0], replica.getBookIds());
+        }
+    }
+
+    @Test
+    void compactionKeepsTheLiveBooksAndSurvivesReopening() throws IOException {
+        Path file = dir.resolve("replica.bin");
+        Map<Integer, Book> expected = new TreeMap<>();
+        String longTitle = "A Rather Long Title ".repeat(50);
+        long largest = 0;
+        boolean compacted = false;
+        try (CatalogReplica replica = CatalogReplica.open(file)) {
+            // 50 books of about 1 KB rewritten until superseded versions fill more than the 1 MB compaction threshold
+            for (int i = 0; i < 5_000; i++) {
+                int bookId = i % 50 + 1;
+                Book book = new Book(bookId, longTitle + i, "Author " + bookId, "9780306406157", "823", 1, i);
+                replica.put(book);
+                expected.put(bookId, book);
+                compacted |= replica.getFileSize() < largest;
+                largest = Math.max(largest, replica.getFileSize());
+            }
+            assertTrue(compacted);
+            assertSameBooks(expected, replica);
+            replica.delete(50);
+            expected.remove(50);
+        }
+        // The compacted file is a later generation, and the file it replaced is gone
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).toList();
+            assertEquals(1, names.size(), names.toString());
+            assertTrue(names.get(0).matches("replica\\.bin\\.\\d+"), names.toString());
+        }
+        try (CatalogReplica reopened = CatalogReplica.open(file)) {
+            assertSameBooks(expected, reopened);
+        }
+    }
+
+    @Test
+    void aRebuildReplacesTheBooksUnlessTheCatalogCannotBeRead() throws IOException {
+        Path file = dir.resolve("replica.bin");
+        Map<Integer, Book> snapshot = new TreeMap<>();
+        for (int bookId = 1; bookId <= 100; bookId++) {
+            snapshot.put(bookId, book(bookId, 1));
+        }
+        try (CatalogReplica replica = CatalogReplica.open(file)) {
+            replica.put(book(500, 0));
+            assertTrue(replica.rebuild(streaming(snapshot.values(), true)));
+            assertSameBooks(snapshot, replica);
+            assertTrue(replica.getSnapshotTime() > 0);
+
+            assertFalse(replica.rebuild(streaming(List.of(book(1, 2)), false)));
+            assertSameBooks(snapshot, replica);
+            replica.put(book(101, 1));
+            snapshot.put(101, book(101, 1));
+        }
+        try (CatalogReplica reopened = CatalogReplica.open(file)) {
+            assertSameBooks(snapshot, reopened);
+        }
+    }
+
+    // A catalog that only streams the given books, reporting whether it could read all of them
+    private static CatalogRepository streaming(Collection<Book> books, boolean complete) {
+        return (CatalogRepository) Proxy.newProxyInstance(CatalogRepository.class.getClassLoader(),
+                new Class<?>[] {CatalogRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("forEachBook")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    Consumer<Book> consumer = (Consumer<Book>) args[0];
+                    books.forEach(consumer);
+                    return complete;
+                });
+    }
+
+    static void assertSameBooks(Map<Integer, Book> expected, CatalogReplica replica) {
+        assertEquals(expected.size(), replica.size());
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), replica.getBookIds());
+        for (Book book : expected.values()) {
+            Book stored = replica.get(book.getId().intValue());
+            assertEquals(book.getTitle(), stored.getTitle());
+            assertEquals(book.getAuthors(), stored.getAuthors());
+            assertEquals(book.getIsbn(), stored.getIsbn());
+            assertEquals(book.getDewey(), stored.getDewey());
+            assertEquals(book.getPublisherId().intValue(), stored.getPublisherId().intValue());
+            assertEquals(book.getVersion(), stored.getVersion());
+        }
+    }
+}
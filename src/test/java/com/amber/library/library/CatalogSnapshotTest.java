@@ -0,0 +1,171 @@
+package com.amber.library.library;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogSnapshotTest {
+
+    private static Book book(int bookId, String title, String authors, String isbn, String dewey) {
+        return new Book(bookId, title, authors, isbn, dewey, 7, 3);
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        return books.stream().map(book -> book.getId().intValue()).toList();
+    }
+
+    private static CatalogSnapshot snapshot(Book... books) {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.addBooks(List.of(books));
+        return snapshot;
+    }
+
+    @Test
+    void everyFieldIsReadBackAsItWasAdded() {
+        CatalogSnapshot snapshot = snapshot(
+                book(3, "Ünïcödé Title", "A Author; B Author", "080442957X", "823.912"),
+                book(1, "The Hobbit", "J R R Tolkien", "9780261102217", "823"),
+                book(2, null, null, null, null),
+                book(4, "Leading Zeros", "Someone", "0000000000001", "1"),
+                book(5, "Not An Isbn", "Someone", "ISBN 978-0-26", "1"),
+                book(6, "Empty Isbn", "Someone", "", "1"));
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), ids(snapshot));
+        Book unicode = snapshot.getBook(3);
+        assertEquals("Ünïcödé Title", unicode.getTitle());
+        assertEquals("A Author; B Author", unicode.getAuthors());
+        assertEquals("080442957X", unicode.getIsbn());
+        assertEquals("823.912", unicode.getDewey());
+        assertEquals(7, unicode.getPublisherId().intValue());
+        assertEquals(3, unicode.getVersion());
+        Book empty = snapshot.getBook(2);
+        assertNull(empty.getTitle());
+        assertNull(empty.getAuthors());
+        assertNull(empty.getIsbn());
+        assertNull(empty.getDewey());
+        assertEquals("0000000000001", snapshot.getBook(4).getIsbn());
+        assertEquals("ISBN 978-0-26", snapshot.getBook(5).getIsbn());
+        assertEquals("", snapshot.getBook(6).getIsbn());
+        assertNull(snapshot.getBook(9));
+    }
+
+    @Test
+    void sortingReportsAPermutationAndKeepsBookIdOrderForTies() {
+        CatalogSnapshot snapshot = snapshot(
+                book(1, "Beta", "Smith", "9780261102217", "823"),
+                book(2, "Alpha", "Jones", "9780261102736", "813"),
+                book(3, "Gamma", "Jones", "9780306406157", null),
+                book(4, "Alpha", "Adams", "9780262033848", "823"));
+        List<String> changes = new ArrayList<>();
+        snapshot.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                changes.add(change.wasPermutated() ? "permutation" : "other");
+            }
+        });
+
+        snapshot.sortBy(CatalogSnapshot.Column.TITLE, true);
+        assertEquals(List.of(2, 4, 1, 3), ids(snapshot));
+        assertEquals(List.of("permutation"), changes);
+
+        snapshot.sortBy(List.of(new CatalogSnapshot.SortKey(CatalogSnapshot.Column.AUTHORS, false),
+                new CatalogSnapshot.SortKey(CatalogSnapshot.Column.TITLE, false)));
+        assertEquals(List.of(1, 3, 2, 4), ids(snapshot));
+
+        // Books without a Dewey number come first
+        snapshot.sortBy(CatalogSnapshot.Column.DEWEY, true);
+        assertEquals(List.of(3, 2, 1, 4), ids(snapshot));
+    }
+
+    @Test
+    void theFilterIgnoresCaseAndAppliesToBooksAddedLater() {
+        CatalogSnapshot snapshot = snapshot(
+                book(1, "The Hobbit", "J R R Tolkien", "9780261102217", "823"),
+                book(2, "Holes", "Louis Sachar", "9780439244190", "813"),
+                book(3, "The Silmarillion", "J R R Tolkien", "9780261102736", "823"));
+        snapshot.sortBy(CatalogSnapshot.Column.TITLE, false);
+
+        snapshot.filter(CatalogSnapshot.Column.AUTHORS, " tolkien ");
+        assertEquals(List.of(3, 1), ids(snapshot));
+        assertEquals(3, snapshot.getBookCount());
+
+        snapshot.addBooks(List.of(book(4, "Unfinished Tales", "J R R Tolkien", null, "823"),
+                book(5, "Wayside School", "Louis Sachar", null, "813")));
+        assertEquals(List.of(4, 3, 1), ids(snapshot));
+        assertEquals(5, snapshot.getBookCount());
+
+        snapshot.filter(null, null);
+        assertEquals(List.of(5, 4, 3, 1, 2), ids(snapshot));
+    }
+
+    @Test
+    void aReplacedBookMovesToItsNewPlace() {
+        CatalogSnapshot snapshot = snapshot(
+                book(1, "Alpha", "Adams", null, "823"),
+                book(2, "Beta", "Adams", null, "823"),
+                book(3, "Gamma", "Adams", null, "823"));
+        snapshot.sortBy(CatalogSnapshot.Column.TITLE, true);
+
+        assertTrue(snapshot.replaceBook(book(1, "Zeta, a much longer title than before", "Adams", null, "823")));
+        assertEquals(List.of(2, 3, 1), ids(snapshot));
+        assertEquals("Zeta, a much longer title than before", snapshot.get(2).getTitle());
+        assertFalse(snapshot.replaceBook(book(9, "Missing", "Nobody", null, null)));
+
+        // Adding a book that is already held replaces it
+        snapshot.addBooks(List.of(book(3, "Aleph", "Adams", null, "823")));
+        assertEquals(List.of(3, 2, 1), ids(snapshot));
+        assertEquals(3, snapshot.getBookCount());
+    }
+
+    @Test
+    void removedBooksLeaveTheOthersIntact() {
+        List<Book> books = new ArrayList<>();
+        for (int bookId = 1; bookId <= 500; bookId++) {
+            books.add(book(bookId, "Title number " + bookId, "Author " + bookId % 7, null, Integer.toString(bookId % 10)));
+        }
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.addBooks(books);
+
+        List<Integer> removed = new ArrayList<>();
+        for (int bookId = 2; bookId <= 500; bookId += 2) {
+            removed.add(bookId);
+        }
+        removed.add(999);
+        assertEquals(250, snapshot.removeBooks(removed));
+        snapshot.trimToSize();
+
+        assertEquals(250, snapshot.size());
+        for (int bookId = 1; bookId <= 500; bookId++) {
+            Book book = snapshot.getBook(bookId);
+            if (bookId % 2 == 0) {
+                assertNull(book);
+            } else {
+                assertEquals("Title number " + bookId, book.getTitle());
+                assertEquals("Author " + bookId % 7, book.getAuthors());
+            }
+        }
+    }
+
+    @Test
+    void groupsCoverTheListInOrderOfTheirKey() {
+        CatalogSnapshot snapshot = snapshot(
+                book(1, "Alpha", "Adams", null, "823"),
+                book(2, "Beta", "Brown", null, "813"),
+                book(3, "Gamma", "Adams", null, "823"),
+                book(4, "Delta", "Clark", null, null));
+        snapshot.sortBy(CatalogSnapshot.Column.TITLE, false);
+
+        List<CatalogSnapshot.Group> groups = snapshot.groupBy(CatalogSnapshot.Column.DEWEY);
+
+        assertEquals(List.of(new CatalogSnapshot.Group(null, 0, 1), new CatalogSnapshot.Group("813", 1, 2),
+                new CatalogSnapshot.Group("823", 2, 4)), groups);
+        // Within a group the previous sort is kept
+        assertEquals(List.of(4, 2, 3, 1), ids(snapshot));
+    }
+}
@@ -0,0 +1,215 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DBMgrTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedDBMgr db;
+    private int publisherId;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+        // A new embedded catalog is seeded with publishers
+        publisherId = count("SELECT MIN(PublisherID) FROM publisher");
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void insertedBooksAreReadBackWithTheirAuthors() {
+        Book hobbit = insert("The Hobbit", List.of("J R R Tolkien"), "9780261102217");
+        Book silmarillion = insert("The Silmarillion", List.of("J R R Tolkien", "Christopher Tolkien"), "9780261102736");
+
+        List<Book> books = db.getBooksByIds(new int[] {silmarillion.getId().intValue(), hobbit.getId().intValue(), -1});
+        assertEquals(2, books.size());
+        assertEquals("The Silmarillion", books.get(0).getTitle());
+        assertEquals("J R R Tolkien; Christopher Tolkien", books.get(0).getAuthors());
+        assertEquals("9780261102217", books.get(1).getIsbn());
+        // The shared author is stored once
+        assertEquals(2, count("SELECT COUNT(*) FROM Author"));
+        assertArrayEquals(new int[] {hobbit.getId().intValue(), silmarillion.getId().intValue()}, db.getBookIds());
+    }
+
+    @Test
+    void searchFollowsInsertsUpdatesAndDeletes() {
+        Book hobbit = insert("The Hobbit", List.of("J R R Tolkien"), "9780261102217");
+        insert("Hobbit Cooking", List.of("Anne Author"), "9780306406157");
+        assertEquals(List.of("The Hobbit", "Hobbit Cooking"), titles(db.searchBooks("hobbit")));
+        assertEquals(List.of("The Hobbit"), titles(db.searchBooks("tolk")));
+
+        Book current = db.getBooksByIds(new int[] {hobbit.getId().intValue()}).get(0);
+        Book updated = db.updateBook("There and Back Again", current);
+        assertNotNull(updated);
+        assertEquals(List.of("Hobbit Cooking"), titles(db.searchBooks("hobbit")));
+        assertEquals(List.of("There and Back Again"), titles(db.searchBooks("back again")));
+
+        assertEquals(List.of(hobbit.getId().intValue()), db.deleteBooks(List.of(hobbit.getId().intValue(), -5)));
+        assertEquals(List.of(), titles(db.searchBooks("back again")));
+    }
+
+    @Test
+    void isbnsAreStoredInTheirThirteenDigitForm() {
+        Book book = insert("The Hobbit", List.of("J R R Tolkien"), "0-261-10221-4");
+        assertEquals("9780261102217", book.getIsbn());
+        assertEquals(1, count("SELECT COUNT(*) FROM Book WHERE ISBN = '9780261102217'"));
+
+        Book read = db.getBooksByIds(new int[] {book.getId().intValue()}).get(0);
+        Book updated = db.updateBook(read, new Book(read.getId(), read.getTitle(), read.getAuthors(),
+                "0-306-40615-2", read.getDewey(), read.getPublisherId(), read.getVersion()));
+        assertEquals("9780306406157", updated.getIsbn());
+        assertEquals(1, count("SELECT COUNT(*) FROM Book WHERE ISBN = '9780306406157'"));
+        // The same ISBN in its stored form is no change
+        assertSame(updated, db.updateBook(updated, new Book(updated.getId(), updated.getTitle(), updated.getAuthors(),
+                "978-0-306-40615-7", updated.getDewey(), updated.getPublisherId(), updated.getVersion())));
+    }
+
+    @Test
+    void updatingAnOldVersionIsRefused() {
+        Book book = insert("The Hobbit", List.of("J R R Tolkien"), "9780261102217");
+        Book read = db.getBooksByIds(new int[] {book.getId().intValue()}).get(0);
+        Book updated = db.updateBook(read, new Book(read.getId(), read.getTitle(), "J R R Tolkien; Alan Lee",
+                read.getIsbn(), "823.912", read.getPublisherId(), read.getVersion()));
+        assertEquals(read.getVersion() + 1, updated.getVersion());
+        assertEquals(2, count("SELECT COUNT(*) FROM BookAuthor"));
+
+        StaleBookException stale = assertThrows(StaleBookException.class, () -> db.updateBook("Another Title", read));
+        assertEquals(updated.getVersion(), stale.getCurrent().getVersion());
+        assertEquals("823.912", stale.getCurrent().getDewey());
+    }
+
+    @Test
+    void deletingBooksDeletesTheAuthorsNoBookNamesAnyMore() {
+        Book hobbit = insert("The Hobbit", List.of("J R R Tolkien", "Alan Lee"), "9780261102217");
+        Book rings = insert("The Lord of the Rings", List.of("J R R Tolkien"), "9780261103252");
+        assertEquals(List.of(hobbit.getId().intValue()), db.deleteBooks(List.of(hobbit.getId().intValue())));
+        assertEquals(1, count("SELECT COUNT(*) FROM Author"));
+        assertEquals(1, count("SELECT COUNT(*) FROM Publication"));
+        assertEquals(List.of(), db.deleteBooks(List.of(hobbit.getId().intValue())));
+
+        // A deleted author is created again rather than reused from the resolver's cache
+        Book again = insert("Middle-earth Sketches", List.of("Alan Lee"), "9780306406157");
+        assertEquals("Alan Lee", db.getBooksByIds(new int[] {again.getId().intValue()}).get(0).getAuthors());
+        assertArrayEquals(new int[] {rings.getId().intValue(), again.getId().intValue()}, db.getBookIds());
+    }
+
+    @Test
+    void anAuthorDeletedBehindTheResolversBackIsCreatedAgain() throws SQLException {
+        Book hobbit = insert("The Hobbit", List.of("Alan Lee"), "9780261102217");
+        Book read = db.getBooksByIds(new int[] {hobbit.getId().intValue()}).get(0);
+        // Another instance deletes the book's author; this instance's resolver still caches the AuthorID
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM BookAuthor");
+            stmt.executeUpdate("DELETE FROM Author");
+        }
+        Book sketches = insert("Middle-earth Sketches", List.of("Alan Lee"), "9780306406157");
+        assertEquals("Alan Lee", db.getBooksByIds(new int[] {sketches.getId().intValue()}).get(0).getAuthors());
+        assertNotNull(db.updateBook(read, new Book(read.getId(), read.getTitle(), "Alan Lee; John Howe",
+                read.getIsbn(), read.getDewey(), read.getPublisherId(), read.getVersion())));
+        assertEquals(2, count("SELECT COUNT(*) FROM Author"));
+        // Every link points at an existing author
+        assertEquals(3, count("SELECT COUNT(*) FROM BookAuthor ba JOIN Author a ON a.AuthorID = ba.AuthorID"));
+    }
+
+    @Test
+    void readingByIdsStopsAtTheLimit() throws SQLException {
+        int hobbit = insert("The Hobbit", List.of("J R R Tolkien"), "9780261102217").getId().intValue();
+        int silmarillion = insert("The Silmarillion", List.of("J R R Tolkien"), "9780261102736").getId().intValue();
+        int cooking = insert("Hobbit Cooking", List.of("Anne Author"), "9780306406157").getId().intValue();
+
+        // A missing book does not count towards the limit
+        assertEquals(List.of("Hobbit Cooking", "The Hobbit"),
+                titles(db.queryBooksByIds(new int[] {cooking, -1, hobbit, silmarillion}, 2)));
+        assertEquals(3, db.queryBooksByIds(new int[] {cooking, hobbit, silmarillion}, 10).size());
+    }
+
+    @Test
+    void theListedIdsAndTheBooksReadForThemAgree() throws SQLException {
+        int hobbit = insert("The Hobbit", List.of("J R R Tolkien"), "9780261102217").getId().intValue();
+        int cooking = insert("Hobbit Cooking", List.of("Anne Author"), "9780306406157").getId().intValue();
+        int sketches = insert("Middle-earth Sketches", List.of("Alan Lee"), "9780261102736").getId().intValue();
+        // One book loses its physical details and another its authors, so neither is part of the catalog
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM PhysicalBook WHERE BookID = " + cooking);
+            stmt.executeUpdate("DELETE FROM BookAuthor WHERE BookID = " + sketches);
+        }
+
+        assertArrayEquals(new int[] {hobbit}, db.getBookIds());
+        assertEquals(1, db.getBookVersions().length);
+        assertEquals(List.of("The Hobbit"), titles(db.getBooksByIds(new int[] {hobbit, cooking, sketches})));
+        List<String> listed = new ArrayList<>();
+        assertTrue(db.forEachBook(book -> listed.add(book.getTitle())));
+        assertEquals(List.of("The Hobbit"), listed);
+    }
+
+    @Test
+    void aNewCatalogOffersPublishers() {
+        assertTrue(db.getPublishers().size() >= 10);
+        assertTrue(db.getPublishers().stream().anyMatch(publisher -> "O'Reilly Media".equals(publisher.getName())));
+    }
+
+    @Test
+    void onlyANewCatalogIsSeeded() throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM publisher WHERE Name = 'MIT Press'");
+        }
+        int publishers = count("SELECT COUNT(*) FROM publisher");
+        db.close();
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+        assertEquals(publishers, count("SELECT COUNT(*) FROM publisher"));
+    }
+
+    @Test
+    void aBookNeedsAnAuthor() {
+        assertNull(db.insertBook("Anonymous", List.of(), "9780261102217", "823", publisherId, 100, "English", "Fiction"));
+    }
+
+    private Book insert(String title, List<String> authors, String isbn) {
+        Book book = db.insertBook(title, authors, isbn, "823", publisherId, 300, "English", "Fiction");
+        assertNotNull(book, "insertBook failed for " + title);
+        return book;
+    }
+
+    private static List<String> titles(List<Book> books) {
+        return books.stream().map(Book::getTitle).toList();
+    }
+
+    private int count(String sql) {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new AssertionError(sql, e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveBucketsOfTheirOwn() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.highestValueOf((int) value));
+        }
+    }
+
+    @Test
+    void everyValueFallsIntoTheBucketThatCoversIt() {
+        for (long value = 1; value < 1L << 40; value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertTrue(highest >= value, "bucket of " + value + " ends at " + highest);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value,
+                    "bucket before the one of " + value + " already covers it");
+            // 64 sub-buckets per power of two keep the error under 1/64
+            assertTrue(highest - value <= value / 64, "bucket of " + value + " is too wide: " + highest);
+        }
+    }
+
+    @Test
+    void bucketsAreContiguous() {
+        for (int index = 1; index < LatencyHistogram.indexOf((1L << 40) - 1); index++) {
+            long previous = LatencyHistogram.highestValueOf(index - 1);
+            assertEquals(index, LatencyHistogram.indexOf(previous + 1));
+            assertEquals(index - 1, LatencyHistogram.indexOf(previous));
+        }
+    }
+
+    @Test
+    void percentilesAreWithinTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_500, histogram.getMeanNanos(), 0.001);
+        assertWithin(500_000, histogram.getValueAtPercentile(50));
+        assertWithin(990_000, histogram.getValueAtPercentile(99));
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void negativeAndHugeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals((1L << 40) - 1, histogram.getMaxNanos());
+        assertEquals((1L << 40) - 1, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getValueAtPercentile(99.9));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual - expected <= expected / 64,
+                "expected about " + expected + " but was " + actual);
+    }
+}
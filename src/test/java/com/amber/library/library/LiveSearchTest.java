@@ -0,0 +1,130 @@
+package com.amber.library.library;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveSearchTest {
+
+    private static final Book HOBBIT = new Book(1, "The Hobbit", "J R R Tolkien", "9780261102217", "823", 1);
+    private static final Book HOLES = new Book(2, "Holes", "Louis Sachar", "9780439244190", "813", 1);
+    private static final Book SILMARILLION = new Book(3, "The Silmarillion", "J R R Tolkien", "9780261102736", "823", 1);
+
+    // The FX thread and the debounce timer, run by hand so the test decides when time passes
+    private final Deque<Runnable> fxThread = new ArrayDeque<>();
+    private final List<Runnable> debounceDelays = new ArrayList<>();
+    // The queries sent to the database, each with the future the test completes
+    private final List<String> queries = new ArrayList<>();
+    private final List<CompletableFuture<ObservableList<Book>>> searches = new ArrayList<>();
+    private final List<List<Book>> shown = new ArrayList<>();
+    private int cleared;
+
+    private final LiveSearch liveSearch = new LiveSearch(query -> {
+        CompletableFuture<ObservableList<Book>> search = new CompletableFuture<>();
+        queries.add(query);
+        searches.add(search);
+        return search;
+    }, fxThread::add, debounceDelays::add, (operation, start, rows) -> { }, shown::add, () -> cleared++);
+
+    @Test
+    void onlyTheQueryTypedBeforeAPauseIsSent() {
+        liveSearch.queryChanged("h");
+        liveSearch.queryChanged("ho");
+        liveSearch.queryChanged("hob ");
+        assertTrue(queries.isEmpty(), "nothing is sent while the user is typing");
+
+        pause();
+
+        assertEquals(List.of("hob"), queries);
+    }
+
+    @Test
+    void clearingTheQueryCancelsTheOneWaitingForAPause() {
+        liveSearch.queryChanged("hob");
+        liveSearch.queryChanged(" ");
+        pause();
+
+        assertTrue(queries.isEmpty());
+        assertEquals(1, cleared);
+    }
+
+    @Test
+    void aNarrowerQueryIsAnsweredFromThePreviousResults() {
+        liveSearch.searchNow("ho");
+        answer(0, HOBBIT, HOLES);
+        assertEquals(List.of(List.of(HOBBIT, HOLES)), shown);
+
+        liveSearch.queryChanged("hob");
+        liveSearch.queryChanged("hob tolk");
+
+        assertEquals(List.of(HOBBIT), shown.get(shown.size() - 1));
+        assertTrue(debounceDelays.isEmpty(), "a refined query does not wait for a pause");
+        pause();
+        assertEquals(List.of("ho"), queries);
+    }
+
+    @Test
+    void aBroaderQueryGoesToTheDatabase() {
+        liveSearch.searchNow("hobbit");
+        answer(0, HOBBIT);
+
+        liveSearch.queryChanged("tolkien");
+        pause();
+
+        assertEquals(List.of("hobbit", "tolkien"), queries);
+    }
+
+    @Test
+    void resultsAreForgottenAfterAReset() {
+        liveSearch.searchNow("tolkien");
+        answer(0, HOBBIT);
+        liveSearch.reset();
+
+        // SILMARILLION was added since; only the database knows it
+        liveSearch.searchNow("tolkien silm");
+        answer(1, SILMARILLION);
+
+        assertEquals(List.of("tolkien", "tolkien silm"), queries);
+        assertEquals(List.of(SILMARILLION), shown.get(shown.size() - 1));
+    }
+
+    @Test
+    void queriesMadeWhileOneRunsAreCoalescedIntoTheLatest() {
+        liveSearch.searchNow("hobbit");
+        liveSearch.searchNow("holes");
+        liveSearch.searchNow("sachar");
+        assertEquals(List.of("hobbit"), queries);
+
+        answer(0, HOBBIT);
+
+        // The outdated results are not shown, and only the newest waiting query is sent
+        assertTrue(shown.isEmpty());
+        assertEquals(List.of("hobbit", "sachar"), queries);
+        answer(1, HOLES);
+        assertEquals(List.of(List.of(HOLES)), shown);
+    }
+
+    // Lets the debounce delays started so far run out
+    private void pause() {
+        List<Runnable> delays = new ArrayList<>(debounceDelays);
+        debounceDelays.clear();
+        delays.forEach(Runnable::run);
+    }
+
+    // Completes a query sent to the database and handles its results on the FX thread
+    private void answer(int search, Book... books) {
+        searches.get(search).complete(FXCollections.observableArrayList(books));
+        while (!fxThread.isEmpty()) {
+            fxThread.poll().run();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PublisherRegistryTest {
+
+    private static final Publisher PENGUIN = new Publisher(3, "Penguin Books", null);
+    private static final Publisher HARPER = new Publisher(1, "HarperCollins", null);
+    private static final Publisher ALLEN = new Publisher(7, "Allen & Unwin", null);
+    private static final Publisher PUFFIN = new Publisher(5, "Puffin, a Penguin imprint", null);
+
+    private final PublisherRegistry registry = new PublisherRegistry();
+
+    private static List<Integer> ids(List<Publisher> publishers) {
+        return publishers.stream().map(Publisher::getId).toList();
+    }
+
+    @Test
+    void anEmptyRegistryFindsNothing() {
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMaxId());
+        assertNull(registry.get(1));
+        assertEquals(List.of(), registry.findByName("", 10));
+        assertNull(registry.findByExactName("Penguin Books"));
+    }
+
+    @Test
+    void publishersAreFoundByIdAndListedByName() {
+        registry.replaceAll(List.of(PENGUIN, HARPER, ALLEN, PUFFIN));
+
+        assertEquals(4, registry.size());
+        assertEquals(7, registry.getMaxId());
+        assertSame(HARPER, registry.get(1));
+        assertNull(registry.get(2));
+        assertEquals(List.of(7, 1, 3, 5), ids(registry.getAll()));
+        assertSame(PENGUIN, registry.findByExactName(" penguin BOOKS "));
+        assertNull(registry.findByExactName("Penguin"));
+    }
+
+    @Test
+    void namesStartingWithTheTextComeBeforeThoseContainingIt() {
+        registry.replaceAll(List.of(PENGUIN, HARPER, ALLEN, PUFFIN));
+
+        assertEquals(List.of(3, 5), ids(registry.findByName("PEN", 10)));
+        assertEquals(List.of(3, 5, 1), ids(registry.findByName("p", 10)));
+        assertEquals(List.of(3, 5), ids(registry.findByName("p", 2)));
+        assertEquals(List.of(7, 1), ids(registry.findByName("", 2)));
+        assertEquals(List.of(), ids(registry.findByName("random house", 10)));
+    }
+
+    @Test
+    void addedPublishersReplaceThoseWithTheSameId() {
+        registry.replaceAll(List.of(PENGUIN, HARPER));
+        Publisher renamed = new Publisher(3, "Allen Lane", null);
+
+        registry.addAll(List.of(renamed, ALLEN, PUFFIN));
+
+        assertEquals(4, registry.size());
+        assertSame(renamed, registry.get(3));
+        assertNull(registry.findByExactName("Penguin Books"));
+        assertEquals(List.of(7, 3, 1, 5), ids(registry.getAll()));
+        // Publishers with the same name are kept apart, by ID
+        registry.addAll(List.of(new Publisher(2, "Allen Lane", null)));
+        assertEquals(List.of(7, 2, 3, 1, 5), ids(registry.getAll()));
+        assertEquals(2, registry.findByExactName("allen lane").getId());
+    }
+
+    @Test
+    void everyPublisherOfALargeRegistryIsFound() {
+        List<Publisher> publishers = new ArrayList<>();
+        for (int id = 1; id <= 50_000; id++) {
+            // Spread the IDs, as after many deletions
+            publishers.add(new Publisher(id * 37, "Publisher " + id, null));
+        }
+        registry.replaceAll(publishers.subList(0, 25_000));
+        registry.addAll(publishers.subList(25_000, 50_000));
+
+        assertEquals(50_000, registry.size());
+        assertEquals(50_000 * 37, registry.getMaxId());
+        for (Publisher publisher : publishers) {
+            assertSame(publisher, registry.get(publisher.getId()));
+        }
+        assertNull(registry.get(38));
+        assertEquals(List.of(12_345 * 37), ids(registry.findByName("publisher 12345", 10)));
+    }
+}
@@ -0,0 +1,143 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCacheTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    // Loads that block run on threads of their own, so they never wait for each other in a small common pool
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stopThreads() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void entriesAreEvictedByTheirTotalWeight() {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 10, TTL_MILLIS, List::size);
+        cache.get("a", () -> List.of(1, 2, 3, 4));
+        cache.get("b", () -> List.of(1, 2, 3, 4));
+        cache.get("a", () -> List.of());
+        // "b" is now the least recently used, and the third list takes the cache beyond its weight
+        cache.get("c", () -> List.of(1, 2, 3));
+        assertEquals(2, cache.size());
+        assertEquals(7, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(List.of(1, 2, 3, 4), cache.get("a", () -> List.of()));
+        assertEquals(List.of(), cache.get("b", () -> List.of()));
+
+        // A value heavier than the whole cache is returned but not kept
+        List<Integer> large = List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+        assertEquals(large, cache.get("large", () -> large));
+        assertEquals(List.of(), cache.get("large", () -> List.of()));
+        // Nothing was evicted to make room for it
+        assertEquals(1, cache.getEvictions());
+        assertEquals(7, cache.getWeight());
+    }
+
+    @Test
+    void invalidationReleasesTheWeight() {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 100, TTL_MILLIS, List::size);
+        cache.get("a", () -> List.of(1, 2));
+        cache.get("b", () -> List.of(3, 4, 5));
+        cache.invalidateIf((key, value) -> value.contains(3));
+        assertEquals(2, cache.getWeight());
+        cache.invalidateAll();
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void concurrentMissesForTheSameKeyShareOneLoad() throws Exception {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 10, TTL_MILLIS);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<Integer> loaded = List.of(1);
+
+        CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return loaded;
+        }), threads);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<Integer>> second = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+            loads.incrementAndGet();
+            return List.of(2);
+        }), threads);
+        // The second miss is counted before it waits for the first load
+        while (cache.getMisses() < 2) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertSame(loaded, first.get(5, TimeUnit.SECONDS));
+        assertSame(loaded, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertSame(loaded, cache.get("k", () -> List.of(3)));
+    }
+
+    @Test
+    void aLoadOverlappingAnInvalidationIsReturnedButNotCached() throws Exception {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 10, TTL_MILLIS);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<List<Integer>> stale = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+            loading.countDown();
+            await(release);
+            return List.of(1);
+        }), threads);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // The data changes while the query is running, so what it read may already be out of date
+        cache.invalidateIf((key, value) -> true);
+        release.countDown();
+
+        assertEquals(List.of(1), stale.get(5, TimeUnit.SECONDS));
+        assertEquals(0, cache.size());
+        assertEquals(List.of(2), cache.get("k", () -> List.of(2)));
+        assertEquals(List.of(2), cache.get("k", () -> List.of(3)));
+    }
+
+    @Test
+    void aFailedLoadIsNotCached() {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 10, TTL_MILLIS);
+        assertThrows(IllegalStateException.class, () -> cache.get("k", () -> {
+            throw new IllegalStateException("query failed");
+        }));
+        assertEquals(List.of(1), cache.get("k", () -> List.of(1)));
+    }
+
+    @Test
+    void expiredEntriesAreLoadedAgain() {
+        QueryCache<String, List<Integer>> cache = new QueryCache<>("test", 10, 0);
+        cache.get("k", () -> List.of(1));
+        assertEquals(List.of(2), cache.get("k", () -> List.of(2)));
+        assertEquals(0, cache.getHits());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ReplicatedCatalogTest {
+
+    private static long version(int bookId, int version) {
+        return (long) bookId << 32 | (version & 0xFFFFFFFFL);
+    }
+
+    @Test
+    void booksOnlyOneSideHasOrWithOtherVersionsHaveChanged() {
+        long[] local = {version(1, 0), version(2, 1), version(4, 0), version(6, 3)};
+        long[] remote = {version(1, 0), version(2, 2), version(3, 0), version(6, 3), version(7, 0)};
+        assertArrayEquals(new int[] {2, 3, 4, 7}, ReplicatedCatalog.changedBooks(local, remote));
+        assertArrayEquals(new int[] {2, 3, 4, 7}, ReplicatedCatalog.changedBooks(remote, local));
+    }
+
+    @Test
+    void identicalListsHaveNoChanges() {
+        long[] versions = {version(1, 5), version(2, -1), version(Integer.MAX_VALUE - 1, 0)};
+        assertArrayEquals(new int[0], ReplicatedCatalog.changedBooks(versions, versions.clone()));
+        assertArrayEquals(new int[0], ReplicatedCatalog.changedBooks(new long[0], new long[0]));
+    }
+
+    @Test
+    void everyBookOfAnEmptySideHasChanged() {
+        long[] versions = new long[100];
+        int[] expected = new int[100];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = version(i * 2 + 1, i);
+            expected[i] = i * 2 + 1;
+        }
+        assertArrayEquals(expected, ReplicatedCatalog.changedBooks(new long[0], versions));
+        assertArrayEquals(expected, ReplicatedCatalog.changedBooks(versions, new long[0]));
+    }
+}
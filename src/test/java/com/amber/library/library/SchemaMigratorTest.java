@@ -0,0 +1,134 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedDBMgr db;
+
+    @BeforeEach
+    void open() {
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    @Test
+    void migratingAnUpToDateSchemaChangesNothing() {
+        SchemaMigrator migrator = new SchemaMigrator(db);
+        int version = migrator.getSchemaVersion();
+        String last = SchemaMigrator.MIGRATIONS.get(SchemaMigrator.MIGRATIONS.size() - 1);
+        assertEquals(Integer.parseInt(last.substring(1, last.indexOf("__"))), version);
+        assertTrue(migrator.migrate());
+        assertEquals(version, migrator.getSchemaVersion());
+    }
+
+    @Test
+    void theBookAuthorIndexAnEarlierV3CreatedIsDropped() throws SQLException {
+        // A database migrated by V3 when it still created a copy of BookAuthor's primary key
+        update("CREATE UNIQUE INDEX UX_BookAuthor_Book_Author ON BookAuthor (BookID, AuthorID)");
+        assertEquals(1, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'UX_BOOKAUTHOR_BOOK_AUTHOR'"));
+        update("UPDATE schema_version SET Checksum = 1568845736 WHERE Version = 3");
+        update("DELETE FROM schema_version WHERE Version = 7");
+
+        assertTrue(new SchemaMigrator(db).migrate());
+
+        assertEquals(0, count("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'UX_BOOKAUTHOR_BOOK_AUTHOR'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM schema_version WHERE Version = 7"));
+    }
+
+    @Test
+    void aCatalogWhoseSchemaCannotBeMigratedIsNotOpened() throws SQLException {
+        update("UPDATE schema_version SET Checksum = Checksum + 1 WHERE Version = 1");
+        db.close();
+
+        assertThrows(IllegalStateException.class, () -> new EmbeddedDBMgr(dir.resolve("catalog")));
+
+        // The database is still open in this process; put the checksum back so it can be opened and closed
+        String url = "jdbc:h2:file:" + dir.resolve("catalog").toAbsolutePath() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE schema_version SET Checksum = Checksum - 1 WHERE Version = 1");
+        }
+        db = new EmbeddedDBMgr(dir.resolve("catalog"));
+    }
+
+    @Test
+    void authorsStoredTwiceAreMergedBeforeNamesBecomeUnique() throws SQLException {
+        // Back to the schema before V5, with one author stored three times across two books
+        update("DROP INDEX UX_Author_Name");
+        update("CREATE INDEX IX_Author_Name ON Author (FirstName, MiddleName, LastName)");
+        update("DELETE FROM schema_version WHERE Version = 5");
+        update("INSERT INTO Author (AuthorID, FirstName, MiddleName, LastName) VALUES "
+                + "(10, 'Alan', '', 'Lee'), (11, 'Alan', '', 'Lee'), (12, 'Alan', '', 'Lee'), (13, 'John', '', 'Howe')");
+        update("INSERT INTO Publication (PublicationID, Title, Type) VALUES (101, 'Sketches', 'Book'), (102, 'Drawings', 'Book')");
+        update("INSERT INTO Book (BookID, PublicationID) VALUES (101, 101), (102, 102)");
+        update("INSERT INTO BookAuthor (BookID, AuthorID) VALUES (101, 10), (101, 11), (102, 12), (102, 13)");
+
+        assertTrue(new SchemaMigrator(db).migrate());
+
+        assertEquals(2, count("SELECT COUNT(*) FROM Author"));
+        assertEquals(3, count("SELECT COUNT(*) FROM BookAuthor"));
+        // Book 101 named the author twice and keeps one link; book 102 is moved to the kept row
+        assertEquals(2, count("SELECT COUNT(*) FROM BookAuthor WHERE AuthorID = 10"));
+        assertThrows(SQLException.class,
+                () -> update("INSERT INTO Author (FirstName, MiddleName, LastName) VALUES ('Alan', '', 'Lee')"));
+    }
+
+    @Test
+    void duplicateIsbnsStopTheMigrationNamingTheBooks() throws SQLException {
+        // Back to the schema before UX_Book_ISBN, with two books sharing an ISBN and two without one
+        update("DROP INDEX UX_Book_ISBN");
+        update("DELETE FROM schema_version WHERE Version = 3");
+        update("INSERT INTO Publication (PublicationID, Title, Type) VALUES (101, 'Copy', 'Book')");
+        update("INSERT INTO Book (BookID, PublicationID, ISBN) VALUES "
+                + "(101, 101, '9780306406157'), (102, 101, '9780262033848'), (103, 101, '9780306406157'), "
+                + "(104, 101, NULL), (105, 101, NULL)");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new SchemaMigrator(db).migrate());
+        assertTrue(e.getMessage().contains("UX_Book_ISBN"), e.getMessage());
+        assertTrue(e.getMessage().contains("ISBN '9780306406157': BOOKID 101, 103"), e.getMessage());
+        assertFalse(e.getMessage().contains("102"), e.getMessage());
+
+        update("UPDATE Book SET ISBN = '9780131103627' WHERE BookID = 103");
+        assertTrue(new SchemaMigrator(db).migrate());
+        assertThrows(SQLException.class, () -> update("UPDATE Book SET ISBN = '9780306406157' WHERE BookID = 102"));
+    }
+
+    private void update(String sql) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
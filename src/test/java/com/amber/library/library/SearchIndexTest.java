@@ -0,0 +1,95 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    private static SearchIndex catalog() {
+        SearchIndex index = new SearchIndex();
+        index.put(1, "The Hobbit", "J R R Tolkien", "9780261102217", "823.912");
+        index.put(2, "The Lord of the Rings", "J R R Tolkien", "9780261103252", "823.912");
+        index.put(3, "Hobbit Cooking", "Anne Author", "9780306406157", "641.5");
+        index.put(4, "A Tolkien Companion", "Hobbes Smith", "9780262033848", "823.9");
+        return index;
+    }
+
+    @Test
+    void everyTokenMustMatch() {
+        SearchIndex index = catalog();
+        assertArrayEquals(new int[] {1}, index.search("tolk hobbit"));
+        assertArrayEquals(new int[] {1, 4}, index.search("tolk hobb"));
+        assertArrayEquals(new int[0], index.search("tolkien cooking"));
+    }
+
+    @Test
+    void titleMatchesRankAboveAuthorMatches() {
+        SearchIndex index = catalog();
+        // Book 4 has "Tolkien" in its title, books 1 and 2 in their authors
+        assertArrayEquals(new int[] {4, 1, 2}, index.search("tolkien"));
+        // Title word starts rank above author word starts, and ties are ordered by BookID
+        assertArrayEquals(new int[] {1, 3, 4}, index.search("hobb"));
+    }
+
+    @Test
+    void codesMatchWithoutSeparators() {
+        SearchIndex index = catalog();
+        assertArrayEquals(new int[] {3}, index.search("978-0-306-40615-7"));
+        assertArrayEquals(new int[] {1, 2}, index.search("823.912"));
+    }
+
+    @Test
+    void shortTokensAreCheckedAgainstEveryBook() {
+        SearchIndex index = catalog();
+        // "r" starts a word of the second title
+        assertArrayEquals(new int[] {2, 1}, index.search("j r"));
+        assertArrayEquals(new int[0], index.search("  ,. "));
+    }
+
+    @Test
+    void searchesReturnOnlyTheBestResults() {
+        SearchIndex index = new SearchIndex();
+        for (int bookId = 1; bookId <= SearchIndex.MAX_RESULTS + 500; bookId++) {
+            index.put(bookId, "Book " + bookId, "Author", "", "");
+        }
+        // A query shorter than a trigram matches every book
+        assertEquals(SearchIndex.MAX_RESULTS, index.search("b").length);
+        assertEquals(SearchIndex.MAX_RESULTS, index.search("book").length);
+        assertArrayEquals(new int[] {1, 2, 3}, index.search("bo", 3));
+        assertArrayEquals(new int[] {1200}, index.search("book 1200", 3));
+    }
+
+    @Test
+    void putReplacesAndRemoveForgets() {
+        SearchIndex index = catalog();
+        index.put(new Book(1, "There and Back Again", "J R R Tolkien", "9780261102217", "823.912", 1));
+        assertEquals(4, index.size());
+        assertArrayEquals(new int[] {3, 4}, index.search("hobb"));
+        assertArrayEquals(new int[] {1}, index.search("back again"));
+
+        index.remove(3);
+        index.remove(99);
+        assertEquals(3, index.size());
+        assertArrayEquals(new int[] {4}, index.search("hobb"));
+        assertArrayEquals(new int[0], index.search("cooking"));
+    }
+
+    @Test
+    void matchesUsesTheSameRules() {
+        Book book = new Book(7, "The Hobbit", "J R R Tolkien", "9780261102217", "823.912", 1);
+        assertTrue(SearchIndex.matches(book, "HOBB tolk"));
+        assertTrue(SearchIndex.matches(book, "0261102217"));
+        assertFalse(SearchIndex.matches(book, "hobbit rings"));
+        assertFalse(SearchIndex.matches(book, ""));
+    }
+
+    @Test
+    void tokenizeNormalizes() {
+        assertArrayEquals(new String[] {"the", "hobbit"}, SearchIndex.tokenize("  The, HOBBIT! the "));
+        assertArrayEquals(new String[0], SearchIndex.tokenize("--"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCacheTest {
+
+    private static final String SQL = "SELECT ?";
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private Connection physical;
+    private StatementCache cache;
+
+    @BeforeEach
+    void open() throws SQLException {
+        physical = DriverManager.getConnection("jdbc:h2:mem:statements;MODE=MySQL", "sa", "");
+        cache = new StatementCache(physical, 2, hits, misses, evictions);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        cache.closeAll();
+        physical.close();
+    }
+
+    @Test
+    void aClosedStatementIsReusedForTheSameSql() throws SQLException {
+        PreparedStatement first = cache.prepare(physical, SQL, null);
+        assertEquals(1, select(first, 1));
+        first.close();
+        PreparedStatement second = cache.prepare(physical, SQL, null);
+        assertEquals(2, select(second, 2));
+        second.close();
+        assertEquals(1, misses.get());
+        assertEquals(1, hits.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void aStaleHandleCannotTouchTheNextLease() throws SQLException {
+        PreparedStatement first = cache.prepare(physical, SQL, null);
+        first.close();
+        PreparedStatement second = cache.prepare(physical, SQL, null);
+        // Closing the first handle again must not hand back the statement the second one is using
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, () -> first.setInt(1, 1));
+        assertFalse(second.isClosed());
+        assertEquals(3, select(second, 3));
+        PreparedStatement nested = cache.prepare(physical, SQL, null);
+        assertEquals(2, misses.get(), "a statement still leased must not be handed out twice");
+        nested.close();
+        second.close();
+    }
+
+    @Test
+    void releaseAllHandsBackWhatTheBorrowerLeftOpen() throws SQLException {
+        PreparedStatement leaked = cache.prepare(physical, SQL, null);
+        leaked.setInt(1, 4);
+        ResultSet rs = leaked.executeQuery();
+        cache.releaseAll();
+        assertTrue(leaked.isClosed());
+        assertTrue(rs.isClosed());
+        PreparedStatement next = cache.prepare(physical, SQL, null);
+        assertEquals(1, hits.get());
+        // The parameters of the previous lease were cleared
+        assertThrows(SQLException.class, next::executeQuery);
+        next.close();
+    }
+
+    @Test
+    void aReleasedStatementHasNoBatchLeft() throws SQLException {
+        try (Statement ddl = physical.createStatement()) {
+            ddl.execute("CREATE TABLE Batched (Amount INT)");
+        }
+        PreparedStatement first = cache.prepare(physical, "INSERT INTO Batched VALUES (?)", null);
+        first.setInt(1, 1);
+        first.addBatch();
+        first.close();
+        PreparedStatement second = cache.prepare(physical, "INSERT INTO Batched VALUES (?)", null);
+        assertEquals(1, hits.get());
+        assertEquals(0, second.executeBatch().length);
+        second.close();
+        try (Statement query = physical.createStatement();
+             ResultSet rs = query.executeQuery("SELECT COUNT(*) FROM Batched")) {
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void aReleasedStatementHasItsSettingsReset() throws SQLException {
+        PreparedStatement first = cache.prepare(physical, SQL, null);
+        int fetchSize = first.getFetchSize();
+        int maxRows = first.getMaxRows();
+        int queryTimeout = first.getQueryTimeout();
+        first.setFetchSize(fetchSize + 500);
+        first.setMaxRows(maxRows + 7);
+        first.setQueryTimeout(queryTimeout + 30);
+        first.close();
+        PreparedStatement second = cache.prepare(physical, SQL, null);
+        assertEquals(fetchSize, second.getFetchSize());
+        assertEquals(maxRows, second.getMaxRows());
+        assertEquals(queryTimeout, second.getQueryTimeout());
+        second.close();
+    }
+
+    @Test
+    void theLeastRecentlyUsedStatementIsEvicted() throws SQLException {
+        for (String sql : new String[] {"SELECT 1", "SELECT 2", "SELECT 3"}) {
+            cache.prepare(physical, sql, null).close();
+        }
+        assertEquals(2, cache.size());
+        assertEquals(1, evictions.get());
+        cache.prepare(physical, "SELECT 3", null).close();
+        assertEquals(1, hits.get());
+        cache.prepare(physical, "SELECT 1", null).close();
+        assertEquals(4, misses.get());
+    }
+
+    private static int select(PreparedStatement pstmt, int value) throws SQLException {
+        pstmt.setInt(1, value);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StringDictionaryTest {
+
+    @Test
+    void codesAreAssignedInOrderOfFirstUse() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(0, dictionary.encode("823"));
+        assertEquals(1, dictionary.encode("813"));
+        // An equal string encodes to the same code, whichever instance it is
+        assertEquals(0, dictionary.encode(new String("823")));
+        assertEquals(2, dictionary.size());
+        assertEquals("813", dictionary.decode(1));
+    }
+
+    @Test
+    void nullIsEncodedAsMinusOne() {
+        StringDictionary dictionary = new StringDictionary();
+        assertEquals(-1, dictionary.encode(null));
+        assertNull(dictionary.decode(-1));
+        assertEquals(0, dictionary.size());
+    }
+
+    @Test
+    void codesSurviveTheTableGrowing() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.encode("Author " + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.encode("Author " + i));
+            assertEquals("Author " + i, dictionary.decode(i));
+        }
+        assertEquals(10_000, dictionary.size());
+    }
+}
@@ -0,0 +1,128 @@
+package com.amber.library.library;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidationEngineTest {
+
+    @Test
+    void isbnsWithMatchingCheckDigitsAreValid() {
+        assertEquals(0, ValidationEngine.checkIsbn("9780306406157"));
+        assertEquals(0, ValidationEngine.checkIsbn("9780262033848"));
+        assertEquals(0, ValidationEngine.checkIsbn("0306406152"));
+        assertEquals(0, ValidationEngine.checkIsbn("080442957X"));
+        assertEquals(0, ValidationEngine.checkIsbn("080442957x"));
+        assertEquals(0, ValidationEngine.checkIsbn("978-0-306-40615-7"));
+        assertEquals(0, ValidationEngine.checkIsbn("0 8044 2957 X"));
+    }
+
+    @Test
+    void wrongCheckDigitsAreChecksumErrors() {
+        assertEquals(ValidationError.ISBN_CHECKSUM.bit(), ValidationEngine.checkIsbn("9780306406158"));
+        assertEquals(ValidationError.ISBN_CHECKSUM.bit(), ValidationEngine.checkIsbn("0306406153"));
+        // An X is only a check digit for an ISBN-10 whose checksum is 10
+        assertEquals(ValidationError.ISBN_CHECKSUM.bit(), ValidationEngine.checkIsbn("030640615X"));
+    }
+
+    @Test
+    void malformedIsbnsAreFormatErrors() {
+        int format = ValidationError.ISBN_FORMAT.bit();
+        assertEquals(format, ValidationEngine.checkIsbn(null));
+        assertEquals(format, ValidationEngine.checkIsbn(""));
+        assertEquals(format, ValidationEngine.checkIsbn("978030640615"));
+        assertEquals(format, ValidationEngine.checkIsbn("97803064061570"));
+        assertEquals(format, ValidationEngine.checkIsbn("978030640615X"));
+        assertEquals(format, ValidationEngine.checkIsbn("03064X6152"));
+        assertEquals(format, ValidationEngine.checkIsbn("080442957X-1"));
+        assertEquals(format, ValidationEngine.checkIsbn("978-0-306-40615-7-1"));
+    }
+
+    @Test
+    void isbnsConvertBetweenTheirForms() {
+        assertEquals("9780306406157", ValidationEngine.toIsbn13("0-306-40615-2"));
+        assertEquals("9780804429573", ValidationEngine.toIsbn13("080442957X"));
+        assertEquals("9780306406157", ValidationEngine.toIsbn13("978 0 306 40615 7"));
+        assertEquals("0306406152", ValidationEngine.toIsbn10("978-0-306-40615-7"));
+        assertEquals("080442957X", ValidationEngine.toIsbn10("080442957x"));
+        // Only 978 ISBN-13s have a 10-digit form
+        assertNull(ValidationEngine.toIsbn10("9791234567896"));
+        assertNull(ValidationEngine.toIsbn13("0-306-40615-3"));
+        assertNull(ValidationEngine.toIsbn13("9780306406157-1"));
+        assertNull(ValidationEngine.toIsbn13(null));
+    }
+
+    @Test
+    void isbnsAreStoredInTheirThirteenDigitForm() {
+        assertEquals("9780306406157", ValidationEngine.normalizeIsbn(" 0-306-40615-2 "));
+        assertEquals("9780306406157", ValidationEngine.normalizeIsbn("978-0-306-40615-7"));
+        // Values that are not ISBNs are kept, so that nothing is lost where they were not validated
+        assertEquals("12-34", ValidationEngine.normalizeIsbn(" 12-34"));
+        assertNull(ValidationEngine.normalizeIsbn(null));
+    }
+
+    @Test
+    void deweyNumbers() {
+        assertTrue(ValidationEngine.isDewey("823"));
+        assertTrue(ValidationEngine.isDewey("823.912"));
+        assertFalse(ValidationEngine.isDewey("823."));
+        assertFalse(ValidationEngine.isDewey(".9"));
+        assertFalse(ValidationEngine.isDewey("82a"));
+        assertFalse(ValidationEngine.isDewey(""));
+        assertFalse(ValidationEngine.isDewey(null));
+    }
+
+    @Test
+    void checkBookCombinesTheErrorsOfEveryField() {
+        assertEquals(0, ValidationEngine.checkBook("The Hobbit", "Tolkien", "9780306406157", "823.912"));
+        int errors = ValidationEngine.checkBook("The Hobbit!", " ", "9780306406158", "x");
+        assertEquals(List.of(ValidationError.TITLE_NOT_ALPHANUMERIC, ValidationError.AUTHOR_EMPTY,
+                ValidationError.ISBN_CHECKSUM, ValidationError.DEWEY_FORMAT), List.copyOf(ValidationError.decode(errors)));
+        assertTrue(ValidationError.TITLE_EMPTY.in(ValidationEngine.checkTitle("")));
+    }
+
+    @Test
+    void largeBatchesAreValidatedInParallel() {
+        int size = 20_000;
+        ValidationEngine.Rows rows = new ValidationEngine.Rows() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public CharSequence title(int row) {
+                return "Title " + row;
+            }
+
+            @Override
+            public CharSequence authors(int row) {
+                return "Author";
+            }
+
+            @Override
+            public CharSequence isbn(int row) {
+                // Every seventh row has a wrong check digit
+                return row % 7 == 0 ? "9780306406158" : "9780306406157";
+            }
+
+            @Override
+            public CharSequence dewey(int row) {
+                return "823";
+            }
+        };
+        int[] errors = new int[size];
+        errors[1] = ValidationError.MISSING_COLUMNS.bit();
+        assertEquals(size / 7 + 1 + 1, ValidationEngine.validateAll(rows, errors));
+        assertEquals(ValidationError.ISBN_CHECKSUM.bit(), errors[size - 1 - (size - 1) % 7]);
+        assertEquals(0, errors[2]);
+        assertEquals(ValidationError.MISSING_COLUMNS.bit(), errors[1]);
+        assertThrows(IllegalArgumentException.class, () -> ValidationEngine.validateAll(rows, new int[size - 1]));
+    }
+}
@@ -0,0 +1,63 @@
+package com.amber.library.library;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VirtualBookListTest {
+
+    private static Book book(int bookId) {
+        return new Book(bookId, "Title " + bookId, "Author", "9780306406157", "823", 1);
+    }
+
+    private static int[] ids(VirtualBookList list) {
+        int[] ids = new int[list.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = list.getBookId(i);
+        }
+        return ids;
+    }
+
+    @Test
+    void addedBooksTakeTheirPlaceInBookIdOrder() {
+        VirtualBookList list = new VirtualBookList(new int[] {2, 5, 9}, bookIds -> new CompletableFuture<>());
+        List<String> changes = new ArrayList<>();
+        list.addListener((ListChangeListener<Book>) change -> {
+            while (change.next()) {
+                changes.add((change.wasAdded() ? "add " : "other ") + change.getFrom());
+            }
+        });
+
+        list.addBook(book(12));
+        list.addBook(book(7));
+        list.addBook(book(1));
+        // Already in the list, so nothing is added
+        list.addBook(book(5));
+
+        assertArrayEquals(new int[] {1, 2, 5, 7, 9, 12}, ids(list));
+        assertEquals(List.of("add 3", "add 2", "add 0"), changes);
+    }
+
+    @Test
+    void booksAddedAcrossPagesKeepTheListSorted() {
+        int[] bookIds = new int[VirtualBookList.PAGE_SIZE * 2];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = (i + 1) * 2;
+        }
+        VirtualBookList list = new VirtualBookList(bookIds, ids -> new CompletableFuture<>());
+        for (int bookId = 1; bookId < bookIds.length * 2 + 10; bookId += 2) {
+            list.addBook(book(bookId));
+        }
+        int[] expected = new int[bookIds.length * 2 + 5];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i < bookIds.length * 2 ? i + 1 : bookIds.length * 2 + 1 + (i - bookIds.length * 2) * 2;
+        }
+        assertArrayEquals(expected, ids(list));
+    }
+}